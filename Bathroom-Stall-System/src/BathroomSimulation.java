@@ -0,0 +1,304 @@
+import util.metrics.Histogram;
+import util.sim.Simulator;
+import util.workload.ArrivalProcess;
+import util.workload.ServiceTime;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discrete-event model of FloorBathroom: users wait for one of the stalls, take the free stall
+ * that was returned first, occupy it for a ServiceTime (MIN_OCCUPIED_MILLIS to
+ * MAX_OCCUPIED_MILLIS by default) and leave.
+ * Runs on a util.sim.Simulator, so it takes milliseconds instead of the minutes the threaded
+ * version sleeps through, and the same scenario and seed always give the same report. Waiting
+ * users are served first come, first served.
+ *
+ * <p>As in FloorBathroom, every user arrives at once by default. An arrival window instead
+ * spreads the arrivals uniformly at random over that time, and an ArrivalProcess brings them in
+ * as it dictates, e.g. in bursts, until every user has arrived.</p>
+ */
+public class BathroomSimulation {
+    /**
+     * The floor and its users. Scenarios are immutable; the with methods return copies.
+     */
+    public static final class Scenario {
+        private final int stalls; // Number of stalls
+        private final int users; // Number of users, one visit each
+        private final long arrivalWindowMillis; // Time over which users arrive, 0 for all at once
+        private final ArrivalProcess arrivals; // When users arrive, or null to use the window
+        private final ServiceTime occupancy; // Time a user spends in a stall
+
+        private Scenario(int stalls, int users, long arrivalWindowMillis, ArrivalProcess arrivals, ServiceTime occupancy) {
+            this.stalls = stalls;
+            this.users = users;
+            this.arrivalWindowMillis = arrivalWindowMillis;
+            this.arrivals = arrivals;
+            this.occupancy = occupancy;
+        }
+
+        /**
+         * Returns FloorBathroom's floor: NUM_OF_STALLS stalls and NUM_OF_EMPLOYEES users arriving at once.
+         *
+         * @return the scenario
+         */
+        public static Scenario defaults() {
+            return new Scenario(FloorBathroom.NUM_OF_STALLS, FloorBathroom.NUM_OF_EMPLOYEES, 0, null,
+                    ServiceTime.uniform(FloorBathroom.MIN_OCCUPIED_MILLIS, FloorBathroom.MAX_OCCUPIED_MILLIS));
+        }
+
+        /**
+         * Returns a copy with a different number of stalls.
+         *
+         * @param stalls the number of stalls
+         * @return the new scenario
+         * @throws IllegalArgumentException if the count is not positive
+         */
+        public Scenario withStalls(int stalls) {
+            if (stalls <= 0) {
+                throw new IllegalArgumentException("Stall count must be positive.");
+            }
+            return new Scenario(stalls, users, arrivalWindowMillis, arrivals, occupancy);
+        }
+
+        /**
+         * Returns a copy with a different number of users.
+         *
+         * @param users the number of users
+         * @return the new scenario
+         * @throws IllegalArgumentException if the count is not positive
+         */
+        public Scenario withUsers(int users) {
+            if (users <= 0) {
+                throw new IllegalArgumentException("User count must be positive.");
+            }
+            return new Scenario(stalls, users, arrivalWindowMillis, arrivals, occupancy);
+        }
+
+        /**
+         * Returns a copy with users arriving uniformly at random over a window, replacing any
+         * arrival process.
+         *
+         * @param arrivalWindowMillis the window length, or 0 for all at once
+         * @return the new scenario
+         * @throws IllegalArgumentException if the window is negative
+         */
+        public Scenario withArrivalWindow(long arrivalWindowMillis) {
+            if (arrivalWindowMillis < 0) {
+                throw new IllegalArgumentException("Arrival window must not be negative.");
+            }
+            return new Scenario(stalls, users, arrivalWindowMillis, null, occupancy);
+        }
+
+        /**
+         * Returns a copy with users arriving by an arrival process. The run stops admitting
+         * users once the count is reached or a replayed trace runs out.
+         *
+         * @param arrivals when users arrive
+         * @return the new scenario
+         */
+        public Scenario withArrivals(ArrivalProcess arrivals) {
+            return new Scenario(stalls, users, 0, arrivals, occupancy);
+        }
+
+        /**
+         * Returns a copy with a different time spent in a stall.
+         *
+         * @param occupancy the distribution of stall times
+         * @return the new scenario
+         */
+        public Scenario withOccupancy(ServiceTime occupancy) {
+            return new Scenario(stalls, users, arrivalWindowMillis, arrivals, occupancy);
+        }
+
+        public int getStalls() {
+            return stalls;
+        }
+
+        public int getUsers() {
+            return users;
+        }
+
+        public long getArrivalWindowMillis() {
+            return arrivalWindowMillis;
+        }
+
+        /**
+         * Returns how users arrive, for reports.
+         *
+         * @return the arrival process, or "window:<ms>" when users arrive over a window
+         */
+        public String getArrivalDescription() {
+            return arrivals != null ? arrivals.toString() : "window:" + arrivalWindowMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d stalls, %d users, arrivals %s, occupancy %s",
+                    stalls, users, getArrivalDescription(), occupancy);
+        }
+    }
+
+    /**
+     * What happened in one run.
+     */
+    public static final class Report {
+        private final long visits; // Visits finished
+        private final Histogram.Snapshot wait; // Virtual nanoseconds users waited for a stall
+        private final double utilization; // Share of stall time occupied
+        private final long makespanNanos; // Virtual time until the last user left
+
+        private Report(long visits, Histogram.Snapshot wait, double utilization, long makespanNanos) {
+            this.visits = visits;
+            this.wait = wait;
+            this.utilization = utilization;
+            this.makespanNanos = makespanNanos;
+        }
+
+        public long getVisits() {
+            return visits;
+        }
+
+        /**
+         * Returns how long users waited for a stall, in virtual nanoseconds.
+         *
+         * @return the distribution
+         */
+        public Histogram.Snapshot getWait() {
+            return wait;
+        }
+
+        /**
+         * Returns the share of the stalls' time, until the last user left, that they were occupied.
+         *
+         * @return the utilization, from 0 to 1
+         */
+        public double getUtilization() {
+            return utilization;
+        }
+
+        /**
+         * Returns the virtual time until the last user left.
+         *
+         * @return the time in nanoseconds
+         */
+        public long getMakespanNanos() {
+            return makespanNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d visits in %.1f s, stalls occupied %.1f%%, wait p50 %d ms, p99 %d ms",
+                    visits, makespanNanos / 1e9, utilization * 100,
+                    wait.getValueAtPercentile(50) / 1_000_000, wait.getValueAtPercentile(99) / 1_000_000);
+        }
+    }
+
+    private final Scenario scenario; // The floor being simulated
+    private final Simulator simulator; // Virtual clock and event calendar
+    private final SplittableRandom random; // The simulator's generator
+
+    private final ArrayDeque<Integer> freeStalls = new ArrayDeque<>(); // Free stall numbers, as FloorBathroom's queue
+    private final ArrayDeque<Long> waiting = new ArrayDeque<>(); // Arrival times of users waiting for a stall
+    private final Histogram wait = new Histogram(); // User wait for a stall
+
+    private ArrivalProcess.Arrivals arrivals; // Arrival times, when the scenario has a process
+    private long arrived; // Users who have arrived
+    private long visits; // Visits finished
+    private long occupiedNanos; // Total time stalls were occupied
+
+    /**
+     * Constructs a simulation.
+     *
+     * @param scenario the floor and its users
+     * @param seed     the seed; the same scenario and seed always give the same report
+     */
+    public BathroomSimulation(Scenario scenario, long seed) {
+        this.scenario = scenario;
+        this.simulator = new Simulator(seed);
+        this.random = simulator.random();
+        for (int i = 1; i <= scenario.stalls; i++) {
+            freeStalls.add(i);
+        }
+    }
+
+    /**
+     * Runs until every user has left.
+     *
+     * @return what happened
+     */
+    public Report run() {
+        if (scenario.arrivals != null) {
+            arrivals = scenario.arrivals.start(random);
+            scheduleNextArrival();
+        } else {
+            long windowNanos = TimeUnit.MILLISECONDS.toNanos(scenario.arrivalWindowMillis);
+            for (int i = 0; i < scenario.users; i++) {
+                simulator.schedule(windowNanos == 0 ? 0 : random.nextLong(windowNanos), this::arrive);
+            }
+        }
+        simulator.run(Long.MAX_VALUE);
+
+        long makespan = simulator.now();
+        double utilization = makespan == 0 ? 0 : (double) occupiedNanos / ((double) makespan * scenario.stalls);
+        return new Report(visits, wait.snapshot(), utilization, makespan);
+    }
+
+    /**
+     * A user arrives and takes a free stall, or joins the line.
+     */
+    private void arrive() {
+        arrived++;
+        if (freeStalls.isEmpty()) {
+            waiting.addLast(simulator.now());
+        } else {
+            enter(freeStalls.poll(), simulator.now());
+        }
+        if (arrivals != null) {
+            scheduleNextArrival();
+        }
+    }
+
+    /**
+     * Schedules the next user's arrival from the arrival process, until every user has arrived
+     * or a replayed trace runs out.
+     */
+    private void scheduleNextArrival() {
+        if (arrived >= scenario.users) {
+            return;
+        }
+        long next = arrivals.next();
+        if (next != ArrivalProcess.Arrivals.END) {
+            simulator.scheduleAt(next, this::arrive);
+        }
+    }
+
+    /**
+     * A user enters a stall and the time they leave is scheduled.
+     *
+     * @param stallNo      the stall
+     * @param arrivedNanos when the user arrived
+     */
+    private void enter(int stallNo, long arrivedNanos) {
+        wait.record(simulator.now() - arrivedNanos);
+        long occupied = scenario.occupancy.sampleNanos(random);
+        occupiedNanos += occupied;
+        simulator.schedule(occupied, () -> leave(stallNo));
+    }
+
+    /**
+     * A user leaves; the stall goes to the longest-waiting user, or back to the free stalls.
+     *
+     * @param stallNo the stall
+     */
+    private void leave(int stallNo) {
+        visits++;
+        if (waiting.isEmpty()) {
+            freeStalls.add(stallNo);
+        } else {
+            enter(stallNo, waiting.pollFirst());
+        }
+    }
+}
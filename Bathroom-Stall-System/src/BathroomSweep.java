@@ -0,0 +1,87 @@
+import util.sim.ParameterSweep;
+import util.workload.ArrivalProcess;
+import util.workload.ServiceTime;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sizes the bathroom floor: runs BathroomSimulation for every combination of stall count,
+ * user count and arrivals, many seeded replications each across every core, and writes
+ * the wait percentiles, stall utilisation and throughput per combination to bathroom_sweep.csv.
+ *
+ * <p>Ranges are comma-separated lists: -Dsweep.stalls (default 4,6,8), -Dsweep.users
+ * (default 100,200) and -Dsweep.window in milliseconds (default 0, everyone at once).
+ * -Dsweep.arrivals and -Dsweep.occupancy instead set a util.workload.ArrivalProcess and a
+ * util.workload.ServiceTime for every scenario, e.g. mmpp:2/30,0.2/120 and lognormal:4000,0.5.
+ * -Dsweep.replications (default 1000), -Dsweep.seed (default 1) and -Dsweep.file change the run.</p>
+ */
+public class BathroomSweep {
+    public static void main(String[] args) throws IOException {
+        BathroomSimulation.Scenario base = BathroomSimulation.Scenario.defaults();
+        if (System.getProperty("sweep.occupancy") != null) {
+            base = base.withOccupancy(ServiceTime.parse(System.getProperty("sweep.occupancy")));
+        }
+        String arrivals = System.getProperty("sweep.arrivals");
+
+        List<BathroomSimulation.Scenario> scenarios = new ArrayList<>();
+        for (int stalls : ParameterSweep.integers("sweep.stalls", "4,6,8")) {
+            for (int users : ParameterSweep.integers("sweep.users", "100,200")) {
+                BathroomSimulation.Scenario scenario = base.withStalls(stalls).withUsers(users);
+                if (arrivals != null) {
+                    scenarios.add(scenario.withArrivals(ArrivalProcess.parse(arrivals)));
+                    continue;
+                }
+                for (int window : ParameterSweep.integers("sweep.window", "0")) {
+                    scenarios.add(scenario.withArrivalWindow(window));
+                }
+            }
+        }
+        int replications = Integer.getInteger("sweep.replications", 1000);
+        long seed = Long.getLong("sweep.seed", 1);
+
+        long start = System.nanoTime();
+        ParameterSweep<BathroomSimulation.Scenario> sweep = new ParameterSweep<>(scenarios, replications, seed);
+        List<ParameterSweep.Summary<BathroomSimulation.Scenario>> summaries = sweep.run(BathroomSweep::replicate);
+        System.out.printf("%d runs in %d ms%n", scenarios.size() * replications, (System.nanoTime() - start) / 1_000_000);
+
+        List<String> parameters = List.of("stalls", "users", "arrivals");
+        ParameterSweep.printReport(summaries, parameters, BathroomSweep::parameters, System.out);
+        ParameterSweep.writeCsv(summaries, parameters, BathroomSweep::parameters,
+                Paths.get(System.getProperty("sweep.file", "bathroom_sweep.csv")));
+    }
+
+    /**
+     * Runs one replication and extracts the metrics compared across scenarios.
+     *
+     * @param scenario the scenario
+     * @param seed     the seed
+     * @return the metrics, by CSV column name
+     */
+    private static Map<String, Double> replicate(BathroomSimulation.Scenario scenario, long seed) {
+        BathroomSimulation.Report report = new BathroomSimulation(scenario, seed).run();
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("wait_p50_s", report.getWait().getValueAtPercentile(50) / 1e9);
+        metrics.put("wait_p95_s", report.getWait().getValueAtPercentile(95) / 1e9);
+        metrics.put("wait_p99_s", report.getWait().getValueAtPercentile(99) / 1e9);
+        metrics.put("wait_mean_s", report.getWait().getMean() / 1e9);
+        metrics.put("utilization", report.getUtilization());
+        metrics.put("visits_per_minute", report.getVisits() * 60e9 / report.getMakespanNanos());
+        metrics.put("makespan_s", report.getMakespanNanos() / 1e9);
+        return metrics;
+    }
+
+    /**
+     * Returns the swept parameters of a scenario, in CSV column order.
+     *
+     * @param scenario the scenario
+     * @return stalls, users and how they arrive
+     */
+    private static List<?> parameters(BathroomSimulation.Scenario scenario) {
+        return List.of(scenario.getStalls(), scenario.getUsers(), scenario.getArrivalDescription());
+    }
+}
@@ -1,79 +1,213 @@
+import util.LogConfig;
+import util.AsyncLogWriter;
+import util.LogLayout;
 import util.LoggerUtil;
+import util.ThreadMode;
+import util.metrics.Counter;
+import util.metrics.Histogram;
+import util.metrics.MetricsExporter;
+import util.metrics.MetricsRegistry;
+import util.pool.PoolScheduler;
+import util.workload.ArrivalProcess;
+import util.workload.ServiceTime;
 
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.concurrent.Semaphore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
 
 public class FloorBathroom {
-    // Total number of bathroom stalls
+    // Number of stalls in each bathroom; -Dbathroom.stalls overrides it at launch
     public static final int NUM_OF_STALLS = 6;
 
-    // Total number of employees
+    // Number of employees on each floor; -Dbathroom.employees overrides it at launch
     public static final int NUM_OF_EMPLOYEES = 100;
 
-    // Queue to simulate available bathroom stalls
-    public static final Queue<Integer> bathroomStalls = new LinkedList<>();
+    // Farthest, in floors, a user goes to find a free stall when their own bathroom is full
+    public static final int OVERFLOW_FLOORS = 1;
 
-    // Semaphore to control access to the stalls, initialized with the number of stalls
-    public static final Semaphore stall = new Semaphore(NUM_OF_STALLS);
+    // Range of time a user occupies a stall, in milliseconds (upper bound exclusive)
+    public static final int MIN_OCCUPIED_MILLIS = 3000;
+    public static final int MAX_OCCUPIED_MILLIS = 5000;
+
+    // Wait after which the bounded-wait policy serves a user regardless of class, in milliseconds
+    public static final int MAX_WAIT_MILLIS = 10000;
+
+    // Binary event types for stall use
+    private static final int STALL_ENTER_EVENT = LoggerUtil.defineEvent("STALL_ENTER", "stall", "wait_millis", "building", "floor");
+    private static final int STALL_LEAVE_EVENT = LoggerUtil.defineEvent("STALL_LEAVE", "stall", "occupied_millis", "building", "floor");
+    private static final int INTERRUPTED_EVENT = LoggerUtil.defineEvent("INTERRUPTED");
+
+    // Metrics: how long users wait for and occupy a stall, and how many visits finished
+    private static final Histogram STALL_WAIT = MetricsRegistry.getDefault().histogram("bathroom_stall_wait_ns");
+    private static final Histogram STALL_OCCUPIED = MetricsRegistry.getDefault().histogram("bathroom_stall_occupied_ns");
+    private static final Counter VISITS = MetricsRegistry.getDefault().counter("bathroom_visits_total");
 
     // Runnable class representing a bathroom user
     private static class BathroomUser implements Runnable {
+        // The campus's bathrooms
+        private final PoolScheduler<StallAllocator> bathrooms;
+
+        // Index of the bathroom on the user's own floor
+        private final int home;
+
+        // Whether the user is an employee or a student
+        private final StallAllocator.UserClass userClass;
+
+        // How long the user occupies a stall
+        private final ServiceTime occupancy;
+
+        BathroomUser(PoolScheduler<StallAllocator> bathrooms, int home, StallAllocator.UserClass userClass,
+                     ServiceTime occupancy) {
+            this.bathrooms = bathrooms;
+            this.home = home;
+            this.userClass = userClass;
+            this.occupancy = occupancy;
+        }
+
         @Override
         public void run() {
+            StallAllocator stalls = bathrooms.getPool(home);
+            int stallNo = 0;
             try {
-                // Acquire a permit from the semaphore to enter a stall
-                stall.acquire();
-
-                int stallNo;
-                synchronized (bathroomStalls) {
-                    // Get the next available stall number from the queue
-                    stallNo = bathroomStalls.poll();
+                // Take a free stall on this floor or the nearest floor with one, without waiting;
+                // failing that, wait in line for the user's class at this floor's bathroom
+                long arrived = System.nanoTime();
+                PoolScheduler.Reservation<StallAllocator> reservation = bathrooms.tryReserve(home);
+                if (reservation != null) {
+                    stalls = reservation.getPool();
+                    stallNo = reservation.getUnit();
+                    stalls.getWaitTime(userClass).recordSince(arrived);
+                } else {
+                    stallNo = stalls.acquire(userClass);
                 }
+                STALL_WAIT.recordSince(arrived);
+                long entered = System.nanoTime();
 
                 // Log that the user has entered the stall
-                LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), " has entered stall " + stallNo, LoggerUtil.GREEN);
+                LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), " has entered stall " + stallNo + where(stalls), LoggerUtil.GREEN);
+                LoggerUtil.event(STALL_ENTER_EVENT, stallNo, (System.nanoTime() - arrived) / 1_000_000,
+                        stalls.getGroup(), stalls.getPosition());
 
-                // Simulate the user using the stall for a random time between 3 and 5 seconds
-                Thread.sleep(ThreadLocalRandom.current().nextInt(3000, 5000));
+                // Simulate the user using the stall for a random time, between 3 and 5 seconds by default
+                long occupiedMillis = occupancy.sampleMillis(ThreadLocalRandom.current());
+                Thread.sleep(occupiedMillis);
 
-                synchronized (bathroomStalls) {
-                    // Return the stall number to the queue after use
-                    bathroomStalls.add(stallNo);
-                }
+                STALL_OCCUPIED.recordSince(entered);
+                VISITS.increment();
 
                 // Log that the user has left the stall
-                LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), " has left stall " + stallNo,LoggerUtil.YELLOW);
+                LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), " has left stall " + stallNo + where(stalls), LoggerUtil.YELLOW);
+                LoggerUtil.event(STALL_LEAVE_EVENT, stallNo, occupiedMillis, stalls.getGroup(), stalls.getPosition());
 
             } catch (InterruptedException e) {
                 // Log if the thread is interrupted
                 LoggerUtil.log(Level.SEVERE, Thread.currentThread().getName(), " was interrupted.",LoggerUtil.RED);
+                LoggerUtil.event(INTERRUPTED_EVENT);
             } finally {
-                // Release the permit back to the semaphore
-                stall.release();
+                // Give the stall back, to the next waiter if anyone is in line
+                if (stallNo > 0) {
+                    stalls.release(stallNo);
+                }
             }
         }
+
+        /**
+         * Names the bathroom in log messages when there is more than one.
+         *
+         * @param stalls the bathroom
+         * @return " on <name>", or "" for a single bathroom
+         */
+        private String where(StallAllocator stalls) {
+            return bathrooms.size() > 1 ? " on " + stalls.getName() : "";
+        }
     }
 
     public static void main(String[] args) {
-        // Initialize the queue with stall numbers
-        for (int i = 1; i <= NUM_OF_STALLS; i++) {
-            bathroomStalls.add(i);
+        // Run users on platform or virtual threads, chosen with -Dutil.threads=platform|virtual
+        ThreadMode threadMode = ThreadMode.fromSystemProperty();
+        int buildings = Integer.getInteger("bathroom.buildings", 1);
+        int floors = Integer.getInteger("bathroom.floors", 1);
+        int stallsPerFloor = Integer.getInteger("bathroom.stalls", NUM_OF_STALLS);
+        int employees = Integer.getInteger("bathroom.employees", NUM_OF_EMPLOYEES) * buildings * floors;
+
+        // Log to this simulation's file; -Dutil.log.* properties override the settings.
+        // Virtual threads log asynchronously, as the synchronous file handler would pin them while writing.
+        LogConfig logConfig = LogConfig.forFile("bathroom_stalls.log").withLayout(LogLayout.ACTION_BLOCK);
+        if (threadMode == ThreadMode.VIRTUAL) {
+            logConfig = logConfig.withAsync(8192, AsyncLogWriter.OverflowPolicy.BLOCK);
         }
+        LoggerUtil.configure(logConfig);
+
+        // Record binary events alongside the text log; decode with util.EventLogDecoder
+        LoggerUtil.enableEventLog(null, true);
+
+        // Who gets a stall that comes free: -Dbathroom.policy=fifo|priority|bounded_wait, employees first
+        // under priority, and under bounded_wait anyone who has waited -Dbathroom.maxWaitMillis
+        StallAllocator.Policy policy = StallAllocator.Policy.valueOf(
+                System.getProperty("bathroom.policy", "fifo").toUpperCase(Locale.ROOT));
+        long maxWaitMillis = Long.getLong("bathroom.maxWaitMillis", MAX_WAIT_MILLIS);
+
+        // One bathroom per floor of every building; users overflow to a free stall up to
+        // -Dbathroom.overflowFloors away when their own floor's bathroom is full
+        List<StallAllocator> floorBathrooms = new ArrayList<>();
+        for (int building = 1; building <= buildings; building++) {
+            for (int floor = 1; floor <= floors; floor++) {
+                String name = buildings > 1 ? "building " + building + " floor " + floor : "floor " + floor;
+                floorBathrooms.add(new StallAllocator(name, building, floor, stallsPerFloor, policy, maxWaitMillis,
+                        MetricsRegistry.getDefault(), "bathroom_stall"));
+            }
+        }
+        PoolScheduler<StallAllocator> bathrooms = new PoolScheduler<>(floorBathrooms,
+                Integer.getInteger("bathroom.overflowFloors", OVERFLOW_FLOORS),
+                MetricsRegistry.getDefault(), "bathroom_reservations");
+
+        // Export stall metrics every second; -Dutil.metrics.* properties configure the export
+        MetricsRegistry.getDefault().gauge("bathroom_stalls_free", bathrooms::getFreeCount);
+        MetricsRegistry.getDefault().gauge("bathroom_stall_queue_length", () -> {
+            int length = 0;
+            for (StallAllocator stalls : bathrooms.getPools()) {
+                length += stalls.getQueueLength();
+            }
+            return length;
+        });
+        MetricsExporter.start(MetricsRegistry.getDefault(), "bathroom_metrics.prom");
+
+        // Time in a stall; -Dbathroom.occupancy takes a util.workload.ServiceTime, e.g. lognormal:4000,0.5
+        ServiceTime occupancy = ServiceTime.parse(System.getProperty("bathroom.occupancy",
+                "uniform:" + MIN_OCCUPIED_MILLIS + "," + MAX_OCCUPIED_MILLIS));
 
-        // Create and start threads for each employee/student
-        for (int i = 1; i <= NUM_OF_EMPLOYEES; i++) {
-            // Alternate between "Student" and "Employee" names
-            String name = (i % 2 == 0) ? "Student" : "Employee";
-            Thread user = new Thread(new BathroomUser(), name + " " + i);
-            user.start();
+        // Users all arrive at once, unless -Dbathroom.arrivals gives a util.workload.ArrivalProcess, e.g. poisson:2
+        String arrivalSpec = System.getProperty("bathroom.arrivals");
+        ArrivalProcess.Arrivals arrivals = arrivalSpec == null ? null
+                : ArrivalProcess.parse(arrivalSpec).start(ThreadLocalRandom.current());
+
+        // Create and start threads for each employee/student as they arrive
+        Thread[] users = new Thread[employees];
+        long startNanos = System.nanoTime();
+        int arrived = 0;
+        try {
+            while (arrived < employees
+                    && (arrivals == null || arrivals.awaitNext(startNanos) != ArrivalProcess.Arrivals.END)) {
+                int i = ++arrived;
+                // Alternate between "Student" and "Employee" names
+                StallAllocator.UserClass userClass = (i % 2 == 0)
+                        ? StallAllocator.UserClass.STUDENT : StallAllocator.UserClass.EMPLOYEE;
+                String name = (i % 2 == 0) ? "Student" : "Employee";
+                users[i - 1] = threadMode.start(name + " " + i,
+                        new BathroomUser(bathrooms, (i - 1) % bathrooms.size(), userClass, occupancy));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Stop admitting users; those inside still finish
         }
+        threadMode.reportStartup(arrived, "bathroom users", startNanos);
 
-        // Allow some time for the threads to run
+        // Wait for every user; virtual threads are daemons and would not keep the program alive
         try {
-            Thread.sleep(1000);
+            for (int i = 0; i < arrived; i++) {
+                users[i].join();
+            }
         } catch (InterruptedException e) {
             // Handle interruption if the main thread is interrupted
             Thread.currentThread().interrupt();
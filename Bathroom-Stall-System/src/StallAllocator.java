@@ -0,0 +1,353 @@
+import util.metrics.Histogram;
+import util.metrics.MetricsRegistry;
+import util.pool.ResourcePool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands out the stalls of one bathroom, one specific stall per call, without locks.
+ * Free stalls are the set bits of the ResourcePool bitmap, so taking one is a single
+ * compare-and-set that both claims the stall and names it; a semaphore and a separate queue of
+ * stall numbers would take two synchronisation steps for the same thing.
+ *
+ * <p>Users who find no free stall wait in a queue for their class. A stall given back while
+ * anyone is waiting is handed straight to the waiter the policy picks and never becomes free, so
+ * a newcomer cannot take it first; the fast path is only tried when no one waits. Waiting threads
+ * park with LockSupport, so virtual threads unmount while they wait. tryReserve likewise only
+ * takes a stall when no one waits, so a PoolScheduler sending overflow here cannot jump the line.</p>
+ */
+public class StallAllocator extends ResourcePool {
+    /**
+     * Kind of user; earlier classes have priority under PRIORITY and BOUNDED_WAIT.
+     */
+    public enum UserClass {
+        EMPLOYEE,
+        STUDENT
+    }
+
+    /**
+     * Which waiter gets a stall that comes free.
+     */
+    public enum Policy {
+        /**
+         * Longest waiting first, whatever the class.
+         */
+        FIFO {
+            @Override
+            Waiter choose(Waiter[] heads, long now, long maxWaitNanos) {
+                return oldest(heads);
+            }
+        },
+
+        /**
+         * Highest class first, first come, first served within a class. Lower classes can starve
+         * while higher ones keep arriving.
+         */
+        PRIORITY {
+            @Override
+            Waiter choose(Waiter[] heads, long now, long maxWaitNanos) {
+                for (Waiter head : heads) {
+                    if (head != null) {
+                        return head;
+                    }
+                }
+                return null;
+            }
+        },
+
+        /**
+         * As PRIORITY, except that a waiter who has waited the maximum wait goes first, so no
+         * class waits much longer than that for the next stall.
+         */
+        BOUNDED_WAIT {
+            @Override
+            Waiter choose(Waiter[] heads, long now, long maxWaitNanos) {
+                Waiter oldest = oldest(heads);
+                if (oldest != null && now - oldest.arrivedNanos >= maxWaitNanos) {
+                    return oldest;
+                }
+                return PRIORITY.choose(heads, now, maxWaitNanos);
+            }
+        };
+
+        /**
+         * Picks the waiter to hand a stall to.
+         *
+         * @param heads        the longest waiting user of each class, by ordinal, or null if none waits
+         * @param now          the current System.nanoTime()
+         * @param maxWaitNanos the BOUNDED_WAIT limit
+         * @return the waiter, or null if no one waits
+         */
+        abstract Waiter choose(Waiter[] heads, long now, long maxWaitNanos);
+
+        /**
+         * Returns the longest waiting of the heads.
+         *
+         * @param heads the heads, some possibly null
+         * @return the waiter, or null if every head is null
+         */
+        private static Waiter oldest(Waiter[] heads) {
+            Waiter oldest = null;
+            for (Waiter head : heads) {
+                if (head != null && (oldest == null || head.sequence < oldest.sequence)) {
+                    oldest = head;
+                }
+            }
+            return oldest;
+        }
+    }
+
+    /**
+     * A user waiting for a stall.
+     */
+    static final class Waiter {
+        private static final int WAITING = 0; // No stall yet
+        private static final int CANCELLED = -1; // Gave up; stalls are numbered from 1
+
+        final long arrivedNanos; // System.nanoTime() when the user started waiting
+        private final long sequence; // Arrival order across classes
+        private final UserClass userClass; // The user's class
+        private final Thread thread; // The waiting thread, unparked when handed a stall
+        private final AtomicInteger stall = new AtomicInteger(WAITING); // Stall handed over, WAITING or CANCELLED
+
+        private Waiter(long arrivedNanos, long sequence, UserClass userClass, Thread thread) {
+            this.arrivedNanos = arrivedNanos;
+            this.sequence = sequence;
+            this.userClass = userClass;
+            this.thread = thread;
+        }
+    }
+
+    private final Policy policy; // Which waiter gets the next stall
+    private final long maxWaitNanos; // Wait after which BOUNDED_WAIT serves a user regardless of class
+    private final List<ConcurrentLinkedQueue<Waiter>> waiting; // Waiters by class ordinal, oldest first
+    private final AtomicLong sequence = new AtomicLong(); // Next waiter's arrival order
+    private final Histogram[] waitByClass; // Wait for a stall by class ordinal
+
+    /**
+     * Constructs an allocator with every stall free.
+     *
+     * @param name          the bathroom's name used in logs, e.g. "floor 3"
+     * @param building      the building the bathroom is in
+     * @param floor         the floor the bathroom is on
+     * @param stalls        the number of stalls, numbered from 1
+     * @param policy        which waiter gets a stall that comes free
+     * @param maxWaitMillis the wait after which BOUNDED_WAIT serves a user regardless of class
+     * @param registry      the registry to record waits in, as {@code <prefix>_wait_<class>_ns}
+     * @param prefix        the metric name prefix, e.g. "bathroom_stall"
+     * @throws IllegalArgumentException if the stall count or the maximum wait is not positive
+     */
+    public StallAllocator(String name, int building, int floor, int stalls, Policy policy, long maxWaitMillis,
+                          MetricsRegistry registry, String prefix) {
+        super(name, building, floor, stalls);
+        if (maxWaitMillis <= 0) {
+            throw new IllegalArgumentException("Maximum wait must be positive.");
+        }
+        this.policy = policy;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+
+        UserClass[] classes = UserClass.values();
+        this.waiting = new ArrayList<>(classes.length);
+        this.waitByClass = new Histogram[classes.length];
+        for (UserClass userClass : classes) {
+            waiting.add(new ConcurrentLinkedQueue<>());
+            waitByClass[userClass.ordinal()] = registry.histogram(
+                    prefix + "_wait_" + userClass.name().toLowerCase(Locale.ROOT) + "_ns");
+        }
+    }
+
+    /**
+     * Takes a stall, waiting as long as it takes.
+     *
+     * @param userClass the user's class
+     * @return the stall number, from 1
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public int acquire(UserClass userClass) throws InterruptedException {
+        return acquire(userClass, -1);
+    }
+
+    /**
+     * Takes a stall, waiting at most a given time.
+     *
+     * @param userClass the user's class
+     * @param timeout   the longest time to wait
+     * @param unit      the unit of the timeout
+     * @return the stall number, from 1, or -1 if none was handed over in time
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public int tryAcquire(UserClass userClass, long timeout, TimeUnit unit) throws InterruptedException {
+        return acquire(userClass, Math.max(0, unit.toNanos(timeout)));
+    }
+
+    /**
+     * Takes a free stall without waiting, unless users are already waiting for one.
+     *
+     * @return the stall number, from 1, or -1 if no stall is free or someone waits
+     */
+    @Override
+    public int tryReserve() {
+        return hasWaiters() ? -1 : claim();
+    }
+
+    /**
+     * Gives a stall back. It goes straight to the waiter the policy picks, if anyone waits.
+     *
+     * @param stallNo the stall number returned by acquire or tryReserve
+     * @throws IllegalArgumentException if the stall number is out of range
+     */
+    @Override
+    public void release(int stallNo) {
+        checkUnit(stallNo);
+        handOff(stallNo);
+    }
+
+    /**
+     * Returns the number of users waiting for a stall. The count is a snapshot taken one class
+     * at a time and may include users who are just giving up.
+     *
+     * @return the count
+     */
+    public int getQueueLength() {
+        int length = 0;
+        for (ConcurrentLinkedQueue<Waiter> queue : waiting) {
+            length += queue.size();
+        }
+        return length;
+    }
+
+    /**
+     * Returns how long users of a class have waited for a stall.
+     *
+     * @param userClass the class
+     * @return the histogram, in nanoseconds
+     */
+    public Histogram getWaitTime(UserClass userClass) {
+        return waitByClass[userClass.ordinal()];
+    }
+
+    /**
+     * Takes a free stall at once when no one waits, and otherwise queues and parks until a stall
+     * is handed over.
+     *
+     * @param userClass    the user's class
+     * @param timeoutNanos the longest time to wait, or -1 to wait indefinitely
+     * @return the stall number, or -1 on timeout
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    private int acquire(UserClass userClass, long timeoutNanos) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        long arrived = System.nanoTime();
+        int reserved = tryReserve();
+        if (reserved > 0) {
+            waitByClass[userClass.ordinal()].recordSince(arrived);
+            return reserved;
+        }
+        if (timeoutNanos == 0) {
+            return -1;
+        }
+
+        Waiter waiter = new Waiter(arrived, sequence.getAndIncrement(), userClass, Thread.currentThread());
+        waiting.get(userClass.ordinal()).add(waiter);
+        // A stall freed before we were queued would otherwise go unclaimed
+        int freed = claim();
+        if (freed > 0) {
+            handOff(freed);
+        }
+
+        long deadline = arrived + timeoutNanos;
+        while (true) {
+            int stallNo = waiter.stall.get();
+            if (stallNo > 0) {
+                waitByClass[userClass.ordinal()].recordSince(arrived);
+                return stallNo;
+            }
+            boolean interrupted = Thread.interrupted();
+            long remaining = deadline - System.nanoTime();
+            if (interrupted || (timeoutNanos > 0 && remaining <= 0)) {
+                if (waiter.stall.compareAndSet(Waiter.WAITING, Waiter.CANCELLED)) {
+                    waiting.get(userClass.ordinal()).remove(waiter);
+                    if (interrupted) {
+                        throw new InterruptedException();
+                    }
+                    return -1;
+                }
+                // Handed a stall as we gave up: keep it on timeout, pass it on if interrupted
+                if (interrupted) {
+                    handOff(waiter.stall.get());
+                    throw new InterruptedException();
+                }
+                continue;
+            }
+            if (timeoutNanos > 0) {
+                LockSupport.parkNanos(this, remaining);
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    /**
+     * Gives a stall to the waiter the policy picks, or frees it if no one waits. A waiter may
+     * queue just as the stall is freed, so the stall is claimed back and offered again whenever
+     * someone is still waiting once it is free.
+     *
+     * @param stallNo the stall, held by the caller
+     */
+    private void handOff(int stallNo) {
+        while (true) {
+            Waiter waiter = nextWaiter();
+            if (waiter == null) {
+                free(stallNo);
+                if (!hasWaiters() || (stallNo = claim()) < 0) {
+                    return;
+                }
+                continue;
+            }
+            waiting.get(waiter.userClass.ordinal()).remove(waiter);
+            if (waiter.stall.compareAndSet(Waiter.WAITING, stallNo)) {
+                LockSupport.unpark(waiter.thread);
+                return;
+            }
+            // The waiter gave up or another thread served it; try the next one
+        }
+    }
+
+    /**
+     * Asks the policy which waiter to serve next.
+     *
+     * @return the waiter, or null if no one waits
+     */
+    private Waiter nextWaiter() {
+        Waiter[] heads = new Waiter[waiting.size()];
+        boolean any = false;
+        for (int i = 0; i < heads.length; i++) {
+            heads[i] = waiting.get(i).peek();
+            any |= heads[i] != null;
+        }
+        return any ? policy.choose(heads, System.nanoTime(), maxWaitNanos) : null;
+    }
+
+    /**
+     * Returns whether anyone is queued for a stall.
+     *
+     * @return true if any class has a waiter
+     */
+    private boolean hasWaiters() {
+        for (ConcurrentLinkedQueue<Waiter> queue : waiting) {
+            if (!queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
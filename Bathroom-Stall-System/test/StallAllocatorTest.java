@@ -0,0 +1,167 @@
+import org.junit.jupiter.api.Test;
+import util.metrics.MetricsRegistry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StallAllocatorTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    @Test
+    void releasedStallGoesToTheWaiterNotANewcomer() throws Exception {
+        StallAllocator stalls = allocator(1, StallAllocator.Policy.FIFO);
+        int held = stalls.acquire(StallAllocator.UserClass.STUDENT);
+        Acquirer waiter = Acquirer.start(stalls, StallAllocator.UserClass.STUDENT);
+        awaitQueued(stalls, 1);
+
+        assertEquals(-1, stalls.tryReserve(), "a newcomer took a stall while someone waited");
+        stalls.release(held);
+
+        assertEquals(held, waiter.join());
+        assertEquals(0, stalls.getFreeCount());
+        assertEquals(0, stalls.getQueueLength());
+    }
+
+    @Test
+    void priorityPolicyServesEmployeesFirst() throws Exception {
+        StallAllocator stalls = allocator(1, StallAllocator.Policy.PRIORITY);
+        int held = stalls.acquire(StallAllocator.UserClass.EMPLOYEE);
+        Acquirer student = Acquirer.start(stalls, StallAllocator.UserClass.STUDENT);
+        awaitQueued(stalls, 1);
+        Acquirer employee = Acquirer.start(stalls, StallAllocator.UserClass.EMPLOYEE);
+        awaitQueued(stalls, 2);
+
+        stalls.release(held);
+        assertEquals(held, employee.join());
+        assertTrue(student.thread.isAlive());
+
+        stalls.release(held);
+        assertEquals(held, student.join());
+    }
+
+    @Test
+    void timedOutWaiterLeavesTheLineAndTheStallStaysFree() throws InterruptedException {
+        StallAllocator stalls = allocator(1, StallAllocator.Policy.FIFO);
+        int held = stalls.acquire(StallAllocator.UserClass.STUDENT);
+
+        assertEquals(-1, stalls.tryAcquire(StallAllocator.UserClass.STUDENT, 20, TimeUnit.MILLISECONDS));
+        assertEquals(0, stalls.getQueueLength());
+
+        stalls.release(held);
+        assertEquals(1, stalls.getFreeCount());
+        assertEquals(held, stalls.tryReserve());
+    }
+
+    @Test
+    void interruptedWaiterThrowsAndNoStallLeaks() throws Exception {
+        StallAllocator stalls = allocator(1, StallAllocator.Policy.FIFO);
+        int held = stalls.acquire(StallAllocator.UserClass.STUDENT);
+        Acquirer waiter = Acquirer.start(stalls, StallAllocator.UserClass.STUDENT);
+        awaitQueued(stalls, 1);
+
+        waiter.thread.interrupt();
+        waiter.thread.join();
+        assertInstanceOf(InterruptedException.class, waiter.failure.get());
+        assertEquals(0, stalls.getQueueLength());
+
+        stalls.release(held);
+        assertEquals(1, stalls.getFreeCount());
+    }
+
+    @Test
+    void racingReleasesTimeoutsAndInterruptsNeverLoseOrShareAStall() {
+        int capacity = 3;
+        StallAllocator stalls = allocator(capacity, StallAllocator.Policy.BOUNDED_WAIT);
+        AtomicIntegerArray occupants = new AtomicIntegerArray(capacity + 1); // Users in each stall
+        AtomicInteger shared = new AtomicInteger(); // Times a stall was handed to a second user
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            List<Thread> users = new ArrayList<>();
+            for (int u = 0; u < 16; u++) {
+                StallAllocator.UserClass userClass = StallAllocator.UserClass.values()[u % 2];
+                Thread user = new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int visit = 0; visit < 500; visit++) {
+                        int stallNo;
+                        try {
+                            stallNo = random.nextBoolean()
+                                    ? stalls.tryAcquire(userClass, random.nextInt(50), TimeUnit.MICROSECONDS)
+                                    : stalls.acquire(userClass);
+                        } catch (InterruptedException e) {
+                            continue;
+                        }
+                        if (stallNo < 0) {
+                            continue;
+                        }
+                        if (occupants.incrementAndGet(stallNo) != 1) {
+                            shared.incrementAndGet();
+                        }
+                        Thread.onSpinWait();
+                        occupants.decrementAndGet(stallNo);
+                        stalls.release(stallNo);
+                    }
+                });
+                user.start();
+                users.add(user);
+            }
+            // Interrupt users at random while they wait or hand stalls on
+            while (users.stream().anyMatch(Thread::isAlive)) {
+                users.get(ThreadLocalRandom.current().nextInt(users.size())).interrupt();
+                Thread.sleep(1);
+            }
+        });
+        assertEquals(0, shared.get());
+        assertEquals(capacity, stalls.getFreeCount());
+        assertEquals(0, stalls.getQueueLength());
+    }
+
+    private static StallAllocator allocator(int capacity, StallAllocator.Policy policy) {
+        return new StallAllocator("test", 1, 1, capacity, policy, 10_000, new MetricsRegistry(), "test_stall");
+    }
+
+    private static void awaitQueued(StallAllocator stalls, int length) throws InterruptedException {
+        while (stalls.getQueueLength() < length) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * A user waiting for a stall on its own thread.
+     */
+    private static final class Acquirer {
+        private final Thread thread; // Thread blocked in acquire
+        private final AtomicInteger stall = new AtomicInteger(-1); // Stall handed over, or -1
+        private final AtomicReference<Exception> failure = new AtomicReference<>(); // Exception thrown by acquire
+
+        private Acquirer(StallAllocator stalls, StallAllocator.UserClass userClass) {
+            thread = new Thread(() -> {
+                try {
+                    stall.set(stalls.acquire(userClass));
+                } catch (InterruptedException e) {
+                    failure.set(e);
+                }
+            });
+        }
+
+        static Acquirer start(StallAllocator stalls, StallAllocator.UserClass userClass) {
+            Acquirer acquirer = new Acquirer(stalls, userClass);
+            acquirer.thread.start();
+            return acquirer;
+        }
+
+        int join() throws Exception {
+            assertTimeoutPreemptively(TIMEOUT, () -> thread.join());
+            return stall.get();
+        }
+    }
+}
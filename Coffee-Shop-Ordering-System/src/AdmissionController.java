@@ -0,0 +1,99 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether the coffee shop should take another order, so excess load is turned away
+ * at the counter instead of piling up in a queue nobody can drain in time.
+ * By Little's law the wait in a queue is its length divided by the rate it drains at, so to
+ * keep the expected wait under a target the queue may hold at most rate x target orders. The
+ * drain rate is measured from the orders baristas take, smoothed over short windows, and only
+ * while there is a backlog: when the queue runs empty the baristas are waiting on customers,
+ * and the take rate says nothing about how fast they could go.
+ */
+class AdmissionController {
+    // Length of a measurement window
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // Weight of the newest window in the smoothed rate
+    private static final double SMOOTHING = 0.2;
+
+    // Fewest orders the controller ever allows to wait, so a slow spell cannot close the shop
+    private static final int MIN_LIMIT = 1;
+
+    private final long targetWaitNanos; // Longest expected queue wait to admit an order into
+    private final int maxCapacity; // Physical size of the queue
+    private final LongAdder taken = new LongAdder(); // Orders taken in the current window
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime()); // Start of the current window
+    private volatile double ordersPerSecond = -1; // Smoothed drain rate, or -1 before the first measurement
+    private volatile int limit; // Current soft capacity
+
+    /**
+     * Constructs a controller.
+     *
+     * @param targetWaitMillis the longest expected queue wait to admit an order into
+     * @param maxCapacity      the physical size of the queue
+     */
+    AdmissionController(long targetWaitMillis, int maxCapacity) {
+        this.targetWaitNanos = TimeUnit.MILLISECONDS.toNanos(targetWaitMillis);
+        this.maxCapacity = maxCapacity;
+        this.limit = maxCapacity; // Nothing is known about the baristas yet
+    }
+
+    /**
+     * Decides whether to admit an order. HIGH priority orders are only limited by the physical
+     * queue, so orders with a promised pickup time are not shed.
+     *
+     * @param queueDepth the number of orders waiting now
+     * @param priority   the order's priority class
+     * @return true to queue the order, false to shed it
+     */
+    boolean admit(int queueDepth, Order.Priority priority) {
+        refresh(queueDepth);
+        return priority == Order.Priority.HIGH || queueDepth < limit;
+    }
+
+    /**
+     * Records orders taken by a barista.
+     *
+     * @param count      the number of orders taken
+     * @param queueDepth the number of orders still waiting
+     */
+    void recordTaken(int count, int queueDepth) {
+        taken.add(count);
+        refresh(queueDepth);
+    }
+
+    /**
+     * Returns the current soft capacity.
+     *
+     * @return the most orders admitted to wait, below HIGH priority
+     */
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Closes the measurement window once it has run its length, folding its drain rate into
+     * the smoothed rate if there was a backlog, and recomputes the limit. One caller wins the
+     * window; the others carry on without waiting.
+     *
+     * @param queueDepth the number of orders waiting now
+     */
+    private void refresh(int queueDepth) {
+        long start = windowStart.get();
+        long now = System.nanoTime();
+        if (now - start < WINDOW_NANOS || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+        long count = taken.sumThenReset();
+        if (queueDepth == 0) {
+            return; // No backlog: the take rate measured demand, not capacity
+        }
+        double rate = count * 1e9 / (now - start);
+        double smoothed = ordersPerSecond < 0 ? rate : ordersPerSecond + SMOOTHING * (rate - ordersPerSecond);
+        ordersPerSecond = smoothed;
+        long allowed = (long) Math.ceil(smoothed * targetWaitNanos / 1e9);
+        limit = (int) Math.max(MIN_LIMIT, Math.min(maxCapacity, allowed));
+    }
+}
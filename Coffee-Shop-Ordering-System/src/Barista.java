@@ -2,20 +2,43 @@ import util.LoggerUtil;
 
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
 
 public class Barista implements Runnable {
+    // Binary event recorded when a barista starts preparing a batch of orders
+    private static final int ORDER_PREPARING_EVENT = LoggerUtil.defineEvent("ORDER_PREPARING", "prep_millis", "batch_size");
+
     // The coffee shop where the barista works
     private final CoffeeShop coffeeShop;
 
+    // Most orders of the same drink the barista makes together
+    private final int maxBatch;
+
     /**
-     * Constructs a Barista that works in the specified coffee shop.
+     * Constructs a Barista that works in the specified coffee shop, one order at a time.
      *
      * @param coffeeShop the coffee shop where the barista prepares orders
      */
     public Barista(CoffeeShop coffeeShop) {
+        this(coffeeShop, 1);
+    }
+
+    /**
+     * Constructs a Barista that makes waiting orders for the same drink together, doing the
+     * drink's setup once per batch.
+     *
+     * @param coffeeShop the coffee shop where the barista prepares orders
+     * @param maxBatch   the most orders to make in one batch
+     * @throws IllegalArgumentException if maxBatch is less than 1
+     */
+    public Barista(CoffeeShop coffeeShop, int maxBatch) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
         this.coffeeShop = coffeeShop;
+        this.maxBatch = maxBatch;
     }
 
     /**
@@ -28,18 +51,24 @@ public class Barista implements Runnable {
         // Keep running while the coffee shop is open or the thread is not interrupted
         while (coffeeShop.isOpen() || !Thread.currentThread().isInterrupted()) {
             try {
-                // Retrieve the next order from the coffee shop
-                String order = coffeeShop.prepareOrder();
-                if (order == null) {
+                // Retrieve the next order, and any waiting orders for the same drink, from the coffee shop
+                List<Order> batch = coffeeShop.prepareOrders(maxBatch);
+                if (batch.isEmpty()) {
                     // Exit the loop if there are no more orders and the shop is closed
                     break;
                 }
 
-                // Log the order being prepared
-                LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), " Preparing order for " + order);
+                // Log the orders being prepared
+                if (batch.size() == 1) {
+                    LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), " Preparing order for " + batch.get(0));
+                } else {
+                    LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), () -> " Preparing a batch of " + batch.size() + " for " + batch);
+                }
 
-                // Simulate the time taken to prepare the order (random delay between 1 and 2 seconds)
-                Thread.sleep(ThreadLocalRandom.current().nextInt(1000, 2000));
+                // Simulate the time taken to prepare the batch (its estimate, give or take 10%)
+                int prepMillis = (int) (batchPrepMillis(batch) * ThreadLocalRandom.current().nextDouble(0.9, 1.1));
+                LoggerUtil.event(ORDER_PREPARING_EVENT, prepMillis, batch.size());
+                Thread.sleep(prepMillis);
             } catch (InterruptedException e) {
                 // Handle thread interruption gracefully
                 Thread.currentThread().interrupt();
@@ -52,4 +81,20 @@ public class Barista implements Runnable {
             }
         }
     }
+
+    /**
+     * Estimates how long a batch of the same drink takes: the drink's setup once, plus the rest
+     * of each order's preparation time.
+     *
+     * @param batch the orders, all for the same drink
+     * @return the estimate in milliseconds
+     */
+    static int batchPrepMillis(List<Order> batch) {
+        int setupMillis = batch.get(0).getDrinkType().getSetupMillis();
+        int total = setupMillis;
+        for (Order order : batch) {
+            total += order.getPrepMillis() - setupMillis;
+        }
+        return total;
+    }
 }
\ No newline at end of file
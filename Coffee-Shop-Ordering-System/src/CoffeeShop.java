@@ -1,22 +1,214 @@
 import util.LoggerUtil;
+import util.metrics.Counter;
+import util.metrics.Histogram;
+import util.metrics.MetricsRegistry;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
 public class CoffeeShop {
-    // A thread-safe queue to hold customer orders with a maximum capacity
-    private final LinkedBlockingQueue<String> orderList;
+    /**
+     * Order in which baristas take queued orders.
+     * Every policy ages waiting orders linearly: each order gets a virtual deadline when it is
+     * queued, its enqueue time plus a penalty, and the order with the earliest deadline is taken
+     * next. An order that has waited one aging interval longer than another therefore overtakes
+     * it despite being one priority class lower (or one second longer to make), so nothing
+     * starves. Because the deadline is fixed at enqueue time, the queue never has to be re-sorted.
+     */
+    public enum SchedulingPolicy {
+        /**
+         * First come, first served.
+         */
+        FIFO {
+            @Override
+            long penalty(Order order, long agingNanos) {
+                return 0;
+            }
+        },
+
+        /**
+         * Higher priority classes first; each class below HIGH waits one aging interval longer.
+         */
+        PRIORITY {
+            @Override
+            long penalty(Order order, long agingNanos) {
+                return order.getPriority().ordinal() * agingNanos;
+            }
+        },
+
+        /**
+         * Quickest drinks first; each second of estimated preparation waits one aging interval longer.
+         */
+        SHORTEST_JOB_FIRST {
+            @Override
+            long penalty(Order order, long agingNanos) {
+                return order.getPrepMillis() * agingNanos / 1000;
+            }
+        };
+
+        /**
+         * Returns how much later than its enqueue time an order is due.
+         *
+         * @param order      the order
+         * @param agingNanos the aging interval in nanoseconds
+         * @return the penalty in nanoseconds
+         */
+        abstract long penalty(Order order, long agingNanos);
+    }
+
+    // Metrics: how long customers wait for queue space, how long orders wait for a barista, and order counts
+    private static final Histogram PLACE_BLOCKED = MetricsRegistry.getDefault().histogram("coffee_place_order_blocked_ns");
+    private static final Histogram QUEUE_TIME = MetricsRegistry.getDefault().histogram("coffee_order_queue_time_ns");
+    private static final Histogram[] QUEUE_TIME_BY_PRIORITY = createQueueTimeHistograms();
+    private static final Counter[] ORDER_RESULTS = createResultCounters();
+    private static final Counter ORDERS_TAKEN = MetricsRegistry.getDefault().counter("coffee_orders_taken_total");
+    private static final Histogram BATCH_SIZE = MetricsRegistry.getDefault().histogram("coffee_batch_size");
+
+    // Checks for an order before parking; under load the next order usually arrives within this window
+    private static final int SPIN_POLLS = 100;
+
+    // Longest aging interval accepted, so virtual deadlines cannot overflow
+    private static final long MAX_AGING_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    // Aging interval used by the single-argument constructor
+    private static final long DEFAULT_AGING_MILLIS = 5000;
+
+    // Waiting orders, earliest virtual deadline first; guarded by lock
+    private final PriorityQueue<QueuedOrder> orderList = new PriorityQueue<>();
+
+    // Guards orderList; baristas wait on notEmpty, customers on notFull
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    // Maximum number of waiting orders
+    private final int maxCapacity;
+
+    // How waiting orders are ordered
+    private final SchedulingPolicy policy;
+
+    // Waiting time worth one priority class, or one second of preparation, in nanoseconds
+    private final long agingNanos;
+
+    // Per-barista deques with work stealing, or null when all baristas share orderList
+    private final WorkStealingOrderQueue stealingQueue;
+
+    // Admission control, or null to admit every order the queue has room for
+    private volatile AdmissionController admission;
+
+    // Number of waiting orders, readable without the lock
+    private volatile int size;
+
+    // Tie-breaker that keeps orders with equal deadlines in arrival order; guarded by lock
+    private long sequence;
 
     // A flag to indicate whether the coffee shop is open or closed
     private volatile boolean isOpen = true;
 
     /**
-     * Constructs a CoffeeShop with a specified maximum capacity for orders.
+     * Constructs a CoffeeShop with a specified maximum capacity for orders, served first come,
+     * first served.
      *
      * @param maxCapacity the maximum number of orders the coffee shop can hold
      */
     public CoffeeShop(int maxCapacity) {
-        this.orderList = new LinkedBlockingQueue<>(maxCapacity);
+        this(maxCapacity, SchedulingPolicy.FIFO, DEFAULT_AGING_MILLIS);
+    }
+
+    /**
+     * Constructs a CoffeeShop that serves waiting orders according to a scheduling policy.
+     *
+     * @param maxCapacity the maximum number of orders the coffee shop can hold
+     * @param policy      the order in which baristas take orders
+     * @param agingMillis how long an order must wait to overtake one a priority class higher
+     *                    (or one second quicker to make); smaller values mean less reordering
+     * @throws IllegalArgumentException if the capacity is not positive or the aging interval is
+     *                                  not between 1 millisecond and 1 hour
+     */
+    public CoffeeShop(int maxCapacity, SchedulingPolicy policy, long agingMillis) {
+        this(maxCapacity, policy, agingMillis, 0);
+    }
+
+    /**
+     * Constructs a CoffeeShop.
+     *
+     * @param maxCapacity  the maximum number of orders the coffee shop can hold
+     * @param policy       the order in which baristas take orders from the shared queue
+     * @param agingMillis  the aging interval of the shared queue
+     * @param baristaCount the number of per-barista deques, or 0 to share one queue
+     */
+    private CoffeeShop(int maxCapacity, SchedulingPolicy policy, long agingMillis, int baristaCount) {
+        if (maxCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        if (agingMillis <= 0 || agingMillis > MAX_AGING_MILLIS) {
+            throw new IllegalArgumentException("Aging interval must be between 1 millisecond and 1 hour.");
+        }
+        this.maxCapacity = maxCapacity;
+        this.policy = policy;
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+        if (baristaCount > 0) {
+            this.stealingQueue = new WorkStealingOrderQueue(maxCapacity, baristaCount);
+            MetricsRegistry.getDefault().gauge("coffee_queue_depth", stealingQueue::size);
+        } else {
+            this.stealingQueue = null;
+            MetricsRegistry.getDefault().gauge("coffee_queue_depth", () -> size);
+        }
+    }
+
+    /**
+     * Creates a CoffeeShop that gives each barista its own queue of orders instead of one shared
+     * queue, with idle baristas stealing from busy ones. Placing and taking an order then takes
+     * no shared lock, which scales to hundreds of baristas; orders are served roughly first come,
+     * first served and priorities are not applied. close() still lets every queued order be
+     * served before the baristas stop.
+     *
+     * @param maxCapacity  the maximum number of orders the coffee shop can hold
+     * @param baristaCount the number of baristas, one queue each
+     * @return the coffee shop
+     * @throws IllegalArgumentException if either argument is not positive
+     */
+    public static CoffeeShop withWorkStealing(int maxCapacity, int baristaCount) {
+        if (baristaCount <= 0) {
+            throw new IllegalArgumentException("Barista count must be positive.");
+        }
+        return new CoffeeShop(maxCapacity, SchedulingPolicy.FIFO, DEFAULT_AGING_MILLIS, baristaCount);
+    }
+
+    /**
+     * An order together with the time it entered the queue and its place in the schedule.
+     */
+    static final class QueuedOrder implements Comparable<QueuedOrder> {
+        final Order order; // The customer's order
+        final long enqueuedNanos; // System.nanoTime() when the order was queued
+        private final long deadline; // Virtual deadline; earliest is served first
+        private final long sequence; // Arrival order, for equal deadlines
+
+        QueuedOrder(Order order, long enqueuedNanos, long deadline, long sequence) {
+            this.order = order;
+            this.enqueuedNanos = enqueuedNanos;
+            this.deadline = deadline;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(QueuedOrder other) {
+            // Subtract rather than compare directly, as nanoTime values may wrap
+            long difference = deadline - other.deadline;
+            if (difference != 0) {
+                return difference < 0 ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
     }
 
     /**
@@ -24,43 +216,275 @@ public class CoffeeShop {
      * until space becomes available.
      *
      * @param order the order to be placed
+     * @return ACCEPTED, or why the order was not queued
+     */
+    public OrderResult placeOrder(Order order) {
+        return place(order, -1);
+    }
+
+    /**
+     * Places an order into the queue, waiting at most the given time for a place.
+     *
+     * @param order   the order to be placed
+     * @param timeout the longest time to wait while the queue is full
+     * @param unit    the unit of the timeout
+     * @return ACCEPTED, or why the order was not queued
+     */
+    public OrderResult placeOrder(Order order, long timeout, TimeUnit unit) {
+        return place(order, Math.max(0, unit.toNanos(timeout)));
+    }
+
+    /**
+     * Places an order into the queue only if there is a place right now; never blocks.
+     *
+     * @param order the order to be placed
+     * @return ACCEPTED, or why the order was not queued
+     */
+    public OrderResult tryPlaceOrder(Order order) {
+        return place(order, 0);
+    }
+
+    /**
+     * Turns on admission control: orders other than HIGH priority are shed when the queue
+     * already holds more than the baristas are expected to clear within the target wait.
+     * The limit follows the baristas' measured pace, so it shrinks in a slow spell and grows
+     * back as they catch up.
+     *
+     * @param targetWaitMillis the longest expected queue wait to admit an order into
+     * @throws IllegalArgumentException if the target is not positive
      */
-    public void placeOrder(String order) {
+    public void enableAdmissionControl(long targetWaitMillis) {
+        if (targetWaitMillis <= 0) {
+            throw new IllegalArgumentException("Target wait must be positive.");
+        }
+        AdmissionController controller = new AdmissionController(targetWaitMillis, maxCapacity);
+        MetricsRegistry.getDefault().gauge("coffee_admission_limit", controller::getLimit);
+        admission = controller;
+    }
+
+    /**
+     * Places an order, applying admission control first if it is on.
+     *
+     * @param order        the order to be placed
+     * @param timeoutNanos the longest time to wait while the queue is full, or -1 to wait indefinitely
+     * @return the outcome
+     */
+    private OrderResult place(Order order, long timeoutNanos) {
+        long start = System.nanoTime();
+        OrderResult result;
+        AdmissionController controller = admission;
+        if (!isOpen) {
+            result = OrderResult.CLOSED;
+        } else if (controller != null && !controller.admit(queueDepth(), order.getPriority())) {
+            result = OrderResult.SHED;
+        } else if (stealingQueue != null) {
+            result = stealingQueue.put(new QueuedOrder(order, start, 0, 0), timeoutNanos);
+        } else {
+            result = enqueue(order, timeoutNanos);
+        }
+
+        if (result == OrderResult.ACCEPTED) {
+            PLACE_BLOCKED.recordSince(start);
+        } else if (result == OrderResult.CLOSED) {
+            // Baristas stop once the queue drains after closing, so a later order would never be prepared
+            LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Order rejected, the shop is closed: " + order);
+        } else if (result == OrderResult.INTERRUPTED) {
+            LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Thread interrupted while placing order: " + order);
+        }
+        ORDER_RESULTS[result.ordinal()].increment();
+        return result;
+    }
+
+    /**
+     * Adds an order to the shared queue.
+     *
+     * @param order        the order to be placed
+     * @param timeoutNanos the longest time to wait while the queue is full, or -1 to wait indefinitely
+     * @return the outcome
+     */
+    private OrderResult enqueue(Order order, long timeoutNanos) {
+        long remaining = timeoutNanos;
+        lock.lock();
         try {
-            orderList.put(order); // Blocks if the queue is full
+            while (isOpen && size == maxCapacity) {
+                if (timeoutNanos < 0) {
+                    notFull.await(); // Blocks while the queue is full
+                } else if (remaining <= 0) {
+                    return OrderResult.QUEUE_FULL;
+                } else {
+                    remaining = notFull.awaitNanos(remaining);
+                }
+            }
+            if (!isOpen) {
+                return OrderResult.CLOSED;
+            }
+            long now = System.nanoTime();
+            orderList.add(new QueuedOrder(order, now, now + policy.penalty(order, agingNanos), sequence++));
+            size++;
+            notEmpty.signal();
+            return OrderResult.ACCEPTED;
         } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(),
-                    "Thread interrupted while placing order: " + e.getMessage());
+            Thread.currentThread().interrupt(); // Leave the interrupt for the caller to act on
+            return OrderResult.INTERRUPTED;
+        } finally {
+            lock.unlock();
         }
     }
 
     /**
-     * Prepares an order by retrieving it from the queue. If the queue is empty,
-     * this method waits until an order is available or the shop is closed and
-     * no more orders are expected.
+     * Returns the number of waiting orders.
+     *
+     * @return the queue depth
+     */
+    private int queueDepth() {
+        return stealingQueue != null ? stealingQueue.size() : size;
+    }
+
+    /**
+     * Prepares an order by retrieving the next one due from the queue. If the queue is empty,
+     * the calling barista parks (without using CPU) until an order is available or the shop is
+     * closed and every queued order has been taken.
      *
      * @return the next order to be prepared, or null if the shop is closed and
      *         no more orders are available
+     * @throws InterruptedException if the barista is interrupted while waiting
+     */
+    public Order prepareOrder() throws InterruptedException {
+        List<Order> batch = prepareOrders(1);
+        return batch.isEmpty() ? null : batch.get(0);
+    }
+
+    /**
+     * Takes the next order due together with waiting orders for the same drink, so a barista
+     * can make them as one batch and do the setup once. The batch size adapts to the queue:
+     * the barista takes at most its fair share of the waiting orders, split with the baristas
+     * idle at that moment, so a short queue is still spread across everyone. Blocks like
+     * prepareOrder while the queue is empty. The whole batch is taken under one lock acquisition.
+     * With work stealing, the batch comes from the barista's own queue and is only limited by
+     * maxBatch.
+     *
+     * @param maxBatch the largest number of orders to take
+     * @return the orders, the next due first, or an empty list if the shop is closed and
+     *         no more orders are available
+     * @throws InterruptedException if the barista is interrupted while waiting
      */
-    public String prepareOrder() {
-        while (true) {
-            // Wait for an order or return null if the shop is closed and the queue is empty
-            String order = orderList.poll();
-            if (order != null) {
-                return order;
+    public List<Order> prepareOrders(int maxBatch) throws InterruptedException {
+        if (stealingQueue != null) {
+            return recordTaken(stealingQueue.take(maxBatch));
+        }
+
+        // Spin briefly first, so a busy shop hands orders over without a park/unpark round trip
+        for (int i = 0; i < SPIN_POLLS && size == 0 && isOpen; i++) {
+            Thread.onSpinWait();
+        }
+
+        List<QueuedOrder> taken = new ArrayList<>(Math.min(maxBatch, maxCapacity));
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (!isOpen) {
+                    return Collections.emptyList(); // Closed and the queue is empty
+                }
+                notEmpty.await();
+            }
+            QueuedOrder first = orderList.poll();
+            taken.add(first);
+
+            // Fair share of the queue between this barista and the idle ones, rounded up
+            int idle = lock.getWaitQueueLength(notEmpty);
+            int fairShare = (size + idle) / (idle + 1);
+            int limit = Math.min(maxBatch, fairShare);
+            if (limit > 1) {
+                collectSameDrink(orderList, first.order.getDrinkType(), limit - 1, taken);
             }
-            if (!isOpen && orderList.isEmpty()) {
-                return null; // No more orders to process
+            size -= taken.size();
+            if (taken.size() == 1) {
+                notFull.signal();
+            } else {
+                notFull.signalAll();
             }
+        } finally {
+            lock.unlock();
+        }
+        return recordTaken(taken);
+    }
+
+    /**
+     * Records queue time and batch metrics for orders taken by a barista.
+     *
+     * @param taken the queued orders taken
+     * @return the orders
+     */
+    private List<Order> recordTaken(List<QueuedOrder> taken) {
+        if (taken.isEmpty()) {
+            return Collections.emptyList();
+        }
+        AdmissionController controller = admission;
+        if (controller != null) {
+            controller.recordTaken(taken.size(), queueDepth());
+        }
+        long now = System.nanoTime();
+        List<Order> batch = new ArrayList<>(taken.size());
+        for (QueuedOrder queued : taken) {
+            long queueTime = now - queued.enqueuedNanos;
+            QUEUE_TIME.record(queueTime);
+            QUEUE_TIME_BY_PRIORITY[queued.order.getPriority().ordinal()].record(queueTime);
+            batch.add(queued.order);
         }
+        ORDERS_TAKEN.add(batch.size());
+        BATCH_SIZE.record(batch.size());
+        return batch;
+    }
+
+    /**
+     * Removes waiting orders for a drink, earliest deadline first, and adds them to a batch.
+     * Must be called with the lock held when the queue is shared.
+     *
+     * @param orderList the waiting orders
+     * @param drinkType the drink to match
+     * @param count     the most orders to remove
+     * @param batch     the batch to add them to
+     */
+    static void collectSameDrink(PriorityQueue<QueuedOrder> orderList, Order.DrinkType drinkType, int count,
+                                 List<QueuedOrder> batch) {
+        // The heap iterates in no particular order, so gather every match and keep the most urgent
+        List<QueuedOrder> matches = new ArrayList<>();
+        for (QueuedOrder queued : orderList) {
+            if (queued.order.getDrinkType() == drinkType) {
+                matches.add(queued);
+            }
+        }
+        if (matches.size() > count) {
+            Collections.sort(matches);
+            matches = matches.subList(0, count);
+        }
+        if (matches.isEmpty()) {
+            return;
+        }
+        Set<QueuedOrder> chosen = Collections.newSetFromMap(new IdentityHashMap<>());
+        chosen.addAll(matches);
+        orderList.removeIf(chosen::contains); // One pass and re-heapify rather than a removal per order
+        Collections.sort(matches);
+        batch.addAll(matches);
     }
 
     /**
      * Closes the coffee shop, indicating that no new orders will be accepted.
+     * Baristas finish the orders already queued and then stop; those waiting on an empty
+     * queue are woken straight away.
      */
     public void close() {
-        isOpen = false;
+        if (stealingQueue != null) {
+            stealingQueue.close();
+        }
+        lock.lock();
+        try {
+            isOpen = false;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -71,4 +495,32 @@ public class CoffeeShop {
     public boolean isOpen() {
         return isOpen;
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates a counter for each placement outcome, e.g. coffee_orders_accepted_total.
+     *
+     * @return the counters, indexed by OrderResult ordinal
+     */
+    private static Counter[] createResultCounters() {
+        OrderResult[] results = OrderResult.values();
+        Counter[] counters = new Counter[results.length];
+        for (OrderResult result : results) {
+            counters[result.ordinal()] = MetricsRegistry.getDefault().counter("coffee_orders_" + result.name().toLowerCase(Locale.ROOT) + "_total");
+        }
+        return counters;
+    }
+
+    /**
+     * Creates a queue-time histogram for each priority class, e.g. coffee_order_queue_time_high_ns.
+     *
+     * @return the histograms, indexed by Order.Priority ordinal
+     */
+    private static Histogram[] createQueueTimeHistograms() {
+        Order.Priority[] priorities = Order.Priority.values();
+        Histogram[] histograms = new Histogram[priorities.length];
+        for (Order.Priority priority : priorities) {
+            histograms[priority.ordinal()] = MetricsRegistry.getDefault().histogram("coffee_order_queue_time_" + priority.name().toLowerCase(Locale.ROOT) + "_ns");
+        }
+        return histograms;
+    }
+}
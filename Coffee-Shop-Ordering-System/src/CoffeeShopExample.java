@@ -1,41 +1,97 @@
+import util.AsyncLogWriter;
+import util.LogConfig;
+import util.LogLayout;
+import util.LoggerUtil;
+import util.ThreadMode;
+import util.metrics.MetricsExporter;
+import util.metrics.MetricsRegistry;
+import util.workload.ArrivalProcess;
+import util.workload.ServiceTime;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
 public class CoffeeShopExample {
     public static void main(String[] args) {
+        // Run customers and baristas on platform or virtual threads, chosen with -Dutil.threads=platform|virtual
+        ThreadMode threadMode = ThreadMode.fromSystemProperty();
+
+        // Log to this simulation's file; -Dutil.log.* properties override the settings.
+        // Virtual threads log asynchronously, as the synchronous file handler would pin them while writing.
+        LogConfig logConfig = LogConfig.forFile("coffee_shop.log").withLayout(LogLayout.BLOCK);
+        if (threadMode == ThreadMode.VIRTUAL) {
+            logConfig = logConfig.withAsync(8192, AsyncLogWriter.OverflowPolicy.BLOCK);
+        }
+        LoggerUtil.configure(logConfig);
+
+        // Record binary events alongside the text log; decode with util.EventLogDecoder
+        LoggerUtil.enableEventLog(null, true);
+
+        // Export order metrics every second; -Dutil.metrics.* properties configure the export
+        MetricsExporter.start(MetricsRegistry.getDefault(), "coffee_metrics.prom");
+
         // Define the maximum capacity of the order queue in the coffee shop
         final int Queue_cap = 4;
 
-        // Create a CoffeeShop instance with the specified queue capacity
-        CoffeeShop coffeeShop = new CoffeeShop(Queue_cap);
+        // Define the number of customers and baristas; -Dcoffee.customers and -Dcoffee.baristas override them
+        final int No_customer = Integer.getInteger("coffee.customers", 4);
+        final int No_barista = Integer.getInteger("coffee.baristas", 3);
 
-        // Define the number of customers and baristas
-        final int No_customer = 4;
-        final int No_barista = 3;
+        // Pass FIFO, PRIORITY or SHORTEST_JOB_FIRST as the first argument to choose the scheduling policy,
+        // or STEALING to give each barista its own queue
+        CoffeeShop coffeeShop;
+        if (args.length > 0 && args[0].equalsIgnoreCase("stealing")) {
+            coffeeShop = CoffeeShop.withWorkStealing(Queue_cap, No_barista);
+        } else {
+            CoffeeShop.SchedulingPolicy policy = args.length > 0
+                    ? CoffeeShop.SchedulingPolicy.valueOf(args[0].toUpperCase(Locale.ROOT))
+                    : CoffeeShop.SchedulingPolicy.PRIORITY;
 
-        // Create and start customer threads
-        Thread[] customers = new Thread[No_customer];
-        for (int i = 0; i < customers.length; i++) {
-            // Create a new thread for each customer, passing the coffee shop instance
-            customers[i] = new Thread(new Customer(coffeeShop), "Customer " + (i + 1));
+            // Create a CoffeeShop instance with the specified queue capacity; orders age by a class every 3 seconds
+            coffeeShop = new CoffeeShop(Queue_cap, policy, 3000);
         }
 
-        // Create and start barista threads
+        // Shed regular orders once the expected queue wait passes 5 seconds; mobile orders are always taken
+        coffeeShop.enableAdmissionControl(5000);
+
+        // Most orders for the same drink a barista makes together
+        final int Max_batch = 3;
+
+        // Pause after each order; -Dcoffee.pause takes a util.workload.ServiceTime, e.g. lognormal:1500,0.5
+        ServiceTime pause = ServiceTime.parse(System.getProperty("coffee.pause",
+                "uniform:" + Customer.MIN_PAUSE_MILLIS + "," + Customer.MAX_PAUSE_MILLIS));
+
+        // Customers all arrive at once, unless -Dcoffee.arrivals gives a util.workload.ArrivalProcess, e.g. poisson:2
+        String arrivalSpec = System.getProperty("coffee.arrivals");
+        ArrivalProcess.Arrivals arrivals = arrivalSpec == null ? null
+                : ArrivalProcess.parse(arrivalSpec).start(ThreadLocalRandom.current());
+
+        // Create and start barista threads, so they are ready for customers arriving over time
         Thread[] baristas = new Thread[No_barista];
         for (int i = 0; i < baristas.length; i++) {
             // Create a new thread for each barista, passing the coffee shop instance
-            baristas[i] = new Thread(new Barista(coffeeShop), "Barista " + (i + 1));
+            baristas[i] = threadMode.start("Barista " + (i + 1), new Barista(coffeeShop, Max_batch));
         }
 
-        // Start all customer threads
-        for (Thread customer : customers) {
-            customer.start();
-        }
-
-        // Start all barista threads
-        for (Thread barista : baristas) {
-            barista.start();
+        // Create and start customer threads as they arrive
+        Thread[] customers = new Thread[No_customer];
+        long startNanos = System.nanoTime();
+        int arrived = 0;
+        try {
+            while (arrived < customers.length
+                    && (arrivals == null || arrivals.awaitNext(startNanos) != ArrivalProcess.Arrivals.END)) {
+                // Create a new thread for each customer, passing the coffee shop instance
+                customers[arrived] = threadMode.start("Customer " + (arrived + 1), new Customer(coffeeShop, pause));
+                arrived++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Stop admitting customers; those inside still finish
         }
+        threadMode.reportStartup(arrived, "customers", startNanos);
 
         // Wait for all customer threads to finish
-        for (Thread customer : customers) {
+        for (int i = 0; i < arrived; i++) {
+            Thread customer = customers[i];
             try {
                 customer.join(); // Wait for the customer thread to complete
             } catch (InterruptedException e) {
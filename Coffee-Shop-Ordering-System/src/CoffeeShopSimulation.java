@@ -0,0 +1,599 @@
+import util.metrics.Histogram;
+import util.sim.Simulator;
+import util.workload.ArrivalProcess;
+import util.workload.ServiceTime;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discrete-event model of the coffee shop, for capacity planning. Customers, baristas and the
+ * order queue behave as in the threaded simulation: orders are scheduled by the same
+ * SchedulingPolicy deadlines and batched with the same fair-share rule, customers place
+ * Customer.ORDERS_PER_VISIT orders with the same pauses and wait at most
+ * Customer.PLACE_TIMEOUT_MILLIS at a full counter, and baristas take Barista's batch times.
+ * But nothing sleeps: a util.sim.Simulator jumps from one event to the next on a virtual clock,
+ * so a business day runs in well under a second and the same seed always gives the same day.
+ *
+ * <p>Customers arrive by an ArrivalProcess, Poisson unless the scenario says otherwise, instead
+ * of being a fixed group of threads, and pause between orders for a ServiceTime. The doors
+ * close at the end of the day; orders already queued are still made. Work stealing and
+ * admission control are not modelled.</p>
+ */
+public class CoffeeShopSimulation {
+    /**
+     * The shop and the demand on it. Scenarios are immutable; the with methods return copies.
+     */
+    public static final class Scenario {
+        private final int maxCapacity; // Most orders waiting at once
+        private final int baristaCount; // Number of baristas
+        private final int maxBatch; // Most orders of the same drink a barista makes together
+        private final CoffeeShop.SchedulingPolicy policy; // Order in which baristas take orders
+        private final long agingMillis; // Aging interval of the policy
+        private final ArrivalProcess arrivals; // When customers arrive
+        private final ServiceTime pause; // A customer's pause after each order
+        private final long openMillis; // Length of the business day
+
+        private Scenario(int maxCapacity, int baristaCount, int maxBatch, CoffeeShop.SchedulingPolicy policy,
+                         long agingMillis, ArrivalProcess arrivals, ServiceTime pause, long openMillis) {
+            this.maxCapacity = maxCapacity;
+            this.baristaCount = baristaCount;
+            this.maxBatch = maxBatch;
+            this.policy = policy;
+            this.agingMillis = agingMillis;
+            this.arrivals = arrivals;
+            this.pause = pause;
+            this.openMillis = openMillis;
+        }
+
+        /**
+         * Returns the shop in CoffeeShopExample (4 waiting orders, 3 baristas batching up to 3,
+         * priority scheduling aging every 3 seconds) open for 12 hours to 1,200 customers an hour.
+         *
+         * @return the scenario
+         */
+        public static Scenario defaults() {
+            return new Scenario(4, 3, 3, CoffeeShop.SchedulingPolicy.PRIORITY, 3000, ArrivalProcess.poisson(1200 / 3600.0),
+                    ServiceTime.uniform(Customer.MIN_PAUSE_MILLIS, Customer.MAX_PAUSE_MILLIS), TimeUnit.HOURS.toMillis(12));
+        }
+
+        /**
+         * Returns a copy with a different queue capacity.
+         *
+         * @param maxCapacity the most orders waiting at once
+         * @return the new scenario
+         * @throws IllegalArgumentException if the capacity is not positive
+         */
+        public Scenario withCapacity(int maxCapacity) {
+            if (maxCapacity <= 0) {
+                throw new IllegalArgumentException("Capacity must be positive.");
+            }
+            return new Scenario(maxCapacity, baristaCount, maxBatch, policy, agingMillis, arrivals, pause, openMillis);
+        }
+
+        /**
+         * Returns a copy with a different number of baristas.
+         *
+         * @param baristaCount the number of baristas
+         * @return the new scenario
+         * @throws IllegalArgumentException if the count is not positive
+         */
+        public Scenario withBaristas(int baristaCount) {
+            if (baristaCount <= 0) {
+                throw new IllegalArgumentException("Barista count must be positive.");
+            }
+            return new Scenario(maxCapacity, baristaCount, maxBatch, policy, agingMillis, arrivals, pause, openMillis);
+        }
+
+        /**
+         * Returns a copy with a different batch limit.
+         *
+         * @param maxBatch the most orders of the same drink a barista makes together
+         * @return the new scenario
+         * @throws IllegalArgumentException if the limit is less than 1
+         */
+        public Scenario withMaxBatch(int maxBatch) {
+            if (maxBatch < 1) {
+                throw new IllegalArgumentException("Batch size must be at least 1.");
+            }
+            return new Scenario(maxCapacity, baristaCount, maxBatch, policy, agingMillis, arrivals, pause, openMillis);
+        }
+
+        /**
+         * Returns a copy with a different scheduling policy.
+         *
+         * @param policy      the order in which baristas take orders
+         * @param agingMillis the aging interval, as for the CoffeeShop constructor
+         * @return the new scenario
+         * @throws IllegalArgumentException if the aging interval is not positive
+         */
+        public Scenario withPolicy(CoffeeShop.SchedulingPolicy policy, long agingMillis) {
+            if (agingMillis <= 0) {
+                throw new IllegalArgumentException("Aging interval must be positive.");
+            }
+            return new Scenario(maxCapacity, baristaCount, maxBatch, policy, agingMillis, arrivals, pause, openMillis);
+        }
+
+        /**
+         * Returns a copy with customers arriving as a Poisson process.
+         *
+         * @param customersPerHour the mean number of customers arriving per hour
+         * @return the new scenario
+         * @throws IllegalArgumentException if the rate is not positive
+         */
+        public Scenario withCustomersPerHour(double customersPerHour) {
+            return withArrivals(ArrivalProcess.poisson(customersPerHour / 3600));
+        }
+
+        /**
+         * Returns a copy with a different arrival process, e.g. bursty or diurnal.
+         *
+         * @param arrivals when customers arrive
+         * @return the new scenario
+         */
+        public Scenario withArrivals(ArrivalProcess arrivals) {
+            return new Scenario(maxCapacity, baristaCount, maxBatch, policy, agingMillis, arrivals, pause, openMillis);
+        }
+
+        /**
+         * Returns a copy with a different pause between a customer's orders.
+         *
+         * @param pause the distribution of pauses
+         * @return the new scenario
+         */
+        public Scenario withPause(ServiceTime pause) {
+            return new Scenario(maxCapacity, baristaCount, maxBatch, policy, agingMillis, arrivals, pause, openMillis);
+        }
+
+        /**
+         * Returns a copy with a different length of business day.
+         *
+         * @param hours how long the doors are open
+         * @return the new scenario
+         * @throws IllegalArgumentException if the length is not positive
+         */
+        public Scenario withOpenHours(double hours) {
+            if (!(hours > 0)) {
+                throw new IllegalArgumentException("Opening hours must be positive.");
+            }
+            return new Scenario(maxCapacity, baristaCount, maxBatch, policy, agingMillis, arrivals, pause,
+                    Math.round(hours * TimeUnit.HOURS.toMillis(1)));
+        }
+
+        public int getMaxCapacity() {
+            return maxCapacity;
+        }
+
+        public int getBaristaCount() {
+            return baristaCount;
+        }
+
+        public int getMaxBatch() {
+            return maxBatch;
+        }
+
+        public CoffeeShop.SchedulingPolicy getPolicy() {
+            return policy;
+        }
+
+        /**
+         * Returns the long-run mean arrival rate.
+         *
+         * @return customers per hour
+         */
+        public double getCustomersPerHour() {
+            return arrivals.getMeanRate() * 3600;
+        }
+
+        public ArrivalProcess getArrivals() {
+            return arrivals;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d baristas, capacity %d, batch %d, %s, arrivals %s (%.0f customers/hour), pauses %s, for %.1f hours",
+                    baristaCount, maxCapacity, maxBatch, policy, arrivals, getCustomersPerHour(), pause, openMillis / 3_600_000.0);
+        }
+    }
+
+    /**
+     * What happened during one simulated day.
+     */
+    public static final class Report {
+        private final Scenario scenario; // The scenario simulated
+        private final long seed; // The seed used
+        private final long customers; // Customers who arrived
+        private final long[] results; // Placement outcomes, indexed by OrderResult ordinal
+        private final long served; // Drinks made
+        private final Histogram.Snapshot queueTime; // Virtual nanoseconds orders waited for a barista
+        private final Histogram.Snapshot placeWait; // Virtual nanoseconds customers waited for queue space
+        private final double utilization; // Share of barista time spent making drinks
+        private final long simulatedNanos; // Virtual time until the last drink was made
+        private final long events; // Events processed
+        private final long wallNanos; // Real time the run took
+
+        private Report(Scenario scenario, long seed, long customers, long[] results, long served,
+                       Histogram.Snapshot queueTime, Histogram.Snapshot placeWait, double utilization,
+                       long simulatedNanos, long events, long wallNanos) {
+            this.scenario = scenario;
+            this.seed = seed;
+            this.customers = customers;
+            this.results = results;
+            this.served = served;
+            this.queueTime = queueTime;
+            this.placeWait = placeWait;
+            this.utilization = utilization;
+            this.simulatedNanos = simulatedNanos;
+            this.events = events;
+            this.wallNanos = wallNanos;
+        }
+
+        public Scenario getScenario() {
+            return scenario;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public long getCustomers() {
+            return customers;
+        }
+
+        /**
+         * Returns how many orders had an outcome.
+         *
+         * @param result the outcome
+         * @return the number of orders
+         */
+        public long getOrders(OrderResult result) {
+            return results[result.ordinal()];
+        }
+
+        public long getServed() {
+            return served;
+        }
+
+        /**
+         * Returns how long orders waited in the queue for a barista, in virtual nanoseconds.
+         *
+         * @return the distribution
+         */
+        public Histogram.Snapshot getQueueTime() {
+            return queueTime;
+        }
+
+        /**
+         * Returns how long customers waited at a full counter, in virtual nanoseconds; orders
+         * placed straight away count as 0.
+         *
+         * @return the distribution
+         */
+        public Histogram.Snapshot getPlaceWait() {
+            return placeWait;
+        }
+
+        /**
+         * Returns the share of the baristas' time, from opening until the last drink, spent
+         * making drinks.
+         *
+         * @return the utilization, from 0 to 1
+         */
+        public double getUtilization() {
+            return utilization;
+        }
+
+        /**
+         * Returns the virtual time from opening until the last drink was made.
+         *
+         * @return the time in nanoseconds
+         */
+        public long getSimulatedNanos() {
+            return simulatedNanos;
+        }
+
+        public long getEvents() {
+            return events;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        @Override
+        public String toString() {
+            double wallSeconds = wallNanos / 1e9;
+            return String.format(Locale.ROOT,
+                    "%s, seed %d%n"
+                            + "  %d customers, %d orders accepted, %d turned away at a full counter, %d after closing%n"
+                            + "  %d drinks made, baristas busy %.1f%% of %.2f hours%n"
+                            + "  queue time p50 %d ms, p99 %d ms, max %d ms; counter wait p99 %d ms%n"
+                            + "  %d events in %.3f s (%.0f customers/s, %.0f events/s)",
+                    scenario, seed,
+                    customers, getOrders(OrderResult.ACCEPTED), getOrders(OrderResult.QUEUE_FULL), getOrders(OrderResult.CLOSED),
+                    served, utilization * 100, simulatedNanos / 3.6e12,
+                    queueTime.getValueAtPercentile(50) / 1_000_000, queueTime.getValueAtPercentile(99) / 1_000_000,
+                    queueTime.getMax() / 1_000_000, placeWait.getValueAtPercentile(99) / 1_000_000,
+                    events, wallSeconds, customers / wallSeconds, events / wallSeconds);
+        }
+    }
+
+    private final Scenario scenario; // The shop and demand being simulated
+    private final long seed; // Seed of the simulator
+    private final Simulator simulator; // Virtual clock and event calendar
+    private final SplittableRandom random; // The simulator's generator
+    private final long agingNanos; // Aging interval of the policy
+    private final ArrivalProcess.Arrivals arrivals; // Arrival times of the customers
+
+    private final PriorityQueue<CoffeeShop.QueuedOrder> orderList = new PriorityQueue<>(); // Waiting orders
+    private final ArrayDeque<Placement> blocked = new ArrayDeque<>(); // Customers waiting for queue space, first come first served
+
+    private final long[] results = new long[OrderResult.values().length]; // Placement outcomes
+    private final Histogram queueTime = new Histogram(); // Order wait for a barista
+    private final Histogram placeWait = new Histogram(); // Customer wait for queue space
+
+    private long sequence; // Tie-breaker for equal deadlines, as in CoffeeShop
+    private int idleBaristas; // Baristas waiting for an order
+    private boolean isOpen = true; // False once the doors close
+    private long customers; // Customers who arrived
+    private long served; // Drinks made
+    private long busyNanos; // Total barista time spent making drinks
+    private long lastFinish; // When the last batch was finished
+
+    /**
+     * Constructs a simulation of one business day.
+     *
+     * @param scenario the shop and the demand on it
+     * @param seed     the seed; the same scenario and seed always give the same report
+     */
+    public CoffeeShopSimulation(Scenario scenario, long seed) {
+        this.scenario = scenario;
+        this.seed = seed;
+        this.simulator = new Simulator(seed);
+        this.random = simulator.random();
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(scenario.agingMillis);
+        this.arrivals = scenario.arrivals.start(random);
+        this.idleBaristas = scenario.baristaCount;
+    }
+
+    /**
+     * Runs the day: customers arrive until closing, then the baristas finish the queued orders.
+     *
+     * @return what happened
+     */
+    public Report run() {
+        long wallStart = System.nanoTime();
+        long closeNanos = TimeUnit.MILLISECONDS.toNanos(scenario.openMillis);
+        scheduleNextArrival();
+        simulator.scheduleAt(closeNanos, this::close);
+        simulator.run(Long.MAX_VALUE);
+
+        double utilization = lastFinish == 0 ? 0 : (double) busyNanos / ((double) lastFinish * scenario.baristaCount);
+        return new Report(scenario, seed, customers, results.clone(), served, queueTime.snapshot(), placeWait.snapshot(),
+                utilization, lastFinish, simulator.getEventCount(), System.nanoTime() - wallStart);
+    }
+
+    /**
+     * A customer arrives, places their first order, and the next arrival is scheduled.
+     */
+    private void arrive() {
+        if (!isOpen) {
+            return;
+        }
+        customers++;
+        placeOrder(new Visit(customers), 1);
+        scheduleNextArrival();
+    }
+
+    /**
+     * Schedules the next customer's arrival, unless a replayed trace has run out.
+     */
+    private void scheduleNextArrival() {
+        long next = arrivals.next();
+        if (next != ArrivalProcess.Arrivals.END) {
+            simulator.scheduleAt(next, this::arrive);
+        }
+    }
+
+    /**
+     * A customer places an order, as Customer.run does, and pauses before the next one once
+     * the counter has taken it or turned it away.
+     *
+     * @param visit  the customer
+     * @param number the customer's order number
+     */
+    private void placeOrder(Visit visit, int number) {
+        Order.DrinkType[] drinks = Order.DrinkType.values();
+        Order.Size[] sizes = Order.Size.values();
+        Order order = new Order(visit.name, number, drinks[random.nextInt(drinks.length)], sizes[random.nextInt(sizes.length)],
+                random.nextDouble() < Customer.MOBILE_SHARE ? Order.Priority.HIGH : Order.Priority.NORMAL);
+
+        if (!isOpen) {
+            finishPlacing(visit, number, OrderResult.CLOSED);
+        } else if (orderList.size() < scenario.maxCapacity) {
+            placeWait.record(0);
+            enqueue(order);
+            finishPlacing(visit, number, OrderResult.ACCEPTED);
+        } else {
+            // Wait at the counter for a place, giving up after the timeout
+            Placement placement = new Placement(visit, number, order, simulator.now());
+            blocked.addLast(placement);
+            simulator.schedule(TimeUnit.MILLISECONDS.toNanos(Customer.PLACE_TIMEOUT_MILLIS), () -> {
+                if (placement.waiting) {
+                    placement.waiting = false;
+                    finishPlacing(visit, number, OrderResult.QUEUE_FULL);
+                }
+            });
+        }
+    }
+
+    /**
+     * Records the outcome of an order and schedules the customer's next one after a pause.
+     *
+     * @param visit  the customer
+     * @param number the order number just placed
+     * @param result the outcome
+     */
+    private void finishPlacing(Visit visit, int number, OrderResult result) {
+        results[result.ordinal()]++;
+        if (number < Customer.ORDERS_PER_VISIT) {
+            simulator.schedule(scenario.pause.sampleNanos(random), () -> placeOrder(visit, number + 1));
+        }
+    }
+
+    /**
+     * Adds an order to the queue and hands it to an idle barista if there is one.
+     *
+     * @param order the order
+     */
+    private void enqueue(Order order) {
+        long now = simulator.now();
+        orderList.add(new CoffeeShop.QueuedOrder(order, now, now + scenario.policy.penalty(order, agingNanos), sequence++));
+        if (idleBaristas > 0) {
+            idleBaristas--;
+            startBatch();
+        }
+    }
+
+    /**
+     * A barista takes the next order due, with waiting orders for the same drink up to its fair
+     * share, as CoffeeShop.prepareOrders does, and schedules the end of the batch.
+     */
+    private void startBatch() {
+        long now = simulator.now();
+        int waiting = orderList.size();
+        CoffeeShop.QueuedOrder first = orderList.poll();
+        List<CoffeeShop.QueuedOrder> taken = new ArrayList<>(Math.min(scenario.maxBatch, waiting));
+        taken.add(first);
+
+        // Fair share of the queue between this barista and the idle ones, rounded up
+        int fairShare = (waiting + idleBaristas) / (idleBaristas + 1);
+        int limit = Math.min(scenario.maxBatch, fairShare);
+        if (limit > 1) {
+            CoffeeShop.collectSameDrink(orderList, first.order.getDrinkType(), limit - 1, taken);
+        }
+
+        List<Order> batch = new ArrayList<>(taken.size());
+        for (CoffeeShop.QueuedOrder queued : taken) {
+            queueTime.record(now - queued.enqueuedNanos);
+            batch.add(queued.order);
+        }
+
+        // Preparation takes Barista's estimate, give or take 10%
+        long prepNanos = (long) (TimeUnit.MILLISECONDS.toNanos(Barista.batchPrepMillis(batch)) * random.nextDouble(0.9, 1.1));
+        busyNanos += prepNanos;
+        simulator.schedule(prepNanos, () -> finishBatch(batch.size()));
+
+        admitBlocked();
+    }
+
+    /**
+     * A barista finishes a batch and takes the next one, or waits if the queue is empty.
+     *
+     * @param batchSize the number of drinks made
+     */
+    private void finishBatch(int batchSize) {
+        served += batchSize;
+        lastFinish = simulator.now();
+        if (orderList.isEmpty()) {
+            idleBaristas++;
+        } else {
+            startBatch();
+        }
+    }
+
+    /**
+     * Lets customers waiting at the counter place their orders into the places just freed.
+     */
+    private void admitBlocked() {
+        while (isOpen && orderList.size() < scenario.maxCapacity && !blocked.isEmpty()) {
+            Placement placement = blocked.pollFirst();
+            if (placement.waiting) {
+                placement.waiting = false;
+                placeWait.record(simulator.now() - placement.sinceNanos);
+                enqueue(placement.order);
+                finishPlacing(placement.visit, placement.number, OrderResult.ACCEPTED);
+            }
+        }
+    }
+
+    /**
+     * Closes the doors: no more arrivals, and customers still waiting at the counter are turned
+     * away as CoffeeShop.close() does.
+     */
+    private void close() {
+        isOpen = false;
+        for (Placement placement : blocked) {
+            if (placement.waiting) {
+                placement.waiting = false;
+                finishPlacing(placement.visit, placement.number, OrderResult.CLOSED);
+            }
+        }
+        blocked.clear();
+    }
+
+    /**
+     * A customer in the shop.
+     */
+    private static final class Visit {
+        private final String name; // Name on the customer's orders
+
+        Visit(long number) {
+            this.name = "Customer " + number;
+        }
+    }
+
+    /**
+     * An order waiting at a full counter.
+     */
+    private static final class Placement {
+        private final Visit visit; // The customer
+        private final int number; // The customer's order number
+        private final Order order; // The order
+        private final long sinceNanos; // Virtual time the customer started waiting
+        private boolean waiting = true; // False once placed, timed out or turned away
+
+        Placement(Visit visit, int number, Order order, long sinceNanos) {
+            this.visit = visit;
+            this.number = number;
+            this.order = order;
+            this.sinceNanos = sinceNanos;
+        }
+    }
+
+    /**
+     * Simulates one day and prints the report. The first argument chooses the scheduling policy
+     * (default PRIORITY); -Dcoffee.baristas, -Dcoffee.capacity, -Dcoffee.batch,
+     * -Dcoffee.customersPerHour, -Dcoffee.hours and -Dcoffee.seed override the rest of
+     * Scenario.defaults(). -Dcoffee.arrivals and -Dcoffee.pause take an ArrivalProcess and a
+     * ServiceTime specification, e.g. mmpp:1/60,0.1/600 and lognormal:1500,0.5.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        Scenario defaults = Scenario.defaults();
+        Scenario scenario = defaults
+                .withBaristas(Integer.getInteger("coffee.baristas", defaults.baristaCount))
+                .withCapacity(Integer.getInteger("coffee.capacity", defaults.maxCapacity))
+                .withMaxBatch(Integer.getInteger("coffee.batch", defaults.maxBatch))
+                .withCustomersPerHour(Double.parseDouble(System.getProperty("coffee.customersPerHour",
+                        String.valueOf(defaults.getCustomersPerHour()))))
+                .withOpenHours(Double.parseDouble(System.getProperty("coffee.hours", "12")));
+        if (System.getProperty("coffee.arrivals") != null) {
+            scenario = scenario.withArrivals(ArrivalProcess.parse(System.getProperty("coffee.arrivals")));
+        }
+        if (System.getProperty("coffee.pause") != null) {
+            scenario = scenario.withPause(ServiceTime.parse(System.getProperty("coffee.pause")));
+        }
+        if (args.length > 0) {
+            scenario = scenario.withPolicy(CoffeeShop.SchedulingPolicy.valueOf(args[0].toUpperCase(Locale.ROOT)), defaults.agingMillis);
+        }
+        long seed = Long.getLong("coffee.seed", 1);
+        System.out.println(new CoffeeShopSimulation(scenario, seed).run());
+    }
+}
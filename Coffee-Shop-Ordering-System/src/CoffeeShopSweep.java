@@ -0,0 +1,91 @@
+import util.sim.ParameterSweep;
+import util.workload.ArrivalProcess;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Plans staffing and counter capacity: runs CoffeeShopSimulation for every combination of
+ * barista count, queue capacity and arrival rate, many seeded replications each across every
+ * core, and writes the queue-time percentiles, barista utilisation, throughput and share of
+ * orders turned away per combination to coffee_sweep.csv.
+ *
+ * <p>Ranges are comma-separated lists: -Dsweep.baristas (default 2,3,4,5), -Dsweep.capacity
+ * (default 4,8) and -Dsweep.customersPerHour (default 1200, Poisson arrivals); -Dsweep.arrivals
+ * instead sets one util.workload.ArrivalProcess for every scenario. -Dsweep.hours (default 2),
+ * -Dsweep.replications (default 100), -Dsweep.seed (default 1) and -Dsweep.file change the run;
+ * the first argument chooses the scheduling policy, as for CoffeeShopSimulation.</p>
+ */
+public class CoffeeShopSweep {
+    public static void main(String[] args) throws IOException {
+        CoffeeShopSimulation.Scenario base = CoffeeShopSimulation.Scenario.defaults()
+                .withOpenHours(Double.parseDouble(System.getProperty("sweep.hours", "2")));
+        if (args.length > 0) {
+            base = base.withPolicy(CoffeeShop.SchedulingPolicy.valueOf(args[0].toUpperCase(Locale.ROOT)), 3000);
+        }
+
+        String arrivals = System.getProperty("sweep.arrivals");
+        List<CoffeeShopSimulation.Scenario> scenarios = new ArrayList<>();
+        for (int baristas : ParameterSweep.integers("sweep.baristas", "2,3,4,5")) {
+            for (int capacity : ParameterSweep.integers("sweep.capacity", "4,8")) {
+                CoffeeShopSimulation.Scenario scenario = base.withBaristas(baristas).withCapacity(capacity);
+                if (arrivals != null) {
+                    scenarios.add(scenario.withArrivals(ArrivalProcess.parse(arrivals)));
+                    continue;
+                }
+                for (int customersPerHour : ParameterSweep.integers("sweep.customersPerHour", "1200")) {
+                    scenarios.add(scenario.withCustomersPerHour(customersPerHour));
+                }
+            }
+        }
+        int replications = Integer.getInteger("sweep.replications", 100);
+        long seed = Long.getLong("sweep.seed", 1);
+
+        long start = System.nanoTime();
+        ParameterSweep<CoffeeShopSimulation.Scenario> sweep = new ParameterSweep<>(scenarios, replications, seed);
+        List<ParameterSweep.Summary<CoffeeShopSimulation.Scenario>> summaries = sweep.run(CoffeeShopSweep::replicate);
+        System.out.printf("%d runs in %d ms%n", scenarios.size() * replications, (System.nanoTime() - start) / 1_000_000);
+
+        List<String> parameters = List.of("baristas", "capacity", "customers_per_hour");
+        ParameterSweep.printReport(summaries, parameters, CoffeeShopSweep::parameters, System.out);
+        ParameterSweep.writeCsv(summaries, parameters, CoffeeShopSweep::parameters,
+                Paths.get(System.getProperty("sweep.file", "coffee_sweep.csv")));
+    }
+
+    /**
+     * Runs one replication and extracts the metrics compared across scenarios.
+     *
+     * @param scenario the scenario
+     * @param seed     the seed
+     * @return the metrics, by CSV column name
+     */
+    private static Map<String, Double> replicate(CoffeeShopSimulation.Scenario scenario, long seed) {
+        CoffeeShopSimulation.Report report = new CoffeeShopSimulation(scenario, seed).run();
+        long accepted = report.getOrders(OrderResult.ACCEPTED);
+        long turnedAway = report.getOrders(OrderResult.QUEUE_FULL);
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("queue_p50_s", report.getQueueTime().getValueAtPercentile(50) / 1e9);
+        metrics.put("queue_p95_s", report.getQueueTime().getValueAtPercentile(95) / 1e9);
+        metrics.put("queue_p99_s", report.getQueueTime().getValueAtPercentile(99) / 1e9);
+        metrics.put("counter_wait_p99_s", report.getPlaceWait().getValueAtPercentile(99) / 1e9);
+        metrics.put("utilization", report.getUtilization());
+        metrics.put("drinks_per_hour", report.getSimulatedNanos() == 0 ? 0 : report.getServed() * 3.6e12 / report.getSimulatedNanos());
+        metrics.put("turned_away_share", accepted + turnedAway == 0 ? 0 : (double) turnedAway / (accepted + turnedAway));
+        return metrics;
+    }
+
+    /**
+     * Returns the swept parameters of a scenario, in CSV column order.
+     *
+     * @param scenario the scenario
+     * @return baristas, capacity and arrival rate
+     */
+    private static List<?> parameters(CoffeeShopSimulation.Scenario scenario) {
+        return List.of(scenario.getBaristaCount(), scenario.getMaxCapacity(), scenario.getCustomersPerHour());
+    }
+}
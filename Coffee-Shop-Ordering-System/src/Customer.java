@@ -1,19 +1,50 @@
 import util.LoggerUtil;
+import util.workload.ServiceTime;
 
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 public class Customer implements Runnable {
+    // Binary event recorded for every order placed
+    private static final int ORDER_PLACED_EVENT = LoggerUtil.defineEvent("ORDER_PLACED", "order_number", "drink", "priority");
+
+    // Share of orders placed from the mobile app with a pickup time, which get HIGH priority
+    static final double MOBILE_SHARE = 0.25;
+
+    // Longest a customer waits at a full counter before giving up on an order
+    static final long PLACE_TIMEOUT_MILLIS = 5000;
+
+    // Orders each customer places, and the pause after each one
+    static final int ORDERS_PER_VISIT = 5;
+    static final int MIN_PAUSE_MILLIS = 1000;
+    static final int MAX_PAUSE_MILLIS = 2000;
+
     // The coffee shop where the customer places orders
     private final CoffeeShop coffeeShop;
 
+    // How long the customer pauses after each order
+    private final ServiceTime pause;
+
     /**
-     * Constructs a Customer that places orders in the specified coffee shop.
+     * Constructs a Customer that places orders in the specified coffee shop, pausing 1 to 2
+     * seconds after each.
      *
      * @param coffeeShop the coffee shop where the customer places orders
      */
     public Customer(CoffeeShop coffeeShop) {
+        this(coffeeShop, ServiceTime.uniform(MIN_PAUSE_MILLIS, MAX_PAUSE_MILLIS));
+    }
+
+    /**
+     * Constructs a Customer that places orders in the specified coffee shop.
+     *
+     * @param coffeeShop the coffee shop where the customer places orders
+     * @param pause      how long the customer pauses after each order
+     */
+    public Customer(CoffeeShop coffeeShop, ServiceTime pause) {
         this.coffeeShop = coffeeShop;
+        this.pause = pause;
     }
 
     /**
@@ -24,18 +55,31 @@ public class Customer implements Runnable {
     public void run() {
         try {
             // Each customer places 5 orders
-            for (int i = 1; i <= 5; i++) {
-                // Create a unique order string for each iteration
-                String order = Thread.currentThread().getName() + "'s order " + i;
-
-                // Place the order in the coffee shop's order queue
-                coffeeShop.placeOrder(order);
+            for (int i = 1; i <= ORDERS_PER_VISIT; i++) {
+                // Create an order for a random drink; some arrive from the mobile app with priority
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Order.DrinkType[] drinks = Order.DrinkType.values();
+                Order.Size[] sizes = Order.Size.values();
+                Order order = new Order(Thread.currentThread().getName(), i,
+                        drinks[random.nextInt(drinks.length)], sizes[random.nextInt(sizes.length)],
+                        random.nextDouble() < MOBILE_SHARE ? Order.Priority.HIGH : Order.Priority.NORMAL);
 
-                // Log the order being placed
-                LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), order);
+                // Place the order in the coffee shop's order queue, giving up if the counter stays full
+                OrderResult result = coffeeShop.placeOrder(order, PLACE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (result == OrderResult.INTERRUPTED) {
+                    throw new InterruptedException();
+                }
+                if (result == OrderResult.ACCEPTED) {
+                    // Log the order being placed
+                    LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), order.toString());
+                    LoggerUtil.event(ORDER_PLACED_EVENT, i, order.getDrinkType().ordinal(), order.getPriority().ordinal());
+                } else {
+                    // Turned away: the customer goes without this drink
+                    LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), order + " not placed: " + result);
+                }
 
-                // Simulate a random delay between placing orders (1 to 2 seconds)
-                Thread.sleep(ThreadLocalRandom.current().nextInt(1000, 2000));
+                // Simulate a random delay between placing orders (1 to 2 seconds by default)
+                Thread.sleep(pause.sampleMillis(random));
             }
         } catch (InterruptedException e) {
             // Handle thread interruption gracefully
@@ -0,0 +1,175 @@
+import java.util.Locale;
+
+/**
+ * A customer's order: what to make, how urgent it is, and when it was placed.
+ * Orders are immutable.
+ */
+public class Order {
+    /**
+     * Drinks on the menu, with the time a barista needs to make a medium one and how much of
+     * that is setup (grinding, steaming, blending) that a batch of the same drink shares.
+     */
+    public enum DrinkType {
+        ESPRESSO(800, 300),
+        AMERICANO(1000, 300),
+        LATTE(1400, 600),
+        CAPPUCCINO(1500, 600),
+        MOCHA(1800, 700),
+        FRAPPE(2500, 1200);
+
+        private final int baseMillis; // Preparation time for a medium drink
+        private final int setupMillis; // Part of the preparation time done once per batch
+
+        DrinkType(int baseMillis, int setupMillis) {
+            this.baseMillis = baseMillis;
+            this.setupMillis = setupMillis;
+        }
+
+        /**
+         * Returns the preparation time for a medium drink.
+         *
+         * @return the time in milliseconds
+         */
+        public int getBaseMillis() {
+            return baseMillis;
+        }
+
+        /**
+         * Returns the part of the preparation time done once for a whole batch of this drink.
+         *
+         * @return the time in milliseconds
+         */
+        public int getSetupMillis() {
+            return setupMillis;
+        }
+    }
+
+    /**
+     * Cup sizes, each scaling the preparation time.
+     */
+    public enum Size {
+        SMALL(0.8),
+        MEDIUM(1.0),
+        LARGE(1.3);
+
+        private final double prepFactor; // Multiplier applied to the drink's base preparation time
+
+        Size(double prepFactor) {
+            this.prepFactor = prepFactor;
+        }
+
+        /**
+         * Returns the multiplier applied to the drink's base preparation time.
+         *
+         * @return the multiplier
+         */
+        public double getPrepFactor() {
+            return prepFactor;
+        }
+    }
+
+    /**
+     * Priority classes, most urgent first. Mobile orders with a pickup time are HIGH.
+     */
+    public enum Priority {
+        HIGH,
+        NORMAL,
+        LOW
+    }
+
+    private final String customer; // Name of the customer who placed the order
+    private final int number; // The customer's order number
+    private final DrinkType drinkType; // What to make
+    private final Size size; // Cup size
+    private final Priority priority; // Priority class
+    private final int prepMillis; // Estimated preparation time
+    private final long placedNanos; // System.nanoTime() when the order was created
+
+    /**
+     * Constructs an order placed now.
+     *
+     * @param customer  the name of the customer
+     * @param number    the customer's order number
+     * @param drinkType what to make
+     * @param size      the cup size
+     * @param priority  the priority class
+     */
+    public Order(String customer, int number, DrinkType drinkType, Size size, Priority priority) {
+        this.customer = customer;
+        this.number = number;
+        this.drinkType = drinkType;
+        this.size = size;
+        this.priority = priority;
+        this.prepMillis = (int) Math.round(drinkType.getBaseMillis() * size.getPrepFactor());
+        this.placedNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns the name of the customer who placed the order.
+     *
+     * @return the customer name
+     */
+    public String getCustomer() {
+        return customer;
+    }
+
+    /**
+     * Returns the customer's order number.
+     *
+     * @return the order number
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Returns the drink to make.
+     *
+     * @return the drink type
+     */
+    public DrinkType getDrinkType() {
+        return drinkType;
+    }
+
+    /**
+     * Returns the cup size.
+     *
+     * @return the size
+     */
+    public Size getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the priority class.
+     *
+     * @return the priority
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Returns the estimated preparation time, from the drink type and size.
+     *
+     * @return the time in milliseconds
+     */
+    public int getPrepMillis() {
+        return prepMillis;
+    }
+
+    /**
+     * Returns when the order was created.
+     *
+     * @return the System.nanoTime() value at creation
+     */
+    public long getPlacedNanos() {
+        return placedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return customer + "'s order " + number + " (" + size.name().toLowerCase(Locale.ROOT) + " "
+                + drinkType.name().toLowerCase(Locale.ROOT) + ", " + priority + ")";
+    }
+}
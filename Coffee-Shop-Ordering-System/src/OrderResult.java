@@ -0,0 +1,10 @@
+/**
+ * Outcome of placing an order with CoffeeShop.
+ */
+public enum OrderResult {
+    ACCEPTED,    // The order was queued for a barista
+    QUEUE_FULL,  // No place freed up before the timeout (or at once, for tryPlaceOrder)
+    SHED,        // Admission control turned the order away: the expected wait is over the target
+    CLOSED,      // The shop is closed and takes no more orders
+    INTERRUPTED  // The customer was interrupted while waiting for a place
+}
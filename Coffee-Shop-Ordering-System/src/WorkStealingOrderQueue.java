@@ -0,0 +1,259 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Waiting orders spread over one lock-free deque per barista, in the style of ForkJoinPool work
+ * stealing. Customers drop each order on a random deque; a barista takes the oldest order from
+ * its own deque and, when that is empty, steals the newest order from another barista's, so
+ * owners and thieves work on opposite ends. No lock is taken while there is work; idle
+ * baristas park on a condition that customers only signal when someone is actually parked.
+ * Orders are served first come, first served within each deque; priorities are not applied.
+ */
+class WorkStealingOrderQueue {
+    // Per-barista deques
+    private final List<ConcurrentLinkedDeque<CoffeeShop.QueuedOrder>> deques;
+
+    // Free places in the shop; customers block on it when every place is taken
+    private final Semaphore places;
+
+    // Maximum number of waiting orders
+    private final int maxCapacity;
+
+    // Hands each barista thread its own deque, round robin
+    private final AtomicInteger nextDeque = new AtomicInteger();
+    private final ThreadLocal<Integer> ownDeque = ThreadLocal.withInitial(this::assignDeque);
+
+    // Customers between checking that the shop is open and queuing their order
+    private final AtomicInteger placing = new AtomicInteger();
+
+    // Baristas parked on notEmpty; read by customers to decide whether to signal
+    private final AtomicInteger idle = new AtomicInteger();
+
+    // Parking for idle baristas only; never taken while there is work
+    private final ReentrantLock idleLock = new ReentrantLock();
+    private final Condition notEmpty = idleLock.newCondition();
+
+    // Set by close(); no orders are accepted afterwards
+    private volatile boolean closed;
+
+    /**
+     * Constructs the queue.
+     *
+     * @param maxCapacity  the maximum number of waiting orders
+     * @param baristaCount the number of deques, one per barista
+     */
+    WorkStealingOrderQueue(int maxCapacity, int baristaCount) {
+        this.maxCapacity = maxCapacity;
+        this.places = new Semaphore(maxCapacity);
+        this.deques = new ArrayList<>(baristaCount);
+        for (int i = 0; i < baristaCount; i++) {
+            deques.add(new ConcurrentLinkedDeque<>());
+        }
+    }
+
+    /**
+     * Queues an order, waiting while the shop is full.
+     *
+     * @param queued       the order
+     * @param timeoutNanos the longest time to wait for a place, or -1 to wait indefinitely
+     * @return ACCEPTED, or why the order was not queued
+     */
+    OrderResult put(CoffeeShop.QueuedOrder queued, long timeoutNanos) {
+        placing.incrementAndGet();
+        try {
+            if (closed) {
+                return OrderResult.CLOSED;
+            }
+            if (timeoutNanos < 0) {
+                places.acquire();
+            } else if (!places.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                return OrderResult.QUEUE_FULL;
+            }
+            if (closed) {
+                places.release(); // Woken by close() rather than by a free place
+                return OrderResult.CLOSED;
+            }
+            deques.get(ThreadLocalRandom.current().nextInt(deques.size())).offerLast(queued);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Leave the interrupt for the caller to act on
+            return OrderResult.INTERRUPTED;
+        } finally {
+            // After close the last customer out must wake baristas waiting for it to finish
+            if (placing.decrementAndGet() == 0 && closed) {
+                wakeAll();
+            }
+        }
+        if (idle.get() > 0) {
+            wakeOne();
+        }
+        return OrderResult.ACCEPTED;
+    }
+
+    /**
+     * Takes the next order and up to maxBatch - 1 more for the same drink from the barista's own
+     * deque, stealing when it is empty and parking when every deque is.
+     *
+     * @param maxBatch the largest number of orders to take
+     * @return the orders, or an empty list once the queue is closed and drained
+     * @throws InterruptedException if the barista is interrupted while parked
+     */
+    List<CoffeeShop.QueuedOrder> take(int maxBatch) throws InterruptedException {
+        int own = ownDeque.get();
+        while (true) {
+            CoffeeShop.QueuedOrder first = poll(own);
+            if (first != null) {
+                List<CoffeeShop.QueuedOrder> batch = new ArrayList<>(Math.min(maxBatch, maxCapacity));
+                batch.add(first);
+                if (maxBatch > 1) {
+                    collectSameDrink(deques.get(own), first.order.getDrinkType(), maxBatch - 1, batch);
+                }
+                places.release(batch.size());
+                return batch;
+            }
+
+            idleLock.lockInterruptibly();
+            try {
+                idle.incrementAndGet();
+                try {
+                    // Check again after announcing we are idle: a customer that queued before
+                    // seeing the announcement is found here, and any later one will signal
+                    if (isEmpty()) {
+                        if (closed && placing.get() == 0 && isEmpty()) {
+                            return List.of(); // Closed and drained
+                        }
+                        notEmpty.await();
+                    }
+                } finally {
+                    idle.decrementAndGet();
+                }
+            } finally {
+                idleLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting orders and wakes every parked barista and waiting customer. Orders
+     * already queued are still taken.
+     */
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        places.release(Integer.MAX_VALUE / 2); // Let customers blocked on a place see the close
+        wakeAll();
+    }
+
+    /**
+     * Returns the number of waiting orders, from the places taken rather than by walking the deques.
+     *
+     * @return the number of orders, or 0 once closed
+     */
+    int size() {
+        return Math.max(0, maxCapacity - places.availablePermits());
+    }
+
+    /**
+     * Takes the oldest order from a barista's own deque, or steals the newest from another.
+     *
+     * @param own the barista's deque index
+     * @return the order, or null if every deque is empty
+     */
+    private CoffeeShop.QueuedOrder poll(int own) {
+        CoffeeShop.QueuedOrder queued = deques.get(own).pollFirst();
+        if (queued != null) {
+            return queued;
+        }
+        // Start at a random victim so thieves spread out
+        int count = deques.size();
+        int start = ThreadLocalRandom.current().nextInt(count);
+        for (int i = 0; i < count; i++) {
+            int victim = (start + i) % count;
+            if (victim != own) {
+                queued = deques.get(victim).pollLast();
+                if (queued != null) {
+                    return queued;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes orders for a drink from a deque, oldest first, and adds them to a batch.
+     *
+     * @param deque     the barista's own deque
+     * @param drinkType the drink to match
+     * @param count     the most orders to remove
+     * @param batch     the batch to add them to
+     */
+    private static void collectSameDrink(ConcurrentLinkedDeque<CoffeeShop.QueuedOrder> deque, Order.DrinkType drinkType,
+                                         int count, List<CoffeeShop.QueuedOrder> batch) {
+        Iterator<CoffeeShop.QueuedOrder> iterator = deque.iterator();
+        int added = 0;
+        while (added < count && iterator.hasNext()) {
+            CoffeeShop.QueuedOrder queued = iterator.next();
+            // removeFirstOccurrence fails if a thief took the order first
+            if (queued.order.getDrinkType() == drinkType && deque.removeFirstOccurrence(queued)) {
+                batch.add(queued);
+                added++;
+            }
+        }
+    }
+
+    /**
+     * Checks whether every deque is empty.
+     *
+     * @return true if no order is waiting
+     */
+    private boolean isEmpty() {
+        for (ConcurrentLinkedDeque<CoffeeShop.QueuedOrder> deque : deques) {
+            if (!deque.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Picks the deque for a barista thread that has not taken an order before.
+     *
+     * @return the deque index
+     */
+    private int assignDeque() {
+        return Math.floorMod(nextDeque.getAndIncrement(), deques.size());
+    }
+
+    /**
+     * Wakes one parked barista.
+     */
+    private void wakeOne() {
+        idleLock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    /**
+     * Wakes every parked barista.
+     */
+    private void wakeAll() {
+        idleLock.lock();
+        try {
+            notEmpty.signalAll();
+        } finally {
+            idleLock.unlock();
+        }
+    }
+}
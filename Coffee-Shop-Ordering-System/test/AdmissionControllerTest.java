@@ -0,0 +1,59 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControllerTest {
+    // Longest expected queue wait the tests admit orders into
+    private static final long TARGET_WAIT_MILLIS = 100;
+
+    // Physical queue size
+    private static final int CAPACITY = 1_000;
+
+    // Just over one measurement window
+    private static final long WINDOW_SLEEP_MILLIS = 110;
+
+    @Test
+    void beforeAnyMeasurementOnlyThePhysicalQueueLimitsAdmission() {
+        AdmissionController controller = new AdmissionController(TARGET_WAIT_MILLIS, CAPACITY);
+
+        assertEquals(CAPACITY, controller.getLimit());
+        assertTrue(controller.admit(CAPACITY - 1, Order.Priority.LOW));
+        assertFalse(controller.admit(CAPACITY, Order.Priority.NORMAL));
+        assertTrue(controller.admit(CAPACITY, Order.Priority.HIGH));
+    }
+
+    @Test
+    void slowDrainWithABacklogShedsNormalAndLowButNeverHigh() throws InterruptedException {
+        AdmissionController controller = new AdmissionController(TARGET_WAIT_MILLIS, CAPACITY);
+
+        // Baristas take 5 orders per window of at least 100 ms while 500 wait: at most 50 orders/s
+        for (int window = 0; window < 4; window++) {
+            Thread.sleep(WINDOW_SLEEP_MILLIS);
+            controller.recordTaken(5, 500);
+        }
+
+        // 50 orders/s drains at most 5 orders within the 100 ms target
+        int limit = controller.getLimit();
+        assertTrue(limit >= 1 && limit <= 5, "limit " + limit);
+        assertFalse(controller.admit(500, Order.Priority.NORMAL));
+        assertFalse(controller.admit(limit, Order.Priority.LOW));
+        assertTrue(controller.admit(500, Order.Priority.HIGH));
+        assertTrue(controller.admit(0, Order.Priority.LOW)); // The limit never closes the shop
+    }
+
+    @Test
+    void windowsWithoutABacklogDoNotChangeTheLimit() throws InterruptedException {
+        AdmissionController controller = new AdmissionController(TARGET_WAIT_MILLIS, CAPACITY);
+
+        // Few takes with an empty queue measure demand, not how fast the baristas could go
+        for (int window = 0; window < 3; window++) {
+            Thread.sleep(WINDOW_SLEEP_MILLIS);
+            controller.recordTaken(1, 0);
+        }
+
+        assertEquals(CAPACITY, controller.getLimit());
+        assertTrue(controller.admit(CAPACITY - 1, Order.Priority.LOW));
+    }
+}
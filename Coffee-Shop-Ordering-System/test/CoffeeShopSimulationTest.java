@@ -0,0 +1,45 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import util.LogConfig;
+import util.LoggerUtil;
+
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoffeeShopSimulationTest {
+    // A short day keeps each run quick
+    private static final CoffeeShopSimulation.Scenario SCENARIO = CoffeeShopSimulation.Scenario.defaults().withOpenHours(1);
+
+    @BeforeAll
+    static void quietLogs() {
+        LoggerUtil.configure(LogConfig.forFile(null).withLevel(Level.SEVERE).withConsole(false));
+    }
+
+    @Test
+    void theSameSeedGivesTheSameDay() {
+        CoffeeShopSimulation.Report first = new CoffeeShopSimulation(SCENARIO, 7).run();
+        CoffeeShopSimulation.Report second = new CoffeeShopSimulation(SCENARIO, 7).run();
+
+        assertEquals(first.getCustomers(), second.getCustomers());
+        assertEquals(first.getEvents(), second.getEvents());
+        assertEquals(first.getSimulatedNanos(), second.getSimulatedNanos());
+        for (OrderResult result : OrderResult.values()) {
+            assertEquals(first.getOrders(result), second.getOrders(result), result.name());
+        }
+        assertEquals(first.getQueueTime().getValueAtPercentile(99), second.getQueueTime().getValueAtPercentile(99));
+    }
+
+    @Test
+    void everyAcceptedOrderIsMadeBeforeTheDayEnds() {
+        CoffeeShopSimulation.Report report = new CoffeeShopSimulation(SCENARIO, 11).run();
+
+        assertTrue(report.getCustomers() > 0);
+        assertEquals(report.getOrders(OrderResult.ACCEPTED), report.getServed());
+        assertEquals(report.getServed(), report.getQueueTime().getCount());
+        // The baristas finish the queue after closing, so the day runs at least the opening hours
+        assertTrue(report.getSimulatedNanos() >= 3_600_000_000_000L, "day ended at " + report.getSimulatedNanos());
+        assertTrue(report.getUtilization() > 0 && report.getUtilization() <= 1, "utilization " + report.getUtilization());
+    }
+}
@@ -0,0 +1,100 @@
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkStealingOrderQueueTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Test
+    void ordersQueuedBeforeCloseAreAllTakenThenBaristasStop() {
+        WorkStealingOrderQueue queue = new WorkStealingOrderQueue(100, 3);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(OrderResult.ACCEPTED, queue.put(order(i), -1));
+        }
+        queue.close();
+        assertEquals(OrderResult.CLOSED, queue.put(order(50), -1));
+
+        // One barista per deque; each steals from the others once its own deque is empty
+        AtomicInteger taken = new AtomicInteger();
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            List<Thread> baristas = new ArrayList<>();
+            for (int b = 0; b < 3; b++) {
+                Thread barista = new Thread(() -> {
+                    try {
+                        List<CoffeeShop.QueuedOrder> batch;
+                        while (!(batch = queue.take(4)).isEmpty()) {
+                            taken.addAndGet(batch.size());
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                barista.start();
+                baristas.add(barista);
+            }
+            for (Thread barista : baristas) {
+                barista.join();
+            }
+        });
+        assertEquals(50, taken.get());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void closeWakesAParkedBaristaWithAnEmptyBatch() throws InterruptedException {
+        WorkStealingOrderQueue queue = new WorkStealingOrderQueue(10, 2);
+        AtomicReference<List<CoffeeShop.QueuedOrder>> batch = new AtomicReference<>();
+        Thread barista = new Thread(() -> {
+            try {
+                batch.set(queue.take(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        barista.start();
+        awaitParked(barista);
+
+        queue.close();
+
+        assertTimeoutPreemptively(TIMEOUT, () -> barista.join());
+        assertTrue(batch.get().isEmpty());
+    }
+
+    @Test
+    void closeTurnsAwayACustomerWaitingForAPlace() throws InterruptedException {
+        WorkStealingOrderQueue queue = new WorkStealingOrderQueue(1, 1);
+        assertEquals(OrderResult.ACCEPTED, queue.put(order(0), -1));
+        AtomicReference<OrderResult> result = new AtomicReference<>();
+        Thread customer = new Thread(() -> result.set(queue.put(order(1), -1)));
+        customer.start();
+        awaitParked(customer);
+
+        queue.close();
+
+        assertTimeoutPreemptively(TIMEOUT, () -> customer.join());
+        assertEquals(OrderResult.CLOSED, result.get());
+        // The order queued before the close is still served
+        assertEquals(1, queue.take(1).size());
+        assertTrue(queue.take(1).isEmpty());
+    }
+
+    private static CoffeeShop.QueuedOrder order(int number) {
+        Order order = new Order("customer " + number, number, Order.DrinkType.values()[number % Order.DrinkType.values().length],
+                Order.Size.MEDIUM, Order.Priority.NORMAL);
+        return new CoffeeShop.QueuedOrder(order, System.nanoTime(), number, number);
+    }
+
+    private static void awaitParked(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+    }
+}
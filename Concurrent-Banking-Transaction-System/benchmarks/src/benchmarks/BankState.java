@@ -0,0 +1,65 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import util.AsyncLogWriter;
+import util.LogConfig;
+import util.LoggerUtil;
+
+/**
+ * A transaction system shared by all benchmark threads, together with the Zipf sampler that
+ * decides which accounts each operation touches.
+ * The system is rebuilt for every iteration so the history store does not grow without bound
+ * across a long run.
+ */
+@State(Scope.Benchmark)
+public class BankState {
+    // Opening balance; large enough that skewed traffic never drains an account during a run
+    static final double INITIAL_BALANCE = 1_000_000_000.0;
+
+    // Ring buffer size used when logging=async
+    private static final int ASYNC_LOG_CAPACITY = 8192;
+
+    @Param({"16", "1024", "65536"})
+    public int accountCount; // Number of accounts in the system
+
+    @Param({"0", "0.99", "1.5"})
+    public double zipfExponent; // Hot-account skew; 0 is uniform
+
+    @Param({"bank", "atomic"})
+    public String accountType; // BankAccount or AtomicBankAccount
+
+    @Param({"off"})
+    public String logging; // LoggerUtil mode during the run: off, sync or async
+
+    BankingBridge system; // The system under test
+    ZipfSampler sampler; // Picks account IDs
+
+    /**
+     * Configures logging and builds the account sampler once per trial.
+     */
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        if (accountCount < 2) {
+            throw new IllegalArgumentException("Transfers need at least two accounts.");
+        }
+        LogConfig config = LogConfig.forFile("banking_transaction.log")
+                .withLevel(logging.equals("off") ? java.util.logging.Level.OFF : java.util.logging.Level.ALL);
+        if (logging.equals("async")) {
+            config = config.withAsync(ASYNC_LOG_CAPACITY, AsyncLogWriter.OverflowPolicy.BLOCK);
+        }
+        LoggerUtil.configure(config);
+        sampler = new ZipfSampler(accountCount, zipfExponent);
+    }
+
+    /**
+     * Builds a fresh transaction system for each iteration.
+     */
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        system = new BankingBridge(accountType, accountCount, INITIAL_BALANCE);
+    }
+}
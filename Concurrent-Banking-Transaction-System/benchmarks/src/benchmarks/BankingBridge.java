@@ -0,0 +1,174 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gives the benchmarks access to the banking system, whose classes live in the default package.
+ * JMH refuses benchmark classes in the default package, and named packages cannot import from it,
+ * so every call goes through a MethodHandle looked up once by class name. The handles are held in
+ * static final fields, which the JIT treats as constants and inlines, so the indirection does not
+ * show up in the measurements.
+ */
+public final class BankingBridge {
+    private static final MethodHandle NEW_BANK_ACCOUNT; // new BankAccount(int, double)
+    private static final MethodHandle NEW_ATOMIC_ACCOUNT; // new AtomicBankAccount(int, double)
+    private static final MethodHandle NEW_SYSTEM; // new TransactionSystem(List)
+    private static final MethodHandle TRANSFER; // TransactionSystem.transfer(int, int, double)
+    private static final MethodHandle REVERSE; // TransactionSystem.reverseTransaction(int, int, double)
+    private static final MethodHandle HISTORY_PAGE; // TransactionSystem.getTransactionHistory(int, long, int)
+    private static final MethodHandle NEXT_CURSOR; // HistoryPage.getNextCursor()
+    private static final MethodHandle GET_BALANCE; // Account.getBalance()
+
+    // Cursor value that asks for the newest page of history
+    public static final long NEWEST = -1L;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> account = Class.forName("Account");
+            Class<?> system = Class.forName("TransactionSystem");
+            Class<?> page = Class.forName("HistoryPage");
+            MethodType accountConstructor = MethodType.methodType(void.class, int.class, double.class);
+
+            NEW_BANK_ACCOUNT = lookup.findConstructor(Class.forName("BankAccount"), accountConstructor)
+                    .asType(MethodType.methodType(Object.class, int.class, double.class));
+            NEW_ATOMIC_ACCOUNT = lookup.findConstructor(Class.forName("AtomicBankAccount"), accountConstructor)
+                    .asType(MethodType.methodType(Object.class, int.class, double.class));
+            NEW_SYSTEM = lookup.findConstructor(system, MethodType.methodType(void.class, List.class))
+                    .asType(MethodType.methodType(Object.class, List.class));
+            TRANSFER = lookup.findVirtual(system, "transfer", MethodType.methodType(boolean.class, int.class, int.class, double.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class, int.class, int.class, double.class));
+            REVERSE = lookup.findVirtual(system, "reverseTransaction", MethodType.methodType(void.class, int.class, int.class, double.class))
+                    .asType(MethodType.methodType(void.class, Object.class, int.class, int.class, double.class));
+            HISTORY_PAGE = lookup.findVirtual(system, "getTransactionHistory", MethodType.methodType(page, int.class, long.class, int.class))
+                    .asType(MethodType.methodType(Object.class, Object.class, int.class, long.class, int.class));
+            NEXT_CURSOR = lookup.findVirtual(page, "getNextCursor", MethodType.methodType(long.class))
+                    .asType(MethodType.methodType(long.class, Object.class));
+            GET_BALANCE = lookup.findVirtual(account, "getBalance", MethodType.methodType(double.class))
+                    .asType(MethodType.methodType(double.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object system; // The TransactionSystem under test
+    private final Object[] accounts; // Accounts by index; account IDs are index + 1
+
+    /**
+     * Builds a transaction system with the given number of accounts.
+     *
+     * @param accountType    "bank" for BankAccount or "atomic" for AtomicBankAccount
+     * @param accountCount   the number of accounts, with IDs 1 to accountCount
+     * @param initialBalance the opening balance of every account
+     */
+    public BankingBridge(String accountType, int accountCount, double initialBalance) {
+        this.accounts = new Object[accountCount];
+        List<Object> accountList = new ArrayList<>(accountCount);
+        try {
+            for (int i = 0; i < accountCount; i++) {
+                accounts[i] = accountType.equals("atomic")
+                        ? (Object) NEW_ATOMIC_ACCOUNT.invokeExact(i + 1, initialBalance)
+                        : (Object) NEW_BANK_ACCOUNT.invokeExact(i + 1, initialBalance);
+                accountList.add(accounts[i]);
+            }
+            this.system = (Object) NEW_SYSTEM.invokeExact(accountList);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to build the transaction system", t);
+        }
+    }
+
+    /**
+     * Calls TransactionSystem.transfer.
+     *
+     * @param fromAccountId the ID of the account to transfer from
+     * @param toAccountId   the ID of the account to transfer to
+     * @param amount        the amount to transfer
+     * @return true if the transfer succeeded
+     */
+    public boolean transfer(int fromAccountId, int toAccountId, double amount) {
+        try {
+            return (boolean) TRANSFER.invokeExact(system, fromAccountId, toAccountId, amount);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Calls TransactionSystem.reverseTransaction.
+     *
+     * @param fromAccountId the source account of the transfer being reversed
+     * @param toAccountId   the destination account of the transfer being reversed
+     * @param amount        the amount to move back
+     */
+    public void reverseTransaction(int fromAccountId, int toAccountId, double amount) {
+        try {
+            REVERSE.invokeExact(system, fromAccountId, toAccountId, amount);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Calls TransactionSystem.getTransactionHistory for one page.
+     *
+     * @param accountId the account ID
+     * @param cursor    the cursor of the previous page, or NEWEST
+     * @param limit     the maximum number of entries
+     * @return the HistoryPage
+     */
+    public Object historyPage(int accountId, long cursor, int limit) {
+        try {
+            return (Object) HISTORY_PAGE.invokeExact(system, accountId, cursor, limit);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Returns the cursor of the page after the given one.
+     *
+     * @param page a HistoryPage returned by historyPage
+     * @return the next cursor, or NEWEST when there are no more entries
+     */
+    public long nextCursor(Object page) {
+        try {
+            return (long) NEXT_CURSOR.invokeExact(page);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Calls Account.getBalance on the account with the given ID.
+     *
+     * @param accountId the account ID
+     * @return the balance
+     */
+    public double getBalance(int accountId) {
+        try {
+            return (double) GET_BALANCE.invokeExact(accounts[accountId - 1]);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Wraps a checked throwable from a MethodHandle call; unchecked ones are rethrown as they are.
+     *
+     * @param t the throwable
+     * @return never returns normally
+     */
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,33 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the banking benchmarks once per thread count and writes one JSON result file per run,
+ * named jmh-&lt;threads&gt;t.json, so a change can be compared against a saved baseline.
+ *
+ * <p>Usage: BenchmarkRunner [threadCounts] [includeRegex], e.g. {@code BenchmarkRunner 1,4,16 Transfer}.
+ * Parameters can be narrowed further with the standard JMH command line instead
+ * (org.openjdk.jmh.Main -t 8 -p zipfExponent=0.99 TransferBenchmark).</p>
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        String threadCounts = args.length > 0 ? args[0] : "1,4,16";
+        String include = args.length > 1 ? args[1] : "benchmarks\\..*Benchmark";
+
+        for (String threadCount : threadCounts.split(",")) {
+            int threads = Integer.parseInt(threadCount.trim());
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-" + threads + "t.json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
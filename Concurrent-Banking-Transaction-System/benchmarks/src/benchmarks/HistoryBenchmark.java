@@ -0,0 +1,99 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.LoggerUtil;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks history retrieval against a system preloaded with a fixed number of transfers.
+ * Reads are spread over the accounts with the same Zipf skew the history was written with,
+ * so hot accounts have long histories and are also read most often.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-XX:MaxDirectMemorySize=8g"})
+public class HistoryBenchmark {
+
+    /**
+     * A system whose history is filled once per trial.
+     */
+    @State(Scope.Benchmark)
+    public static class History {
+        @Param({"1024"})
+        public int accountCount; // Number of accounts in the system
+
+        @Param({"0", "0.99"})
+        public double zipfExponent; // Skew of both the preloaded transfers and the reads
+
+        @Param({"1000000"})
+        public int historyDepth; // Number of transfers recorded before measuring
+
+        @Param({"20", "100"})
+        public int pageSize; // Entries per page
+
+        BankingBridge system; // The system under test
+        ZipfSampler sampler; // Picks account IDs
+
+        /**
+         * Builds the system and records historyDepth transfers.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            LoggerUtil.setLevel(java.util.logging.Level.OFF);
+            sampler = new ZipfSampler(accountCount, zipfExponent);
+            system = new BankingBridge("bank", accountCount, BankState.INITIAL_BALANCE);
+            SplittableRandom random = new SplittableRandom(7);
+            for (int i = 0; i < historyDepth; i++) {
+                int from = sampler.next(random);
+                system.transfer(from, sampler.nextOther(random, from), 1 + random.nextInt(1000));
+            }
+        }
+    }
+
+    /**
+     * Reads the newest page of an account's history.
+     *
+     * @param history the preloaded system
+     * @param thread  the calling thread's random source
+     * @return the page
+     */
+    @Benchmark
+    public Object newestPage(History history, ThreadState thread) {
+        return history.system.historyPage(history.sampler.next(thread.random), BankingBridge.NEWEST, history.pageSize);
+    }
+
+    /**
+     * Reads the first ten pages of an account's history, following the cursor from page to page.
+     *
+     * @param history the preloaded system
+     * @param thread  the calling thread's random source
+     * @return the cursor after the last page read
+     */
+    @Benchmark
+    public long tenPages(History history, ThreadState thread) {
+        int accountId = history.sampler.next(thread.random);
+        long cursor = BankingBridge.NEWEST;
+        for (int i = 0; i < 10; i++) {
+            cursor = history.system.nextCursor(history.system.historyPage(accountId, cursor, history.pageSize));
+            if (cursor == BankingBridge.NEWEST) {
+                break; // Reached the oldest entry
+            }
+        }
+        return cursor;
+    }
+}
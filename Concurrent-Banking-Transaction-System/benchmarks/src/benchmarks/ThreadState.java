@@ -0,0 +1,18 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-thread random source, so drawing account IDs does not contend between benchmark threads.
+ * Seeds are handed out in sequence, making the account sequences repeatable from run to run.
+ */
+@State(Scope.Thread)
+public class ThreadState {
+    private static final AtomicLong SEEDS = new AtomicLong(42); // Next seed to hand out
+
+    final SplittableRandom random = new SplittableRandom(SEEDS.getAndIncrement()); // This thread's random source
+}
@@ -0,0 +1,95 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the write path (transfer, reverseTransaction), the balance read and a read/write mix.
+ * Each benchmark reports throughput and sampled latency, including the p50 to p99.99 percentiles.
+ * Thread count is set per run, see BenchmarkRunner.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-XX:MaxDirectMemorySize=8g"})
+public class TransferBenchmark {
+    // Amount moved by every operation
+    private static final double AMOUNT = 1.0;
+
+    /**
+     * Share of reads in the mixed benchmark.
+     */
+    @State(Scope.Benchmark)
+    public static class ReadMix {
+        @Param({"50", "90", "99"})
+        public int readPercent; // Percentage of operations that are balance reads
+    }
+
+    /**
+     * Transfers between two accounts drawn from the Zipf distribution.
+     *
+     * @param bank   the shared system
+     * @param thread the calling thread's random source
+     * @return whether the transfer succeeded
+     */
+    @Benchmark
+    public boolean transfer(BankState bank, ThreadState thread) {
+        int from = bank.sampler.next(thread.random);
+        int to = bank.sampler.nextOther(thread.random, from);
+        return bank.system.transfer(from, to, AMOUNT);
+    }
+
+    /**
+     * Reverses a transfer between two accounts drawn from the Zipf distribution.
+     *
+     * @param bank   the shared system
+     * @param thread the calling thread's random source
+     */
+    @Benchmark
+    public void reverseTransaction(BankState bank, ThreadState thread) {
+        int from = bank.sampler.next(thread.random);
+        int to = bank.sampler.nextOther(thread.random, from);
+        bank.system.reverseTransaction(from, to, AMOUNT);
+    }
+
+    /**
+     * Reads the balance of an account drawn from the Zipf distribution.
+     *
+     * @param bank   the shared system
+     * @param thread the calling thread's random source
+     * @return the balance
+     */
+    @Benchmark
+    public double getBalance(BankState bank, ThreadState thread) {
+        return bank.system.getBalance(bank.sampler.next(thread.random));
+    }
+
+    /**
+     * Performs a balance read or a transfer, in the proportion given by readPercent.
+     *
+     * @param bank   the shared system
+     * @param mix    the read share
+     * @param thread the calling thread's random source
+     * @return the balance read, or 1 or 0 for a successful or failed transfer
+     */
+    @Benchmark
+    public double mixed(BankState bank, ReadMix mix, ThreadState thread) {
+        int from = bank.sampler.next(thread.random);
+        if (thread.random.nextInt(100) < mix.readPercent) {
+            return bank.system.getBalance(from);
+        }
+        int to = bank.sampler.nextOther(thread.random, from);
+        return bank.system.transfer(from, to, AMOUNT) ? 1 : 0;
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Draws account IDs with a Zipf distribution, so a few hot accounts take most of the traffic.
+ * Rank 1 is the hottest account and is drawn with probability proportional to 1, rank k with
+ * probability proportional to 1 / k^exponent. An exponent of 0 gives a uniform distribution.
+ * The cumulative distribution is computed once; sampling is a binary search over it.
+ */
+public final class ZipfSampler {
+    private final double[] cumulative; // cumulative[k] = P(rank <= k + 1)
+
+    /**
+     * Constructs a sampler over account IDs 1 to count.
+     *
+     * @param count    the number of accounts
+     * @param exponent the skew; 0 for uniform, around 1 for typical hot-account skew
+     */
+    public ZipfSampler(int count, double exponent) {
+        if (count <= 0 || exponent < 0) {
+            throw new IllegalArgumentException("Count must be positive and exponent non-negative.");
+        }
+        this.cumulative = new double[count];
+        double total = 0;
+        for (int k = 0; k < count; k++) {
+            total += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = total;
+        }
+        for (int k = 0; k < count; k++) {
+            cumulative[k] /= total;
+        }
+        cumulative[count - 1] = 1.0; // Guard against rounding leaving the last bucket short of 1
+    }
+
+    /**
+     * Draws one account ID.
+     *
+     * @param random the calling thread's random source
+     * @return an account ID between 1 and count
+     */
+    public int next(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        // binarySearch returns -(insertion point) - 1 when the value is not an exact match
+        return (index >= 0 ? index : -index - 1) + 1;
+    }
+
+    /**
+     * Draws an account ID different from the given one.
+     *
+     * @param random  the calling thread's random source
+     * @param exclude the ID to avoid
+     * @return an account ID between 1 and count, other than exclude
+     */
+    public int nextOther(SplittableRandom random, int exclude) {
+        int id;
+        do {
+            id = next(random);
+        } while (id == exclude);
+        return id;
+    }
+}
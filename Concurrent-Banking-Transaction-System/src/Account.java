@@ -0,0 +1,100 @@
+/**
+ * Common contract for bank accounts managed by the TransactionSystem.
+ * Implementations decide how the balance is stored and protected, but all of them
+ * expose an exclusive lock so the TransactionSystem can fall back to the ordered
+ * two-lock transfer protocol.
+ */
+public interface Account {
+
+    /**
+     * Returns the unique ID of the account.
+     *
+     * @return the account ID
+     */
+    int getId();
+
+    /**
+     * Returns the current balance of the account.
+     *
+     * @return the current balance
+     */
+    double getBalance();
+
+    /**
+     * Deposits the specified amount into the account.
+     *
+     * @param amount the amount to deposit
+     */
+    void deposit(double amount);
+
+    /**
+     * Withdraws the specified amount from the account without checking the balance.
+     *
+     * @param amount the amount to withdraw
+     */
+    void withdraw(double amount);
+
+    /**
+     * Withdraws the specified amount only if the balance covers it.
+     * The check and the withdrawal happen as one atomic step.
+     *
+     * @param amount the amount to withdraw
+     * @return true if the amount was withdrawn, false if the balance was insufficient
+     */
+    boolean tryWithdraw(double amount);
+
+    /**
+     * Locks the account for exclusive write access.
+     */
+    void lock();
+
+    /**
+     * Unlocks the account after exclusive write access.
+     */
+    void unlock();
+
+    /**
+     * Returns whether the account's exclusive lock is currently held by any thread.
+     *
+     * @return true if the account is locked
+     */
+    boolean isLocked();
+
+    /**
+     * Returns whether the account currently accepts deposits without its lock being held.
+     * When true, a transfer into this account only needs to lock the source account.
+     *
+     * @return true if deposits may bypass the account lock
+     */
+    default boolean acceptsUnlockedDeposits() {
+        return false;
+    }
+
+    /**
+     * Deposits the specified amount without taking the account's lock, if the account accepts
+     * unlocked deposits. Never waits for the lock, so it may be called while holding another
+     * account's lock without breaking the lock order.
+     *
+     * @param amount the amount to deposit
+     * @return true if the amount was deposited, false if it must be deposited under the lock instead
+     */
+    default boolean tryDepositUnlocked(double amount) {
+        return false;
+    }
+
+    /**
+     * Returns the sequence number of the last journal record applied to this account.
+     * Only meaningful while the caller holds the account's lock.
+     *
+     * @return the journal sequence, or 0 if no journaled change has been applied
+     */
+    long getJournalSequence();
+
+    /**
+     * Records the sequence number of the journal record just applied to this account.
+     * Must be called with the account's lock held.
+     *
+     * @param sequence the journal sequence number
+     */
+    void setJournalSequence(long sequence);
+}
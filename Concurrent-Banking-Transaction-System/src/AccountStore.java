@@ -0,0 +1,177 @@
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Sharded store of bank accounts keyed by account ID.
+ * Each shard owns a primitive int-keyed map and its own lock stripe, so accounts can be
+ * opened and closed concurrently with lookups from running transfers. Lookups use the
+ * stripe's optimistic read mode and only take the read lock if a writer got in the way.
+ */
+public class AccountStore {
+    private final Shard[] shards; // The shards, indexed by the mixed account ID
+    private final int shardMask; // Mask used to pick a shard, shard count is a power of two
+
+    /**
+     * A single shard: one map guarded by one lock stripe.
+     */
+    private static final class Shard {
+        final IntAccountMap accounts; // Accounts that hash to this shard
+        final StampedLock lock = new StampedLock(); // Lock stripe guarding the map
+
+        Shard(int expectedSize) {
+            this.accounts = new IntAccountMap(expectedSize);
+        }
+    }
+
+    /**
+     * Constructs an empty store.
+     *
+     * @param shardCount       the number of shards, rounded up to a power of two
+     * @param expectedAccounts the total number of accounts expected, used to presize the shards
+     */
+    public AccountStore(int shardCount, int expectedAccounts) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        int count = 1;
+        while (count < shardCount) {
+            count <<= 1;
+        }
+        this.shards = new Shard[count];
+        this.shardMask = count - 1;
+        int perShard = Math.max(expectedAccounts / count, 1);
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(perShard);
+        }
+    }
+
+    /**
+     * Returns the account with the given ID.
+     *
+     * @param id the account ID
+     * @return the account, or null if it does not exist or has been closed
+     */
+    public Account get(int id) {
+        Shard shard = shardFor(id);
+        long stamp = shard.lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            Account account = IntAccountMap.get(shard.accounts.table(), id);
+            if (shard.lock.validate(stamp)) {
+                return account;
+            }
+        }
+
+        // A writer changed the shard while we were reading; retry under the read lock
+        stamp = shard.lock.readLock();
+        try {
+            return shard.accounts.get(id);
+        } finally {
+            shard.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Adds an account to the store.
+     *
+     * @param account the account to add
+     * @return true if the account was added, false if an account with the same ID already exists
+     */
+    public boolean open(Account account) {
+        Shard shard = shardFor(account.getId());
+        long stamp = shard.lock.writeLock();
+        try {
+            return shard.accounts.putIfAbsent(account);
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes an account from the store.
+     *
+     * @param id the account ID
+     * @return the removed account, or null if it did not exist
+     */
+    public Account close(int id) {
+        Shard shard = shardFor(id);
+        long stamp = shard.lock.writeLock();
+        try {
+            return shard.accounts.remove(id);
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the number of accounts in the store.
+     * Shards are counted one at a time, so the result is approximate while accounts are being opened or closed.
+     *
+     * @return the number of accounts
+     */
+    public int size() {
+        int total = 0;
+        for (Shard shard : shards) {
+            long stamp = shard.lock.readLock();
+            try {
+                total += shard.accounts.size();
+            } finally {
+                shard.lock.unlockRead(stamp);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Passes every account to the given action. Each shard is copied under its read lock and the
+     * action runs after the lock is released, so the action may lock accounts without deadlocking
+     * against a concurrent close (which holds an account lock while it takes the shard lock).
+     *
+     * @param action the action to run for each account
+     */
+    public void forEach(Consumer<? super Account> action) {
+        for (int i = 0; i < shards.length; i++) {
+            for (Account account : accountsInShard(i)) {
+                action.accept(account);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of shards in the store.
+     *
+     * @return the shard count
+     */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns a copy of the accounts held by one shard.
+     *
+     * @param index the shard index, from 0 to shardCount() - 1
+     * @return the shard's accounts at the time of the call
+     */
+    public Account[] accountsInShard(int index) {
+        Shard shard = shards[index];
+        long stamp = shard.lock.readLock();
+        try {
+            Account[] copy = new Account[shard.accounts.size()];
+            int[] next = {0};
+            shard.accounts.forEach(account -> copy[next[0]++] = account);
+            return copy;
+        } finally {
+            shard.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the shard responsible for the given account ID.
+     *
+     * @param id the account ID
+     * @return the shard
+     */
+    private Shard shardFor(int id) {
+        // Use the high bits of the mixed hash so shard choice is independent of the slot inside the shard
+        return shards[(IntAccountMap.mix(id) >>> 16) & shardMask];
+    }
+}
@@ -0,0 +1,189 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bank account that stores its balance as fixed-point long cents and updates it
+ * with compare-and-set instead of taking a lock.
+ * Reads, deposits and conditional withdrawals never block; the exclusive lock is only
+ * used by the TransactionSystem when it falls back to the ordered two-lock protocol.
+ * Amounts must be a whole number of cents; anything finer is rejected rather than rounded, so an
+ * operation never reports success for money it did not move.
+ */
+public class AtomicBankAccount implements Account {
+    // VarHandle used to update the balance field with compare-and-set
+    private static final VarHandle BALANCE;
+
+    static {
+        try {
+            BALANCE = MethodHandles.lookup().findVarHandle(AtomicBankAccount.class, "balanceCents", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int id; // Unique identifier for the bank account
+    private volatile long balanceCents; // Current balance of the account in cents
+    private final ReentrantLock lock = new ReentrantLock(); // Non-fair lock used only for the fallback transfer protocol
+    private long journalSequence; // Last journal record applied to this account, guarded by the lock
+
+    /**
+     * Constructs a new AtomicBankAccount with the specified ID and initial balance.
+     *
+     * @param id      the unique identifier for the account
+     * @param balance the initial balance of the account
+     */
+    public AtomicBankAccount(int id, double balance) {
+        this.id = id;
+        this.balanceCents = Money.toCents(balance);
+    }
+
+    /**
+     * Returns the unique ID of the account.
+     *
+     * @return the account ID
+     */
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the current balance of the account.
+     * This method is a single volatile read and never blocks.
+     *
+     * @return the current balance
+     */
+    @Override
+    public double getBalance() {
+        return Money.fromCents(balanceCents);
+    }
+
+    /**
+     * Returns the current balance of the account in cents.
+     *
+     * @return the current balance in cents
+     */
+    public long getBalanceCents() {
+        return balanceCents;
+    }
+
+    /**
+     * Deposits the specified amount into the account.
+     *
+     * @param amount the amount to deposit
+     * @throws IllegalArgumentException if the amount is not a whole number of cents
+     */
+    @Override
+    public void deposit(double amount) {
+        depositCents(Money.toExactCents(amount));
+    }
+
+    /**
+     * Deposits the specified number of cents into the account using an atomic add.
+     *
+     * @param cents the amount to deposit in cents
+     */
+    public void depositCents(long cents) {
+        BALANCE.getAndAdd(this, cents);
+    }
+
+    /**
+     * Withdraws the specified amount from the account without checking the balance.
+     *
+     * @param amount the amount to withdraw
+     * @throws IllegalArgumentException if the amount is not a whole number of cents
+     */
+    @Override
+    public void withdraw(double amount) {
+        BALANCE.getAndAdd(this, -Money.toExactCents(amount));
+    }
+
+    /**
+     * Withdraws the specified amount only if the balance covers it.
+     *
+     * @param amount the amount to withdraw
+     * @return true if the amount was withdrawn, false if the balance was insufficient
+     * @throws IllegalArgumentException if the amount is not a whole number of cents
+     */
+    @Override
+    public boolean tryWithdraw(double amount) {
+        return tryWithdrawCents(Money.toExactCents(amount));
+    }
+
+    /**
+     * Withdraws the specified number of cents only if the balance covers them, using compare-and-set.
+     *
+     * @param cents the amount to withdraw in cents
+     * @return true if the amount was withdrawn, false if the balance was insufficient
+     */
+    public boolean tryWithdrawCents(long cents) {
+        while (true) {
+            long current = balanceCents;
+            if (current < cents) {
+                return false;
+            }
+            if (compareAndSetBalance(current, current - cents)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Atomically replaces the balance if it still holds the expected value.
+     * Used by the TransactionSystem's optimistic transfer path so it can count failed attempts.
+     *
+     * @param expectedCents the balance the caller observed
+     * @param newCents      the balance to store
+     * @return true if the balance was updated, false if another thread changed it first
+     */
+    public boolean compareAndSetBalance(long expectedCents, long newCents) {
+        return BALANCE.compareAndSet(this, expectedCents, newCents);
+    }
+
+    /**
+     * Locks the account for exclusive access by the fallback transfer protocol.
+     */
+    @Override
+    public void lock() {
+        lock.lock();
+    }
+
+    /**
+     * Unlocks the account after exclusive access.
+     */
+    @Override
+    public void unlock() {
+        lock.unlock();
+    }
+
+    /**
+     * Returns whether the account's lock is currently held by any thread.
+     *
+     * @return true if the account is locked
+     */
+    @Override
+    public boolean isLocked() {
+        return lock.isLocked();
+    }
+
+    /**
+     * Returns the sequence number of the last journal record applied to this account.
+     *
+     * @return the journal sequence, or 0 if no journaled change has been applied
+     */
+    @Override
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+
+    /**
+     * Records the sequence number of the journal record just applied to this account.
+     *
+     * @param sequence the journal sequence number
+     */
+    @Override
+    public void setJournalSequence(long sequence) {
+        this.journalSequence = sequence;
+    }
+}
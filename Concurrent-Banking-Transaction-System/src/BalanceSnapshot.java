@@ -0,0 +1,236 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Point-in-time snapshot of account balances in a compact binary columnar file.
+ *
+ * <p>File layout: magic (4), version (4), journal sequence (8), account count (4), padding (4),
+ * then three columns of {@code count} entries each: account IDs (int), balances in cents (long)
+ * and the journal sequence last applied to each account (long). Columns are read straight out of
+ * a memory mapping on restart.</p>
+ */
+public class BalanceSnapshot {
+    // Identifies a snapshot file ("SNAP")
+    private static final int MAGIC = 0x534E4150;
+
+    // Current file format version
+    private static final int VERSION = 1;
+
+    // Size of the fixed header in bytes
+    private static final int HEADER_SIZE = 24;
+
+    // Number of accounts written per buffer flush
+    private static final int WRITE_CHUNK = 64 * 1024;
+
+    // File name prefix and suffix for snapshot files
+    private static final String FILE_PREFIX = "snapshot-";
+    private static final String FILE_SUFFIX = ".snap";
+
+    /**
+     * Creates account objects from snapshot rows during a restart.
+     */
+    public interface AccountFactory {
+        /**
+         * Creates an account.
+         *
+         * @param id           the account ID
+         * @param balanceCents the balance in cents
+         * @return the new account
+         */
+        Account create(int id, long balanceCents);
+    }
+
+    private final long journalSequence; // Every journal record up to this sequence is reflected in the snapshot
+    private final List<Account> accounts; // Accounts rebuilt from the snapshot
+
+    /**
+     * Constructs a loaded snapshot.
+     *
+     * @param journalSequence the journal sequence the snapshot was taken at
+     * @param accounts        the accounts rebuilt from the snapshot
+     */
+    private BalanceSnapshot(long journalSequence, List<Account> accounts) {
+        this.journalSequence = journalSequence;
+        this.accounts = accounts;
+    }
+
+    /**
+     * Returns the journal sequence the snapshot was taken at.
+     * Records after it may still need to be applied to individual accounts.
+     *
+     * @return the journal sequence
+     */
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+
+    /**
+     * Returns the accounts rebuilt from the snapshot, each carrying the journal sequence it had reached.
+     *
+     * @return the accounts
+     */
+    public List<Account> getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * Writes a snapshot file. The columns are first written to a temporary file which is then
+     * atomically renamed, so a crash never leaves a half-written snapshot behind.
+     *
+     * @param directory       the directory that holds snapshot files
+     * @param journalSequence the journal sequence the snapshot was taken at
+     * @param ids             the account IDs
+     * @param balances        the balances in cents, in the same order as the IDs
+     * @param sequences       the journal sequence of each account, in the same order as the IDs
+     * @param count           the number of accounts to write
+     * @return the path of the new snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    static Path write(Path directory, long journalSequence, int[] ids, long[] balances, long[] sequences, int count) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(String.format("%s%020d%s", FILE_PREFIX, journalSequence, FILE_SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_CHUNK * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(journalSequence).putInt(count).putInt(0);
+            buffer.flip();
+            writeFully(channel, buffer);
+
+            for (int start = 0; start < count; start += WRITE_CHUNK) {
+                int end = Math.min(start + WRITE_CHUNK, count);
+                buffer.clear();
+                buffer.asIntBuffer().put(ids, start, end - start);
+                buffer.limit((end - start) * Integer.BYTES);
+                writeFully(channel, buffer);
+            }
+            for (long[] column : new long[][]{balances, sequences}) {
+                for (int start = 0; start < count; start += WRITE_CHUNK) {
+                    int end = Math.min(start + WRITE_CHUNK, count);
+                    buffer.clear();
+                    buffer.asLongBuffer().put(column, start, end - start);
+                    buffer.limit((end - start) * Long.BYTES);
+                    writeFully(channel, buffer);
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+
+    /**
+     * Loads the newest snapshot in the directory.
+     *
+     * @param directory the directory that holds snapshot files
+     * @param factory   creates an account for each snapshot row
+     * @return the loaded snapshot, or null if there is none
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static BalanceSnapshot loadLatest(Path directory, AccountFactory factory) throws IOException {
+        List<Path> snapshots = list(directory);
+        if (snapshots.isEmpty()) {
+            return null;
+        }
+        return load(snapshots.get(snapshots.size() - 1), factory);
+    }
+
+    /**
+     * Loads a snapshot file through a read-only memory mapping.
+     *
+     * @param file    the snapshot file
+     * @param factory creates an account for each snapshot row
+     * @return the loaded snapshot
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static BalanceSnapshot load(Path file, AccountFactory factory) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                throw new IOException("Not a balance snapshot: " + file);
+            }
+            long journalSequence = mapped.getLong(8);
+            int count = mapped.getInt(16);
+            long expectedSize = HEADER_SIZE + (long) count * (Integer.BYTES + 2L * Long.BYTES);
+            if (channel.size() != expectedSize) {
+                throw new IOException("Truncated balance snapshot: " + file);
+            }
+
+            // View each column in place; nothing is copied before the accounts are created
+            IntBuffer ids = mapped.slice(HEADER_SIZE, count * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            int balancesOffset = HEADER_SIZE + count * Integer.BYTES;
+            LongBuffer balances = mapped.slice(balancesOffset, count * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            LongBuffer sequences = mapped.slice(balancesOffset + count * Long.BYTES, count * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+
+            List<Account> accounts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Account account = factory.create(ids.get(i), balances.get(i));
+                account.setJournalSequence(sequences.get(i));
+                accounts.add(account);
+            }
+            return new BalanceSnapshot(journalSequence, accounts);
+        }
+    }
+
+    /**
+     * Deletes all but the newest snapshots in the directory.
+     *
+     * @param directory the directory that holds snapshot files
+     * @param keep      the number of newest snapshots to keep
+     * @throws IOException if a file cannot be deleted
+     */
+    public static void prune(Path directory, int keep) throws IOException {
+        List<Path> snapshots = list(directory);
+        for (int i = 0; i < snapshots.size() - keep; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+    }
+
+    /**
+     * Lists the snapshot files in the directory, oldest first.
+     *
+     * @param directory the directory that holds snapshot files
+     * @return the snapshot paths sorted by journal sequence
+     * @throws IOException if the directory cannot be read
+     */
+    private static List<Path> list(Path directory) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return snapshots;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path path : stream) {
+                snapshots.add(path);
+            }
+        }
+        Collections.sort(snapshots); // Zero-padded names sort in sequence order
+        return snapshots;
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer to a channel.
+     *
+     * @param channel the channel to write to
+     * @param buffer  the buffer to write
+     * @throws IOException if the write fails
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -1,17 +1,44 @@
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * Represents a bank account with an ID, balance, and transaction history.
+ * Represents a bank account with an ID and balance.
+ * Transaction history is kept by the TransactionSystem's TransactionHistoryStore.
  * Provides thread-safe operations for depositing, withdrawing, and accessing account details.
+ *
+ * <p>An account can be switched into hot mode, meant for accounts such as merchant settlement
+ * accounts that receive a large share of all deposits. In hot mode deposits are added to a
+ * StripedBalance without taking the write lock, and withdrawals drain the stripes back into the
+ * main balance when it alone cannot cover them. In AUTOMATIC mode the account watches how often
+ * its write lock is contended and switches hot mode on and off by itself.</p>
  */
-public class BankAccount {
+public class BankAccount implements Account {
+    // Number of lock acquisitions per contention measurement window
+    private static final int CONTENTION_WINDOW = 256;
+
+    // Go hot when at least this share of acquisitions in a window found the lock busy
+    private static final double HOT_CONTENTION_RATIO = 0.5;
+
+    // Go back to cold when fewer than this share of acquisitions found the lock busy
+    private static final double COLD_CONTENTION_RATIO = 0.05;
+
+    /**
+     * Whether an account may use striped hot-mode deposits.
+     */
+    public enum HotMode {
+        DISABLED,  // Always take the write lock for deposits
+        AUTOMATIC, // Switch hot mode on and off based on observed lock contention
+        ALWAYS     // Always accept deposits into the striped balance
+    }
+
     private final int id; // Unique identifier for the bank account
     private double balance; // Current balance of the account
-    private final List<Transaction> transactionHistory = new ArrayList<>(); // List of transactions for the account
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true); // ReadWrite lock for thread safety
+    private long journalSequence; // Last journal record applied to this account, guarded by the write lock
+    private volatile HotMode hotMode = HotMode.DISABLED; // Opt-in hot-mode policy
+    private volatile boolean hot; // True while deposits go to the striped balance
+    private volatile StripedBalance hotCredits; // Striped deposits, created on first use and never discarded
+    private int windowAcquisitions; // Lock acquisitions in the current window, guarded by the write lock
+    private int windowContended; // Acquisitions in the current window that found the lock busy, guarded by the write lock
 
     /**
      * Constructs a new BankAccount with the specified ID and initial balance.
@@ -29,6 +56,7 @@ public class BankAccount {
      *
      * @return the account ID
      */
+    @Override
     public int getId() {
         return id;
     }
@@ -39,10 +67,12 @@ public class BankAccount {
      *
      * @return the current balance
      */
+    @Override
     public double getBalance() {
         lock.readLock().lock();
         try {
-            return balance;
+            StripedBalance credits = hotCredits;
+            return credits == null ? balance : balance + Money.fromCents(credits.sum());
         } finally {
             lock.readLock().unlock();
         }
@@ -50,11 +80,16 @@ public class BankAccount {
 
     /**
      * Deposits the specified amount into the account.
-     * This method is thread-safe and uses a write lock.
+     * This method is thread-safe and uses a write lock, except in hot mode where the amount
+     * is added to the striped balance without locking.
      *
      * @param amount the amount to deposit
      */
+    @Override
     public void deposit(double amount) {
+        if (tryDepositUnlocked(amount)) {
+            return;
+        }
         lock.writeLock().lock();
         try {
             this.balance += amount;
@@ -69,6 +104,7 @@ public class BankAccount {
      *
      * @param amount the amount to withdraw
      */
+    @Override
     public void withdraw(double amount) {
         lock.writeLock().lock();
         try {
@@ -79,48 +115,174 @@ public class BankAccount {
     }
 
     /**
-     * Returns a copy of the transaction history for the account.
-     * This method is thread-safe and uses a read lock.
+     * Withdraws the specified amount only if the balance covers it.
+     * This method is thread-safe and uses a write lock, so the check and the withdrawal are atomic.
+     * If the main balance is short, striped hot-mode deposits are drained into it first.
      *
-     * @return a list of transactions
+     * @param amount the amount to withdraw
+     * @return true if the amount was withdrawn, false if the balance was insufficient
      */
-    public List<Transaction> getTransactionHistory() {
-        lock.readLock().lock();
+    @Override
+    public boolean tryWithdraw(double amount) {
+        lock.writeLock().lock();
         try {
-            return new ArrayList<>(transactionHistory);
+            if (balance < amount && hotCredits != null) {
+                // Borrow from the stripes; concurrent deposits only add, so draining cannot overdraw
+                this.balance += Money.fromCents(hotCredits.drain());
+            }
+            if (balance < amount) {
+                return false;
+            }
+            this.balance -= amount;
+            return true;
         } finally {
-            lock.readLock().unlock();
+            lock.writeLock().unlock();
         }
     }
 
     /**
-     * Adds a transaction to the account's transaction history.
-     * This method is thread-safe and uses a write lock.
+     * Locks the account for exclusive write access.
+     * This method is used for external synchronization. In AUTOMATIC hot mode it also
+     * records whether the lock was busy, which drives the hot/cold classification.
+     */
+    @Override
+    public void lock() {
+        boolean contended = lock.isWriteLocked() || lock.hasQueuedThreads();
+        lock.writeLock().lock();
+        if (hotMode == HotMode.AUTOMATIC) {
+            recordAcquisition(contended);
+        }
+    }
+
+    /**
+     * Unlocks the account after exclusive write access.
+     * This method is used for external synchronization.
+     */
+    @Override
+    public void unlock() {
+        lock.writeLock().unlock();
+    }
+
+    /**
+     * Returns whether the account's write lock is currently held by any thread.
+     *
+     * @return true if the account is locked
+     */
+    @Override
+    public boolean isLocked() {
+        return lock.isWriteLocked();
+    }
+
+    /**
+     * Returns the sequence number of the last journal record applied to this account.
      *
-     * @param transaction the transaction to add
+     * @return the journal sequence, or 0 if no journaled change has been applied
      */
-    protected void addTransaction(Transaction transaction) {
+    @Override
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+
+    /**
+     * Records the sequence number of the journal record just applied to this account.
+     *
+     * @param sequence the journal sequence number
+     */
+    @Override
+    public void setJournalSequence(long sequence) {
+        this.journalSequence = sequence;
+    }
+
+    /**
+     * Returns whether deposits currently bypass the write lock.
+     *
+     * @return true while the account is in hot mode
+     */
+    @Override
+    public boolean acceptsUnlockedDeposits() {
+        return hot;
+    }
+
+    /**
+     * Adds the amount to the striped balance while the account is hot. The stripes count whole
+     * cents, so an amount with a fraction of a cent is left to the locked deposit instead of
+     * being rounded.
+     *
+     * @param amount the amount to deposit
+     * @return true if the amount was deposited, false if the account is cold or the amount is
+     *         not a whole number of cents
+     */
+    @Override
+    public boolean tryDepositUnlocked(double amount) {
+        if (!hot || !Money.isWholeCents(amount)) {
+            return false;
+        }
+        // hotCredits is set before hot, so it exists once hot has been seen
+        hotCredits.add(Money.toCents(amount));
+        return true;
+    }
+
+    /**
+     * Sets the hot-mode policy for this account.
+     *
+     * @param mode DISABLED, AUTOMATIC or ALWAYS
+     */
+    public void setHotMode(HotMode mode) {
         lock.writeLock().lock();
         try {
-            transactionHistory.add(transaction);
+            this.hotMode = mode;
+            this.windowAcquisitions = 0;
+            this.windowContended = 0;
+            setHot(mode == HotMode.ALWAYS);
         } finally {
             lock.writeLock().unlock();
         }
     }
 
     /**
-     * Locks the account for exclusive write access.
-     * This method is used for external synchronization.
+     * Returns the hot-mode policy for this account.
+     *
+     * @return the policy
      */
-    public void lock() {
-        lock.writeLock().lock();
+    public HotMode getHotMode() {
+        return hotMode;
     }
 
     /**
-     * Unlocks the account after exclusive write access.
-     * This method is used for external synchronization.
+     * Counts one lock acquisition and reclassifies the account at the end of each window.
+     * Must be called with the write lock held.
+     *
+     * @param contended whether the lock was busy when the caller asked for it
      */
-    public void unlock() {
-        lock.writeLock().unlock();
+    private void recordAcquisition(boolean contended) {
+        windowAcquisitions++;
+        if (contended) {
+            windowContended++;
+        }
+        if (windowAcquisitions < CONTENTION_WINDOW) {
+            return;
+        }
+        double ratio = (double) windowContended / windowAcquisitions;
+        if (!hot && ratio >= HOT_CONTENTION_RATIO) {
+            setHot(true);
+        } else if (hot && ratio < COLD_CONTENTION_RATIO) {
+            setHot(false);
+        }
+        windowAcquisitions = 0;
+        windowContended = 0;
+    }
+
+    /**
+     * Switches deposits to or from the striped balance. Must be called with the write lock held.
+     * The stripes are kept after going cold, since a depositor may still be adding to them;
+     * they keep counting toward the balance and are drained by later withdrawals.
+     *
+     * @param enabled true to route deposits to the stripes
+     */
+    private void setHot(boolean enabled) {
+        if (enabled && hotCredits == null) {
+            hotCredits = new StripedBalance();
+        }
+        hot = enabled;
     }
-}
\ No newline at end of file
+}
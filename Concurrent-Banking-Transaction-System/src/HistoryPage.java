@@ -0,0 +1,47 @@
+import java.util.List;
+
+/**
+ * One page of an account's transaction history, newest entry first.
+ */
+public class HistoryPage {
+    private final List<Transaction> entries; // The transactions on this page
+    private final long nextCursor; // Cursor for the following page, or NO_RECORD at the end
+
+    /**
+     * Constructs a page.
+     *
+     * @param entries    the transactions on this page
+     * @param nextCursor the cursor for the following page, or TransactionHistoryStore.NO_RECORD if there is none
+     */
+    public HistoryPage(List<Transaction> entries, long nextCursor) {
+        this.entries = entries;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the transactions on this page.
+     *
+     * @return the transactions, newest first
+     */
+    public List<Transaction> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the cursor to pass when requesting the following page.
+     *
+     * @return the next cursor, or TransactionHistoryStore.NO_RECORD if this is the last page
+     */
+    public long getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Returns whether there are more entries after this page.
+     *
+     * @return true if another page is available
+     */
+    public boolean hasMore() {
+        return nextCursor != TransactionHistoryStore.NO_RECORD;
+    }
+}
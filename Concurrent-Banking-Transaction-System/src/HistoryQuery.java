@@ -0,0 +1,115 @@
+/**
+ * Describes which transactions to read from the TransactionHistoryStore.
+ * A query covers one account or all accounts, optionally narrowed by a time range and an amount range.
+ * Queries are immutable; each "with" method returns a narrowed copy.
+ */
+public final class HistoryQuery {
+    // Account ID value meaning "every account"
+    private static final int ALL_ACCOUNTS = Integer.MIN_VALUE;
+
+    private final int accountId; // Account to read, or ALL_ACCOUNTS
+    private final long fromTimestamp; // Inclusive lower bound on the timestamp, in epoch milliseconds
+    private final long toTimestamp; // Exclusive upper bound on the timestamp, in epoch milliseconds
+    private final long minAmountCents; // Inclusive lower bound on the amount, in cents
+    private final long maxAmountCents; // Inclusive upper bound on the amount, in cents
+
+    /**
+     * Constructs a query with every bound given explicitly.
+     *
+     * @param accountId      the account to read, or ALL_ACCOUNTS
+     * @param fromTimestamp  the inclusive lower bound on the timestamp
+     * @param toTimestamp    the exclusive upper bound on the timestamp
+     * @param minAmountCents the inclusive lower bound on the amount, in cents
+     * @param maxAmountCents the inclusive upper bound on the amount, in cents
+     */
+    private HistoryQuery(int accountId, long fromTimestamp, long toTimestamp, long minAmountCents, long maxAmountCents) {
+        this.accountId = accountId;
+        this.fromTimestamp = fromTimestamp;
+        this.toTimestamp = toTimestamp;
+        this.minAmountCents = minAmountCents;
+        this.maxAmountCents = maxAmountCents;
+    }
+
+    /**
+     * Creates a query for every transaction that touches one account.
+     *
+     * @param accountId the account ID
+     * @return the query
+     */
+    public static HistoryQuery forAccount(int accountId) {
+        if (accountId == ALL_ACCOUNTS) {
+            throw new IllegalArgumentException("Invalid account ID: " + accountId);
+        }
+        return new HistoryQuery(accountId, Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a query for every transaction in the system.
+     *
+     * @return the query
+     */
+    public static HistoryQuery allAccounts() {
+        return new HistoryQuery(ALL_ACCOUNTS, Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Narrows the query to transactions recorded in a time range.
+     *
+     * @param fromTimestamp the inclusive start of the range, in epoch milliseconds
+     * @param toTimestamp   the exclusive end of the range, in epoch milliseconds
+     * @return the narrowed query
+     */
+    public HistoryQuery withTimeRange(long fromTimestamp, long toTimestamp) {
+        return new HistoryQuery(accountId, fromTimestamp, toTimestamp, minAmountCents, maxAmountCents);
+    }
+
+    /**
+     * Narrows the query to transactions whose amount lies in a range.
+     *
+     * @param minAmount the inclusive minimum amount
+     * @param maxAmount the inclusive maximum amount
+     * @return the narrowed query
+     */
+    public HistoryQuery withAmountRange(double minAmount, double maxAmount) {
+        return new HistoryQuery(accountId, fromTimestamp, toTimestamp, Money.toCents(minAmount), Money.toCents(maxAmount));
+    }
+
+    /**
+     * Returns whether the query covers every account.
+     *
+     * @return true for an all-accounts query
+     */
+    public boolean isAllAccounts() {
+        return accountId == ALL_ACCOUNTS;
+    }
+
+    /**
+     * Returns the account the query covers.
+     *
+     * @return the account ID; meaningless for an all-accounts query
+     */
+    public int getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * Returns the inclusive lower bound on the timestamp.
+     *
+     * @return the lower bound in epoch milliseconds
+     */
+    public long getFromTimestamp() {
+        return fromTimestamp;
+    }
+
+    /**
+     * Checks a record's fields against the query's filters.
+     *
+     * @param timestamp   the record's timestamp
+     * @param amountCents the record's amount in cents
+     * @return true if the record matches
+     */
+    boolean matches(long timestamp, long amountCents) {
+        return timestamp >= fromTimestamp && timestamp < toTimestamp
+                && amountCents >= minAmountCents && amountCents <= maxAmountCents;
+    }
+}
@@ -0,0 +1,192 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded, concurrent cache of transfer outcomes keyed by client request ID.
+ * The cache is split into independently locked shards, each an insertion-ordered map, so the
+ * oldest entries sit at the head of every shard and expiry and size eviction only ever look there.
+ * The first caller for a key registers a pending outcome; repeated callers get that same outcome,
+ * waiting for it if the original transfer is still running. A key is bound to the transfer it was
+ * first used for, and reusing it for a different transfer is reported as a conflict.
+ *
+ * <p>Entries whose transfer is still running are never evicted, since a retry must not run the
+ * transfer a second time. A shard may therefore briefly hold more than its share of the size
+ * bound, until the running transfers finish.</p>
+ */
+public class IdempotencyCache {
+    private final Shard[] shards; // Independently locked shards
+    private final int shardMask; // Mask used to pick a shard, shard count is a power of two
+    private final long ttlNanos; // How long an outcome is remembered
+    private final int maxEntriesPerShard; // Size bound of each shard
+
+    /**
+     * A cached outcome, the transfer it belongs to and the time it was registered.
+     */
+    private static final class Entry {
+        final CompletableFuture<TransferResult> outcome; // Completed once the original transfer finishes
+        final int fromAccountId; // Source of the original transfer
+        final int toAccountId; // Destination of the original transfer
+        final long amountCents; // Amount of the original transfer
+        final long createdNanos; // Registration time, used for expiry
+
+        Entry(CompletableFuture<TransferResult> outcome, int fromAccountId, int toAccountId, long amountCents, long createdNanos) {
+            this.outcome = outcome;
+            this.fromAccountId = fromAccountId;
+            this.toAccountId = toAccountId;
+            this.amountCents = amountCents;
+            this.createdNanos = createdNanos;
+        }
+
+        /**
+         * Returns whether this entry was registered for the given transfer.
+         *
+         * @param fromAccountId the source account ID
+         * @param toAccountId   the destination account ID
+         * @param amountCents   the amount in cents
+         * @return true if all three match
+         */
+        boolean matches(int fromAccountId, int toAccountId, long amountCents) {
+            return this.fromAccountId == fromAccountId && this.toAccountId == toAccountId && this.amountCents == amountCents;
+        }
+    }
+
+    /**
+     * One shard: an insertion-ordered map guarded by its own lock.
+     */
+    private static final class Shard {
+        final ReentrantLock lock = new ReentrantLock(); // Guards the map
+        final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(); // Oldest entry first
+    }
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param shardCount the number of shards, rounded up to a power of two
+     * @param maxEntries the maximum number of remembered request IDs across all shards
+     * @param ttl        how long an outcome is remembered
+     * @param unit       the unit of the ttl
+     */
+    public IdempotencyCache(int shardCount, int maxEntries, long ttl, TimeUnit unit) {
+        if (shardCount <= 0 || maxEntries <= 0 || ttl <= 0) {
+            throw new IllegalArgumentException("Shard count, size and TTL must be positive.");
+        }
+        int count = 1;
+        while (count < shardCount) {
+            count <<= 1;
+        }
+        this.shards = new Shard[count];
+        this.shardMask = count - 1;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxEntriesPerShard = Math.max(maxEntries / count, 1);
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * Registers a pending outcome for a request ID unless a live one already exists.
+     *
+     * @param requestId     the client's idempotency key
+     * @param fromAccountId the ID of the account to transfer from
+     * @param toAccountId   the ID of the account to transfer to
+     * @param amountCents   the amount to transfer, in cents
+     * @param pending       the outcome the caller will complete if it becomes the owner
+     * @return the existing outcome for a repeated key, an outcome completed with REQUEST_ID_CONFLICT
+     *         if the key was first used for a different transfer, or null if the caller now owns the key
+     */
+    public CompletableFuture<TransferResult> putIfAbsent(String requestId, int fromAccountId, int toAccountId, long amountCents,
+                                                         CompletableFuture<TransferResult> pending) {
+        Shard shard = shardFor(requestId);
+        long now = System.nanoTime();
+        shard.lock.lock();
+        try {
+            evictExpired(shard, now);
+            Entry existing = shard.entries.get(requestId);
+            if (existing != null) {
+                return existing.matches(fromAccountId, toAccountId, amountCents)
+                        ? existing.outcome : CompletableFuture.completedFuture(TransferResult.REQUEST_ID_CONFLICT);
+            }
+            shard.entries.put(requestId, new Entry(pending, fromAccountId, toAccountId, amountCents, now));
+
+            // Enforce the size bound by dropping the oldest finished entries
+            Iterator<Entry> oldest = shard.entries.values().iterator();
+            while (shard.entries.size() > maxEntriesPerShard && oldest.hasNext()) {
+                if (oldest.next().outcome.isDone()) {
+                    oldest.remove();
+                }
+            }
+            return null;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets a request ID so a later retry runs the transfer again.
+     * Used when the original attempt failed without a definite outcome.
+     *
+     * @param requestId the client's idempotency key
+     */
+    public void remove(String requestId) {
+        Shard shard = shardFor(requestId);
+        shard.lock.lock();
+        try {
+            shard.entries.remove(requestId);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of remembered request IDs. Shards are counted one at a time, so the result is approximate.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        int total = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                total += shard.entries.size();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Drops expired entries from the head of a shard, keeping those whose transfer is still running.
+     * Must be called with the shard's lock held.
+     *
+     * @param shard the shard
+     * @param now   the current time from System.nanoTime()
+     */
+    private void evictExpired(Shard shard, long now) {
+        Iterator<Map.Entry<String, Entry>> oldest = shard.entries.entrySet().iterator();
+        while (oldest.hasNext()) {
+            Entry entry = oldest.next().getValue();
+            if (now - entry.createdNanos < ttlNanos) {
+                break; // Entries are in insertion order, so the rest are younger
+            }
+            if (entry.outcome.isDone()) {
+                oldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the shard responsible for a request ID.
+     *
+     * @param requestId the client's idempotency key
+     * @return the shard
+     */
+    private Shard shardFor(String requestId) {
+        int h = requestId.hashCode() * 0x9E3779B9;
+        return shards[(h ^ (h >>> 16)) & shardMask];
+    }
+}
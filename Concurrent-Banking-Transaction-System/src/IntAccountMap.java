@@ -0,0 +1,210 @@
+import java.util.function.Consumer;
+
+/**
+ * Open-addressing hash map from primitive int account IDs to accounts.
+ * Avoids boxing the keys and allocating an entry object per account.
+ * This class is not thread-safe; AccountStore guards each instance with its shard lock.
+ */
+class IntAccountMap {
+    // Maximum fraction of slots in use before the table is doubled
+    private static final float LOAD_FACTOR = 0.6f;
+
+    /**
+     * Keys and values held together so a reader always sees a matching pair of arrays,
+     * even if a resize replaces the table concurrently.
+     */
+    static final class Table {
+        final int[] keys; // Account IDs, valid only where the value slot is non-null
+        final Account[] values; // Accounts, null marks an empty slot
+
+        Table(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new Account[capacity];
+        }
+    }
+
+    private volatile Table table; // Current table, replaced on resize
+    private int size; // Number of accounts in the map
+    private int resizeThreshold; // Size at which the table is doubled
+
+    /**
+     * Constructs an empty map sized for the expected number of accounts.
+     *
+     * @param expectedSize the number of accounts the map should hold without resizing
+     */
+    IntAccountMap(int expectedSize) {
+        int capacity = tableSizeFor((int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR));
+        this.table = new Table(capacity);
+        this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Returns the account with the given ID.
+     *
+     * @param id the account ID
+     * @return the account, or null if there is none
+     */
+    Account get(int id) {
+        return get(table, id);
+    }
+
+    /**
+     * Looks up an account in a specific table. Used by optimistic readers that validate
+     * the result against their shard's stamp afterwards.
+     *
+     * @param table the table to search
+     * @param id    the account ID
+     * @return the account, or null if there is none
+     */
+    static Account get(Table table, int id) {
+        int mask = table.values.length - 1;
+        for (int i = mix(id) & mask; ; i = (i + 1) & mask) {
+            Account value = table.values[i];
+            if (value == null) {
+                return null;
+            }
+            if (table.keys[i] == id) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Returns the current table for optimistic reads.
+     *
+     * @return the current table
+     */
+    Table table() {
+        return table;
+    }
+
+    /**
+     * Adds an account if no account with the same ID exists.
+     *
+     * @param account the account to add
+     * @return true if the account was added, false if the ID is already taken
+     */
+    boolean putIfAbsent(Account account) {
+        if (size >= resizeThreshold) {
+            resize();
+        }
+        Table t = table;
+        int mask = t.values.length - 1;
+        int id = account.getId();
+        for (int i = mix(id) & mask; ; i = (i + 1) & mask) {
+            if (t.values[i] == null) {
+                t.keys[i] = id;
+                t.values[i] = account;
+                size++;
+                return true;
+            }
+            if (t.keys[i] == id) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Removes the account with the given ID, shifting later entries of the probe chain back
+     * so no tombstones are left behind.
+     *
+     * @param id the account ID
+     * @return the removed account, or null if there was none
+     */
+    Account remove(int id) {
+        Table t = table;
+        int mask = t.values.length - 1;
+        int i = mix(id) & mask;
+        while (true) {
+            if (t.values[i] == null) {
+                return null;
+            }
+            if (t.keys[i] == id) {
+                break;
+            }
+            i = (i + 1) & mask;
+        }
+        Account removed = t.values[i];
+
+        // Backward-shift deletion: move any entry whose home slot lies at or before the gap
+        int gap = i;
+        for (int j = (gap + 1) & mask; t.values[j] != null; j = (j + 1) & mask) {
+            int home = mix(t.keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                t.keys[gap] = t.keys[j];
+                t.values[gap] = t.values[j];
+                gap = j;
+            }
+        }
+        t.values[gap] = null;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Returns the number of accounts in the map.
+     *
+     * @return the number of accounts
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Passes every account in the map to the given action.
+     *
+     * @param action the action to run for each account
+     */
+    void forEach(Consumer<? super Account> action) {
+        for (Account value : table.values) {
+            if (value != null) {
+                action.accept(value);
+            }
+        }
+    }
+
+    /**
+     * Doubles the table and reinserts every account. The new table is fully populated
+     * before it is published so optimistic readers never see a partial table.
+     */
+    private void resize() {
+        Table old = table;
+        Table grown = new Table(old.values.length * 2);
+        int mask = grown.values.length - 1;
+        for (int i = 0; i < old.values.length; i++) {
+            Account value = old.values[i];
+            if (value != null) {
+                int j = mix(old.keys[i]) & mask;
+                while (grown.values[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                grown.keys[j] = old.keys[i];
+                grown.values[j] = value;
+            }
+        }
+        table = grown;
+        resizeThreshold = (int) (grown.values.length * LOAD_FACTOR);
+    }
+
+    /**
+     * Spreads the bits of an account ID so sequential IDs do not cluster in the table.
+     *
+     * @param id the account ID
+     * @return the mixed hash
+     */
+    static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the smallest power of two that is at least the given capacity.
+     *
+     * @param capacity the requested capacity
+     * @return the table size
+     */
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        return Math.max(n, 2);
+    }
+}
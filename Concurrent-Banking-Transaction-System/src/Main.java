@@ -1,7 +1,15 @@
+import util.LogConfig;
 import util.LoggerUtil;
+import util.metrics.Histogram;
+import util.metrics.MetricsExporter;
+import util.metrics.MetricsRegistry;
+import util.workload.ArrivalProcess;
+import util.workload.OpenLoopDriver;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 /**
@@ -10,11 +18,36 @@ import java.util.logging.Level;
  */
 public class Main {
     public static void main(String[] args) {
+        // Pass "atomic" as the first argument to use the lock-free account implementation
+        boolean useAtomicAccounts = args.length > 0 && args[0].equalsIgnoreCase("atomic");
+
+        // -Dbanking.load=<arrival process> runs an open-loop load test instead of the demo transfers
+        String load = System.getProperty("banking.load");
+
+        // Log to this simulation's file; -Dutil.log.* properties override the settings.
+        // A load test only logs warnings, as logging every transfer would dominate its timings.
+        LogConfig logConfig = LogConfig.forFile("banking_transaction.log");
+        if (load != null) {
+            logConfig = logConfig.withLevel(Level.WARNING);
+        }
+        LoggerUtil.configure(logConfig);
+
+        // Record binary events alongside the text log; decode with util.EventLogDecoder
+        LoggerUtil.enableEventLog(null, true);
+
+        // Export transfer metrics every second; -Dutil.metrics.* properties configure the export
+        MetricsExporter.start(MetricsRegistry.getDefault(), "banking_metrics.prom");
+
+        if (load != null) {
+            runLoadTest(ArrivalProcess.parse(load), useAtomicAccounts);
+            return;
+        }
+
         // Create a list of bank accounts with initial balances
-        List<BankAccount> accountList = new ArrayList<>();
-        accountList.add(new BankAccount(1, 1000)); // Account 1 with $1000
-        accountList.add(new BankAccount(2, 2000)); // Account 2 with $2000
-        accountList.add(new BankAccount(3, 3000)); // Account 3 with $3000
+        List<Account> accountList = new ArrayList<>();
+        accountList.add(createAccount(useAtomicAccounts, 1, 1000)); // Account 1 with $1000
+        accountList.add(createAccount(useAtomicAccounts, 2, 2000)); // Account 2 with $2000
+        accountList.add(createAccount(useAtomicAccounts, 3, 3000)); // Account 3 with $3000
 
         // Initialize the TransactionSystem with the list of accounts
         TransactionSystem transactionSystem = new TransactionSystem(accountList);
@@ -66,4 +99,74 @@ public class Main {
         // Retrieve and print the transaction history for all accounts
         transactionSystem.getTransactionHistory();
     }
+
+    /**
+     * Drives random transfers between many accounts at the rate an arrival process sets, for
+     * -Dbanking.load.seconds (default 10) over -Dbanking.load.accounts accounts (default 1000),
+     * and prints the response-time percentiles. Transfers start when they are due even if the
+     * system is falling behind, so the percentiles include the queueing a closed loop of
+     * threads would hide.
+     *
+     * @param arrivals the arrival process, e.g. poisson:5000
+     * @param atomic   true to use AtomicBankAccount accounts
+     */
+    private static void runLoadTest(ArrivalProcess arrivals, boolean atomic) {
+        int accountCount = Integer.getInteger("banking.load.accounts", 1000);
+        long seconds = Long.getLong("banking.load.seconds", 10);
+
+        List<Account> accountList = new ArrayList<>(accountCount);
+        for (int id = 1; id <= accountCount; id++) {
+            accountList.add(createAccount(atomic, id, 1_000_000));
+        }
+        TransactionSystem transactionSystem = new TransactionSystem(accountList);
+
+        OpenLoopDriver driver = new OpenLoopDriver(arrivals, Long.getLong("banking.load.seed", 1),
+                MetricsRegistry.getDefault(), "banking_load");
+        System.out.printf("Offering %s (mean %.0f transfers/s) to %d accounts for %d s%n",
+                arrivals, arrivals.getMeanRate(), accountCount, seconds);
+        long issued;
+        try {
+            issued = driver.run(TimeUnit.SECONDS.toNanos(seconds), () -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int from = random.nextInt(1, accountCount + 1);
+                int to = random.nextInt(1, accountCount + 1);
+                if (from != to) {
+                    transactionSystem.transfer(from, to, random.nextInt(1, 100));
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Restore the interrupted status
+            return;
+        }
+
+        System.out.printf("Issued %d transfers (%.0f/s), %d failed%n", issued, issued / (double) seconds, driver.getFailed());
+        printPercentiles("Response time (from due time)", driver.getResponseTime());
+        printPercentiles("Service time (from actual start)", driver.getServiceTime());
+        printPercentiles("Start lag", driver.getStartLag());
+    }
+
+    /**
+     * Prints a latency histogram's percentiles in microseconds.
+     *
+     * @param label     what the histogram measures
+     * @param histogram the histogram, in nanoseconds
+     */
+    private static void printPercentiles(String label, Histogram histogram) {
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        System.out.printf("%-34s p50 %8d us  p99 %8d us  p99.9 %8d us  max %8d us%n", label,
+                snapshot.getValueAtPercentile(50) / 1000, snapshot.getValueAtPercentile(99) / 1000,
+                snapshot.getValueAtPercentile(99.9) / 1000, snapshot.getMax() / 1000);
+    }
+
+    /**
+     * Creates an account using either the lock-based or the lock-free implementation.
+     *
+     * @param atomic  true to create an AtomicBankAccount, false for a BankAccount
+     * @param id      the unique identifier for the account
+     * @param balance the initial balance of the account
+     * @return the new account
+     */
+    private static Account createAccount(boolean atomic, int id, double balance) {
+        return atomic ? new AtomicBankAccount(id, balance) : new BankAccount(id, balance);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+/**
+ * Helper for converting between the dollar amounts used by the public API
+ * and the fixed-point long cents used internally by lock-free accounts.
+ */
+public final class Money {
+    // Number of minor units (cents) in one major unit (dollar)
+    public static final long CENTS_PER_UNIT = 100L;
+
+    // Private constructor to prevent instantiation
+    private Money() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Converts an amount in dollars to whole cents, rounding to the nearest cent.
+     *
+     * @param amount the amount in dollars
+     * @return the amount in cents
+     */
+    public static long toCents(double amount) {
+        return Math.round(amount * CENTS_PER_UNIT);
+    }
+
+    /**
+     * Converts an amount in dollars to cents, refusing amounts that are not a whole number of cents.
+     * Use it where silently rounding would create or destroy money, such as a balance kept in cents.
+     *
+     * @param amount the amount in dollars
+     * @return the amount in cents
+     * @throws IllegalArgumentException if the amount has a fraction of a cent, including a non-zero
+     *                                  amount under half a cent that would round to nothing
+     */
+    public static long toExactCents(double amount) {
+        if (!isWholeCents(amount)) {
+            throw new IllegalArgumentException("Amount " + amount + " is not a whole number of cents.");
+        }
+        return toCents(amount);
+    }
+
+    /**
+     * Returns whether an amount in dollars is a whole number of cents. Amounts such as 0.1 + 0.2,
+     * which are a whole number of cents apart from floating-point error, count as whole.
+     *
+     * @param amount the amount in dollars
+     * @return true if converting the amount to cents loses nothing
+     */
+    public static boolean isWholeCents(double amount) {
+        double scaled = amount * CENTS_PER_UNIT;
+        return Math.abs(scaled - Math.rint(scaled)) <= 4 * Math.ulp(scaled);
+    }
+
+    /**
+     * Converts an amount in cents back to dollars.
+     *
+     * @param cents the amount in cents
+     * @return the amount in dollars
+     */
+    public static double fromCents(long cents) {
+        return (double) cents / CENTS_PER_UNIT;
+    }
+}
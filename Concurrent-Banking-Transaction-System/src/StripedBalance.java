@@ -0,0 +1,64 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A balance in cents split across several independently updated stripes, in the style of LongAdder.
+ * Concurrent deposits land on different stripes and so do not contend with each other; the total is
+ * the sum of all stripes. Each stripe sits on its own cache line to avoid false sharing.
+ */
+public class StripedBalance {
+    // Longs per stripe; 8 longs fill a 64-byte cache line
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells; // Stripes, each PADDING longs apart
+    private final int stripeMask; // Mask used to pick a stripe, stripe count is a power of two
+
+    /**
+     * Constructs a striped balance with one stripe per available processor, rounded up to a power of two.
+     */
+    public StripedBalance() {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors()) {
+            stripes <<= 1;
+        }
+        this.cells = new AtomicLongArray(stripes * PADDING);
+        this.stripeMask = stripes - 1;
+    }
+
+    /**
+     * Adds cents to the stripe chosen for the calling thread.
+     *
+     * @param cents the amount to add, in cents
+     */
+    public void add(long cents) {
+        long h = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        int stripe = (int) (h >>> 32) & stripeMask;
+        cells.getAndAdd(stripe * PADDING, cents);
+    }
+
+    /**
+     * Returns the sum of all stripes. Not atomic with respect to concurrent adds.
+     *
+     * @return the total in cents
+     */
+    public long sum() {
+        long total = 0;
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            total += cells.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Empties every stripe and returns what was in them. Adds that race with the drain are either
+     * included in the result or left in their stripe, never lost.
+     *
+     * @return the drained total in cents
+     */
+    public long drain() {
+        long total = 0;
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            total += cells.getAndSet(i, 0L);
+        }
+        return total;
+    }
+}
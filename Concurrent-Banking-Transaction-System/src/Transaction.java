@@ -6,6 +6,8 @@ public class Transaction {
     private final int fromAccountId; // ID of the account from which the amount is transferred
     private final int toAccountId;   // ID of the account to which the amount is transferred
     private final double amount;     // The amount of money transferred
+    private final long timestamp;    // Time the transaction was recorded, in epoch milliseconds
+    private final long sequence;     // Journal sequence of the transaction, or 0 if it was not journaled
 
     /**
      * Constructs a new Transaction with the specified details.
@@ -15,9 +17,69 @@ public class Transaction {
      * @param amount        the amount of money to transfer
      */
     public Transaction(int fromAccountId, int toAccountId, double amount) {
+        this(fromAccountId, toAccountId, amount, System.currentTimeMillis(), 0);
+    }
+
+    /**
+     * Constructs a new Transaction with the specified details, including when it was recorded.
+     *
+     * @param fromAccountId the ID of the source account
+     * @param toAccountId   the ID of the destination account
+     * @param amount        the amount of money to transfer
+     * @param timestamp     the time the transaction was recorded, in epoch milliseconds
+     * @param sequence      the journal sequence of the transaction, or 0 if it was not journaled
+     */
+    public Transaction(int fromAccountId, int toAccountId, double amount, long timestamp, long sequence) {
         this.fromAccountId = fromAccountId;
         this.toAccountId = toAccountId;
         this.amount = amount;
+        this.timestamp = timestamp;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Returns the ID of the source account.
+     *
+     * @return the source account ID
+     */
+    public int getFromAccountId() {
+        return fromAccountId;
+    }
+
+    /**
+     * Returns the ID of the destination account.
+     *
+     * @return the destination account ID
+     */
+    public int getToAccountId() {
+        return toAccountId;
+    }
+
+    /**
+     * Returns the amount of money transferred.
+     *
+     * @return the amount
+     */
+    public double getAmount() {
+        return amount;
+    }
+
+    /**
+     * Returns the time the transaction was recorded.
+     *
+     * @return the timestamp in epoch milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the journal sequence of the transaction.
+     *
+     * @return the journal sequence, or 0 if it was not journaled
+     */
+    public long getSequence() {
+        return sequence;
     }
 
     /**
@@ -0,0 +1,517 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Append-only, off-heap store of every committed transaction.
+ *
+ * <p>Records live in direct ByteBuffer chunks laid out column by column (from account, to account,
+ * amount in cents, timestamp, sequence, and two back-pointers). Each record is linked into the
+ * history chain of both accounts it touches, and each account's newest record is kept in a sharded
+ * primitive head index. Reading an account's history walks its chain from the newest record
+ * backwards, so a page of entries costs only the entries on that page, and the accessor methods
+ * read fields straight from the off-heap columns without creating any objects.</p>
+ *
+ * <p>Queries stream matching records lazily through an Iterator or Stream, or page through them
+ * with a cursor, so the full history is never materialised.</p>
+ */
+public class TransactionHistoryStore {
+    // Marks the end of an account's history chain
+    public static final long NO_RECORD = -1L;
+
+    // Each chunk holds 2^CHUNK_SHIFT records
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_RECORDS - 1;
+
+    // Maximum number of chunks, limiting the store to 2^32 records
+    private static final int MAX_CHUNKS = 1 << 16;
+
+    // Byte offsets of each column inside a chunk
+    private static final int FROM_COLUMN = 0;
+    private static final int TO_COLUMN = FROM_COLUMN + CHUNK_RECORDS * Integer.BYTES;
+    private static final int AMOUNT_COLUMN = TO_COLUMN + CHUNK_RECORDS * Integer.BYTES;
+    private static final int TIMESTAMP_COLUMN = AMOUNT_COLUMN + CHUNK_RECORDS * Long.BYTES;
+    private static final int SEQUENCE_COLUMN = TIMESTAMP_COLUMN + CHUNK_RECORDS * Long.BYTES;
+    private static final int PREV_FROM_COLUMN = SEQUENCE_COLUMN + CHUNK_RECORDS * Long.BYTES;
+    private static final int PREV_TO_COLUMN = PREV_FROM_COLUMN + CHUNK_RECORDS * Long.BYTES;
+    private static final int STATUS_COLUMN = PREV_TO_COLUMN + CHUNK_RECORDS * Long.BYTES;
+    private static final int CHUNK_BYTES = STATUS_COLUMN + CHUNK_RECORDS * Integer.BYTES;
+
+    // Number of shards in the head index
+    private static final int HEAD_SHARDS = 64;
+
+    // Records are linked in commit order, which can trail timestamp order by a little under concurrency;
+    // a time-bounded walk only stops once it is this far before the start of the range
+    private static final long EARLY_STOP_SLACK_MILLIS = 1000L;
+
+    // Gives release/acquire access to the status column so scans never read a half-written record
+    private static final VarHandle STATUS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final AtomicReferenceArray<ByteBuffer> chunks = new AtomicReferenceArray<>(MAX_CHUNKS); // Off-heap column chunks
+    private final AtomicLong nextIndex = new AtomicLong(); // Index of the next record to append
+    private final Object chunkAllocationLock = new Object(); // Guards allocation of new chunks
+    private final HeadShard[] heads = new HeadShard[HEAD_SHARDS]; // Newest record of each account
+
+    /**
+     * One shard of the head index: open-addressing map from account ID to record index.
+     */
+    private static final class HeadShard {
+        final StampedLock lock = new StampedLock(); // Guards the arrays below
+        int[] keys = new int[64]; // Account IDs
+        long[] values = new long[64]; // Newest record index + 1, 0 marks an empty slot
+        int size; // Number of accounts in the shard
+
+        /**
+         * Returns the newest record index for an account.
+         *
+         * @param id the account ID
+         * @return the record index, or NO_RECORD if the account has no history
+         */
+        long get(int id) {
+            int[] k = keys;
+            long[] v = values;
+            int mask = v.length - 1;
+            for (int i = IntAccountMap.mix(id) & mask; ; i = (i + 1) & mask) {
+                if (v[i] == 0) {
+                    return NO_RECORD;
+                }
+                if (k[i] == id) {
+                    return v[i] - 1;
+                }
+            }
+        }
+
+        /**
+         * Sets the newest record index for an account. Must be called with the write lock held.
+         *
+         * @param id    the account ID
+         * @param index the record index
+         */
+        void put(int id, long index) {
+            if (size * 2 >= values.length) {
+                grow();
+            }
+            int mask = values.length - 1;
+            for (int i = IntAccountMap.mix(id) & mask; ; i = (i + 1) & mask) {
+                if (values[i] == 0) {
+                    keys[i] = id;
+                    values[i] = index + 1;
+                    size++;
+                    return;
+                }
+                if (keys[i] == id) {
+                    values[i] = index + 1;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Doubles the shard's arrays and reinserts every entry.
+         */
+        private void grow() {
+            int[] oldKeys = keys;
+            long[] oldValues = values;
+            int[] newKeys = new int[oldValues.length * 2];
+            long[] newValues = new long[oldValues.length * 2];
+            int mask = newValues.length - 1;
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != 0) {
+                    int j = IntAccountMap.mix(oldKeys[i]) & mask;
+                    while (newValues[j] != 0) {
+                        j = (j + 1) & mask;
+                    }
+                    newKeys[j] = oldKeys[i];
+                    newValues[j] = oldValues[i];
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+    }
+
+    /**
+     * Constructs an empty store. Chunks are allocated off-heap as records arrive.
+     */
+    public TransactionHistoryStore() {
+        for (int i = 0; i < HEAD_SHARDS; i++) {
+            heads[i] = new HeadShard();
+        }
+    }
+
+    /**
+     * Appends a transaction and links it into the history of both accounts.
+     *
+     * @param fromAccountId the ID of the source account
+     * @param toAccountId   the ID of the destination account
+     * @param amountCents   the amount moved, in cents
+     * @param timestamp     the time of the transaction in epoch milliseconds; the current time for a
+     *                      live transfer, the journal record's time when replaying
+     * @param sequence      the journal sequence of the transaction, or 0 when there is no journal
+     * @return the index of the new record
+     */
+    public long append(int fromAccountId, int toAccountId, long amountCents, long timestamp, long sequence) {
+        long index = nextIndex.getAndIncrement();
+        ByteBuffer chunk = chunkFor(index);
+        int slot = (int) (index & CHUNK_MASK);
+        chunk.putInt(FROM_COLUMN + slot * Integer.BYTES, fromAccountId);
+        chunk.putInt(TO_COLUMN + slot * Integer.BYTES, toAccountId);
+        chunk.putLong(AMOUNT_COLUMN + slot * Long.BYTES, amountCents);
+        chunk.putLong(TIMESTAMP_COLUMN + slot * Long.BYTES, timestamp);
+        chunk.putLong(SEQUENCE_COLUMN + slot * Long.BYTES, sequence);
+
+        // Link into each account's chain; the record is fully written before the head points at it
+        link(fromAccountId, chunk, PREV_FROM_COLUMN + slot * Long.BYTES, index);
+        link(toAccountId, chunk, PREV_TO_COLUMN + slot * Long.BYTES, index);
+
+        // Publish the record to scans over all accounts
+        STATUS.setRelease(chunk, STATUS_COLUMN + slot * Integer.BYTES, 1);
+        return index;
+    }
+
+    /**
+     * Returns the index of the newest record that touches an account.
+     *
+     * @param accountId the account ID
+     * @return the record index, or NO_RECORD if the account has no history
+     */
+    public long newest(int accountId) {
+        HeadShard shard = heads[headShardFor(accountId)];
+        long stamp = shard.lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                long index = shard.get(accountId);
+                if (shard.lock.validate(stamp)) {
+                    return index;
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                // The arrays were swapped mid-read by a resize; retry under the read lock
+            }
+        }
+        stamp = shard.lock.readLock();
+        try {
+            return shard.get(accountId);
+        } finally {
+            shard.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the record before the given one in an account's history chain.
+     *
+     * @param accountId the account whose chain is being walked
+     * @param index     a record in that account's chain
+     * @return the previous record index, or NO_RECORD at the start of the history
+     */
+    public long previous(int accountId, long index) {
+        ByteBuffer chunk = chunks.get((int) (index >>> CHUNK_SHIFT));
+        int slot = (int) (index & CHUNK_MASK);
+        int column = chunk.getInt(FROM_COLUMN + slot * Integer.BYTES) == accountId ? PREV_FROM_COLUMN : PREV_TO_COLUMN;
+        return chunk.getLong(column + slot * Long.BYTES);
+    }
+
+    /**
+     * Returns the source account of a record.
+     *
+     * @param index the record index
+     * @return the source account ID
+     */
+    public int fromAccountId(long index) {
+        return chunks.get((int) (index >>> CHUNK_SHIFT)).getInt(FROM_COLUMN + (int) (index & CHUNK_MASK) * Integer.BYTES);
+    }
+
+    /**
+     * Returns the destination account of a record.
+     *
+     * @param index the record index
+     * @return the destination account ID
+     */
+    public int toAccountId(long index) {
+        return chunks.get((int) (index >>> CHUNK_SHIFT)).getInt(TO_COLUMN + (int) (index & CHUNK_MASK) * Integer.BYTES);
+    }
+
+    /**
+     * Returns the amount of a record in cents.
+     *
+     * @param index the record index
+     * @return the amount in cents
+     */
+    public long amountCents(long index) {
+        return chunks.get((int) (index >>> CHUNK_SHIFT)).getLong(AMOUNT_COLUMN + (int) (index & CHUNK_MASK) * Long.BYTES);
+    }
+
+    /**
+     * Returns the time a record was appended.
+     *
+     * @param index the record index
+     * @return the timestamp in epoch milliseconds
+     */
+    public long timestamp(long index) {
+        return chunks.get((int) (index >>> CHUNK_SHIFT)).getLong(TIMESTAMP_COLUMN + (int) (index & CHUNK_MASK) * Long.BYTES);
+    }
+
+    /**
+     * Returns the journal sequence of a record.
+     *
+     * @param index the record index
+     * @return the journal sequence, or 0 if the transaction was not journaled
+     */
+    public long sequence(long index) {
+        return chunks.get((int) (index >>> CHUNK_SHIFT)).getLong(SEQUENCE_COLUMN + (int) (index & CHUNK_MASK) * Long.BYTES);
+    }
+
+    /**
+     * Creates a Transaction object for one record.
+     *
+     * @param index the record index
+     * @return the transaction
+     */
+    public Transaction get(long index) {
+        return new Transaction(fromAccountId(index), toAccountId(index), Money.fromCents(amountCents(index)),
+                timestamp(index), sequence(index));
+    }
+
+    /**
+     * Returns one page of an account's history, newest first.
+     *
+     * @param accountId the account ID
+     * @param cursor    the record to start from, or NO_RECORD to start at the newest record
+     * @param limit     the maximum number of entries to return
+     * @return the page, whose next cursor continues where it ended
+     * @throws IllegalArgumentException if the cursor is not a record of the account
+     */
+    public HistoryPage page(int accountId, long cursor, int limit) {
+        return query(HistoryQuery.forAccount(accountId), cursor, limit);
+    }
+
+    /**
+     * Returns one page of the transactions matching a query, newest first.
+     *
+     * @param query  the query
+     * @param cursor the cursor returned by the previous page, or NO_RECORD to start at the newest record
+     * @param limit  the maximum number of entries to return
+     * @return the page, whose next cursor continues where it ended
+     * @throws IllegalArgumentException if the cursor is not a record in the store, or not a record
+     *                                  of the queried account
+     */
+    public HistoryPage query(HistoryQuery query, long cursor, int limit) {
+        if (cursor != NO_RECORD) {
+            checkCursor(query, cursor);
+        }
+        HistoryIterator iterator = new HistoryIterator(query, cursor == NO_RECORD ? start(query) : cursor);
+        List<Transaction> entries = new ArrayList<>(Math.min(limit, 64));
+        while (entries.size() < limit && iterator.hasNext()) {
+            entries.add(iterator.next());
+        }
+        return new HistoryPage(entries, iterator.cursor());
+    }
+
+    /**
+     * Checks that a client's cursor names a record the query may continue from. A cursor from
+     * another account's page would otherwise walk that account's chain under this query.
+     *
+     * @param query  the query
+     * @param cursor the cursor
+     * @throws IllegalArgumentException if the cursor is out of range or does not involve the account
+     */
+    private void checkCursor(HistoryQuery query, long cursor) {
+        if (cursor < 0 || cursor >= nextIndex.get() || !isPublished(cursor)) {
+            throw new IllegalArgumentException("History cursor " + cursor + " is not a record in the store.");
+        }
+        if (!query.isAllAccounts() && fromAccountId(cursor) != query.getAccountId() && toAccountId(cursor) != query.getAccountId()) {
+            throw new IllegalArgumentException("History cursor " + cursor + " is not a record of Account " + query.getAccountId() + ".");
+        }
+    }
+
+    /**
+     * Returns a lazy iterator over the transactions matching a query, newest first.
+     *
+     * @param query the query
+     * @return the iterator
+     */
+    public Iterator<Transaction> iterator(HistoryQuery query) {
+        return new HistoryIterator(query, start(query));
+    }
+
+    /**
+     * Returns a lazy, sequential stream of the transactions matching a query, newest first.
+     * Records are read as the stream is consumed, so short-circuiting operations such as limit
+     * only touch the records they need.
+     *
+     * @param query the query
+     * @return the stream
+     */
+    public Stream<Transaction> stream(HistoryQuery query) {
+        Spliterator<Transaction> spliterator = Spliterators.spliteratorUnknownSize(iterator(query),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Iterator that walks either one account's chain or every record, skipping records that do not match.
+     */
+    private final class HistoryIterator implements Iterator<Transaction> {
+        private final HistoryQuery query; // The query being answered
+        private long index; // Next record to examine, or NO_RECORD when exhausted
+        private long matched = NO_RECORD; // Matching record found by hasNext and not yet returned
+
+        HistoryIterator(HistoryQuery query, long start) {
+            this.query = query;
+            this.index = start;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (matched == NO_RECORD && index != NO_RECORD) {
+                long candidate = index;
+                index = step(query, candidate);
+                if (query.isAllAccounts() && !isPublished(candidate)) {
+                    continue; // Still being written; it will show up in later queries
+                }
+                long timestamp = timestamp(candidate);
+                if (query.getFromTimestamp() != Long.MIN_VALUE
+                        && timestamp < query.getFromTimestamp() - EARLY_STOP_SLACK_MILLIS) {
+                    index = NO_RECORD; // Everything further back is older than the range
+                    break;
+                }
+                if (query.matches(timestamp, amountCents(candidate))) {
+                    matched = candidate;
+                }
+            }
+            return matched != NO_RECORD;
+        }
+
+        @Override
+        public Transaction next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Transaction transaction = get(matched);
+            matched = NO_RECORD;
+            return transaction;
+        }
+
+        /**
+         * Returns the cursor from which a later query resumes after the last returned entry.
+         *
+         * @return the cursor, or NO_RECORD if nothing is left
+         */
+        long cursor() {
+            return matched != NO_RECORD ? matched : index;
+        }
+    }
+
+    /**
+     * Returns the first record a query examines.
+     *
+     * @param query the query
+     * @return the newest record of the account, the newest record overall, or NO_RECORD
+     */
+    private long start(HistoryQuery query) {
+        if (query.isAllAccounts()) {
+            long last = nextIndex.get() - 1;
+            return last >= 0 ? last : NO_RECORD;
+        }
+        return newest(query.getAccountId());
+    }
+
+    /**
+     * Returns the record a query examines after the given one.
+     *
+     * @param query the query
+     * @param index the current record
+     * @return the next record to examine, or NO_RECORD
+     */
+    private long step(HistoryQuery query, long index) {
+        if (query.isAllAccounts()) {
+            return index > 0 ? index - 1 : NO_RECORD;
+        }
+        return previous(query.getAccountId(), index);
+    }
+
+    /**
+     * Returns whether a record has been completely written and linked.
+     *
+     * @param index the record index
+     * @return true if the record is visible to scans
+     */
+    private boolean isPublished(long index) {
+        ByteBuffer chunk = chunks.get((int) (index >>> CHUNK_SHIFT));
+        return chunk != null && (int) STATUS.getAcquire(chunk, STATUS_COLUMN + (int) (index & CHUNK_MASK) * Integer.BYTES) == 1;
+    }
+
+    /**
+     * Returns the total number of records in the store.
+     *
+     * @return the record count
+     */
+    public long size() {
+        return nextIndex.get();
+    }
+
+    /**
+     * Makes a record the newest entry of an account's chain.
+     *
+     * @param accountId   the account ID
+     * @param chunk       the chunk holding the record
+     * @param prevOffset  the byte offset of the record's back-pointer for this account
+     * @param index       the record index
+     */
+    private void link(int accountId, ByteBuffer chunk, int prevOffset, long index) {
+        HeadShard shard = heads[headShardFor(accountId)];
+        long stamp = shard.lock.writeLock();
+        try {
+            chunk.putLong(prevOffset, shard.get(accountId));
+            shard.put(accountId, index);
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the chunk that holds a record, allocating it on first use.
+     *
+     * @param index the record index
+     * @return the chunk
+     */
+    private ByteBuffer chunkFor(long index) {
+        int chunkIndex = (int) (index >>> CHUNK_SHIFT);
+        if (chunkIndex >= MAX_CHUNKS) {
+            throw new IllegalStateException("Transaction history store is full.");
+        }
+        ByteBuffer chunk = chunks.get(chunkIndex);
+        if (chunk == null) {
+            synchronized (chunkAllocationLock) {
+                chunk = chunks.get(chunkIndex);
+                if (chunk == null) {
+                    chunk = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.nativeOrder());
+                    chunks.set(chunkIndex, chunk);
+                }
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Returns the head index shard for an account.
+     *
+     * @param accountId the account ID
+     * @return the shard index
+     */
+    private static int headShardFor(int accountId) {
+        return (IntAccountMap.mix(accountId) >>> 16) & (HEAD_SHARDS - 1);
+    }
+}
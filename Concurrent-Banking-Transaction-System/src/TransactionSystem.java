@@ -1,26 +1,247 @@
 import util.LoggerUtil;
-import java.util.HashMap;
+import util.metrics.Counter;
+import util.metrics.Histogram;
+import util.metrics.MetricsRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
+import java.util.stream.Stream;
 
 /**
  * Manages a system of bank accounts and facilitates transactions between them.
  * Provides thread-safe transfer operations and transaction history management.
  */
 public class TransactionSystem {
-    // Map to store all bank accounts, keyed by their unique ID
-    private final Map<Integer, BankAccount> accounts = new HashMap<>();
+    // Number of compare-and-set attempts before the optimistic path gives up and takes locks
+    private static final int MAX_OPTIMISTIC_ATTEMPTS = 8;
+
+    // Default number of shards in the account store
+    private static final int DEFAULT_SHARD_COUNT = 64;
+
+    // Shard count, size bound and retention of the idempotency cache
+    private static final int IDEMPOTENCY_SHARDS = 64;
+    private static final int IDEMPOTENCY_MAX_ENTRIES = 1_000_000;
+    private static final long IDEMPOTENCY_TTL_MINUTES = 10;
+
+    // Binary event types; a transfer's result field is the TransferResult ordinal
+    private static final int TRANSFER_EVENT = LoggerUtil.defineEvent("TRANSFER", "from", "to", "cents", "result");
+    private static final int REVERSAL_EVENT = LoggerUtil.defineEvent("REVERSAL", "from", "to", "cents");
+
+    // Metrics: transfer latency, batch latency, and a counter per TransferResult indexed by ordinal
+    private static final Histogram TRANSFER_LATENCY = MetricsRegistry.getDefault().histogram("banking_transfer_latency_ns");
+    private static final Histogram BATCH_LATENCY = MetricsRegistry.getDefault().histogram("banking_transfer_batch_latency_ns");
+    private static final Counter[] TRANSFER_RESULTS = createResultCounters();
+    private static final Counter REVERSALS = MetricsRegistry.getDefault().counter("banking_reversals_total");
+
+    // Sharded store holding all bank accounts, keyed by their unique ID
+    private final AccountStore accounts;
+
+    // Write-ahead journal of committed money movements, or null when running without durability
+    private final TransferJournal journal;
+
+    // Whether a journaled change is reported only once its record is on disk
+    private volatile boolean durableCommits = true;
+
+    // Creates the accounts of journaled opens during replay
+    private final BalanceSnapshot.AccountFactory accountFactory;
+
+    // Serialises opening and closing accounts with each other and with snapshots, so a snapshot
+    // holds exactly the accounts open at its journal sequence
+    private final ReentrantLock membershipLock = new ReentrantLock();
+
+    // Off-heap history of every transaction, linked per account
+    private final TransactionHistoryStore history = new TransactionHistoryStore();
+
+    // Outcomes of recent transfers keyed by client request ID, so retries are not applied twice
+    private final IdempotencyCache idempotencyCache = new IdempotencyCache(
+            IDEMPOTENCY_SHARDS, IDEMPOTENCY_MAX_ENTRIES, IDEMPOTENCY_TTL_MINUTES, TimeUnit.MINUTES);
+
+    /**
+     * Outcome of a single attempt at the lock-free transfer path.
+     */
+    private enum OptimisticOutcome {
+        COMMITTED,          // The transfer was applied without taking any lock
+        INSUFFICIENT_FUNDS, // The source account cannot cover the amount
+        ACCOUNT_CLOSED,     // One of the accounts was closed while the transfer ran; nothing was moved
+        CONTENDED           // Too many concurrent updates; use the ordered two-lock protocol
+    }
 
     /**
      * Initializes the TransactionSystem with a list of bank accounts.
      *
      * @param accountList the list of bank accounts to add to the system
      */
-    public TransactionSystem(List<BankAccount> accountList) {
-        for (BankAccount account : accountList) {
-            accounts.put(account.getId(), account); // Add each account to the map
+    public TransactionSystem(List<? extends Account> accountList) {
+        this(accountList, DEFAULT_SHARD_COUNT);
+    }
+
+    /**
+     * Initializes the TransactionSystem with a list of bank accounts and a given number of store shards.
+     *
+     * @param accountList the list of bank accounts to add to the system
+     * @param shardCount  the number of shards in the account store
+     */
+    public TransactionSystem(List<? extends Account> accountList, int shardCount) {
+        this(accountList, shardCount, null);
+    }
+
+    /**
+     * Initializes the TransactionSystem with a write-ahead journal. The given accounts hold the
+     * opening balances; every transfer already in the journal is replayed on top of them before
+     * the system accepts new transfers, and every new transfer is appended to the journal.
+     * Accounts opened through the journal are recreated as BankAccounts.
+     *
+     * @param accountList the list of bank accounts to add to the system
+     * @param shardCount  the number of shards in the account store
+     * @param journal     the journal to replay and append to, or null to run without one
+     * @throws UncheckedIOException  if the journal cannot be replayed
+     * @throws IllegalStateException if the journal does not match the accounts
+     */
+    public TransactionSystem(List<? extends Account> accountList, int shardCount, TransferJournal journal) {
+        this(accountList, shardCount, journal, (id, balanceCents) -> new BankAccount(id, Money.fromCents(balanceCents)));
+    }
+
+    /**
+     * Initializes the TransactionSystem with a write-ahead journal, recreating the accounts the
+     * journal opened with a given factory.
+     *
+     * @param accountList the list of bank accounts to add to the system
+     * @param shardCount  the number of shards in the account store
+     * @param journal     the journal to replay and append to, or null to run without one
+     * @param factory     creates the accounts of journaled opens during replay
+     * @throws UncheckedIOException  if the journal cannot be replayed
+     * @throws IllegalStateException if the journal does not match the accounts
+     */
+    public TransactionSystem(List<? extends Account> accountList, int shardCount, TransferJournal journal,
+                             BalanceSnapshot.AccountFactory factory) {
+        this(accountList, shardCount, journal, factory, 0);
+    }
+
+    /**
+     * Initializes the TransactionSystem and replays the journal records after a given sequence number.
+     *
+     * @param accountList   the list of bank accounts to add to the system
+     * @param shardCount    the number of shards in the account store
+     * @param journal       the journal to replay and append to, or null to run without one
+     * @param factory       creates the accounts of journaled opens during replay
+     * @param replayAfter   only journal records with a larger sequence number are replayed
+     */
+    private TransactionSystem(List<? extends Account> accountList, int shardCount, TransferJournal journal,
+                              BalanceSnapshot.AccountFactory factory, long replayAfter) {
+        this.accounts = new AccountStore(shardCount, accountList.size());
+        this.journal = journal;
+        this.accountFactory = factory;
+        for (Account account : accountList) {
+            accounts.open(account); // Add each account to the store
+        }
+        if (journal != null) {
+            replayJournal(replayAfter);
+        }
+    }
+
+    /**
+     * Restarts a TransactionSystem from the newest balance snapshot plus the journal records written
+     * after it. If there is no snapshot yet, the opening accounts are used and the whole journal is replayed.
+     *
+     * @param snapshotDirectory the directory that holds snapshot files
+     * @param journal           the journal to replay and append to
+     * @param shardCount        the number of shards in the account store
+     * @param factory           creates accounts from snapshot rows and journaled opens
+     * @param openingAccounts   the accounts to start from when no snapshot exists
+     * @return the recovered TransactionSystem
+     * @throws IOException if the snapshot cannot be read
+     */
+    public static TransactionSystem recover(Path snapshotDirectory, TransferJournal journal, int shardCount,
+                                            BalanceSnapshot.AccountFactory factory, List<? extends Account> openingAccounts) throws IOException {
+        long start = System.nanoTime();
+        BalanceSnapshot snapshot = BalanceSnapshot.loadLatest(snapshotDirectory, factory);
+        if (snapshot == null) {
+            return new TransactionSystem(openingAccounts, shardCount, journal, factory, 0);
         }
+        LoggerUtil.log(Level.INFO, Thread.currentThread().getName(),
+                "Loaded snapshot of " + snapshot.getAccounts().size() + " accounts at journal sequence " + snapshot.getJournalSequence()
+                        + " in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        return new TransactionSystem(snapshot.getAccounts(), shardCount, journal, factory, snapshot.getJournalSequence());
+    }
+
+    /**
+     * Opens a new account. This may be called while transfers are running.
+     * With a journal, the open and the account's opening balance are journaled before the
+     * account becomes visible, so a restart recreates it. The journal keeps whole cents, so the
+     * opening balance must be a whole number of cents.
+     *
+     * @param account the account to add
+     * @return true if the account was opened, false if an account with the same ID already exists
+     * @throws UncheckedIOException     if the journal record cannot be written
+     * @throws IllegalArgumentException if a journal is attached and the opening balance has a fraction of a cent
+     */
+    public boolean openAccount(Account account) {
+        long sequence = 0;
+        membershipLock.lock();
+        try {
+            if (accounts.get(account.getId()) != null) {
+                LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Open failed: Account " + account.getId() + " already exists.");
+                return false;
+            }
+            if (journal != null) {
+                sequence = journal.append(TransferJournal.TYPE_OPEN, account.getId(), account.getId(), Money.toExactCents(account.getBalance()));
+                account.setJournalSequence(sequence);
+            }
+            accounts.open(account);
+        } finally {
+            membershipLock.unlock();
+        }
+        awaitDurable(sequence);
+        return true;
+    }
+
+    /**
+     * Closes an account. This may be called while transfers are running; the account's lock is taken
+     * first so no locked transfer is halfway through it, and lock-free transfers that race with the
+     * close are settled once they notice the account has gone, without crediting it again. With a
+     * journal, the close and the account's final balance are journaled before it is removed.
+     *
+     * @param accountId the ID of the account to close
+     * @return the closed account, or null if it does not exist
+     * @throws UncheckedIOException if the journal record cannot be written
+     */
+    public Account closeAccount(int accountId) {
+        long sequence = 0;
+        Account closed;
+        membershipLock.lock();
+        try {
+            Account account = accounts.get(accountId);
+            if (account == null) {
+                LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Close failed: Account " + accountId + " does not exist.");
+                return null;
+            }
+
+            account.lock();
+            try {
+                // Opens and closes are serialised, so the account is still in the store
+                if (journal != null) {
+                    sequence = journal.append(TransferJournal.TYPE_CLOSE, accountId, accountId, Money.toCents(account.getBalance()));
+                    account.setJournalSequence(sequence);
+                }
+                closed = accounts.close(accountId);
+            } finally {
+                account.unlock();
+            }
+        } finally {
+            membershipLock.unlock();
+        }
+        awaitDurable(sequence);
+        return closed;
     }
 
     /**
@@ -29,27 +250,165 @@ public class TransactionSystem {
      *
      * @param fromAccountId the ID of the account to transfer from
      * @param toAccountId   the ID of the account to transfer to
-     * @param amount        the amount to transfer
+     * @param amount        the amount to transfer, rounded to whole cents
      * @return true if the transfer is successful, false otherwise
      */
     public boolean transfer(int fromAccountId, int toAccountId, double amount) {
+        long start = System.nanoTime();
+        TransferResult result = performTransfer(fromAccountId, toAccountId, amount);
+        TRANSFER_LATENCY.recordSince(start);
+        recordOutcome(fromAccountId, toAccountId, amount, result);
+        return result == TransferResult.SUCCESS;
+    }
+
+    /**
+     * Transfers a specified amount from one account to another at most once per request ID.
+     * A repeated request ID (for example a client retry after a timeout) returns the outcome of the
+     * original transfer without touching the accounts again; if the original is still running, the
+     * repeat waits for it. Outcomes are remembered for a bounded time and number of request IDs.
+     * Reusing a remembered request ID with a different source, destination or amount moves nothing
+     * and returns REQUEST_ID_CONFLICT.
+     *
+     * @param requestId     the client's idempotency key
+     * @param fromAccountId the ID of the account to transfer from
+     * @param toAccountId   the ID of the account to transfer to
+     * @param amount        the amount to transfer, rounded to whole cents
+     * @return the outcome of the transfer
+     */
+    public TransferResult transfer(String requestId, int fromAccountId, int toAccountId, double amount) {
+        CompletableFuture<TransferResult> pending = new CompletableFuture<>();
+        CompletableFuture<TransferResult> original = idempotencyCache.putIfAbsent(
+                requestId, fromAccountId, toAccountId, Money.toCents(amount), pending);
+        if (original != null) {
+            TransferResult repeated = original.join();
+            if (repeated == TransferResult.REQUEST_ID_CONFLICT) {
+                LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Transfer failed: Request " + requestId + " was already used for a different transfer.");
+                recordOutcome(fromAccountId, toAccountId, amount, repeated);
+            } else {
+                LoggerUtil.log(Level.FINE, Thread.currentThread().getName(), "Duplicate transfer request " + requestId + "; returning the original outcome.");
+            }
+            return repeated;
+        }
+
+        long start = System.nanoTime();
+        TransferResult result = TransferResult.FAILED;
+        try {
+            result = performTransfer(fromAccountId, toAccountId, amount);
+        } finally {
+            TRANSFER_LATENCY.recordSince(start);
+            if (result == TransferResult.FAILED) {
+                // No definite outcome; let a retry with the same ID try again
+                idempotencyCache.remove(requestId);
+            }
+            pending.complete(result);
+        }
+        recordOutcome(fromAccountId, toAccountId, amount, result);
+        return result;
+    }
+
+    /**
+     * Records a finished transfer in the event log and the per-outcome counters.
+     *
+     * @param fromAccountId the ID of the account transferred from
+     * @param toAccountId   the ID of the account transferred to
+     * @param amount        the amount transferred
+     * @param result        the outcome of the transfer
+     */
+    private static void recordOutcome(int fromAccountId, int toAccountId, double amount, TransferResult result) {
+        LoggerUtil.event(TRANSFER_EVENT, fromAccountId, toAccountId, Money.toCents(amount), result.ordinal());
+        TRANSFER_RESULTS[result.ordinal()].increment();
+    }
+
+    /**
+     * Creates a counter for each transfer outcome, e.g. banking_transfers_success_total.
+     *
+     * @return the counters, indexed by TransferResult ordinal
+     */
+    private static Counter[] createResultCounters() {
+        TransferResult[] results = TransferResult.values();
+        Counter[] counters = new Counter[results.length];
+        for (TransferResult result : results) {
+            counters[result.ordinal()] = MetricsRegistry.getDefault().counter("banking_transfers_" + result.name().toLowerCase(Locale.ROOT) + "_total");
+        }
+        return counters;
+    }
+
+    /**
+     * Runs a single transfer and reports its outcome. The amount is rounded to whole cents once,
+     * here, and every path moves exactly that rounded amount out of one account and into the other.
+     *
+     * @param fromAccountId   the ID of the account to transfer from
+     * @param toAccountId     the ID of the account to transfer to
+     * @param requestedAmount the amount to transfer
+     * @return the outcome of the transfer, INVALID_REQUEST if the amount rounds to nothing
+     */
+    private TransferResult performTransfer(int fromAccountId, int toAccountId, double requestedAmount) {
+        double amount = Money.fromCents(Money.toCents(requestedAmount));
+
         // Validate the transfer amount and account IDs
         if (amount <= 0 || fromAccountId == toAccountId) {
             LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Transfer failed: Invalid transfer amount or identical account IDs.");
-            return false;
+            return TransferResult.INVALID_REQUEST;
         }
 
-        // Lock accounts in a consistent order (smaller ID first) to avoid deadlocks
-        BankAccount firstAccount = accounts.get(Math.min(fromAccountId, toAccountId));
-        BankAccount secondAccount = accounts.get(Math.max(fromAccountId, toAccountId));
+        Account fromAccount = accounts.get(fromAccountId);
+        Account toAccount = accounts.get(toAccountId);
 
         // Check if both accounts exist
-        if (firstAccount == null || secondAccount == null) {
+        if (fromAccount == null || toAccount == null) {
             LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Transfer failed: One or both accounts do not exist.");
-            return false;
+            return TransferResult.ACCOUNT_NOT_FOUND;
         }
 
-        LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), "Initiating transfer of " + amount + " from Account " + fromAccountId + " to Account " + toAccountId);
+        LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), () -> "Initiating transfer of " + amount + " from Account " + fromAccountId + " to Account " + toAccountId);
+
+        // Try the lock-free path first when both accounts support compare-and-set updates.
+        // With a journal the record must be written while both accounts are held, so skip it.
+        if (journal == null && fromAccount instanceof AtomicBankAccount && toAccount instanceof AtomicBankAccount) {
+            OptimisticOutcome outcome = tryOptimisticTransfer((AtomicBankAccount) fromAccount, (AtomicBankAccount) toAccount, amount);
+            if (outcome == OptimisticOutcome.COMMITTED) {
+                return TransferResult.SUCCESS;
+            } else if (outcome == OptimisticOutcome.INSUFFICIENT_FUNDS) {
+                LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Transfer failed: Insufficient balance in Account " + fromAccountId);
+                return TransferResult.INSUFFICIENT_FUNDS;
+            } else if (outcome == OptimisticOutcome.ACCOUNT_CLOSED) {
+                LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Transfer failed: One or both accounts were closed.");
+                return TransferResult.ACCOUNT_NOT_FOUND;
+            }
+            // Contended: fall through to the ordered two-lock protocol
+        }
+
+        // A hot destination takes deposits without its lock, so only the source needs locking.
+        // With a journal the record must be written while both accounts are held, so skip it.
+        if (journal == null && toAccount.acceptsUnlockedDeposits()) {
+            TransferResult result = transferToHotAccount(fromAccount, toAccount, amount);
+            if (result != null) {
+                return result;
+            }
+            // The destination went cold: fall through to the ordered two-lock protocol
+        }
+
+        return transferUnderBothLocks(fromAccount, toAccount, amount);
+    }
+
+    /**
+     * Transfers between two accounts while holding both their locks.
+     * Accounts are locked in a consistent order (smaller ID first) to avoid deadlocks. Account IDs
+     * are a single global order, so this holds across shards as well. With a journal, success is
+     * reported once the record is on disk, waited for after the locks are released.
+     *
+     * @param fromAccount the account to transfer from
+     * @param toAccount   the account to transfer to
+     * @param amount      the amount to transfer
+     * @return the outcome of the transfer
+     */
+    private TransferResult transferUnderBothLocks(Account fromAccount, Account toAccount, double amount) {
+        int fromAccountId = fromAccount.getId();
+        int toAccountId = toAccount.getId();
+        Account firstAccount = fromAccountId < toAccountId ? fromAccount : toAccount;
+        Account secondAccount = fromAccountId < toAccountId ? toAccount : fromAccount;
+
+        long sequence;
 
         // Lock the first account
         firstAccount.lock();
@@ -57,18 +416,22 @@ public class TransactionSystem {
             // Lock the second account
             secondAccount.lock();
             try {
-                // Execute the transfer and return the result
-                if (executeTransfer(fromAccountId, toAccountId, amount)) {
-                    return true;
-                } else {
+                // An account may have been closed while we waited for its lock
+                if (!isOpen(fromAccount) || !isOpen(toAccount)) {
+                    LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Transfer failed: One or both accounts were closed.");
+                    return TransferResult.ACCOUNT_NOT_FOUND;
+                }
+
+                // Execute the transfer
+                sequence = executeTransfer(fromAccount, toAccount, Money.toCents(amount));
+                if (sequence < 0) {
                     LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Transfer failed: Insufficient balance in Account " + fromAccountId);
-                    return false;
+                    return TransferResult.INSUFFICIENT_FUNDS;
                 }
             } catch (Exception e) {
-                // Log errors and attempt to reverse the transaction
-                LoggerUtil.log(Level.SEVERE, Thread.currentThread().getName(), "Error during transfer: " + amount + " from Account " + fromAccountId + " to Account " + toAccountId + ". Attempting reversal.");
-                reverseTransaction(fromAccountId, toAccountId, amount);
-                return false;
+                // executeTransfer undoes its own partial work, so there is nothing left to reverse
+                LoggerUtil.log(Level.SEVERE, Thread.currentThread().getName(), "Error during transfer: " + amount + " from Account " + fromAccountId + " to Account " + toAccountId + ". Transfer rolled back: " + e.getMessage());
+                return TransferResult.FAILED;
             } finally {
                 // Unlock the second account
                 secondAccount.unlock();
@@ -77,55 +440,334 @@ public class TransactionSystem {
             // Unlock the first account
             firstAccount.unlock();
         }
+
+        awaitDurable(sequence);
+        return TransferResult.SUCCESS;
     }
 
     /**
-     * Executes the transfer between two accounts.
+     * Waits until the journal record of a committed change is on disk, unless durable commits are
+     * off. Called after the accounts' locks are released: any later change to the same accounts
+     * has a later record, which cannot reach the disk before this one, so releasing early is safe
+     * and lets the next transfers join the same group commit.
      *
-     * @param fromAccountId the ID of the account to transfer from
-     * @param toAccountId   the ID of the account to transfer to
-     * @param amount        the amount to transfer
-     * @return true if the transfer is successful, false if the source account has insufficient balance
+     * @param sequence the highest journal sequence to wait for, or 0 if nothing was journaled
      */
-    private boolean executeTransfer(int fromAccountId, int toAccountId, double amount) {
-        BankAccount fromAccount = accounts.get(fromAccountId);
-        BankAccount toAccount = accounts.get(toAccountId);
+    private void awaitDurable(long sequence) {
+        if (journal != null && durableCommits && sequence > 0) {
+            journal.awaitSync(sequence);
+        }
+    }
 
-        // Check if the source account has sufficient balance
-        if (fromAccount.getBalance() < amount) {
-            return false;
+    /**
+     * Sets whether transfers, reversals, opens and closes wait for their journal record to reach
+     * the disk before returning. On by default. When off, a change is reported as soon as its
+     * record is appended, and a crash can lose up to one sync interval of changes that were
+     * reported as SUCCESS. Has no effect without a journal.
+     *
+     * @param durable true to wait for each record to be on disk
+     */
+    public void setDurableCommits(boolean durable) {
+        this.durableCommits = durable;
+    }
+
+    /**
+     * Transfers a batch of amounts between accounts, taking each involved account's lock only once.
+     * All accounts touched by the batch are locked in ascending ID order, the same global order used
+     * by transfer, so batches and single transfers can run together without deadlocking. Transfers
+     * are applied in the order they appear in the batch, each amount rounded to whole cents.
+     *
+     * @param requests the transfers to apply
+     * @return the outcome of each transfer, in the same order as the requests
+     */
+    public List<TransferResult> transferBatch(List<TransferRequest> requests) {
+        long start = System.nanoTime();
+        int count = requests.size();
+        TransferResult[] results = new TransferResult[count];
+        Account[] fromAccounts = new Account[count];
+        Account[] toAccounts = new Account[count];
+        long[] amountCents = new long[count]; // Requested amounts rounded to whole cents
+
+        // Resolve every request and collect the IDs of the accounts the batch touches
+        int[] involvedIds = new int[count * 2];
+        int involvedCount = 0;
+        for (int i = 0; i < count; i++) {
+            TransferRequest request = requests.get(i);
+            amountCents[i] = Money.toCents(request.getAmount());
+            if (amountCents[i] <= 0 || request.getFromAccountId() == request.getToAccountId()) {
+                results[i] = TransferResult.INVALID_REQUEST;
+                continue;
+            }
+            fromAccounts[i] = accounts.get(request.getFromAccountId());
+            toAccounts[i] = accounts.get(request.getToAccountId());
+            if (fromAccounts[i] == null || toAccounts[i] == null) {
+                results[i] = TransferResult.ACCOUNT_NOT_FOUND;
+                continue;
+            }
+            involvedIds[involvedCount++] = request.getFromAccountId();
+            involvedIds[involvedCount++] = request.getToAccountId();
+        }
+
+        // Sort and deduplicate so each account is locked once, smallest ID first
+        Arrays.sort(involvedIds, 0, involvedCount);
+        Account[] lockOrder = new Account[involvedCount];
+        int lockCount = 0;
+        for (int i = 0; i < involvedCount; i++) {
+            if (i > 0 && involvedIds[i] == involvedIds[i - 1]) {
+                continue;
+            }
+            Account account = accounts.get(involvedIds[i]);
+            if (account != null) {
+                lockOrder[lockCount++] = account;
+            }
         }
 
-        // Create a transaction record
-        Transaction transaction = new Transaction(fromAccountId, toAccountId, amount);
+        int locked = 0;
+        int succeeded = 0;
+        long lastSequence = 0;
+        try {
+            for (; locked < lockCount; locked++) {
+                lockOrder[locked].lock();
+            }
+
+            // Apply every transfer in the batch while all involved accounts are held
+            for (int i = 0; i < count; i++) {
+                if (results[i] != null) {
+                    continue; // Already rejected during validation
+                }
+                if (!isOpen(fromAccounts[i]) || !isOpen(toAccounts[i])) {
+                    results[i] = TransferResult.ACCOUNT_NOT_FOUND;
+                    continue;
+                }
+                try {
+                    long sequence = executeTransfer(fromAccounts[i], toAccounts[i], amountCents[i]);
+                    if (sequence >= 0) {
+                        results[i] = TransferResult.SUCCESS;
+                        lastSequence = Math.max(lastSequence, sequence);
+                        succeeded++;
+                    } else {
+                        results[i] = TransferResult.INSUFFICIENT_FUNDS;
+                    }
+                } catch (Exception e) {
+                    LoggerUtil.log(Level.SEVERE, Thread.currentThread().getName(), "Error during batched transfer " + i + ": " + e.getMessage());
+                    results[i] = TransferResult.FAILED;
+                }
+            }
+        } finally {
+            // Unlock in reverse order of acquisition
+            while (locked > 0) {
+                lockOrder[--locked].unlock();
+            }
+        }
+        awaitDurable(lastSequence);
+
+        BATCH_LATENCY.recordSince(start);
+
+        // Log one summary line for the whole batch instead of one line per transfer
+        LoggerUtil.log(Level.INFO, Thread.currentThread().getName(),
+                "Batch of " + count + " transfers across " + lockCount + " accounts: " + succeeded + " succeeded, " + (count - succeeded) + " failed.");
+        for (int i = 0; i < count; i++) {
+            TransferRequest request = requests.get(i);
+            recordOutcome(request.getFromAccountId(), request.getToAccountId(), request.getAmount(), results[i]);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Attempts a transfer between two lock-free accounts without taking any lock.
+     * The source balance is read and decremented with compare-and-set; the destination is
+     * credited with an atomic add once the withdrawal has succeeded. If either account is
+     * held by the locked protocol, or the source keeps changing under us, the caller falls
+     * back to locking both accounts. A close that races with the transfer is settled by
+     * {@link #settleAfterClose}.
+     *
+     * @param fromAccount the account to transfer from
+     * @param toAccount   the account to transfer to
+     * @param amount      the amount to transfer
+     * @return the outcome of the attempt
+     */
+    private OptimisticOutcome tryOptimisticTransfer(AtomicBankAccount fromAccount, AtomicBankAccount toAccount, double amount) {
+        // Do not race with a thread that is already running the locked protocol on these accounts
+        if (fromAccount.isLocked() || toAccount.isLocked()) {
+            return OptimisticOutcome.CONTENDED;
+        }
+
+        long cents = Money.toCents(amount);
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_ATTEMPTS; attempt++) {
+            long current = fromAccount.getBalanceCents();
+            if (current < cents) {
+                return OptimisticOutcome.INSUFFICIENT_FUNDS;
+            }
+            if (fromAccount.compareAndSetBalance(current, current - cents)) {
+                toAccount.depositCents(cents);
+                if ((!isOpen(fromAccount) || !isOpen(toAccount)) && !settleAfterClose(fromAccount, toAccount, Money.fromCents(cents))) {
+                    return OptimisticOutcome.ACCOUNT_CLOSED;
+                }
+
+                // Add the transaction to both accounts' histories
+                history.append(fromAccount.getId(), toAccount.getId(), cents, System.currentTimeMillis(), 0);
+                return OptimisticOutcome.COMMITTED;
+            }
+        }
+        return OptimisticOutcome.CONTENDED;
+    }
+
+    /**
+     * Transfers into an account in hot mode while holding only the source account's lock.
+     * The destination's deposit goes to its striped balance, so many transfers into the same
+     * hot account do not queue on its lock. The destination's lock is never taken while the
+     * source's is held, as that could deadlock with a transfer locking the two in ID order:
+     * if the destination has gone cold the source is refunded and the caller falls back to the
+     * two-lock protocol, and if the destination is closed while the money is moving, the source's
+     * lock is released before {@link #settleAfterClose} locks both in order.
+     *
+     * @param fromAccount the account to transfer from
+     * @param toAccount   the hot account to transfer to
+     * @param amount      the amount to transfer
+     * @return the outcome of the transfer, or null if the destination is no longer hot
+     */
+    private TransferResult transferToHotAccount(Account fromAccount, Account toAccount, double amount) {
+        fromAccount.lock();
+        try {
+            if (!isOpen(fromAccount) || !isOpen(toAccount)) {
+                LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Transfer failed: One or both accounts were closed.");
+                return TransferResult.ACCOUNT_NOT_FOUND;
+            }
+            if (!fromAccount.tryWithdraw(amount)) {
+                LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Transfer failed: Insufficient balance in Account " + fromAccount.getId());
+                return TransferResult.INSUFFICIENT_FUNDS;
+            }
+            if (!toAccount.tryDepositUnlocked(amount)) {
+                // The destination went cold since the caller checked; only the source lock is held
+                fromAccount.deposit(amount);
+                return null;
+            }
+
+            // The destination's lock is not held, so it may have been closed under us
+            if (isOpen(toAccount)) {
+                // Add the transaction to both accounts' histories
+                history.append(fromAccount.getId(), toAccount.getId(), Money.toCents(amount), System.currentTimeMillis(), 0);
+                return TransferResult.SUCCESS;
+            }
+        } finally {
+            fromAccount.unlock();
+        }
 
-        // Perform the transfer
-        fromAccount.withdraw(amount);
+        if (settleAfterClose(fromAccount, toAccount, amount)) {
+            history.append(fromAccount.getId(), toAccount.getId(), Money.toCents(amount), System.currentTimeMillis(), 0);
+            return TransferResult.SUCCESS;
+        }
+        LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Transfer failed: One or both accounts were closed.");
+        return TransferResult.ACCOUNT_NOT_FOUND;
+    }
+
+    /**
+     * Settles a lock-free transfer that has taken the amount from the source and credited the
+     * destination when either account was closed while the money was moving. Runs under the
+     * membership lock with both accounts locked in ID order, so no close can run while it decides
+     * and the rollback cannot deadlock. A closed account is never credited, since its final
+     * balance may already have been read by whoever closed it:
+     * <ul>
+     *     <li>If the source is still open, the amount is taken back from the destination and
+     *     refunded. If the destination no longer holds it, the credit was withdrawn before the
+     *     close, so the transfer stands.</li>
+     *     <li>If the source has been closed, the transfer stands and the amount stays with the
+     *     destination.</li>
+     * </ul>
+     *
+     * @param fromAccount the account the amount was taken from
+     * @param toAccount   the account it was credited to
+     * @param amount      the amount transferred
+     * @return true if the transfer stands, false if it was rolled back
+     */
+    private boolean settleAfterClose(Account fromAccount, Account toAccount, double amount) {
+        Account firstAccount = fromAccount.getId() < toAccount.getId() ? fromAccount : toAccount;
+        Account secondAccount = fromAccount.getId() < toAccount.getId() ? toAccount : fromAccount;
+        membershipLock.lock();
+        try {
+            firstAccount.lock();
+            try {
+                secondAccount.lock();
+                try {
+                    if (isOpen(fromAccount) && toAccount.tryWithdraw(amount)) {
+                        fromAccount.deposit(amount);
+                        return false;
+                    }
+                    return true;
+                } finally {
+                    secondAccount.unlock();
+                }
+            } finally {
+                firstAccount.unlock();
+            }
+        } finally {
+            membershipLock.unlock();
+        }
+    }
+
+    /**
+     * Executes the transfer between two accounts. The caller must hold both accounts' locks.
+     * When a journal is attached the record is appended after the withdrawal succeeds but before the
+     * destination is credited; if the append fails the withdrawal is undone and the error rethrown.
+     * The record may not be on disk yet when this returns. The accounts, the journal and the
+     * history all move the same whole number of cents, so a replay rebuilds the live balances.
+     *
+     * @param fromAccount the account to transfer from
+     * @param toAccount   the account to transfer to
+     * @param amountCents the amount to transfer, in cents
+     * @return the journal sequence of the transfer, 0 without a journal, or -1 if the source
+     *         account has insufficient balance
+     */
+    private long executeTransfer(Account fromAccount, Account toAccount, long amountCents) {
+        double amount = Money.fromCents(amountCents);
+
+        // Withdraw only if the source account has sufficient balance; the check is atomic so
+        // lock-free transfers running concurrently cannot overdraw the account
+        if (!fromAccount.tryWithdraw(amount)) {
+            return -1;
+        }
+
+        // Write ahead: the journal record must exist before the money shows up anywhere else
+        long sequence = 0;
+        if (journal != null) {
+            try {
+                sequence = journal.append(TransferJournal.TYPE_TRANSFER, fromAccount.getId(), toAccount.getId(), amountCents);
+            } catch (RuntimeException e) {
+                fromAccount.deposit(amount);
+                throw e;
+            }
+            fromAccount.setJournalSequence(sequence);
+            toAccount.setJournalSequence(sequence);
+        }
+
+        // Complete the transfer
         toAccount.deposit(amount);
 
         // Add the transaction to both accounts' histories
-        fromAccount.addTransaction(transaction);
-        toAccount.addTransaction(transaction);
+        history.append(fromAccount.getId(), toAccount.getId(), amountCents, System.currentTimeMillis(), sequence);
 
-        return true;
+        return sequence;
     }
 
     /**
      * Reverses a transaction by transferring the amount back from the destination account to the source account.
      *
-     * @param fromAccountId the ID of the original source account
-     * @param toAccountId   the ID of the original destination account
-     * @param amount        the amount to reverse
+     * @param fromAccountId   the ID of the original source account
+     * @param toAccountId     the ID of the original destination account
+     * @param requestedAmount the amount to reverse, rounded to whole cents
      */
-    public void reverseTransaction(int fromAccountId, int toAccountId, double amount) {
+    public void reverseTransaction(int fromAccountId, int toAccountId, double requestedAmount) {
+        long amountCents = Money.toCents(requestedAmount);
+        double amount = Money.fromCents(amountCents); // The journal, history and accounts all move this
+
         // Validate the reversal request
         if (amount <= 0 || fromAccountId == toAccountId) {
             LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Invalid transaction reversal request.");
             return;
         }
 
-        BankAccount fromAccount = accounts.get(fromAccountId);
-        BankAccount toAccount = accounts.get(toAccountId);
+        Account fromAccount = accounts.get(fromAccountId);
+        Account toAccount = accounts.get(toAccountId);
 
         // Check if both accounts exist
         if (fromAccount == null || toAccount == null) {
@@ -134,8 +776,10 @@ public class TransactionSystem {
         }
 
         // Lock accounts in a consistent order (smaller ID first) to avoid deadlocks
-        BankAccount firstLock = fromAccountId < toAccountId ? fromAccount : toAccount;
-        BankAccount secondLock = fromAccountId < toAccountId ? toAccount : fromAccount;
+        Account firstLock = fromAccountId < toAccountId ? fromAccount : toAccount;
+        Account secondLock = fromAccountId < toAccountId ? toAccount : fromAccount;
+
+        long sequence = 0;
 
         // Lock the first account
         firstLock.lock();
@@ -143,11 +787,30 @@ public class TransactionSystem {
             // Lock the second account
             secondLock.lock();
             try {
+                // An account may have been closed while we waited for its lock
+                if (!isOpen(fromAccount) || !isOpen(toAccount)) {
+                    LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Reversal failed: One or both accounts were closed.");
+                    return;
+                }
+
                 // Check if the destination account has sufficient balance for reversal
-                if (toAccount.getBalance() >= amount) {
-                    toAccount.withdraw(amount);
+                if (toAccount.tryWithdraw(amount)) {
+                    if (journal != null) {
+                        try {
+                            sequence = journal.append(TransferJournal.TYPE_REVERSAL, toAccountId, fromAccountId, amountCents);
+                        } catch (RuntimeException e) {
+                            toAccount.deposit(amount);
+                            LoggerUtil.log(Level.SEVERE, Thread.currentThread().getName(), "Reversal failed: could not write journal record: " + e.getMessage());
+                            return;
+                        }
+                        fromAccount.setJournalSequence(sequence);
+                        toAccount.setJournalSequence(sequence);
+                    }
                     fromAccount.deposit(amount);
+                    history.append(toAccountId, fromAccountId, amountCents, System.currentTimeMillis(), sequence);
                     LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), "Reversed " + amount + " from Account " + fromAccountId + " to Account " + toAccountId);
+                    LoggerUtil.event(REVERSAL_EVENT, fromAccountId, toAccountId, amountCents);
+                    REVERSALS.increment();
                 } else {
                     LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Insufficient balance for reversal of " + amount + " from Account " + toAccountId + " to Account " + fromAccountId);
                 }
@@ -159,15 +822,252 @@ public class TransactionSystem {
             // Unlock the first account
             firstLock.unlock();
         }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Applies every journal record after the given sequence number to the accounts in the store,
+     * opening and closing accounts as the journal did. Records were validated when they were
+     * written, so they are applied without balance checks. A transfer is skipped for an account
+     * that has already reached its sequence number, which happens for records written while a
+     * snapshot was being taken.
+     *
+     * @param afterSequence only records with a larger sequence number are applied
+     * @throws UncheckedIOException  if the journal cannot be read
+     * @throws IllegalStateException if a record names an account that is not open at that point
+     */
+    private void replayJournal(long afterSequence) {
+        long start = System.nanoTime();
+        try {
+            long replayed = journal.replay(afterSequence, (sequence, type, fromAccountId, toAccountId, amountCents, timestamp) -> {
+                switch (type) {
+                    case TransferJournal.TYPE_OPEN:
+                        Account opened = accountFactory.create(fromAccountId, amountCents);
+                        if (!accounts.open(opened)) {
+                            throw new IllegalStateException("Journal record " + sequence + " opens Account " + fromAccountId + ", which is already open.");
+                        }
+                        opened.setJournalSequence(sequence);
+                        break;
+                    case TransferJournal.TYPE_CLOSE:
+                        Account closed = replayedAccount(sequence, fromAccountId);
+                        if (Money.toCents(closed.getBalance()) != amountCents) {
+                            LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Account " + fromAccountId + " replayed to "
+                                    + closed.getBalance() + " but was closed with " + Money.fromCents(amountCents) + " at journal record " + sequence);
+                        }
+                        accounts.close(fromAccountId);
+                        break;
+                    case TransferJournal.TYPE_TRANSFER:
+                    case TransferJournal.TYPE_REVERSAL:
+                        Account fromAccount = replayedAccount(sequence, fromAccountId);
+                        Account toAccount = replayedAccount(sequence, toAccountId);
+                        double amount = Money.fromCents(amountCents);
+                        if (sequence > fromAccount.getJournalSequence()) {
+                            fromAccount.withdraw(amount);
+                            fromAccount.setJournalSequence(sequence);
+                        }
+                        if (sequence > toAccount.getJournalSequence()) {
+                            toAccount.deposit(amount);
+                            toAccount.setJournalSequence(sequence);
+                        }
+                        history.append(fromAccountId, toAccountId, amountCents, timestamp, sequence);
+                        break;
+                    default:
+                        throw new IllegalStateException("Journal record " + sequence + " has unknown type " + type + ".");
+                }
+            });
+            LoggerUtil.log(Level.INFO, Thread.currentThread().getName(),
+                    "Replayed " + replayed + " journal records in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replay transfer journal", e);
+        }
+    }
+
+    /**
+     * Looks up an account named by a journal record during replay.
+     *
+     * @param sequence  the record's sequence number, for the error message
+     * @param accountId the account ID
+     * @return the account
+     * @throws IllegalStateException if the account is not open; applying the record to one side
+     *                               only would create or destroy money
+     */
+    private Account replayedAccount(long sequence, int accountId) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            throw new IllegalStateException("Journal record " + sequence + " names Account " + accountId + ", which is not open.");
+        }
+        return account;
+    }
+
+    /**
+     * Writes a point-in-time snapshot of every account balance without pausing transfers.
+     * The journal sequence is read first; each account is then locked just long enough to copy its
+     * balance and the journal sequence it has reached. Every record up to the first sequence is
+     * therefore in the snapshot, and later records are filtered per account on replay. Accounts
+     * cannot be opened or closed while the snapshot is taken.
+     *
+     * @param directory the directory to write the snapshot to
+     * @return the path of the new snapshot file
+     * @throws IOException if the snapshot cannot be written
+     */
+    public Path takeSnapshot(Path directory) throws IOException {
+        long start = System.nanoTime();
+        // Hold off opens and closes, so the snapshot has every account open at its sequence and no other
+        membershipLock.lock();
+        try {
+            return writeSnapshot(directory, start);
+        } finally {
+            membershipLock.unlock();
+        }
+    }
+
+    /**
+     * Copies every account's balance and writes the snapshot. Must be called with the membership lock held.
+     *
+     * @param directory the directory to write the snapshot to
+     * @param start     the System.nanoTime() the snapshot started at
+     * @return the path of the new snapshot file
+     * @throws IOException if the snapshot cannot be written
+     */
+    private Path writeSnapshot(Path directory, long start) throws IOException {
+        long snapshotSequence = journal != null ? journal.getLastSequence() : 0;
+
+        int capacity = Math.max(accounts.size(), 16);
+        int[] ids = new int[capacity];
+        long[] balances = new long[capacity];
+        long[] sequences = new long[capacity];
+        int count = 0;
+        for (int shard = 0; shard < accounts.shardCount(); shard++) {
+            for (Account account : accounts.accountsInShard(shard)) {
+                if (count == ids.length) {
+                    int grown = ids.length + (ids.length >> 1);
+                    ids = Arrays.copyOf(ids, grown);
+                    balances = Arrays.copyOf(balances, grown);
+                    sequences = Arrays.copyOf(sequences, grown);
+                }
+                account.lock();
+                try {
+                    ids[count] = account.getId();
+                    balances[count] = Money.toCents(account.getBalance());
+                    sequences[count] = account.getJournalSequence();
+                } finally {
+                    account.unlock();
+                }
+                count++;
+            }
+        }
+
+        Path file = BalanceSnapshot.write(directory, snapshotSequence, ids, balances, sequences, count);
+        LoggerUtil.log(Level.INFO, Thread.currentThread().getName(),
+                "Wrote snapshot of " + count + " accounts at journal sequence " + snapshotSequence
+                        + " in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        return file;
+    }
+
+    /**
+     * Takes a snapshot periodically on a background thread, keeping the two newest snapshot files.
+     *
+     * @param directory the directory to write snapshots to
+     * @param period    the time between snapshots
+     * @param unit      the unit of the period
+     * @return the executor running the snapshots; shut it down to stop them
+     */
+    public ScheduledExecutorService scheduleSnapshots(Path directory, long period, TimeUnit unit) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                takeSnapshot(directory);
+                BalanceSnapshot.prune(directory, 2);
+            } catch (IOException e) {
+                LoggerUtil.log(Level.SEVERE, Thread.currentThread().getName(), "Snapshot failed: " + e.getMessage());
+            }
+        }, period, period, unit);
+        return scheduler;
+    }
+
+    /**
+     * Checks whether an account is still registered in the store.
+     *
+     * @param account the account to check
+     * @return true if the account has not been closed
+     */
+    private boolean isOpen(Account account) {
+        return accounts.get(account.getId()) == account;
+    }
+
+    /**
+     * Sets the hot-mode policy of an account, for accounts such as merchant settlement accounts
+     * that receive a large share of all deposits.
+     *
+     * @param accountId the account ID
+     * @param mode      DISABLED, AUTOMATIC or ALWAYS
+     * @return true if the policy was set, false if the account does not exist or does not support hot mode
+     */
+    public boolean setHotMode(int accountId, BankAccount.HotMode mode) {
+        Account account = accounts.get(accountId);
+        if (!(account instanceof BankAccount)) {
+            return false;
+        }
+        ((BankAccount) account).setHotMode(mode);
+        return true;
     }
 
     /**
      * Prints the balances of all accounts in the system.
      */
     public void printAccountBalances() {
-        for (BankAccount account : accounts.values()) {
-            LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), "Account Balance" + account.getId() + ": " + account.getBalance());
-        }
+        accounts.forEach(account ->
+                LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), "Account Balance" + account.getId() + ": " + account.getBalance()));
+    }
+
+    /**
+     * Returns one page of an account's transaction history, newest first.
+     * Only the entries on the page are read from the history store.
+     *
+     * @param accountId the account ID
+     * @param cursor    the cursor returned by the previous page, or TransactionHistoryStore.NO_RECORD for the newest entries
+     * @param limit     the maximum number of entries to return
+     * @return the page of transactions
+     * @throws IllegalArgumentException if the cursor is not a record of the account
+     */
+    public HistoryPage getTransactionHistory(int accountId, long cursor, int limit) {
+        return history.page(accountId, cursor, limit);
+    }
+
+    /**
+     * Returns one page of the transactions matching a query, newest first.
+     *
+     * @param query  the accounts, time range and amount range to read
+     * @param cursor the cursor returned by the previous page, or TransactionHistoryStore.NO_RECORD for the newest entries
+     * @param limit  the maximum number of entries to return
+     * @return the page of transactions
+     * @throws IllegalArgumentException if the cursor is not a record the query can continue from
+     */
+    public HistoryPage queryHistory(HistoryQuery query, long cursor, int limit) {
+        return history.query(query, cursor, limit);
+    }
+
+    /**
+     * Streams the transactions matching a query, newest first, reading records only as they are consumed.
+     *
+     * @param query the accounts, time range and amount range to read
+     * @return a lazy stream of transactions
+     */
+    public Stream<Transaction> streamHistory(HistoryQuery query) {
+        return history.stream(query);
+    }
+
+    /**
+     * Returns the store holding every transaction, for callers that read records in place.
+     *
+     * @return the transaction history store
+     */
+    public TransactionHistoryStore getHistoryStore() {
+        return history;
     }
 
     /**
@@ -175,25 +1075,20 @@ public class TransactionSystem {
      */
     public void getTransactionHistory() {
         // Iterate over all accounts in the system
-        for (BankAccount account : accounts.values()) {
-            if (account == null) {
-                LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Account does not exist.");
-                continue; // Skips to the next account if this one is null
-            }
+        accounts.forEach(account -> {
+            Iterator<Transaction> transactions = history.iterator(HistoryQuery.forAccount(account.getId()));
 
-            // Gets the transaction history of the current account
-            List<Transaction> transactions = account.getTransactionHistory();
-
-            if (transactions.isEmpty()) {
+            if (!transactions.hasNext()) {
                 LoggerUtil.log(Level.INFO, Thread.currentThread().getName(),
                         "No transactions found for Account " + account.getId() + ".");
             } else {
                 LoggerUtil.log(Level.INFO, Thread.currentThread().getName(),
                         "Transaction history for Account " + account.getId() + ":");
-                for (Transaction transaction : transactions) {
-                    LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), transaction.toString());
+                // Entries are read one at a time, newest first, instead of copying the whole history
+                while (transactions.hasNext()) {
+                    LoggerUtil.log(Level.INFO, Thread.currentThread().getName(), transactions.next().toString());
                 }
             }
-        }
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,451 @@
+import util.LoggerUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * Append-only write-ahead journal of committed money movements, and of the accounts opened
+ * and closed between them, so replay can rebuild the set of accounts as well as their balances.
+ * Records have a fixed size and are written into memory-mapped segment files, so an append is
+ * a handful of memory writes. A background thread forces dirty segments to disk (group commit)
+ * every sync interval, as soon as a configurable number of records is pending, or as soon as a
+ * caller waits in awaitSync, whichever comes first. Records appended while a force is running are
+ * covered by the next one, so callers who wait for durability share the cost of each force.
+ * When a segment is full the journal rolls over to a new file.
+ *
+ * <p>Every record is 40 bytes so replay can walk a segment by offset:
+ * sequence (8), timestamp millis (8), from account (4), to account (4), amount in cents (8),
+ * type (4), checksum (4). A zero sequence marks the unused tail of a preallocated segment.</p>
+ */
+public class TransferJournal implements AutoCloseable {
+    // Size of one journal record in bytes
+    public static final int RECORD_SIZE = 40;
+
+    // Record type for a regular transfer
+    public static final int TYPE_TRANSFER = 1;
+
+    // Record type for a reversal; the amount moved from the record's "from" to its "to" account
+    public static final int TYPE_REVERSAL = 2;
+
+    // Record type for an opened account; both account fields hold its ID and the amount its opening balance
+    public static final int TYPE_OPEN = 3;
+
+    // Record type for a closed account; both account fields hold its ID and the amount its balance when closed
+    public static final int TYPE_CLOSE = 4;
+
+    // File name prefix and suffix for journal segments
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    /**
+     * Callback invoked for every record found while replaying the journal.
+     */
+    public interface RecordHandler {
+        /**
+         * Handles one journal record.
+         *
+         * @param sequence      the record's sequence number
+         * @param type          the record type
+         * @param fromAccountId the account the money was taken from
+         * @param toAccountId   the account the money was given to
+         * @param amountCents   the amount moved, in cents
+         * @param timestamp     the time the record was appended, in epoch milliseconds
+         */
+        void onRecord(long sequence, int type, int fromAccountId, int toAccountId, long amountCents, long timestamp);
+    }
+
+    private final Path directory; // Directory holding the segment files
+    private final int recordsPerSegment; // Capacity of one segment file in records
+    private final long syncIntervalMillis; // Maximum time a record stays unsynced
+    private final int syncBatchSize; // Number of pending records that triggers an early sync
+
+    private final ReentrantLock appendLock = new ReentrantLock(); // Serialises appends and segment rolls
+    private final Condition syncRequested = appendLock.newCondition(); // Wakes the sync thread early
+    private final Condition synced = appendLock.newCondition(); // Signalled whenever lastSyncedSequence advances
+    private final Thread syncThread; // Background group-commit thread
+
+    private FileChannel segmentChannel; // Channel of the segment being written
+    private MappedByteBuffer segment; // Mapping of the segment being written
+    private long nextSequence; // Sequence number of the next record
+    private long lastSyncedSequence; // Highest sequence known to be on disk
+    private int syncWaiters; // Callers blocked in awaitSync
+    private volatile boolean closed; // Set once close() has been called
+
+    /**
+     * Opens (or creates) a journal in the given directory and starts the group-commit thread.
+     * Appends continue after the last valid record of an existing journal.
+     *
+     * @param directory          the directory that holds the segment files
+     * @param recordsPerSegment  the number of records per segment file
+     * @param syncIntervalMillis the maximum time between syncs, in milliseconds
+     * @param syncBatchSize      the number of unsynced records that triggers an immediate sync
+     * @throws IOException if the directory or the current segment cannot be opened
+     */
+    public TransferJournal(Path directory, int recordsPerSegment, long syncIntervalMillis, int syncBatchSize) throws IOException {
+        if (recordsPerSegment <= 0 || syncIntervalMillis <= 0 || syncBatchSize <= 0) {
+            throw new IllegalArgumentException("Segment size, sync interval and sync batch size must be positive.");
+        }
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.syncBatchSize = syncBatchSize;
+        Files.createDirectories(directory);
+        openTail();
+
+        this.syncThread = new Thread(this::syncLoop, "journal-sync");
+        this.syncThread.setDaemon(true);
+        this.syncThread.start();
+    }
+
+    /**
+     * Appends a record to the journal. The record reaches the disk with the next group commit;
+     * until then a crash can lose it, so call awaitSync before reporting the change as durable.
+     *
+     * @param type          the record type
+     * @param fromAccountId the account the money is taken from
+     * @param toAccountId   the account the money is given to
+     * @param amountCents   the amount moved, in cents
+     * @return the sequence number assigned to the record
+     * @throws UncheckedIOException if a new segment cannot be created
+     */
+    public long append(int type, int fromAccountId, int toAccountId, long amountCents) {
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed.");
+            }
+            if (!segment.hasRemaining()) {
+                rollSegment();
+            }
+
+            long sequence = nextSequence++;
+            long timestamp = System.currentTimeMillis();
+            int start = segment.position();
+            segment.position(start + 8);
+            segment.putLong(timestamp)
+                    .putInt(fromAccountId)
+                    .putInt(toAccountId)
+                    .putLong(amountCents)
+                    .putInt(type)
+                    .putInt(checksum(sequence, timestamp, fromAccountId, toAccountId, amountCents, type));
+
+            // The sequence goes in last so a reader never sees a half-written record as valid
+            segment.putLong(start, sequence);
+
+            if (sequence - lastSyncedSequence >= syncBatchSize) {
+                syncRequested.signal();
+            }
+            return sequence;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll journal segment", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Forces every appended record to disk before returning.
+     */
+    public void sync() {
+        MappedByteBuffer toForce;
+        long upTo;
+        appendLock.lock();
+        try {
+            toForce = segment;
+            upTo = nextSequence - 1;
+        } finally {
+            appendLock.unlock();
+        }
+        toForce.force();
+        markSynced(upTo);
+    }
+
+    /**
+     * Waits until a record is on disk. The group-commit thread is woken at once rather than at
+     * the end of its interval, and a single force covers every caller waiting at the time.
+     *
+     * @param sequence the sequence number returned by append
+     */
+    public void awaitSync(long sequence) {
+        appendLock.lock();
+        try {
+            while (lastSyncedSequence < sequence) {
+                syncWaiters++;
+                try {
+                    syncRequested.signal();
+                    synced.awaitUninterruptibly();
+                } finally {
+                    syncWaiters--;
+                }
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the sequence number of the most recently appended record.
+     *
+     * @return the last sequence number, or 0 if the journal is empty
+     */
+    public long getLastSequence() {
+        appendLock.lock();
+        try {
+            return nextSequence - 1;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Replays every valid record with a sequence number greater than the given one, in order.
+     * Segments are mapped read-only and scanned sequentially.
+     *
+     * @param afterSequence only records with a larger sequence number are replayed
+     * @param handler       the callback receiving each record
+     * @return the number of records replayed
+     * @throws IOException if a segment cannot be read
+     */
+    public long replay(long afterSequence, RecordHandler handler) throws IOException {
+        long replayed = 0;
+        List<Path> segments = listSegments();
+        for (int s = 0; s < segments.size(); s++) {
+            // Skip whole segments that end before the requested starting point
+            if (s + 1 < segments.size() && firstSequenceOf(segments.get(s + 1)) <= afterSequence + 1) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(segments.get(s), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int limit = (int) (channel.size() / RECORD_SIZE) * RECORD_SIZE;
+                for (int offset = 0; offset < limit; offset += RECORD_SIZE) {
+                    long sequence = buffer.getLong(offset);
+                    if (sequence == 0) {
+                        break; // Unused tail of the segment
+                    }
+                    long timestamp = buffer.getLong(offset + 8);
+                    int from = buffer.getInt(offset + 16);
+                    int to = buffer.getInt(offset + 20);
+                    long cents = buffer.getLong(offset + 24);
+                    int type = buffer.getInt(offset + 32);
+                    if (buffer.getInt(offset + 36) != checksum(sequence, timestamp, from, to, cents, type)) {
+                        LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Journal replay stopped at corrupt record " + sequence + " in " + segments.get(s).getFileName());
+                        return replayed;
+                    }
+                    if (sequence > afterSequence) {
+                        handler.onRecord(sequence, type, from, to, cents, timestamp);
+                        replayed++;
+                    }
+                }
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Syncs outstanding records, stops the group-commit thread and closes the current segment.
+     *
+     * @throws IOException if the segment cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            syncRequested.signal();
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            syncThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment.force();
+        segmentChannel.close();
+        markSynced(getLastSequence());
+    }
+
+    /**
+     * Group-commit loop: waits for the sync interval or an early wake-up, then forces the current
+     * segment. It does not wait while a caller is blocked in awaitSync and records are pending.
+     */
+    private void syncLoop() {
+        while (true) {
+            MappedByteBuffer toForce;
+            long upTo;
+            appendLock.lock();
+            try {
+                long pending = nextSequence - 1 - lastSyncedSequence;
+                if (!closed && (pending == 0 || (pending < syncBatchSize && syncWaiters == 0))) {
+                    syncRequested.await(syncIntervalMillis, TimeUnit.MILLISECONDS);
+                }
+                if (closed) {
+                    return; // close() performs the final sync itself
+                }
+                if (nextSequence - 1 == lastSyncedSequence) {
+                    continue; // Nothing new to sync
+                }
+                toForce = segment;
+                upTo = nextSequence - 1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                appendLock.unlock();
+            }
+
+            // Force outside the lock so appends are not blocked by the disk
+            toForce.force();
+            markSynced(upTo);
+        }
+    }
+
+    /**
+     * Records that every record up to a sequence is on disk and wakes the callers waiting for it.
+     *
+     * @param upTo the highest sequence number forced
+     */
+    private void markSynced(long upTo) {
+        appendLock.lock();
+        try {
+            lastSyncedSequence = Math.max(lastSyncedSequence, upTo);
+            synced.signalAll();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Opens the last segment for appending, positioned after its last valid record,
+     * or creates the first segment if the journal is empty.
+     *
+     * @throws IOException if the segment cannot be opened
+     */
+    private void openTail() throws IOException {
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            nextSequence = 1;
+            lastSyncedSequence = 0;
+            mapSegment(1);
+            return;
+        }
+
+        Path last = segments.get(segments.size() - 1);
+        long firstSequence = firstSequenceOf(last);
+        segmentChannel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentChannel.size());
+
+        // Find the first unused or torn record; anything after it is discarded
+        int position = 0;
+        long expected = firstSequence;
+        while (position + RECORD_SIZE <= segment.capacity()) {
+            long sequence = segment.getLong(position);
+            if (sequence != expected || segment.getInt(position + 36) != checksum(sequence, segment.getLong(position + 8),
+                    segment.getInt(position + 16), segment.getInt(position + 20), segment.getLong(position + 24), segment.getInt(position + 32))) {
+                break;
+            }
+            position += RECORD_SIZE;
+            expected++;
+        }
+
+        // Clear anything after the last valid record; pages of a mapped file can reach the disk
+        // out of order, so a crash may leave later records behind a torn one
+        for (int i = position; i + RECORD_SIZE <= segment.capacity(); i += RECORD_SIZE) {
+            if (segment.getLong(i) != 0L) {
+                segment.putLong(i, 0L);
+            }
+        }
+        segment.position(position);
+        nextSequence = expected;
+        lastSyncedSequence = expected - 1;
+    }
+
+    /**
+     * Forces the current segment and starts a new one. Must be called with the append lock held.
+     *
+     * @throws IOException if the new segment cannot be created
+     */
+    private void rollSegment() throws IOException {
+        segment.force();
+        segmentChannel.close();
+        lastSyncedSequence = nextSequence - 1;
+        synced.signalAll();
+        mapSegment(nextSequence);
+    }
+
+    /**
+     * Creates and maps a new, preallocated segment whose first record has the given sequence number.
+     *
+     * @param firstSequence the sequence number of the segment's first record
+     * @throws IOException if the file cannot be created or mapped
+     */
+    private void mapSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        segmentChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+    }
+
+    /**
+     * Lists the segment files in the journal directory, oldest first.
+     *
+     * @return the segment paths sorted by their first sequence number
+     * @throws IOException if the directory cannot be read
+     */
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        Collections.sort(segments); // Zero-padded names sort in sequence order
+        return segments;
+    }
+
+    /**
+     * Parses the first sequence number from a segment's file name.
+     *
+     * @param segment the segment path
+     * @return the sequence number of the segment's first record
+     */
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Computes a cheap checksum over a record's fields to detect torn or corrupt records.
+     *
+     * @param sequence  the record's sequence number
+     * @param timestamp the record's timestamp
+     * @param from      the source account ID
+     * @param to        the destination account ID
+     * @param cents     the amount in cents
+     * @param type      the record type
+     * @return the checksum
+     */
+    private static int checksum(long sequence, long timestamp, int from, int to, long cents, int type) {
+        long h = sequence * 0x9E3779B97F4A7C15L;
+        h = (h ^ timestamp) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ (((long) from << 32) | (to & 0xFFFFFFFFL))) * 0x165667B19E3779F9L;
+        h = (h ^ cents) * 0x9E3779B97F4A7C15L;
+        h ^= type;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * A single transfer submitted as part of a batch to TransactionSystem.transferBatch.
+ */
+public class TransferRequest {
+    private final int fromAccountId; // ID of the account to transfer from
+    private final int toAccountId;   // ID of the account to transfer to
+    private final double amount;     // The amount to transfer
+
+    /**
+     * Constructs a new TransferRequest with the specified details.
+     *
+     * @param fromAccountId the ID of the source account
+     * @param toAccountId   the ID of the destination account
+     * @param amount        the amount of money to transfer
+     */
+    public TransferRequest(int fromAccountId, int toAccountId, double amount) {
+        this.fromAccountId = fromAccountId;
+        this.toAccountId = toAccountId;
+        this.amount = amount;
+    }
+
+    /**
+     * Returns the ID of the source account.
+     *
+     * @return the source account ID
+     */
+    public int getFromAccountId() {
+        return fromAccountId;
+    }
+
+    /**
+     * Returns the ID of the destination account.
+     *
+     * @return the destination account ID
+     */
+    public int getToAccountId() {
+        return toAccountId;
+    }
+
+    /**
+     * Returns the amount to transfer.
+     *
+     * @return the amount
+     */
+    public double getAmount() {
+        return amount;
+    }
+}
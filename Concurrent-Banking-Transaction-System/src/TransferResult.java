@@ -0,0 +1,13 @@
+/**
+ * Outcome of a transfer. TransactionSystem.transferBatch returns one per request, and the
+ * idempotent TransactionSystem.transfer(requestId, ...) returns one and caches it under the
+ * request ID, so a retry gets the original outcome back.
+ */
+public enum TransferResult {
+    SUCCESS,            // The money was moved
+    INVALID_REQUEST,    // Non-positive amount or identical account IDs
+    ACCOUNT_NOT_FOUND,  // One or both accounts do not exist or were closed
+    INSUFFICIENT_FUNDS, // The source account could not cover the amount
+    FAILED,             // An unexpected error occurred while applying the transfer
+    REQUEST_ID_CONFLICT // The request ID was already used for a different transfer; nothing was moved
+}
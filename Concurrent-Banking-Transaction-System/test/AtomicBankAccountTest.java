@@ -0,0 +1,37 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AtomicBankAccountTest {
+    @Test
+    void amountsUnderHalfACentAreRejectedNotRoundedAway() {
+        AtomicBankAccount account = new AtomicBankAccount(1, 10);
+
+        assertThrows(IllegalArgumentException.class, () -> account.deposit(0.004));
+        assertThrows(IllegalArgumentException.class, () -> account.withdraw(0.004));
+        assertThrows(IllegalArgumentException.class, () -> account.tryWithdraw(0.004));
+        assertEquals(1_000, account.getBalanceCents());
+    }
+
+    @Test
+    void fractionsOfACentAreRejectedNotRoundedUp() {
+        AtomicBankAccount account = new AtomicBankAccount(1, 10);
+
+        assertThrows(IllegalArgumentException.class, () -> account.deposit(0.005));
+        assertThrows(IllegalArgumentException.class, () -> account.tryWithdraw(1.015));
+        assertEquals(1_000, account.getBalanceCents());
+    }
+
+    @Test
+    void wholeCentsSurviveFloatingPointError() {
+        AtomicBankAccount account = new AtomicBankAccount(1, 0);
+
+        account.deposit(0.1 + 0.2);
+        assertTrue(account.tryWithdraw(0.3));
+        account.deposit(1234567.89);
+
+        assertEquals(123_456_789, account.getBalanceCents());
+    }
+}
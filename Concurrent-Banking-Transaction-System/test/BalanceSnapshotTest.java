@@ -0,0 +1,121 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.LogConfig;
+import util.LoggerUtil;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BalanceSnapshotTest {
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void quietLogs() {
+        LoggerUtil.configure(LogConfig.forFile(null).withLevel(Level.SEVERE).withConsole(false));
+    }
+
+    @Test
+    void columnsWrittenAcrossSeveralChunksLoadBackIntoAccounts() throws IOException {
+        int count = 70_000; // More rows than one write chunk holds
+        int[] ids = new int[count + 5]; // Arrays may be longer than the row count
+        long[] balances = new long[count + 5];
+        long[] sequences = new long[count + 5];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i + 1;
+            balances[i] = 1_000L * i + 7;
+            sequences[i] = i % 13;
+        }
+
+        Path file = BalanceSnapshot.write(directory, 42, ids, balances, sequences, count);
+        BalanceSnapshot snapshot = BalanceSnapshot.load(file, BalanceSnapshotTest::create);
+
+        assertEquals(42, snapshot.getJournalSequence());
+        List<Account> accounts = snapshot.getAccounts();
+        assertEquals(count, accounts.size());
+        for (int i = 0; i < count; i += 997) {
+            Account account = accounts.get(i);
+            assertEquals(i + 1, account.getId());
+            assertEquals(Money.fromCents(1_000L * i + 7), account.getBalance(), 1e-9);
+            assertEquals(i % 13, account.getJournalSequence());
+        }
+        assertFalse(Files.exists(directory.resolve(file.getFileName() + ".tmp")), "temporary file left behind");
+    }
+
+    @Test
+    void newestSnapshotIsLoadedAndPruneKeepsTheNewest() throws IOException {
+        assertNull(BalanceSnapshot.loadLatest(directory, BalanceSnapshotTest::create));
+
+        for (long sequence : new long[]{9, 100, 10}) {
+            BalanceSnapshot.write(directory, sequence, new int[]{1}, new long[]{sequence * 100}, new long[]{sequence}, 1);
+        }
+        BalanceSnapshot latest = BalanceSnapshot.loadLatest(directory, BalanceSnapshotTest::create);
+        assertEquals(100, latest.getJournalSequence());
+        assertEquals(100, latest.getAccounts().get(0).getBalance(), 1e-9);
+
+        BalanceSnapshot.prune(directory, 2);
+        try (var files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+        assertEquals(100, BalanceSnapshot.loadLatest(directory, BalanceSnapshotTest::create).getJournalSequence());
+    }
+
+    @Test
+    void truncatedSnapshotIsRejected() throws IOException {
+        Path file = BalanceSnapshot.write(directory, 5, new int[]{1, 2}, new long[]{100, 200}, new long[]{1, 2}, 2);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        IOException error = assertThrows(IOException.class, () -> BalanceSnapshot.load(file, BalanceSnapshotTest::create));
+        assertTrue(error.getMessage().startsWith("Truncated"), error.getMessage());
+    }
+
+    @Test
+    void takeSnapshotRecordsEveryOpenAccountsBalance() throws IOException {
+        TransactionSystem system = new TransactionSystem(List.of(new BankAccount(1, 100), new BankAccount(2, 50.25)));
+        assertTrue(system.transfer(1, 2, 30.5));
+        assertTrue(system.openAccount(new BankAccount(3, 9.99)));
+        system.closeAccount(2);
+
+        BalanceSnapshot snapshot = BalanceSnapshot.load(system.takeSnapshot(directory), BalanceSnapshotTest::create);
+
+        List<Account> accounts = snapshot.getAccounts();
+        assertEquals(2, accounts.size());
+        for (Account account : accounts) {
+            switch (account.getId()) {
+                case 1:
+                    assertEquals(69.5, account.getBalance(), 1e-9);
+                    break;
+                case 3:
+                    assertEquals(9.99, account.getBalance(), 1e-9);
+                    break;
+                default:
+                    throw new AssertionError("Closed or unknown account " + account.getId() + " in snapshot");
+            }
+        }
+    }
+
+    /**
+     * Rebuilds an account from a snapshot row.
+     *
+     * @param id           the account ID
+     * @param balanceCents the balance in cents
+     * @return the account
+     */
+    private static Account create(int id, long balanceCents) {
+        return new BankAccount(id, Money.fromCents(balanceCents));
+    }
+}
@@ -0,0 +1,155 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import util.LogConfig;
+import util.LoggerUtil;
+
+import java.util.List;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class HotAccountTransferTest {
+    private static final double OPENING_BALANCE = 1_000;
+
+    @BeforeAll
+    static void quietLogs() {
+        LoggerUtil.configure(LogConfig.forFile(null).withLevel(Level.SEVERE).withConsole(false));
+    }
+
+    @Test
+    void destinationThatWentColdIsCreditedUnderBothLocksInOrder() {
+        BankAccount source = new BankAccount(2, OPENING_BALANCE);
+        OrderCheckedAccount destination = new OrderCheckedAccount(source);
+        TransactionSystem system = new TransactionSystem(List.of(destination, source));
+
+        assertEquals(TransferResult.SUCCESS, system.transfer("cold", 2, 1, 10));
+
+        assertFalse(destination.inverted, "destination locked while only the source was held");
+        assertEquals(10, destination.getBalance(), 1e-9);
+        assertEquals(OPENING_BALANCE - 10, source.getBalance(), 1e-9);
+    }
+
+    @Test
+    void destinationClosedDuringAHotTransferIsRolledBackUnderBothLocksInOrder() {
+        BankAccount source = new BankAccount(2, OPENING_BALANCE);
+        OrderCheckedAccount destination = new OrderCheckedAccount(source);
+        destination.setHotMode(BankAccount.HotMode.ALWAYS);
+        TransactionSystem system = new TransactionSystem(List.of(destination, source));
+        // Close the destination from another thread just before the hot credit lands
+        destination.beforeUnlockedDeposit = () -> {
+            Thread closer = new Thread(() -> system.closeAccount(1));
+            closer.start();
+            try {
+                closer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        assertEquals(TransferResult.ACCOUNT_NOT_FOUND, system.transfer("closed", 2, 1, 10));
+
+        assertFalse(destination.inverted, "destination locked while only the source was held");
+        assertEquals(0, destination.getBalance(), 1e-9);
+        assertEquals(OPENING_BALANCE, source.getBalance(), 1e-9);
+    }
+
+    @Test
+    void transfersIntoAHotAccountMoveTheSameRoundedAmountOnBothSides() {
+        BankAccount source = new BankAccount(1, OPENING_BALANCE);
+        BankAccount destination = new BankAccount(2, 0);
+        destination.setHotMode(BankAccount.HotMode.ALWAYS);
+        TransactionSystem system = new TransactionSystem(List.of(source, destination));
+
+        assertEquals(TransferResult.INVALID_REQUEST, system.transfer("under half a cent", 1, 2, 0.004));
+        assertEquals(TransferResult.SUCCESS, system.transfer("half a cent", 1, 2, 0.005));
+        assertEquals(TransferResult.SUCCESS, system.transfer("fraction", 1, 2, 1.234));
+
+        assertEquals(1.24, destination.getBalance(), 1e-9);
+        assertEquals(OPENING_BALANCE - 1.24, source.getBalance(), 1e-9);
+    }
+
+    @Test
+    void hotAccountKeepsAFractionOfACentDepositedDirectly() {
+        BankAccount account = new BankAccount(1, 0);
+        account.setHotMode(BankAccount.HotMode.ALWAYS);
+
+        account.deposit(0.004);
+
+        assertEquals(0.004, account.getBalance(), 1e-12);
+    }
+
+    /**
+     * A destination with a smaller ID than the source. It always claims to take unlocked deposits,
+     * and notes when the test thread takes its lock while holding only the source's, which is the
+     * reverse of the ID order every other transfer locks in.
+     */
+    private static final class OrderCheckedAccount extends BankAccount {
+        private final BankAccount source; // The account transferred from, with the larger ID
+        private final Thread checked = Thread.currentThread(); // Thread running the transfer
+        private int holds; // Times the checked thread holds this account's lock
+        private boolean inverted; // Set once the lock order was broken
+        private Runnable beforeUnlockedDeposit; // Run once before the first unlocked deposit
+
+        private OrderCheckedAccount(BankAccount source) {
+            super(1, 0);
+            this.source = source;
+        }
+
+        @Override
+        public boolean acceptsUnlockedDeposits() {
+            return true; // Even when cold, as if it went cold just after the caller checked
+        }
+
+        @Override
+        public boolean tryDepositUnlocked(double amount) {
+            Runnable hook = beforeUnlockedDeposit;
+            beforeUnlockedDeposit = null;
+            if (hook != null) {
+                hook.run();
+            }
+            return super.tryDepositUnlocked(amount);
+        }
+
+        @Override
+        public void lock() {
+            check();
+            super.lock();
+            if (Thread.currentThread() == checked) {
+                holds++;
+            }
+        }
+
+        @Override
+        public void unlock() {
+            if (Thread.currentThread() == checked) {
+                holds--;
+            }
+            super.unlock();
+        }
+
+        @Override
+        public void deposit(double amount) {
+            check();
+            super.deposit(amount);
+        }
+
+        @Override
+        public void withdraw(double amount) {
+            check();
+            super.withdraw(amount);
+        }
+
+        @Override
+        public boolean tryWithdraw(double amount) {
+            check();
+            return super.tryWithdraw(amount);
+        }
+
+        private void check() {
+            if (Thread.currentThread() == checked && holds == 0 && source.isLocked()) {
+                inverted = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class IdempotencyCacheTest {
+    @Test
+    void sizeBoundSkipsEntriesWhoseTransferIsStillRunning() {
+        IdempotencyCache cache = new IdempotencyCache(1, 2, 10, TimeUnit.MINUTES);
+        CompletableFuture<TransferResult> running = new CompletableFuture<>();
+        assertNull(cache.putIfAbsent("a", 1, 2, 100, running));
+        assertNull(cache.putIfAbsent("b", 1, 2, 100, CompletableFuture.completedFuture(TransferResult.SUCCESS)));
+        assertNull(cache.putIfAbsent("c", 1, 2, 100, CompletableFuture.completedFuture(TransferResult.SUCCESS)));
+
+        // "b" made room; "a" is older but still running, so a retry still finds it
+        assertSame(running, cache.putIfAbsent("a", 1, 2, 100, new CompletableFuture<>()));
+        assertNull(cache.putIfAbsent("b", 1, 2, 100, new CompletableFuture<>()));
+    }
+
+    @Test
+    void boundIsRestoredOnceRunningTransfersFinish() {
+        IdempotencyCache cache = new IdempotencyCache(1, 1, 10, TimeUnit.MINUTES);
+        CompletableFuture<TransferResult> first = new CompletableFuture<>();
+        CompletableFuture<TransferResult> second = new CompletableFuture<>();
+        assertNull(cache.putIfAbsent("a", 1, 2, 100, first));
+        assertNull(cache.putIfAbsent("b", 1, 2, 100, second));
+        assertEquals(2, cache.size());
+
+        first.complete(TransferResult.SUCCESS);
+        second.complete(TransferResult.SUCCESS);
+        assertNull(cache.putIfAbsent("c", 1, 2, 100, CompletableFuture.completedFuture(TransferResult.SUCCESS)));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void expirySkipsEntriesWhoseTransferIsStillRunning() throws InterruptedException {
+        IdempotencyCache cache = new IdempotencyCache(1, 10, 1, TimeUnit.MILLISECONDS);
+        CompletableFuture<TransferResult> running = new CompletableFuture<>();
+        assertNull(cache.putIfAbsent("a", 1, 2, 100, running));
+        assertNull(cache.putIfAbsent("b", 1, 2, 100, CompletableFuture.completedFuture(TransferResult.SUCCESS)));
+        Thread.sleep(5);
+
+        assertSame(running, cache.putIfAbsent("a", 1, 2, 100, new CompletableFuture<>()));
+        assertNull(cache.putIfAbsent("b", 1, 2, 100, new CompletableFuture<>()));
+    }
+
+    @Test
+    void keyReusedForADifferentTransferIsAConflict() {
+        IdempotencyCache cache = new IdempotencyCache(4, 100, 10, TimeUnit.MINUTES);
+        CompletableFuture<TransferResult> original = CompletableFuture.completedFuture(TransferResult.SUCCESS);
+        assertNull(cache.putIfAbsent("a", 1, 2, 100, original));
+
+        assertSame(original, cache.putIfAbsent("a", 1, 2, 100, new CompletableFuture<>()));
+        assertEquals(TransferResult.REQUEST_ID_CONFLICT, cache.putIfAbsent("a", 1, 3, 100, new CompletableFuture<>()).join());
+        assertEquals(TransferResult.REQUEST_ID_CONFLICT, cache.putIfAbsent("a", 2, 1, 100, new CompletableFuture<>()).join());
+        assertEquals(TransferResult.REQUEST_ID_CONFLICT, cache.putIfAbsent("a", 1, 2, 101, new CompletableFuture<>()).join());
+    }
+}
@@ -0,0 +1,63 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntAccountMapTest {
+    @Test
+    void removingFromAFullChainKeepsEveryOtherKeyReachable() {
+        // A small table makes long probe chains that wrap around its end
+        IntAccountMap map = new IntAccountMap(8);
+        Map<Integer, Account> added = new HashMap<>();
+        for (int id = 0; id < 8; id++) {
+            Account account = new BankAccount(id, 0);
+            assertTrue(map.putIfAbsent(account));
+            added.put(id, account);
+        }
+        for (int removed = 0; removed < 8; removed++) {
+            assertSame(added.remove(removed), map.remove(removed));
+            assertNull(map.get(removed));
+            for (Map.Entry<Integer, Account> entry : added.entrySet()) {
+                assertSame(entry.getValue(), map.get(entry.getKey()), "lost " + entry.getKey() + " after removing " + removed);
+            }
+        }
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void matchesAHashMapUnderRandomInsertsAndRemoves() {
+        IntAccountMap map = new IntAccountMap(4);
+        Map<Integer, Account> expected = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(7);
+        for (int step = 0; step < 200_000; step++) {
+            // Few distinct keys, so removes hit occupied chains often
+            int id = random.nextInt(96) - 16;
+            if (random.nextInt(3) == 0) {
+                assertSame(expected.remove(id), map.remove(id));
+            } else {
+                Account account = new BankAccount(id, 0);
+                boolean absent = !expected.containsKey(id);
+                assertEquals(absent, map.putIfAbsent(account));
+                if (absent) {
+                    expected.put(id, account);
+                }
+            }
+            if (step % 1_000 == 0) {
+                for (int key = -16; key < 80; key++) {
+                    assertSame(expected.get(key), map.get(key), "key " + key + " at step " + step);
+                }
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        Map<Integer, Account> visited = new HashMap<>();
+        map.forEach(account -> assertFalse(visited.put(account.getId(), account) != null));
+        assertEquals(expected, visited);
+    }
+}
@@ -0,0 +1,146 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.LogConfig;
+import util.LoggerUtil;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalReplayTest {
+    @TempDir
+    Path directory;
+
+    private final Map<Integer, Account> recreated = new HashMap<>(); // Accounts built by the factory, by ID
+
+    @BeforeAll
+    static void quietLogs() {
+        LoggerUtil.configure(LogConfig.forFile(null).withLevel(Level.SEVERE).withConsole(false));
+    }
+
+    @Test
+    void openedAndClosedAccountsSurviveARestart() throws Exception {
+        Path journalDir = directory.resolve("journal");
+        try (TransferJournal journal = new TransferJournal(journalDir, 64, 1_000, 16)) {
+            TransactionSystem system = new TransactionSystem(openingAccounts(), 4, journal, this::create);
+            assertTrue(system.openAccount(new BankAccount(3, 50)));
+            assertTrue(system.transfer(1, 3, 20));
+            assertTrue(system.transfer(2, 1, 30));
+            system.closeAccount(2);
+        }
+
+        List<Account> opening = openingAccounts();
+        try (TransferJournal journal = new TransferJournal(journalDir, 64, 1_000, 16)) {
+            TransactionSystem system = new TransactionSystem(opening, 4, journal, this::create);
+
+            assertEquals(110, opening.get(0).getBalance(), 1e-9);
+            assertEquals(70, recreated.get(3).getBalance(), 1e-9);
+            // Account 2 is gone again, so it can be reopened
+            assertNull(system.closeAccount(2));
+            assertTrue(system.openAccount(new BankAccount(2, 0)));
+        }
+    }
+
+    @Test
+    void recordsAfterASnapshotAreReplayedOnTopOfIt() throws Exception {
+        Path journalDir = directory.resolve("journal");
+        Path snapshotDir = directory.resolve("snapshots");
+        try (TransferJournal journal = new TransferJournal(journalDir, 4, 1_000, 16)) {
+            TransactionSystem system = new TransactionSystem(openingAccounts(), 4, journal, this::create);
+            assertTrue(system.openAccount(new BankAccount(3, 50)));
+            assertTrue(system.transfer(1, 3, 20));
+            system.takeSnapshot(snapshotDir);
+            // Spans a segment roll, with an open and a close after the snapshot
+            assertTrue(system.openAccount(new BankAccount(4, 5)));
+            assertTrue(system.transfer(3, 4, 15));
+            system.closeAccount(1);
+            assertTrue(system.transfer(2, 4, 1));
+        }
+
+        try (TransferJournal journal = new TransferJournal(journalDir, 4, 1_000, 16)) {
+            TransactionSystem system = TransactionSystem.recover(snapshotDir, journal, 4, this::create, openingAccounts());
+
+            assertEquals(99, recreated.get(2).getBalance(), 1e-9);
+            assertEquals(55, recreated.get(3).getBalance(), 1e-9);
+            assertEquals(21, recreated.get(4).getBalance(), 1e-9);
+            assertNull(system.closeAccount(1));
+        }
+    }
+
+    @Test
+    void replayRebuildsTheBalancesTheLiveSystemShowedForFractionsOfACent() throws Exception {
+        Path journalDir = directory.resolve("journal");
+        List<Account> live = openingAccounts();
+        try (TransferJournal journal = new TransferJournal(journalDir, 64, 1_000, 16)) {
+            TransactionSystem system = new TransactionSystem(live, 4, journal, this::create);
+            assertTrue(system.transfer(1, 2, 0.005));
+            assertTrue(system.transfer(2, 1, 2.675));
+            system.transferBatch(List.of(new TransferRequest(1, 2, 0.333)));
+            system.reverseTransaction(1, 2, 0.015);
+            assertThrows(IllegalArgumentException.class, () -> system.openAccount(new BankAccount(3, 0.004)));
+        }
+
+        List<Account> replayed = openingAccounts();
+        try (TransferJournal journal = new TransferJournal(journalDir, 64, 1_000, 16)) {
+            new TransactionSystem(replayed, 4, journal, this::create);
+        }
+        for (int i = 0; i < live.size(); i++) {
+            assertEquals(live.get(i).getBalance(), replayed.get(i).getBalance(), 1e-9);
+        }
+        assertEquals(200, live.get(0).getBalance() + live.get(1).getBalance(), 1e-9);
+    }
+
+    @Test
+    void replayedHistoryKeepsTheJournalTimestamps() throws Exception {
+        Path journalDir = directory.resolve("journal");
+        try (TransferJournal journal = new TransferJournal(journalDir, 64, 1_000, 16)) {
+            TransactionSystem system = new TransactionSystem(openingAccounts(), 4, journal, this::create);
+            assertTrue(system.transfer(1, 2, 5));
+        }
+        Thread.sleep(20);
+        long restarted = System.currentTimeMillis();
+
+        try (TransferJournal journal = new TransferJournal(journalDir, 64, 1_000, 16)) {
+            long[] journaled = new long[1];
+            journal.replay(0, (sequence, type, from, to, cents, timestamp) -> journaled[0] = timestamp);
+            TransactionSystem system = new TransactionSystem(openingAccounts(), 4, journal, this::create);
+
+            List<Transaction> history = system.getTransactionHistory(1, TransactionHistoryStore.NO_RECORD, 10).getEntries();
+            assertEquals(1, history.size());
+            assertEquals(journaled[0], history.get(0).getTimestamp());
+            // A range starting at the restart must not see the transfer made before it
+            HistoryQuery sinceRestart = HistoryQuery.forAccount(1).withTimeRange(restarted, Long.MAX_VALUE);
+            assertTrue(system.queryHistory(sinceRestart, TransactionHistoryStore.NO_RECORD, 10).getEntries().isEmpty());
+        }
+    }
+
+    @Test
+    void aRecordForAnUnknownAccountFailsTheReplay() throws Exception {
+        Path journalDir = directory.resolve("journal");
+        try (TransferJournal journal = new TransferJournal(journalDir, 64, 1_000, 16)) {
+            journal.append(TransferJournal.TYPE_TRANSFER, 1, 9, 1_000);
+        }
+
+        try (TransferJournal journal = new TransferJournal(journalDir, 64, 1_000, 16)) {
+            assertThrows(IllegalStateException.class, () -> new TransactionSystem(openingAccounts(), 4, journal, this::create));
+        }
+    }
+
+    private Account create(int id, long balanceCents) {
+        Account account = new BankAccount(id, Money.fromCents(balanceCents));
+        recreated.put(id, account);
+        return account;
+    }
+
+    private static List<Account> openingAccounts() {
+        return List.of(new BankAccount(1, 100), new BankAccount(2, 100));
+    }
+}
@@ -0,0 +1,98 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import util.LogConfig;
+import util.LoggerUtil;
+
+import java.util.List;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OptimisticTransferTest {
+    @BeforeAll
+    static void quietLogs() {
+        LoggerUtil.configure(LogConfig.forFile(null).withLevel(Level.SEVERE).withConsole(false));
+    }
+
+    @Test
+    void closeAfterTheCreditWasSpentDoesNotOverdrawTheDestination() {
+        AtomicBankAccount source = new AtomicBankAccount(1, 100);
+        HookedAccount destination = new HookedAccount(2);
+        AtomicBankAccount onward = new AtomicBankAccount(3, 0);
+        TransactionSystem system = new TransactionSystem(List.of(source, destination, onward));
+        // As soon as the credit lands, pass it on and close the source
+        destination.afterDeposit = () -> {
+            system.transfer(2, 3, 40);
+            system.closeAccount(1);
+        };
+
+        assertTrue(system.transfer(1, 2, 40));
+
+        assertEquals(0, destination.getBalanceCents());
+        assertEquals(4_000, onward.getBalanceCents());
+        assertEquals(6_000, source.getBalanceCents());
+    }
+
+    @Test
+    void closeBeforeTheCreditRefundsTheSourceOnly() {
+        AtomicBankAccount source = new AtomicBankAccount(1, 100);
+        AtomicBankAccount destination = new AtomicBankAccount(2, 0);
+        TransactionSystem system = new TransactionSystem(List.of(source, destination));
+        Account closed = system.closeAccount(2);
+
+        assertEquals(TransferResult.ACCOUNT_NOT_FOUND, system.transfer("after-close", 1, 2, 40));
+
+        assertEquals(0, closed.getBalance(), 1e-9);
+        assertEquals(100, source.getBalance(), 1e-9);
+    }
+
+    @Test
+    void sourceClosedMidTransferIsNotRefundedAfterItsClose() {
+        AtomicBankAccount source = new AtomicBankAccount(1, 100);
+        HookedAccount destination = new HookedAccount(2);
+        TransactionSystem system = new TransactionSystem(List.of(source, destination));
+        Account[] closed = new Account[1];
+        destination.afterDeposit = () -> closed[0] = system.closeAccount(1);
+
+        assertTrue(system.transfer(1, 2, 40));
+
+        // The source's final balance was taken at the close, so the amount stays with the destination
+        assertEquals(60, closed[0].getBalance(), 1e-9);
+        assertEquals(4_000, destination.getBalanceCents());
+    }
+
+    @Test
+    void destinationClosedMidTransferIsRolledBackToTheSource() {
+        AtomicBankAccount source = new AtomicBankAccount(1, 100);
+        HookedAccount destination = new HookedAccount(2);
+        TransactionSystem system = new TransactionSystem(List.of(source, destination));
+        destination.afterDeposit = () -> system.closeAccount(2);
+
+        assertEquals(TransferResult.ACCOUNT_NOT_FOUND, system.transfer("closing", 1, 2, 40));
+
+        assertEquals(0, destination.getBalanceCents());
+        assertEquals(100, source.getBalance(), 1e-9);
+    }
+
+    /**
+     * A lock-free account that runs a hook once, right after its first deposit.
+     */
+    private static final class HookedAccount extends AtomicBankAccount {
+        private Runnable afterDeposit; // Run once after the next deposit
+
+        private HookedAccount(int id) {
+            super(id, 0);
+        }
+
+        @Override
+        public void depositCents(long cents) {
+            super.depositCents(cents);
+            Runnable hook = afterDeposit;
+            afterDeposit = null;
+            if (hook != null) {
+                hook.run();
+            }
+        }
+    }
+}
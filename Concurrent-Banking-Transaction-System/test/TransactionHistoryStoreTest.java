@@ -0,0 +1,74 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionHistoryStoreTest {
+    @Test
+    void pagesWalkAnAccountsHistoryNewestFirstWithoutGapsOrRepeats() {
+        TransactionHistoryStore store = new TransactionHistoryStore();
+        for (int i = 1; i <= 25; i++) {
+            // Account 1 is on either side; account 3 records are interleaved and must not appear
+            store.append(i % 2 == 0 ? 1 : 2, i % 2 == 0 ? 2 : 1, i, 1_000 + i, i);
+            store.append(3, 4, 100 + i, 1_000 + i, 0);
+        }
+
+        List<Long> amounts = new ArrayList<>();
+        long cursor = TransactionHistoryStore.NO_RECORD;
+        HistoryPage page;
+        do {
+            page = store.page(1, cursor, 7);
+            for (Transaction transaction : page.getEntries()) {
+                amounts.add(Money.toCents(transaction.getAmount()));
+            }
+            cursor = page.getNextCursor();
+        } while (page.hasMore());
+
+        List<Long> expected = new ArrayList<>();
+        for (long i = 25; i >= 1; i--) {
+            expected.add(i);
+        }
+        assertEquals(expected, amounts);
+    }
+
+    @Test
+    void timeAndAmountFiltersSelectMatchingRecords() {
+        TransactionHistoryStore store = new TransactionHistoryStore();
+        for (int i = 1; i <= 20; i++) {
+            store.append(1, 2, i * 100, 10_000 + i * 10_000L, 0);
+        }
+
+        HistoryQuery query = HistoryQuery.forAccount(2).withTimeRange(50_000, 120_000).withAmountRange(6, 11);
+        List<Long> amounts = store.stream(query).map(t -> Money.toCents(t.getAmount())).collect(Collectors.toList());
+
+        assertEquals(List.of(1_000L, 900L, 800L, 700L, 600L), amounts);
+    }
+
+    @Test
+    void aCursorFromAnotherAccountsPageIsRejected() {
+        TransactionHistoryStore store = new TransactionHistoryStore();
+        store.append(1, 2, 100, 1_000, 0);
+        store.append(3, 4, 200, 2_000, 0);
+        store.append(1, 2, 300, 3_000, 0);
+        long otherAccountsCursor = store.newest(3);
+
+        assertThrows(IllegalArgumentException.class, () -> store.page(1, otherAccountsCursor, 10));
+        assertFalse(store.query(HistoryQuery.allAccounts(), otherAccountsCursor, 10).getEntries().isEmpty());
+    }
+
+    @Test
+    void aCursorOutsideTheStoreIsRejected() {
+        TransactionHistoryStore store = new TransactionHistoryStore();
+        store.append(1, 2, 100, 1_000, 0);
+
+        assertThrows(IllegalArgumentException.class, () -> store.page(1, 1, 10));
+        assertThrows(IllegalArgumentException.class, () -> store.page(1, -5, 10));
+        assertThrows(IllegalArgumentException.class, () -> store.query(HistoryQuery.allAccounts(), 1L << 40, 10));
+        assertEquals(1, store.page(1, 0, 10).getEntries().size());
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import util.LogConfig;
+import util.LoggerUtil;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class TransferBatchTest {
+    private static final double OPENING_BALANCE = 1_000;
+
+    @BeforeAll
+    static void quietLogs() {
+        LoggerUtil.configure(LogConfig.forFile(null).withLevel(Level.SEVERE).withConsole(false));
+    }
+
+    @Test
+    void transfersApplyInBatchOrderWithOneResultPerRequest() {
+        BankAccount first = new BankAccount(1, OPENING_BALANCE);
+        BankAccount second = new BankAccount(2, 0);
+        BankAccount third = new BankAccount(3, 0);
+        TransactionSystem system = new TransactionSystem(List.of(first, second, third));
+
+        List<TransferResult> results = system.transferBatch(List.of(
+                new TransferRequest(1, 2, 400),      // Funds the second account...
+                new TransferRequest(2, 3, 400),      // ...so this one, later in the batch, succeeds
+                new TransferRequest(2, 3, 0.01),     // The second account is empty again
+                new TransferRequest(1, 1, 10),       // Same account
+                new TransferRequest(1, 2, -5),       // Non-positive amount
+                new TransferRequest(1, 99, 10),      // Unknown account
+                new TransferRequest(1, 3, 100.004))); // Rounded to whole cents
+
+        assertEquals(List.of(TransferResult.SUCCESS, TransferResult.SUCCESS, TransferResult.INSUFFICIENT_FUNDS,
+                TransferResult.INVALID_REQUEST, TransferResult.INVALID_REQUEST, TransferResult.ACCOUNT_NOT_FOUND,
+                TransferResult.SUCCESS), results);
+        assertEquals(500, first.getBalance(), 1e-9);
+        assertEquals(0, second.getBalance(), 1e-9);
+        assertEquals(500, third.getBalance(), 1e-9);
+    }
+
+    @Test
+    void opposingBatchesRunConcurrentlyWithoutDeadlockOrLostMoney() {
+        int accountCount = 8;
+        List<BankAccount> accounts = new ArrayList<>();
+        for (int id = 1; id <= accountCount; id++) {
+            accounts.add(new BankAccount(id, OPENING_BALANCE));
+        }
+        TransactionSystem system = new TransactionSystem(accounts);
+
+        // One thread moves money up the IDs, the other down, so their batches want the same locks in opposite request order
+        List<TransferRequest> up = new ArrayList<>();
+        List<TransferRequest> down = new ArrayList<>();
+        for (int id = 1; id < accountCount; id++) {
+            up.add(new TransferRequest(id, id + 1, 1.25));
+            down.add(new TransferRequest(id + 1, id, 0.75));
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[2];
+        for (int w = 0; w < workers.length; w++) {
+            List<TransferRequest> batch = w == 0 ? up : down;
+            workers[w] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < 500; i++) {
+                    system.transferBatch(batch);
+                }
+            });
+            workers[w].start();
+        }
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        });
+
+        double total = 0;
+        for (BankAccount account : accounts) {
+            total += account.getBalance();
+        }
+        assertEquals(OPENING_BALANCE * accountCount, total, 1e-6);
+    }
+}
@@ -0,0 +1,105 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.LogConfig;
+import util.LoggerUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class TransferJournalTest {
+    // Long enough that a test only passes if awaitSync wakes the group commit itself
+    private static final long SYNC_INTERVAL_MILLIS = 600_000;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void quietLogs() {
+        LoggerUtil.configure(LogConfig.forFile(null).withLevel(Level.SEVERE).withConsole(false));
+    }
+
+    @Test
+    void reopeningTruncatesAtATornRecordAndAppendsFromThere() throws IOException {
+        try (TransferJournal journal = new TransferJournal(directory, 64, SYNC_INTERVAL_MILLIS, 1_000)) {
+            for (int i = 1; i <= 10; i++) {
+                journal.append(TransferJournal.TYPE_TRANSFER, 1, 2, i);
+            }
+        }
+        // Tear record 6 as a crash mid-write would; records 7 to 10 reached the disk regardless
+        corruptAmount(6);
+
+        try (TransferJournal journal = new TransferJournal(directory, 64, SYNC_INTERVAL_MILLIS, 1_000)) {
+            assertEquals(5, journal.getLastSequence());
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L), amounts(journal));
+
+            assertEquals(6, journal.append(TransferJournal.TYPE_TRANSFER, 1, 2, 60));
+            journal.sync();
+            // The stale records after the tear must not reappear behind the new one
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 60L), amounts(journal));
+        }
+        try (TransferJournal journal = new TransferJournal(directory, 64, SYNC_INTERVAL_MILLIS, 1_000)) {
+            assertEquals(6, journal.getLastSequence());
+        }
+    }
+
+    @Test
+    void awaitSyncForcesTheRecordWithoutWaitingForTheInterval() throws Exception {
+        try (TransferJournal journal = new TransferJournal(directory, 64, SYNC_INTERVAL_MILLIS, 1_000)) {
+            long sequence = journal.append(TransferJournal.TYPE_TRANSFER, 1, 2, 100);
+
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> journal.awaitSync(sequence));
+        }
+    }
+
+    @Test
+    void everyConcurrentWaiterIsReleased() throws Exception {
+        try (TransferJournal journal = new TransferJournal(directory, 1_024, SYNC_INTERVAL_MILLIS, 1_000)) {
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                List<Thread> writers = new ArrayList<>();
+                for (int w = 0; w < 8; w++) {
+                    Thread writer = new Thread(() -> {
+                        for (int i = 0; i < 50; i++) {
+                            journal.awaitSync(journal.append(TransferJournal.TYPE_TRANSFER, 1, 2, 1));
+                        }
+                    });
+                    writer.start();
+                    writers.add(writer);
+                }
+                for (Thread writer : writers) {
+                    writer.join();
+                }
+            });
+            assertEquals(400, journal.getLastSequence());
+        }
+    }
+
+    private static List<Long> amounts(TransferJournal journal) throws IOException {
+        List<Long> amounts = new ArrayList<>();
+        journal.replay(0, (sequence, type, from, to, cents, timestamp) -> amounts.add(cents));
+        return amounts;
+    }
+
+    private void corruptAmount(long sequence) throws IOException {
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(path -> path.getFileName().toString().endsWith(".wal")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ByteBuffer amount = ByteBuffer.allocate(Long.BYTES).putLong(0, 999);
+            channel.write(amount, (sequence - 1) * TransferJournal.RECORD_SIZE + 24);
+        }
+    }
+}
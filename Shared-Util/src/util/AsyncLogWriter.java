@@ -0,0 +1,475 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * Asynchronous log writer used by LoggerUtil's async mode.
+ * Logging threads only copy the raw parts of a record (level, thread name, message, color and time)
+ * into a slot of a bounded lock-free ring buffer. A single background thread formats the records,
+ * caching the formatted timestamp per second, and writes them in batches: to the log file through a
+ * FileChannel, and to the console with one print per batch.
+ *
+ * <p>The ring buffer follows the bounded multi-producer queue design where every slot carries a
+ * sequence number: a producer claims a position with a compare-and-set on the tail, fills the slot,
+ * then publishes it by advancing the slot's sequence. When the buffer is full the configured
+ * OverflowPolicy decides whether the caller waits or the record is dropped and counted.</p>
+ */
+public final class AsyncLogWriter implements AutoCloseable {
+    // Size of the direct buffer the file output is encoded into
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+    // How long the writer sleeps when the buffer is empty; producers wake it earlier
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+
+    // How long a blocked producer sleeps between checks once spinning has not freed a slot
+    private static final long BLOCK_PARK_NANOS = 50_000L;
+
+    // How long close() waits for the writer to drain the buffer
+    private static final long CLOSE_TIMEOUT_MILLIS = 5_000L;
+
+    // Timestamp format, matching the synchronous formatter
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    // ANSI escape codes for console text colors
+    private static final String RESET = "\u001B[0m"; // Reset color
+    private static final String RED = "\u001B[31m"; // Red color
+    private static final String GREEN = "\u001B[32m"; // Green color
+    private static final String YELLOW = "\u001B[33m"; // Yellow color
+    private static final String BLUE = "\u001B[34m"; // Blue color
+
+    /**
+     * What a logging thread does when the ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        BLOCK, // Wait until the writer frees a slot
+        DROP   // Discard the record and count it
+    }
+
+    /**
+     * Builds the message part of a record, after the timestamp, level and logger name.
+     * Runs on the writer thread.
+     */
+    public interface MessageLayout {
+        /**
+         * Appends the message part of a record.
+         *
+         * @param out        the builder to append to
+         * @param timestamp  the formatted time the record was logged
+         * @param threadName the name of the logging thread
+         * @param message    the log message
+         */
+        void append(StringBuilder out, String timestamp, String threadName, String message);
+    }
+
+    /**
+     * One slot of the ring buffer. Written by the producer that claimed it, read by the writer.
+     */
+    private static final class Event {
+        Level level; // Log level
+        String threadName; // Name of the logging thread
+        String message; // Log message
+        String color; // Console color passed by the caller, or null
+        long millis; // Time the record was logged
+    }
+
+    private final Event[] events; // Ring buffer slots, reused for the writer's lifetime
+    private final AtomicLongArray sequences; // Per-slot sequence: position + 1 once published, position + capacity once free
+    private final int mask; // Capacity - 1, capacity is a power of two
+    private final AtomicLong tail = new AtomicLong(); // Next position to claim
+    private long head; // Next position to read, only touched by the writer thread
+    private final AtomicLong dropped = new AtomicLong(); // Records discarded under the DROP policy
+    private long droppedReported; // Drops already reported in the log, writer thread only
+
+    private final OverflowPolicy policy; // What to do when the buffer is full
+    private final MessageLayout layout; // Module-specific message layout
+    private final String loggerName; // Logger name printed after the level, as in the synchronous format
+    private volatile boolean console; // Whether records are also printed to the console
+    private final FileChannel channel; // Log file, or null if it could not be opened
+    private final ByteBuffer fileBuffer = ByteBuffer.allocateDirect(FILE_BUFFER_SIZE); // Encoded bytes awaiting a write
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder(); // Reused encoder for file output
+    private final Thread writer; // Background writer thread
+
+    private long cachedSecond = Long.MIN_VALUE; // Second of the cached timestamp, writer thread only
+    private String cachedTimestamp; // Formatted timestamp for cachedSecond, writer thread only
+    private volatile boolean writerWaiting; // True while the writer is parked on an empty buffer
+    private volatile boolean closed; // Set once close() has been called
+
+    /**
+     * Opens the log file, overwriting it, and starts the writer thread.
+     *
+     * @param logFile    the log file, or null for console output only
+     * @param loggerName the logger name printed in each record
+     * @param console    true to also print records to the console
+     * @param capacity   the number of buffered records, rounded up to a power of two
+     * @param policy     what to do when the buffer is full
+     * @param layout     builds the message part of each record
+     */
+    public AsyncLogWriter(Path logFile, String loggerName, boolean console, int capacity, OverflowPolicy policy, MessageLayout layout) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.events = new Event[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            events[i] = new Event();
+            sequences.set(i, i); // Slot i is free for position i
+        }
+        this.policy = policy;
+        this.layout = layout;
+        this.loggerName = loggerName;
+        this.console = console;
+
+        FileChannel opened = null;
+        try {
+            if (logFile != null) {
+                opened = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to open log file: " + e.getMessage());
+        }
+        this.channel = opened;
+
+        this.writer = new Thread(this::run, "async-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a record for the writer thread.
+     *
+     * @param level      the log level
+     * @param threadName the name of the logging thread
+     * @param message    the log message
+     * @param color      the console color for the message, or null for the level color
+     * @return true if the record was queued, false if it was dropped
+     */
+    public boolean submit(Level level, String threadName, String message, String color) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        long millis = System.currentTimeMillis();
+        int spins = 0;
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.getAcquire(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break; // Slot claimed
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The slot still holds a record from one lap ago: the buffer is full
+                if (closed || policy == OverflowPolicy.DROP) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                wakeWriter();
+                backOff(spins++);
+                position = tail.get();
+            } else {
+                position = tail.get(); // Another producer claimed this position first
+            }
+        }
+
+        int index = (int) position & mask;
+        Event event = events[index];
+        event.level = level;
+        event.threadName = threadName;
+        event.message = message;
+        event.color = color;
+        event.millis = millis;
+        // Publish to the writer; a full volatile write so the writerWaiting read below is not reordered before it
+        sequences.set(index, position + 1);
+
+        if (writerWaiting) {
+            wakeWriter();
+        }
+        return true;
+    }
+
+    /**
+     * Turns console output on or off. Takes effect from the writer's next batch.
+     *
+     * @param enabled true to print records to the console as well as the file
+     */
+    public void setConsoleEnabled(boolean enabled) {
+        this.console = enabled;
+    }
+
+    /**
+     * Returns the number of records dropped because the buffer was full.
+     *
+     * @return the drop count
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Stops accepting records, waits for the writer to write everything already queued, and closes the file.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        wakeWriter();
+        try {
+            writer.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writer thread loop: drains the buffer in batches and sleeps while it is empty.
+     */
+    private void run() {
+        StringBuilder fileText = new StringBuilder(FILE_BUFFER_SIZE);
+        StringBuilder consoleText = new StringBuilder(FILE_BUFFER_SIZE);
+        while (true) {
+            int drained = drain(fileText, consoleText);
+            reportDrops(fileText, consoleText);
+            writeBatch(fileText, consoleText);
+
+            if (drained == 0) {
+                if (closed && isEmpty()) {
+                    break;
+                }
+                writerWaiting = true;
+                if (isEmpty() && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                writerWaiting = false;
+            }
+        }
+
+        if (channel != null) {
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close log file: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Formats every published record, up to one buffer's worth, and frees their slots.
+     *
+     * @param fileText    receives the uncolored records
+     * @param consoleText receives the colored records when console output is on
+     * @return the number of records drained
+     */
+    private int drain(StringBuilder fileText, StringBuilder consoleText) {
+        int drained = 0;
+        while (drained <= mask) {
+            int index = (int) head & mask;
+            if (sequences.getAcquire(index) != head + 1) {
+                break; // Not yet published
+            }
+            Event event = events[index];
+            String timestamp = timestamp(event.millis);
+            if (channel != null) {
+                appendRecord(fileText, event, timestamp, false);
+            }
+            if (console) {
+                appendRecord(consoleText, event, timestamp, true);
+            }
+
+            // Drop references so the slot does not keep messages alive, then hand it back to producers
+            event.threadName = null;
+            event.message = null;
+            event.color = null;
+            sequences.setRelease(index, head + events.length);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Appends one record in the same layout as LoggerUtil's synchronous formatter.
+     *
+     * @param out       the builder to append to
+     * @param event     the record
+     * @param timestamp the formatted timestamp
+     * @param useColor  true to color the level and message for the console
+     */
+    private void appendRecord(StringBuilder out, Event event, String timestamp, boolean useColor) {
+        String levelColor = useColor ? getColor(event.level) : "";
+        String resetColor = useColor ? RESET : "";
+        out.append(timestamp).append(" [").append(levelColor).append(event.level).append(resetColor).append("] ")
+                .append(levelColor).append(": ").append(loggerName);
+        if (useColor && event.color != null) {
+            out.append(event.color); // The caller's color replaces the level color on the console
+        }
+        layout.append(out, timestamp, event.threadName, event.message);
+        out.append(resetColor).append(System.lineSeparator());
+    }
+
+    /**
+     * Adds a warning line when records have been dropped since the last report.
+     *
+     * @param fileText    the pending file output
+     * @param consoleText the pending console output
+     */
+    private void reportDrops(StringBuilder fileText, StringBuilder consoleText) {
+        long total = dropped.get();
+        if (total == droppedReported) {
+            return;
+        }
+        Event notice = new Event();
+        notice.level = Level.WARNING;
+        notice.threadName = writer.getName();
+        notice.message = (total - droppedReported) + " log records dropped because the log buffer was full";
+        notice.millis = System.currentTimeMillis();
+        droppedReported = total;
+        String timestamp = timestamp(notice.millis);
+        appendRecord(fileText, notice, timestamp, false);
+        if (console) {
+            appendRecord(consoleText, notice, timestamp, true);
+        }
+    }
+
+    /**
+     * Writes the pending output and clears the builders.
+     *
+     * @param fileText    the pending file output
+     * @param consoleText the pending console output
+     */
+    private void writeBatch(StringBuilder fileText, StringBuilder consoleText) {
+        if (fileText.length() > 0) {
+            if (channel != null) {
+                writeFile(fileText);
+            }
+            fileText.setLength(0);
+        }
+        if (consoleText.length() > 0) {
+            System.err.print(consoleText);
+            consoleText.setLength(0);
+        }
+    }
+
+    /**
+     * Encodes text as UTF-8 into the direct buffer and writes it to the file channel.
+     *
+     * @param text the text to write
+     */
+    private void writeFile(CharSequence text) {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        try {
+            while (true) {
+                CoderResult result = encoder.encode(chars, fileBuffer, true);
+                writeFileBuffer();
+                if (!result.isOverflow()) {
+                    break;
+                }
+            }
+            encoder.flush(fileBuffer);
+            writeFileBuffer();
+        } catch (IOException e) {
+            System.err.println("Failed to write log file: " + e.getMessage());
+            fileBuffer.clear();
+        }
+    }
+
+    /**
+     * Writes the contents of the direct buffer to the file channel.
+     *
+     * @throws IOException if the write fails
+     */
+    private void writeFileBuffer() throws IOException {
+        fileBuffer.flip();
+        while (fileBuffer.hasRemaining()) {
+            channel.write(fileBuffer);
+        }
+        fileBuffer.clear();
+    }
+
+    /**
+     * Returns the formatted timestamp for a time, reformatting only when the second changes.
+     *
+     * @param millis the time in epoch milliseconds
+     * @return the formatted timestamp
+     */
+    private String timestamp(long millis) {
+        long second = Math.floorDiv(millis, 1000L);
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTimestamp = TIMESTAMP.format(Instant.ofEpochMilli(millis));
+        }
+        return cachedTimestamp;
+    }
+
+    /**
+     * Returns whether the next slot the writer would read is unpublished.
+     *
+     * @return true if there is nothing to drain
+     */
+    private boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+
+    /**
+     * Wakes the writer thread if it is parked.
+     */
+    private void wakeWriter() {
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * Waits a little before a blocked producer checks the buffer again: spins first, then yields, then parks.
+     *
+     * @param spins the number of checks made so far
+     */
+    private static void backOff(int spins) {
+        if (spins < 64) {
+            Thread.onSpinWait();
+        } else if (spins < 128) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Returns the ANSI color code for the given log level.
+     *
+     * @param level the log level
+     * @return the ANSI color code
+     */
+    private static String getColor(Level level) {
+        if (level == Level.SEVERE) {
+            return RED; // Red for severe logs
+        } else if (level == Level.WARNING) {
+            return YELLOW; // Yellow for warnings
+        } else if (level == Level.INFO) {
+            return GREEN; // Green for info logs
+        } else if (level == Level.FINE || level == Level.FINER || level == Level.FINEST) {
+            return BLUE; // Blue for fine-grained logs
+        }
+        return RESET; // Default color
+    }
+}
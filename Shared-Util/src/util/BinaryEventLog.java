@@ -0,0 +1,487 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compact binary event log, the machine-readable counterpart of the text log.
+ * Each event is a type ID, the logging thread's ID, a System.nanoTime() stamp and up to
+ * MAX_FIELDS numeric fields. Logging threads only copy these numbers into a slot of a bounded
+ * lock-free ring buffer, the same multi-producer design AsyncLogWriter uses, so recording an event
+ * takes no lock. A single background thread encodes the slots little-endian into a direct
+ * ByteBuffer and writes it to the file only when it fills up or the log is flushed. Nothing is
+ * formatted while logging; EventLogDecoder renders the file as text or CSV afterwards.
+ *
+ * <p>Event types are registered once with defineType. The file is self-describing: the name and
+ * field names of each type, and the name of each thread, are written before the first event that
+ * needs them, so the decoder needs nothing but the file.</p>
+ *
+ * <p>Layout: a header (magic, version, wall-clock and nanoTime at open) followed by records, each
+ * starting with a kind byte: KIND_TYPE (type ID, name, field names), KIND_THREAD (thread ID, name)
+ * or KIND_EVENT (type ID, field count, thread ID, nanoTime, fields). Strings are a short length
+ * followed by UTF-8 bytes. Events from one thread are in the order they were recorded; events
+ * from different threads are in the order they claimed a slot.</p>
+ */
+public final class BinaryEventLog implements AutoCloseable {
+    // File magic, "EVLG"
+    static final int MAGIC = 0x474C5645;
+
+    // Format version
+    static final short VERSION = 1;
+
+    // Header size: magic, version, padding, epoch millis and nanoTime at open
+    static final int HEADER_SIZE = 24;
+
+    // Record kinds
+    static final byte KIND_TYPE = 1; // Event type definition
+    static final byte KIND_THREAD = 2; // Thread name
+    static final byte KIND_EVENT = 3; // Event
+
+    // Most numeric fields an event can carry
+    public static final int MAX_FIELDS = 4;
+
+    // Size of an event record without its fields: kind, type, field count, thread ID, nanoTime
+    private static final int EVENT_HEADER_SIZE = 1 + 2 + 1 + 8 + 8;
+
+    // Default size of the direct write buffer
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    // Number of events the ring buffer holds before recording threads wait for the writer
+    private static final int RING_CAPACITY = 1 << 14;
+
+    // How long the writer sleeps when the ring is empty; flush and full rings wake it earlier
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+
+    // How long a waiting recorder or flusher sleeps between checks once spinning has not helped
+    private static final long BLOCK_PARK_NANOS = 50_000L;
+
+    // How long close() waits for the writer to drain the ring
+    private static final long CLOSE_TIMEOUT_MILLIS = 5_000L;
+
+    // Registered event types, shared by every log in the JVM; index is the type ID
+    private static final List<String[]> TYPES = new CopyOnWriteArrayList<>();
+
+    /**
+     * One slot of the ring buffer. Written by the thread that claimed it, read by the writer.
+     */
+    private static final class Slot {
+        int type; // Event type ID
+        int fieldCount; // Number of fields used
+        long threadId; // ID of the recording thread
+        long nanos; // System.nanoTime() when the event was recorded
+        final long[] fields = new long[MAX_FIELDS]; // Numeric fields
+        String threadName; // The thread's name on its first event, otherwise null
+    }
+
+    private final FileChannel channel; // Output file
+    private final ByteBuffer buffer; // Encoded records awaiting a write, writer thread only
+    private final Slot[] slots; // Ring buffer slots, reused for the log's lifetime
+    private final AtomicLongArray sequences; // Per-slot sequence: position + 1 once published, position + capacity once free
+    private final int mask; // Capacity - 1, capacity is a power of two
+    private final AtomicLong tail = new AtomicLong(); // Next position to claim
+    private final AtomicLong flushTarget = new AtomicLong(); // Position a flush needs written, the highest requested so far
+    private final ThreadLocal<Boolean> threadNamed = ThreadLocal.withInitial(() -> Boolean.FALSE); // Whether this thread's name was queued
+    private final Thread writer; // Background writer thread
+    private long head; // Next position to encode, writer thread only
+    private int typesWritten; // Number of type definitions already in the file, writer thread only
+    private volatile long written; // Every position below this is in the file
+    private volatile boolean writerWaiting; // True while the writer is parked on an empty ring
+    private volatile boolean closed; // Set once close() has been called
+
+    /**
+     * Registers an event type. Types can be registered before or after a log is opened.
+     *
+     * @param name       the event name, e.g. "TRANSFER"
+     * @param fieldNames the names of the event's numeric fields, at most MAX_FIELDS
+     * @return the type ID to pass to record
+     */
+    public static synchronized int defineType(String name, String... fieldNames) {
+        if (fieldNames.length > MAX_FIELDS) {
+            throw new IllegalArgumentException("An event can have at most " + MAX_FIELDS + " fields.");
+        }
+        String[] definition = new String[fieldNames.length + 1];
+        definition[0] = name;
+        System.arraycopy(fieldNames, 0, definition, 1, fieldNames.length);
+        TYPES.add(definition);
+        return TYPES.size() - 1;
+    }
+
+    /**
+     * Opens a log file, overwriting it, with the default buffer size.
+     *
+     * @param file the log file
+     * @throws IOException if the file cannot be opened
+     */
+    public BinaryEventLog(Path file) throws IOException {
+        this(file, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a log file, overwriting it, and starts the writer thread.
+     *
+     * @param file       the log file
+     * @param bufferSize the size of the direct write buffer in bytes
+     * @throws IOException if the file cannot be opened
+     */
+    public BinaryEventLog(Path file, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) 0);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putLong(System.nanoTime());
+
+        this.slots = new Slot[RING_CAPACITY];
+        this.sequences = new AtomicLongArray(RING_CAPACITY);
+        this.mask = RING_CAPACITY - 1;
+        for (int i = 0; i < RING_CAPACITY; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i); // Slot i is free for position i
+        }
+
+        this.writer = new Thread(this::run, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Records an event with no fields.
+     *
+     * @param type the type ID returned by defineType
+     */
+    public void record(int type) {
+        publish(type, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Records an event with one field.
+     *
+     * @param type the type ID returned by defineType
+     * @param a    the first field
+     */
+    public void record(int type, long a) {
+        publish(type, 1, a, 0, 0, 0);
+    }
+
+    /**
+     * Records an event with two fields.
+     *
+     * @param type the type ID returned by defineType
+     * @param a    the first field
+     * @param b    the second field
+     */
+    public void record(int type, long a, long b) {
+        publish(type, 2, a, b, 0, 0);
+    }
+
+    /**
+     * Records an event with three fields.
+     *
+     * @param type the type ID returned by defineType
+     * @param a    the first field
+     * @param b    the second field
+     * @param c    the third field
+     */
+    public void record(int type, long a, long b, long c) {
+        publish(type, 3, a, b, c, 0);
+    }
+
+    /**
+     * Records an event with four fields.
+     *
+     * @param type the type ID returned by defineType
+     * @param a    the first field
+     * @param b    the second field
+     * @param c    the third field
+     * @param d    the fourth field
+     */
+    public void record(int type, long a, long b, long c, long d) {
+        publish(type, 4, a, b, c, d);
+    }
+
+    /**
+     * Writes every event recorded before this call to the file, waiting for the writer thread.
+     */
+    public void flush() {
+        long target = tail.get();
+        flushTarget.accumulateAndGet(target, Math::max);
+        wakeWriter();
+        int spins = 0;
+        while (written < target && writer.isAlive()) {
+            backOff(spins++);
+        }
+    }
+
+    /**
+     * Stops accepting events, waits for the writer to write everything already recorded, and
+     * closes the file. Later events are ignored.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        wakeWriter();
+        try {
+            writer.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Copies an event into a free slot of the ring and publishes it to the writer. Waits for the
+     * writer when the ring is full, so events are never lost while the log is open.
+     *
+     * @param type       the type ID
+     * @param fieldCount the number of fields used
+     * @param a          the first field
+     * @param b          the second field
+     * @param c          the third field
+     * @param d          the fourth field
+     */
+    private void publish(int type, int fieldCount, long a, long b, long c, long d) {
+        if (closed) {
+            return;
+        }
+        long nanos = System.nanoTime();
+        Thread thread = Thread.currentThread();
+        int spins = 0;
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.getAcquire(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break; // Slot claimed
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The slot still holds an event from one lap ago: the ring is full
+                if (closed) {
+                    return;
+                }
+                wakeWriter();
+                backOff(spins++);
+                position = tail.get();
+            } else {
+                position = tail.get(); // Another thread claimed this position first
+            }
+        }
+
+        int index = (int) position & mask;
+        Slot slot = slots[index];
+        slot.type = type;
+        slot.fieldCount = fieldCount;
+        slot.threadId = thread.threadId();
+        slot.nanos = nanos;
+        slot.fields[0] = a;
+        slot.fields[1] = b;
+        slot.fields[2] = c;
+        slot.fields[3] = d;
+        // A thread's events are claimed in order, so its name reaches the writer with its first event
+        if (!threadNamed.get()) {
+            threadNamed.set(Boolean.TRUE);
+            slot.threadName = thread.getName();
+        }
+        // Publish to the writer; a full volatile write so the writerWaiting read below is not reordered before it
+        sequences.set(index, position + 1);
+
+        if (writerWaiting) {
+            wakeWriter();
+        }
+    }
+
+    /**
+     * Writer thread loop: encodes published events, writes the buffer when it fills or a flush
+     * asks for it, and sleeps while the ring is empty.
+     */
+    private void run() {
+        while (true) {
+            int drained = drain();
+            long target = flushTarget.get();
+            if (target > written && head >= target) {
+                writeBuffer();
+                written = head;
+            }
+
+            if (drained == 0) {
+                if (closed && isEmpty()) {
+                    break;
+                }
+                writerWaiting = true;
+                if (isEmpty() && !closed && flushTarget.get() <= written) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                writerWaiting = false;
+            }
+        }
+
+        writeBuffer();
+        written = head;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close event log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Encodes every published event, up to one ring's worth, and frees their slots.
+     *
+     * @return the number of events encoded
+     */
+    private int drain() {
+        int drained = 0;
+        while (drained <= mask) {
+            int index = (int) head & mask;
+            if (sequences.getAcquire(index) != head + 1) {
+                break; // Not yet published
+            }
+            Slot slot = slots[index];
+            if (slot.threadName != null) {
+                writeThreadName(slot.threadId, slot.threadName);
+                slot.threadName = null;
+            }
+            writeEvent(slot);
+            sequences.setRelease(index, head + slots.length);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Writes an event record, preceded by any type definitions registered since the last one.
+     *
+     * @param slot the event
+     */
+    private void writeEvent(Slot slot) {
+        while (typesWritten < TYPES.size()) {
+            writeTypeDefinition(typesWritten, TYPES.get(typesWritten));
+            typesWritten++;
+        }
+        ensureRemaining(EVENT_HEADER_SIZE + slot.fieldCount * 8);
+        buffer.put(KIND_EVENT);
+        buffer.putShort((short) slot.type);
+        buffer.put((byte) slot.fieldCount);
+        buffer.putLong(slot.threadId);
+        buffer.putLong(slot.nanos);
+        for (int i = 0; i < slot.fieldCount; i++) {
+            buffer.putLong(slot.fields[i]);
+        }
+    }
+
+    /**
+     * Writes a type definition record.
+     *
+     * @param type       the type ID
+     * @param definition the type name followed by its field names
+     */
+    private void writeTypeDefinition(int type, String[] definition) {
+        byte[][] strings = new byte[definition.length][];
+        int size = 1 + 2 + 1;
+        for (int i = 0; i < definition.length; i++) {
+            strings[i] = definition[i].getBytes(StandardCharsets.UTF_8);
+            size += 2 + strings[i].length;
+        }
+        ensureRemaining(size);
+        buffer.put(KIND_TYPE);
+        buffer.putShort((short) type);
+        putString(strings[0]);
+        buffer.put((byte) (definition.length - 1));
+        for (int i = 1; i < strings.length; i++) {
+            putString(strings[i]);
+        }
+    }
+
+    /**
+     * Writes a thread name record.
+     *
+     * @param threadId   the thread's ID
+     * @param threadName the thread's name
+     */
+    private void writeThreadName(long threadId, String threadName) {
+        byte[] name = threadName.getBytes(StandardCharsets.UTF_8);
+        ensureRemaining(1 + 8 + 2 + name.length);
+        buffer.put(KIND_THREAD);
+        buffer.putLong(threadId);
+        putString(name);
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string.
+     *
+     * @param bytes the encoded string
+     */
+    private void putString(byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Flushes the buffer to the file if it cannot hold the given number of bytes.
+     *
+     * @param size the size of the next record
+     */
+    private void ensureRemaining(int size) {
+        if (buffer.remaining() < size) {
+            writeBuffer();
+        }
+    }
+
+    /**
+     * Writes the buffer's contents to the file and clears it.
+     */
+    private void writeBuffer() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write event log: " + e.getMessage());
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns whether the next slot the writer would read is unpublished.
+     *
+     * @return true if there is nothing to drain
+     */
+    private boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+
+    /**
+     * Wakes the writer thread if it is parked.
+     */
+    private void wakeWriter() {
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * Waits a little before a blocked thread checks again: spins first, then yields, then parks.
+     *
+     * @param spins the number of checks made so far
+     */
+    private static void backOff(int spins) {
+        if (spins < 64) {
+            Thread.onSpinWait();
+        } else if (spins < 128) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command-line decoder for files written by BinaryEventLog.
+ * Renders every event either as a text line or as a CSV row, on standard output.
+ *
+ * <p>Usage: EventLogDecoder &lt;file&gt; [text|csv]</p>
+ *
+ * <p>The file is read twice: the first pass collects the type definitions and thread names, the
+ * second renders the events. CSV output has one column per distinct field name across all types,
+ * so events of different types line up in a single table.</p>
+ */
+public class EventLogDecoder {
+    // Size of the read buffer
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    // Wall-clock format for text output, with microseconds
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS").withZone(ZoneId.systemDefault());
+
+    private final Path file; // The event log
+    private final Map<Integer, String[]> types = new HashMap<>(); // Type ID -> name followed by field names
+    private final Map<Long, String> threadNames = new HashMap<>(); // Thread ID -> name
+    private long startEpochMillis; // Wall clock when the log was opened
+    private long startNanos; // nanoTime when the log was opened
+
+    /**
+     * Decodes a file to standard output.
+     *
+     * @param args the file, then "text" (default) or "csv"
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: EventLogDecoder <file> [text|csv]");
+            System.exit(2);
+        }
+        boolean csv = args.length == 2 && args[1].equalsIgnoreCase("csv");
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), READ_BUFFER_SIZE);
+        new EventLogDecoder(Paths.get(args[0])).decode(out, csv);
+        out.flush();
+    }
+
+    /**
+     * Constructs a decoder for a file.
+     *
+     * @param file the event log
+     */
+    public EventLogDecoder(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Renders every event in the file.
+     *
+     * @param out where to write the output
+     * @param csv true for CSV, false for text
+     * @throws IOException if the file cannot be read or is not an event log
+     */
+    public void decode(Writer out, boolean csv) throws IOException {
+        // First pass: definitions and thread names only
+        scan(null, false, null);
+
+        List<String> columns = null;
+        if (csv) {
+            // One column per distinct field name, in the order the types define them
+            Map<String, Boolean> names = new LinkedHashMap<>();
+            for (int type = 0; types.containsKey(type); type++) {
+                String[] definition = types.get(type);
+                for (int i = 1; i < definition.length; i++) {
+                    names.put(definition[i], Boolean.TRUE);
+                }
+            }
+            columns = new ArrayList<>(names.keySet());
+            out.write("elapsed_nanos,epoch_micros,thread_id,thread_name,event");
+            for (String column : columns) {
+                out.write(',');
+                out.write(column);
+            }
+            out.write('\n');
+        }
+
+        // Second pass: render the events
+        scan(out, csv, columns);
+    }
+
+    /**
+     * Reads the file from the start. Definitions and thread names are always recorded;
+     * events are rendered only when out is not null.
+     *
+     * @param out     where to write events, or null to skip them
+     * @param csv     true for CSV, false for text
+     * @param columns the CSV field columns
+     * @throws IOException if the file cannot be read or is not an event log
+     */
+    private void scan(Writer out, boolean csv, List<String> columns) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            if (in.getInt() != BinaryEventLog.MAGIC) {
+                throw new IOException("Not an event log: " + file);
+            }
+            short version = in.getShort();
+            if (version != BinaryEventLog.VERSION) {
+                throw new IOException("Unsupported event log version " + version);
+            }
+            in.getShort();
+            startEpochMillis = in.getLong();
+            startNanos = in.getLong();
+
+            long[] fields = new long[BinaryEventLog.MAX_FIELDS];
+            StringBuilder line = new StringBuilder(256);
+            while (in.hasMore()) {
+                byte kind = in.getByte();
+                if (kind == BinaryEventLog.KIND_TYPE) {
+                    int type = in.getShort();
+                    String name = in.getString();
+                    String[] definition = new String[in.getByte() + 1];
+                    definition[0] = name;
+                    for (int i = 1; i < definition.length; i++) {
+                        definition[i] = in.getString();
+                    }
+                    types.put(type, definition);
+                } else if (kind == BinaryEventLog.KIND_THREAD) {
+                    long threadId = in.getLong();
+                    threadNames.put(threadId, in.getString());
+                } else if (kind == BinaryEventLog.KIND_EVENT) {
+                    int type = in.getShort();
+                    int fieldCount = in.getByte();
+                    long threadId = in.getLong();
+                    long nanos = in.getLong();
+                    for (int i = 0; i < fieldCount; i++) {
+                        fields[i] = in.getLong();
+                    }
+                    if (out != null) {
+                        line.setLength(0);
+                        if (csv) {
+                            appendCsv(line, type, threadId, nanos, fields, fieldCount, columns);
+                        } else {
+                            appendText(line, type, threadId, nanos, fields, fieldCount);
+                        }
+                        out.append(line);
+                    }
+                } else {
+                    throw new IOException("Corrupt event log: unknown record kind " + kind);
+                }
+            }
+        } catch (EOFException e) {
+            // A record cut short by a crash ends the log
+            System.err.println("Event log ends with an incomplete record.");
+        }
+    }
+
+    /**
+     * Appends an event as a text line: time, thread, event name and named fields.
+     *
+     * @param line       the builder
+     * @param type       the type ID
+     * @param threadId   the logging thread's ID
+     * @param nanos      the event's nanoTime
+     * @param fields     the field values
+     * @param fieldCount the number of fields
+     */
+    private void appendText(StringBuilder line, int type, long threadId, long nanos, long[] fields, int fieldCount) {
+        String[] definition = definition(type);
+        long elapsed = nanos - startNanos;
+        line.append(TIMESTAMP.format(Instant.ofEpochMilli(startEpochMillis).plusNanos(elapsed)))
+                .append(" [").append(threadName(threadId)).append("] ").append(definition[0]);
+        for (int i = 0; i < fieldCount; i++) {
+            line.append(' ').append(i + 1 < definition.length ? definition[i + 1] : "field" + (i + 1)).append('=').append(fields[i]);
+        }
+        line.append('\n');
+    }
+
+    /**
+     * Appends an event as a CSV row.
+     *
+     * @param line       the builder
+     * @param type       the type ID
+     * @param threadId   the logging thread's ID
+     * @param nanos      the event's nanoTime
+     * @param fields     the field values
+     * @param fieldCount the number of fields
+     * @param columns    the field columns
+     */
+    private void appendCsv(StringBuilder line, int type, long threadId, long nanos, long[] fields, int fieldCount, List<String> columns) {
+        String[] definition = definition(type);
+        long elapsed = nanos - startNanos;
+        line.append(elapsed).append(',')
+                .append(startEpochMillis * 1000 + elapsed / 1000).append(',')
+                .append(threadId).append(',');
+        appendCsvValue(line, threadName(threadId));
+        line.append(',');
+        appendCsvValue(line, definition[0]);
+        for (String column : columns) {
+            line.append(',');
+            for (int i = 0; i < fieldCount && i + 1 < definition.length; i++) {
+                if (definition[i + 1].equals(column)) {
+                    line.append(fields[i]);
+                    break;
+                }
+            }
+        }
+        line.append('\n');
+    }
+
+    /**
+     * Appends a CSV value, quoting it if it contains a comma, quote or line break.
+     *
+     * @param line  the builder
+     * @param value the value
+     */
+    private static void appendCsvValue(StringBuilder line, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            line.append(value);
+            return;
+        }
+        line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Returns a type's definition, or a placeholder for a type the file never defined.
+     *
+     * @param type the type ID
+     * @return the name followed by the field names
+     */
+    private String[] definition(int type) {
+        String[] definition = types.get(type);
+        return definition != null ? definition : new String[]{"TYPE_" + type};
+    }
+
+    /**
+     * Returns a thread's name, or its ID if the file never named it.
+     *
+     * @param threadId the thread ID
+     * @return the name
+     */
+    private String threadName(long threadId) {
+        String name = threadNames.get(threadId);
+        return name != null ? name : "thread-" + threadId;
+    }
+
+    /**
+     * Buffered little-endian reader over a file channel.
+     */
+    private static final class Input {
+        private final FileChannel channel; // Source file
+        private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN); // Read-ahead
+        private boolean endOfFile; // Set once the channel is exhausted
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        boolean hasMore() throws IOException {
+            return buffer.hasRemaining() || fill(1);
+        }
+
+        byte getByte() throws IOException {
+            require(1);
+            return buffer.get();
+        }
+
+        short getShort() throws IOException {
+            require(2);
+            return buffer.getShort();
+        }
+
+        int getInt() throws IOException {
+            require(4);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(8);
+            return buffer.getLong();
+        }
+
+        String getString() throws IOException {
+            int length = getShort() & 0xFFFF;
+            require(length);
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Makes sure the given number of bytes can be read.
+         *
+         * @param count the number of bytes
+         * @throws IOException if the file ends first
+         */
+        private void require(int count) throws IOException {
+            if (buffer.remaining() < count && !fill(count)) {
+                throw new EOFException();
+            }
+        }
+
+        /**
+         * Reads more of the file until at least count bytes are buffered.
+         *
+         * @param count the number of bytes needed
+         * @return true if they are available
+         * @throws IOException if the read fails
+         */
+        private boolean fill(int count) throws IOException {
+            buffer.compact();
+            while (buffer.position() < count && !endOfFile) {
+                if (channel.read(buffer) < 0) {
+                    endOfFile = true;
+                }
+            }
+            buffer.flip();
+            return buffer.remaining() >= count;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package util;
+
+import java.util.logging.Level;
+
+/**
+ * Settings for LoggerUtil: where a component logs, how verbosely, in which layout, and whether
+ * records are written synchronously or through the AsyncLogWriter.
+ * Configurations are immutable; each "with" method returns a modified copy.
+ *
+ * <p>Any setting can be overridden at launch without code changes through system properties:
+ * {@code -Dutil.log.file=...}, {@code -Dutil.log.level=WARNING}, {@code -Dutil.log.console=false}
+ * and {@code -Dutil.log.async=<buffer capacity>} (0 for synchronous).</p>
+ */
+public final class LogConfig {
+    // System properties read by withSystemOverrides
+    public static final String FILE_PROPERTY = "util.log.file";
+    public static final String LEVEL_PROPERTY = "util.log.level";
+    public static final String CONSOLE_PROPERTY = "util.log.console";
+    public static final String ASYNC_PROPERTY = "util.log.async";
+
+    private final String logFile; // Text log file, or null for no file output
+    private final Level level; // Lowest level that is logged
+    private final boolean console; // Whether records are also printed to the console
+    private final LogLayout layout; // Message layout
+    private final int asyncCapacity; // Ring buffer size of the async writer, or 0 to log synchronously
+    private final AsyncLogWriter.OverflowPolicy overflowPolicy; // What the async writer does when full
+
+    /**
+     * Constructs a configuration with every setting given explicitly.
+     *
+     * @param logFile        the text log file, or null for no file output
+     * @param level          the lowest level that is logged
+     * @param console        true to also print to the console
+     * @param layout         the message layout
+     * @param asyncCapacity  the async ring buffer size, or 0 to log synchronously
+     * @param overflowPolicy what the async writer does when full
+     */
+    private LogConfig(String logFile, Level level, boolean console, LogLayout layout, int asyncCapacity, AsyncLogWriter.OverflowPolicy overflowPolicy) {
+        this.logFile = logFile;
+        this.level = level;
+        this.console = console;
+        this.layout = layout;
+        this.asyncCapacity = asyncCapacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Creates the default configuration for a component: everything logged, to the given file and
+     * the console, synchronously, in the LINE layout.
+     *
+     * @param logFile the component's text log file, or null for no file output
+     * @return the configuration
+     */
+    public static LogConfig forFile(String logFile) {
+        return new LogConfig(logFile, Level.ALL, true, LogLayout.LINE, 0, AsyncLogWriter.OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Sets the lowest level that is logged.
+     *
+     * @param level the level, e.g. Level.WARNING to keep only warnings and errors
+     * @return the modified configuration
+     */
+    public LogConfig withLevel(Level level) {
+        return new LogConfig(logFile, level, console, layout, asyncCapacity, overflowPolicy);
+    }
+
+    /**
+     * Turns console output on or off.
+     *
+     * @param console true to print records to the console as well as the file
+     * @return the modified configuration
+     */
+    public LogConfig withConsole(boolean console) {
+        return new LogConfig(logFile, level, console, layout, asyncCapacity, overflowPolicy);
+    }
+
+    /**
+     * Sets the message layout.
+     *
+     * @param layout the layout
+     * @return the modified configuration
+     */
+    public LogConfig withLayout(LogLayout layout) {
+        return new LogConfig(logFile, level, console, layout, asyncCapacity, overflowPolicy);
+    }
+
+    /**
+     * Writes records through the AsyncLogWriter instead of on the calling thread.
+     *
+     * @param capacity       the number of records the ring buffer holds
+     * @param overflowPolicy whether callers wait or records are dropped when the buffer is full
+     * @return the modified configuration
+     */
+    public LogConfig withAsync(int capacity, AsyncLogWriter.OverflowPolicy overflowPolicy) {
+        return new LogConfig(logFile, level, console, layout, capacity, overflowPolicy);
+    }
+
+    /**
+     * Applies the util.log.* system properties that are set, leaving the other settings as they are.
+     *
+     * @return the modified configuration
+     * @throws IllegalArgumentException if a property has an invalid value
+     */
+    public LogConfig withSystemOverrides() {
+        LogConfig result = this;
+        String file = System.getProperty(FILE_PROPERTY);
+        if (file != null) {
+            result = new LogConfig(file.isEmpty() ? null : file, level, console, layout, asyncCapacity, overflowPolicy);
+        }
+        String levelName = System.getProperty(LEVEL_PROPERTY);
+        if (levelName != null) {
+            result = result.withLevel(Level.parse(levelName));
+        }
+        String consoleFlag = System.getProperty(CONSOLE_PROPERTY);
+        if (consoleFlag != null) {
+            result = result.withConsole(Boolean.parseBoolean(consoleFlag));
+        }
+        String capacity = System.getProperty(ASYNC_PROPERTY);
+        if (capacity != null) {
+            result = result.withAsync(Integer.parseInt(capacity), result.overflowPolicy);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the text log file.
+     *
+     * @return the file name, or null for no file output
+     */
+    public String getLogFile() {
+        return logFile;
+    }
+
+    /**
+     * Returns the lowest level that is logged.
+     *
+     * @return the level
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns whether records are printed to the console.
+     *
+     * @return true if console output is on
+     */
+    public boolean isConsoleEnabled() {
+        return console;
+    }
+
+    /**
+     * Returns the message layout.
+     *
+     * @return the layout
+     */
+    public LogLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Returns whether records are written by the AsyncLogWriter.
+     *
+     * @return true for asynchronous logging
+     */
+    public boolean isAsync() {
+        return asyncCapacity > 0;
+    }
+
+    /**
+     * Returns the async ring buffer size.
+     *
+     * @return the capacity, or 0 when logging synchronously
+     */
+    public int getAsyncCapacity() {
+        return asyncCapacity;
+    }
+
+    /**
+     * Returns what the async writer does when its buffer is full.
+     *
+     * @return the overflow policy
+     */
+    public AsyncLogWriter.OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+}
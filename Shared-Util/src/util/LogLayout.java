@@ -0,0 +1,45 @@
+package util;
+
+/**
+ * Layouts for the message part of a text log record, one per style the simulations have used.
+ * The timestamp, level and logger name before the message are the same for every layout.
+ */
+public enum LogLayout implements AsyncLogWriter.MessageLayout {
+    /**
+     * The thread name and message on one line, as used by the banking system.
+     */
+    LINE {
+        @Override
+        public void append(StringBuilder out, String timestamp, String threadName, String message) {
+            out.append(threadName).append(": ").append(message);
+        }
+    },
+
+    /**
+     * A framed block with the time, thread name and message, as used by the coffee shop.
+     */
+    BLOCK {
+        @Override
+        public void append(StringBuilder out, String timestamp, String threadName, String message) {
+            out.append("------------------------\n")
+                    .append("Time       : ").append(timestamp).append('\n')
+                    .append("Thread Name: ").append(threadName).append('\n')
+                    .append("Message    : ").append(message).append('\n')
+                    .append("------------------------");
+        }
+    },
+
+    /**
+     * A block with the timestamp, thread name and action, as used by the bathroom stalls.
+     */
+    ACTION_BLOCK {
+        @Override
+        public void append(StringBuilder out, String timestamp, String threadName, String message) {
+            out.append('\n')
+                    .append("Timestamp   : ").append(timestamp).append('\n')
+                    .append("Thread Name : ").append(threadName).append('\n')
+                    .append("Action      : ").append(message).append('\n')
+                    .append("------------------------");
+        }
+    }
+}
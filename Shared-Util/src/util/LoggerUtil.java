@@ -0,0 +1,450 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Supplier;
+import java.util.logging.*;
+
+/**
+ * Logger shared by all the simulations.
+ * Each simulation calls configure once at startup with its own LogConfig: its log file, level,
+ * console output, message layout and whether to log asynchronously. The level is checked before
+ * any work is done, so filtered records cost a single comparison, and the Supplier overload also
+ * skips building the message. The level and console output can be changed while running, and the
+ * util.log.* system properties override the configured values at launch (see LogConfig).
+ */
+public class LoggerUtil {
+    // Singleton logger instance
+    private static volatile Logger logger;
+
+    // Current configuration
+    private static volatile LogConfig config;
+
+    // Lowest level value that is logged, read on every call before any other work
+    private static volatile int minimumLevel = Level.ALL.intValue();
+
+    // Console handler while logging synchronously with console output, otherwise null
+    private static ConsoleHandler consoleHandler;
+
+    // Asynchronous writer, or null while logging synchronously through the handlers
+    private static volatile AsyncLogWriter asyncWriter;
+
+    // Binary event log, or null while it is disabled
+    private static volatile BinaryEventLog eventLog;
+
+    // Whether the shutdown hook that flushes the async writer and event log is registered
+    private static boolean shutdownHookRegistered;
+
+    // Logger name printed in every record
+    private static final String LOGGER_NAME = " ";
+
+    // Log file used when a program logs without calling configure first
+    private static final String DEFAULT_LOG_FILE = "application.log";
+
+    // Timestamp format; DateTimeFormatter is immutable, so one instance is shared by all threads
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    // ANSI escape codes for colored console output
+    public static final String RESET = "\u001B[0m";  // Resets text color to default
+    public static final String GREEN = "\u001B[32m"; // Green color, e.g. for "enter" actions
+    public static final String RED = "\u001B[31m";   // Red color, e.g. for "leave" actions or errors
+    public static final String YELLOW = "\u001B[33m"; // Yellow color for warnings
+    public static final String BLUE = "\u001B[34m";  // Blue color for fine-grained logs
+
+    // Private constructor to prevent instantiation
+    private LoggerUtil() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Configures logging for the running component, replacing any previous configuration.
+     * The util.log.* system properties are applied on top of the given settings.
+     * The log file is overwritten.
+     *
+     * @param newConfig the component's logging settings
+     */
+    public static synchronized void configure(LogConfig newConfig) {
+        LogConfig applied = newConfig.withSystemOverrides();
+        Logger target = Logger.getLogger(LOGGER_NAME);
+        target.setUseParentHandlers(false); // Disable default console logging
+
+        // Release the previous outputs so the log file can be reopened
+        for (Handler handler : target.getHandlers()) {
+            target.removeHandler(handler);
+            handler.close();
+        }
+        consoleHandler = null;
+        if (asyncWriter != null) {
+            asyncWriter.close();
+            asyncWriter = null;
+        }
+
+        if (applied.isAsync()) {
+            asyncWriter = new AsyncLogWriter(applied.getLogFile() != null ? Paths.get(applied.getLogFile()) : null, LOGGER_NAME,
+                    applied.isConsoleEnabled(), applied.getAsyncCapacity(), applied.getOverflowPolicy(), applied.getLayout());
+            registerShutdownHook();
+        } else {
+            if (applied.getLogFile() != null) {
+                try {
+                    // Create a FileHandler for the log file
+                    FileHandler fileHandler = new FileHandler(applied.getLogFile(), false); // Overwrite existing logs
+                    fileHandler.setFormatter(new CustomLogFormatter(false)); // File logs without color
+                    fileHandler.setLevel(Level.ALL); // Filtering is done by the logger
+                    target.addHandler(fileHandler);
+                } catch (IOException e) {
+                    System.err.println("Failed to initialize logger: " + e.getMessage());
+                }
+            }
+            if (applied.isConsoleEnabled()) {
+                addConsoleHandler(target);
+            }
+        }
+
+        target.setLevel(applied.getLevel());
+        minimumLevel = applied.getLevel().intValue();
+        config = applied;
+        logger = target;
+    }
+
+    /**
+     * Returns the logger, configuring it with the default settings if configure has not been called.
+     *
+     * @return the logger instance
+     */
+    public static Logger getLogger() {
+        Logger current = logger;
+        if (current != null) {
+            return current; // Fast path: no locking once the logger exists
+        }
+        synchronized (LoggerUtil.class) {
+            if (logger == null) {
+                configure(LogConfig.forFile(DEFAULT_LOG_FILE));
+            }
+            return logger;
+        }
+    }
+
+    /**
+     * Changes the lowest level that is logged, while running.
+     *
+     * @param level the level, e.g. Level.WARNING to keep only warnings and errors, or Level.OFF
+     */
+    public static synchronized void setLevel(Level level) {
+        Logger target = getLogger();
+        target.setLevel(level);
+        config = config.withLevel(level);
+        minimumLevel = level.intValue();
+    }
+
+    /**
+     * Turns console output on or off while running. The log file is left as it is.
+     *
+     * @param enabled true to print records to the console as well as the file
+     */
+    public static synchronized void setConsoleEnabled(boolean enabled) {
+        Logger target = getLogger();
+        config = config.withConsole(enabled);
+        if (asyncWriter != null) {
+            asyncWriter.setConsoleEnabled(enabled);
+        } else if (enabled && consoleHandler == null) {
+            addConsoleHandler(target);
+        } else if (!enabled && consoleHandler != null) {
+            target.removeHandler(consoleHandler);
+            consoleHandler.flush();
+            consoleHandler = null;
+        }
+    }
+
+    /**
+     * Returns whether a record at the given level would be logged. Use it to guard log calls whose
+     * message is expensive to build.
+     *
+     * @param level the log level
+     * @return true if the level is not filtered out
+     */
+    public static boolean isLoggable(Level level) {
+        return level.intValue() >= minimumLevel;
+    }
+
+    /**
+     * Opens the binary event log; events recorded with event(...) are written to it from then on.
+     * When textLogging is false the text log is cut down to warnings and errors, leaving the
+     * binary log as the main record. The log is flushed and closed by a shutdown hook.
+     *
+     * @param fileName    the name of the event log file (can be null to derive it from the text log file)
+     * @param textLogging true to keep logging every level as text as well
+     */
+    public static synchronized void enableEventLog(String fileName, boolean textLogging) {
+        if (eventLog != null) {
+            return;
+        }
+        getLogger();
+        try {
+            eventLog = new BinaryEventLog(Paths.get(fileName != null ? fileName : defaultEventLogFile()));
+            registerShutdownHook();
+        } catch (IOException e) {
+            System.err.println("Failed to open event log: " + e.getMessage());
+            return;
+        }
+        if (!textLogging) {
+            setLevel(Level.WARNING);
+        }
+    }
+
+    /**
+     * Registers a binary event type.
+     *
+     * @param name       the event name
+     * @param fieldNames the names of the event's numeric fields, at most BinaryEventLog.MAX_FIELDS
+     * @return the type ID to pass to event(...)
+     */
+    public static int defineEvent(String name, String... fieldNames) {
+        return BinaryEventLog.defineType(name, fieldNames);
+    }
+
+    /**
+     * Records a binary event with no fields. Does nothing while the event log is disabled.
+     *
+     * @param type the type ID returned by defineEvent
+     */
+    public static void event(int type) {
+        BinaryEventLog log = eventLog;
+        if (log != null) {
+            log.record(type);
+        }
+    }
+
+    /**
+     * Records a binary event with one field. Does nothing while the event log is disabled.
+     *
+     * @param type the type ID returned by defineEvent
+     * @param a    the first field
+     */
+    public static void event(int type, long a) {
+        BinaryEventLog log = eventLog;
+        if (log != null) {
+            log.record(type, a);
+        }
+    }
+
+    /**
+     * Records a binary event with two fields. Does nothing while the event log is disabled.
+     *
+     * @param type the type ID returned by defineEvent
+     * @param a    the first field
+     * @param b    the second field
+     */
+    public static void event(int type, long a, long b) {
+        BinaryEventLog log = eventLog;
+        if (log != null) {
+            log.record(type, a, b);
+        }
+    }
+
+    /**
+     * Records a binary event with three fields. Does nothing while the event log is disabled.
+     *
+     * @param type the type ID returned by defineEvent
+     * @param a    the first field
+     * @param b    the second field
+     * @param c    the third field
+     */
+    public static void event(int type, long a, long b, long c) {
+        BinaryEventLog log = eventLog;
+        if (log != null) {
+            log.record(type, a, b, c);
+        }
+    }
+
+    /**
+     * Records a binary event with four fields. Does nothing while the event log is disabled.
+     *
+     * @param type the type ID returned by defineEvent
+     * @param a    the first field
+     * @param b    the second field
+     * @param c    the third field
+     * @param d    the fourth field
+     */
+    public static void event(int type, long a, long b, long c, long d) {
+        BinaryEventLog log = eventLog;
+        if (log != null) {
+            log.record(type, a, b, c, d);
+        }
+    }
+
+    /**
+     * Custom log formatter that formats log records with optional color for console output.
+     * A color passed to log(..., color) arrives as the record's first parameter and replaces
+     * the level color for the message on the console; it is never written to the file.
+     */
+    static class CustomLogFormatter extends Formatter {
+        private final boolean useColor; // Flag to enable or disable color
+
+        public CustomLogFormatter(boolean useColor) {
+            this.useColor = useColor;
+        }
+
+        @Override
+        public String format(LogRecord record) {
+            // Format the timestamp
+            String timestamp = TIMESTAMP.format(Instant.ofEpochMilli(record.getMillis()));
+
+            // Get the color for the log level and the caller's color for the message
+            String levelColor = getColor(record.getLevel());
+            Object[] parameters = record.getParameters();
+            String messageColor = useColor && parameters != null && parameters.length > 0 ? (String) parameters[0] : "";
+            String resetColor = useColor ? RESET : ""; // Reset color if using color
+
+            // Format the log message with optional color
+            return timestamp + " [" + levelColor + record.getLevel() + resetColor + "] "
+                    + levelColor + ": " + record.getLoggerName() + messageColor + record.getMessage() + resetColor
+                    + System.lineSeparator();
+        }
+
+        /**
+         * Returns the ANSI color code for the given log level.
+         *
+         * @param level the log level
+         * @return the ANSI color code
+         */
+        private String getColor(Level level) {
+            if (!useColor) {
+                return ""; // No color
+            }
+            if (level == Level.SEVERE) {
+                return RED; // Red for severe logs
+            } else if (level == Level.WARNING) {
+                return YELLOW; // Yellow for warnings
+            } else if (level == Level.INFO) {
+                return GREEN; // Green for info logs
+            } else if (level == Level.FINE || level == Level.FINER || level == Level.FINEST) {
+                return BLUE; // Blue for fine-grained logs
+            }
+            return RESET; // Default color
+        }
+    }
+
+    /**
+     * Logs a message with the thread name, in the configured layout.
+     *
+     * @param level      the log level (e.g., Level.INFO, Level.WARNING)
+     * @param threadName the name of the thread
+     * @param message    the log message
+     */
+    public static void log(Level level, String threadName, String message) {
+        // Skip all work when the level is filtered out
+        if (level.intValue() < minimumLevel) {
+            return;
+        }
+        write(level, threadName, message, null);
+    }
+
+    /**
+     * Logs a message that is only built if the level is not filtered out.
+     *
+     * @param level      the log level (e.g., Level.INFO, Level.WARNING)
+     * @param threadName the name of the thread
+     * @param message    builds the log message
+     */
+    public static void log(Level level, String threadName, Supplier<String> message) {
+        if (level.intValue() < minimumLevel) {
+            return;
+        }
+        write(level, threadName, message.get(), null);
+    }
+
+    /**
+     * Logs a message with the thread name, in the configured layout, colored on the console.
+     *
+     * @param level      the log level (e.g., Level.INFO, Level.WARNING)
+     * @param threadName the name of the thread
+     * @param message    the log message
+     * @param color      the console color for the message (e.g., GREEN, RED, RESET)
+     */
+    public static void log(Level level, String threadName, String message, String color) {
+        if (level.intValue() < minimumLevel) {
+            return;
+        }
+        write(level, threadName, message, color);
+    }
+
+    /**
+     * Formats and writes a record that passed the level check.
+     *
+     * @param level      the log level
+     * @param threadName the name of the thread
+     * @param message    the log message
+     * @param color      the console color for the message, or null for the level color
+     */
+    private static void write(Level level, String threadName, String message, String color) {
+        Logger target = getLogger();
+
+        // In async mode the writer thread does the formatting
+        AsyncLogWriter writer = asyncWriter;
+        if (writer != null) {
+            writer.submit(level, threadName, message, color);
+            return;
+        }
+
+        // Format the log message with the configured layout
+        StringBuilder formattedMessage = new StringBuilder(128 + message.length());
+        config.getLayout().append(formattedMessage, TIMESTAMP.format(Instant.now()), threadName, message);
+
+        // Log the formatted message
+        LogRecord record = new LogRecord(level, formattedMessage.toString());
+        record.setLoggerName(LOGGER_NAME);
+        if (color != null) {
+            record.setParameters(new Object[]{color});
+        }
+        target.log(record);
+    }
+
+    /**
+     * Adds a ConsoleHandler with colored output. Must be called with the class lock held.
+     *
+     * @param target the logger
+     */
+    private static void addConsoleHandler(Logger target) {
+        consoleHandler = new ConsoleHandler();
+        consoleHandler.setFormatter(new CustomLogFormatter(true)); // Console logs with color
+        consoleHandler.setLevel(Level.ALL); // Filtering is done by the logger
+        target.addHandler(consoleHandler);
+    }
+
+    /**
+     * Returns the event log file name that goes with the text log file: "name.log" becomes "name.evlog".
+     *
+     * @return the event log file name
+     */
+    private static String defaultEventLogFile() {
+        String logFile = config.getLogFile();
+        if (logFile == null) {
+            return "events.evlog";
+        }
+        return (logFile.endsWith(".log") ? logFile.substring(0, logFile.length() - 4) : logFile) + ".evlog";
+    }
+
+    /**
+     * Registers, once, a shutdown hook that writes out whatever the async writer and the event log
+     * still hold. Must be called with the class lock held.
+     */
+    private static void registerShutdownHook() {
+        if (shutdownHookRegistered) {
+            return;
+        }
+        shutdownHookRegistered = true;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            AsyncLogWriter writer = asyncWriter;
+            if (writer != null) {
+                writer.close();
+            }
+            BinaryEventLog log = eventLog;
+            if (log != null) {
+                log.close();
+            }
+        }, "log-shutdown"));
+    }
+}
@@ -0,0 +1,90 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Kind of thread the simulations run their actors (customers, baristas, employees) on.
+ * Platform threads each hold an OS thread and a native stack, which limits a simulation to a
+ * few thousand actors; virtual threads are scheduled by the JVM onto a few carrier threads and
+ * unmount while blocked in sleep, Semaphore.acquire or a ReentrantLock condition, so a million
+ * actors fit in a normal heap. Chosen at launch with {@code -Dutil.threads=platform|virtual}.
+ *
+ * <p>Blocking inside a synchronized block pins a virtual thread to its carrier, so code run by
+ * actors waits with java.util.concurrent locks instead. Simulations also switch to asynchronous
+ * logging in virtual mode, as synchronous logging writes to the file under a monitor.</p>
+ */
+public enum ThreadMode {
+    PLATFORM,
+    VIRTUAL;
+
+    // System property read by fromSystemProperty
+    public static final String PROPERTY = "util.threads";
+
+    /**
+     * Returns the mode selected by the util.threads system property.
+     *
+     * @return the mode, PLATFORM if the property is not set
+     * @throws IllegalArgumentException if the property has an unknown value
+     */
+    public static ThreadMode fromSystemProperty() {
+        return valueOf(System.getProperty(PROPERTY, "platform").toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Creates and starts a thread of this kind.
+     *
+     * @param name the thread name
+     * @param task what the thread runs
+     * @return the started thread
+     */
+    public Thread start(String name, Runnable task) {
+        Thread.Builder builder = this == VIRTUAL ? Thread.ofVirtual() : Thread.ofPlatform();
+        return builder.name(name).start(task);
+    }
+
+    /**
+     * Prints how long starting a group of actors took and the memory the process uses, for
+     * comparing the two modes.
+     *
+     * @param count      the number of actors started
+     * @param actors     what the actors are, e.g. "customers"
+     * @param startNanos the System.nanoTime() value before the first actor was started
+     */
+    public void reportStartup(int count, String actors, long startNanos) {
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        Runtime runtime = Runtime.getRuntime();
+        long heapMegabytes = (runtime.totalMemory() - runtime.freeMemory()) >> 20;
+        long residentMegabytes = residentMegabytes();
+        System.out.printf("Started %d %s on %s threads in %d ms; heap used %d MB%s%n",
+                count, actors, name().toLowerCase(Locale.ROOT), elapsedMillis, heapMegabytes,
+                residentMegabytes < 0 ? "" : ", resident memory " + residentMegabytes + " MB");
+    }
+
+    /**
+     * Reads the process's resident memory, which unlike the heap includes platform thread stacks.
+     *
+     * @return the resident set size in megabytes, or -1 where /proc is not available
+     */
+    private static long residentMegabytes() {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try {
+            List<String> lines = Files.readAllLines(status);
+            for (String line : lines) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) >> 10; // Reported in kB
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+}
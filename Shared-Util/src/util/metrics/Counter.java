@@ -0,0 +1,36 @@
+package util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count, such as orders placed or transfers completed.
+ * Increments are striped across cells (LongAdder), so many threads can count without contending.
+ */
+public final class Counter {
+    private final LongAdder count = new LongAdder(); // Running total
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Adds to the count.
+     *
+     * @param amount the amount to add; must not be negative
+     */
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    /**
+     * Returns the current count.
+     *
+     * @return the count
+     */
+    public long get() {
+        return count.sum();
+    }
+}
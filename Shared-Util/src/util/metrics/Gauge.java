@@ -0,0 +1,14 @@
+package util.metrics;
+
+/**
+ * A value sampled when metrics are exported, such as a queue depth or the number of free stalls.
+ */
+@FunctionalInterface
+public interface Gauge {
+    /**
+     * Reads the current value.
+     *
+     * @return the value
+     */
+    long get();
+}
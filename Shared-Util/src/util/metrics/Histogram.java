@@ -0,0 +1,232 @@
+package util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the distribution of non-negative long values (typically latencies in nanoseconds)
+ * without locks, HdrHistogram style.
+ * Values are counted in log-linear buckets: each power of two is split into SUB_BUCKETS equal
+ * buckets, so any value is reported within 1/SUB_BUCKETS (under 1%) of its true value while the
+ * whole long range fits in a fixed array of counters. Recording is one atomic increment plus a
+ * few adders, so it can sit on hot paths shared by many threads.
+ *
+ * <p>Like LongAdder cells, the counters are striped: each thread counts into one of up to
+ * STRIPES separate bucket arrays, picked by its thread ID, so threads recording similar values
+ * do not fight over the same cache lines. A stripe is allocated the first time a thread maps to
+ * it, so a histogram only ever touched by one thread holds a single array. Snapshots add the
+ * stripes together.</p>
+ */
+public final class Histogram {
+    // Each power of two is split into 2^SUB_BUCKET_BITS buckets
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Enough buckets for every non-negative long
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    // Most bucket arrays a histogram stripes its counts over
+    private static final int MAX_STRIPES = 64;
+
+    // Number of stripes: the processor count rounded up to a power of two, capped at MAX_STRIPES
+    private static final int STRIPES = Math.min(MAX_STRIPES, 1 << (32 - Integer.numberOfLeadingZeros(Runtime.getRuntime().availableProcessors() - 1)));
+
+    // Multiplier that spreads sequential thread IDs over the stripes (2^64 / golden ratio)
+    private static final long STRIPE_HASH = 0x9E3779B97F4A7C15L;
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES); // Values per bucket, per stripe; null until first used
+    private final LongAdder total = new LongAdder(); // Number of values recorded
+    private final LongAdder sum = new LongAdder(); // Sum of values recorded
+    private final AtomicLong max = new AtomicLong(); // Largest value recorded
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        long v = Math.max(value, 0);
+        stripe().incrementAndGet(bucketIndex(v));
+        total.increment();
+        sum.add(v);
+        long currentMax = max.get();
+        while (v > currentMax && !max.compareAndSet(currentMax, v)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Records the nanoseconds elapsed since a System.nanoTime() reading.
+     *
+     * @param startNanos the System.nanoTime() value at the start of the measured interval
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Copies the current distribution. Values recorded while the copy is taken may or may not be
+     * included, but the copy is always internally consistent in its bucket counts.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray counts = stripes.get(s);
+            if (counts == null) {
+                continue;
+            }
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                long n = counts.get(i);
+                copy[i] += n;
+                count += n;
+            }
+        }
+        return new Snapshot(copy, count, sum.sum(), max.get());
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return total.sum();
+    }
+
+    /**
+     * Returns the calling thread's stripe, allocating it on first use.
+     *
+     * @return the bucket counts of the stripe
+     */
+    private AtomicLongArray stripe() {
+        int index = (int) ((Thread.currentThread().threadId() * STRIPE_HASH) >>> 32) & (STRIPES - 1);
+        AtomicLongArray counts = stripes.get(index);
+        if (counts == null) {
+            AtomicLongArray created = new AtomicLongArray(BUCKET_COUNT);
+            counts = stripes.compareAndExchange(index, null, created);
+            if (counts == null) {
+                counts = created; // This thread installed the stripe
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Maps a value to its bucket.
+     *
+     * @param value a non-negative value
+     * @return the bucket index
+     */
+    private static int bucketIndex(long value) {
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        if (highestBit < SUB_BUCKET_BITS) {
+            return (int) value; // Small values have a bucket each
+        }
+        int shift = highestBit - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest value that maps to a bucket.
+     *
+     * @param index the bucket index
+     * @return the bucket's upper bound
+     */
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long top = SUB_BUCKETS + index % SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * A point-in-time copy of a histogram's distribution.
+     */
+    public static final class Snapshot {
+        private final long[] counts; // Values per bucket
+        private final long count; // Number of values
+        private final long sum; // Sum of values
+        private final long max; // Largest value
+
+        /**
+         * Constructs a snapshot from copied bucket counts.
+         *
+         * @param counts the bucket counts
+         * @param count  the total of the bucket counts
+         * @param sum    the sum of the values
+         * @param max    the largest value
+         */
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Returns the number of values.
+         *
+         * @return the count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the sum of the values.
+         *
+         * @return the sum
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * Returns the largest value.
+         *
+         * @return the maximum, or 0 if nothing was recorded
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the mean value.
+         *
+         * @return the mean, or 0 if nothing was recorded
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the value at a percentile: the upper bound of the bucket holding it, capped at
+         * the largest value recorded.
+         *
+         * @param percentile the percentile, from 0 to 100
+         * @return the value, or 0 if nothing was recorded
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
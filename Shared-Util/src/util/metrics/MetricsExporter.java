@@ -0,0 +1,205 @@
+package util.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import util.LoggerUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Publishes a MetricsRegistry in the Prometheus text format, to a file rewritten periodically,
+ * to an HTTP endpoint at /metrics on the loopback interface, or both.
+ * Counters are also reported as a per-second rate over the last export period, and histograms
+ * as a summary with their 50th, 90th, 99th and 99.9th percentiles, count, sum and maximum.
+ *
+ * <p>Programs usually call start, which is configured through system properties:
+ * {@code -Dutil.metrics.file=<name>} (empty to disable the file),
+ * {@code -Dutil.metrics.period=<seconds>} and {@code -Dutil.metrics.port=<port>}.</p>
+ */
+public final class MetricsExporter implements AutoCloseable {
+    // System properties read by start
+    public static final String FILE_PROPERTY = "util.metrics.file";
+    public static final String PERIOD_PROPERTY = "util.metrics.period";
+    public static final String PORT_PROPERTY = "util.metrics.port";
+
+    // Percentiles reported for each histogram, and their quantile labels
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] QUANTILES = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final MetricsRegistry registry; // Metrics being exported
+    private final ScheduledExecutorService scheduler; // Runs the periodic export
+    private volatile Path file; // File rewritten on every export, or null
+    private volatile HttpServer server; // HTTP endpoint, or null
+    private volatile Map<String, Double> rates = Map.of(); // Counter rates over the last period
+    private final Map<String, Long> previousCounts = new HashMap<>(); // Counter values at the last export
+    private long previousNanos = System.nanoTime(); // Time of the last export
+
+    /**
+     * Constructs an exporter. Nothing is published until exportToFile or serveHttp is called.
+     *
+     * @param registry the metrics to export
+     */
+    public MetricsExporter(MetricsRegistry registry) {
+        this.registry = registry;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts exporting the registry as configured by the util.metrics.* system properties, and
+     * writes a final export when the program exits.
+     *
+     * @param registry    the metrics to export
+     * @param defaultFile the file to write when util.metrics.file is not set
+     * @return the running exporter
+     */
+    public static MetricsExporter start(MetricsRegistry registry, String defaultFile) {
+        MetricsExporter exporter = new MetricsExporter(registry);
+        String fileName = System.getProperty(FILE_PROPERTY, defaultFile);
+        long periodSeconds = Long.parseLong(System.getProperty(PERIOD_PROPERTY, "1"));
+        exporter.exportToFile(fileName.isEmpty() ? null : Paths.get(fileName), periodSeconds, TimeUnit.SECONDS);
+
+        String port = System.getProperty(PORT_PROPERTY);
+        if (port != null) {
+            try {
+                exporter.serveHttp(Integer.parseInt(port));
+            } catch (IOException e) {
+                LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Metrics endpoint not started: " + e.getMessage());
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(exporter::close, "metrics-shutdown"));
+        return exporter;
+    }
+
+    /**
+     * Exports periodically, recomputing counter rates and rewriting the file if one is given.
+     * The file is replaced atomically, so readers never see a partial export.
+     *
+     * @param file   the file to write, or null to only update the rates served over HTTP
+     * @param period the time between exports
+     * @param unit   the unit of the period
+     */
+    public void exportToFile(Path file, long period, TimeUnit unit) {
+        this.file = file;
+        scheduler.scheduleAtFixedRate(this::export, period, period, unit);
+    }
+
+    /**
+     * Serves the metrics at http://localhost:&lt;port&gt;/metrics.
+     *
+     * @param port the port to listen on, or 0 to pick a free one
+     * @return the port the endpoint listens on
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized int serveHttp(int port) throws IOException {
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/metrics", exchange -> {
+            byte[] body = format().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        httpServer.start();
+        server = httpServer;
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Formats the current value of every metric.
+     *
+     * @return the metrics in the Prometheus text format
+     */
+    public String format() {
+        StringBuilder out = new StringBuilder(4096);
+        Map<String, Double> currentRates = rates;
+        registry.getCounters().forEach((name, counter) -> {
+            out.append("# TYPE ").append(name).append(" counter\n");
+            out.append(name).append(' ').append(counter.get()).append('\n');
+            Double rate = currentRates.get(name);
+            if (rate != null) {
+                out.append("# TYPE ").append(name).append("_per_second gauge\n");
+                out.append(name).append("_per_second ").append(String.format(Locale.ROOT, "%.2f", rate)).append('\n');
+            }
+        });
+        registry.getGauges().forEach((name, gauge) -> {
+            out.append("# TYPE ").append(name).append(" gauge\n");
+            out.append(name).append(' ').append(gauge.get()).append('\n');
+        });
+        registry.getHistograms().forEach((name, histogram) -> {
+            Histogram.Snapshot snapshot = histogram.snapshot();
+            out.append("# TYPE ").append(name).append(" summary\n");
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                out.append(name).append("{quantile=\"").append(QUANTILES[i]).append("\"} ")
+                        .append(snapshot.getValueAtPercentile(PERCENTILES[i])).append('\n');
+            }
+            out.append(name).append("_sum ").append(snapshot.getSum()).append('\n');
+            out.append(name).append("_count ").append(snapshot.getCount()).append('\n');
+            out.append("# TYPE ").append(name).append("_max gauge\n");
+            out.append(name).append("_max ").append(snapshot.getMax()).append('\n');
+        });
+        return out.toString();
+    }
+
+    /**
+     * Stops exporting, writes a final export and shuts the HTTP endpoint down.
+     */
+    @Override
+    public synchronized void close() {
+        scheduler.shutdownNow();
+        export();
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    /**
+     * Recomputes counter rates and rewrites the export file.
+     */
+    private synchronized void export() {
+        long now = System.nanoTime();
+        double seconds = (now - previousNanos) / 1e9;
+        if (seconds > 0) {
+            Map<String, Double> currentRates = new HashMap<>();
+            registry.getCounters().forEach((name, counter) -> {
+                long count = counter.get();
+                currentRates.put(name, (count - previousCounts.getOrDefault(name, 0L)) / seconds);
+                previousCounts.put(name, count);
+            });
+            rates = currentRates;
+            previousNanos = now;
+        }
+
+        Path target = file;
+        if (target == null) {
+            return;
+        }
+        try {
+            Path directory = target.toAbsolutePath().getParent();
+            Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+            Files.writeString(temp, format());
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LoggerUtil.log(Level.WARNING, Thread.currentThread().getName(), "Metrics export failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package util.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Named counters, gauges and histograms for a program, exported by a MetricsExporter.
+ * Metrics are created on first use and shared by name, so components can look them up once
+ * (typically into a static final field) and record without further map lookups.
+ * Names use lower case and underscores, e.g. "banking_transfer_latency_ns".
+ */
+public final class MetricsRegistry {
+    // Registry used by the simulations
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    // Metrics by name, sorted so exports are stable
+    private final ConcurrentSkipListMap<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns the registry shared by everything in the program.
+     *
+     * @return the default registry
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the counter with the given name, creating it if needed.
+     *
+     * @param name the metric name
+     * @return the counter
+     * @throws IllegalArgumentException if the name is already used by a gauge or histogram
+     */
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter != null) {
+            return counter;
+        }
+        checkUnused(name, gauges, histograms);
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge with the same name. Replacing lets a component that
+     * is rebuilt (for example a new coffee shop) point the gauge at its new state.
+     *
+     * @param name  the metric name
+     * @param gauge reads the value when metrics are exported
+     * @throws IllegalArgumentException if the name is already used by a counter or histogram
+     */
+    public void gauge(String name, Gauge gauge) {
+        checkUnused(name, counters, histograms);
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Returns the histogram with the given name, creating it if needed.
+     *
+     * @param name the metric name
+     * @return the histogram
+     * @throws IllegalArgumentException if the name is already used by a counter or gauge
+     */
+    public Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        if (histogram != null) {
+            return histogram;
+        }
+        checkUnused(name, counters, gauges);
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Returns the counters by name.
+     *
+     * @return a read-only, name-ordered view
+     */
+    public NavigableMap<String, Counter> getCounters() {
+        return Collections.unmodifiableNavigableMap(counters);
+    }
+
+    /**
+     * Returns the gauges by name.
+     *
+     * @return a read-only, name-ordered view
+     */
+    public NavigableMap<String, Gauge> getGauges() {
+        return Collections.unmodifiableNavigableMap(gauges);
+    }
+
+    /**
+     * Returns the histograms by name.
+     *
+     * @return a read-only, name-ordered view
+     */
+    public NavigableMap<String, Histogram> getHistograms() {
+        return Collections.unmodifiableNavigableMap(histograms);
+    }
+
+    /**
+     * Checks that a name is not taken by a metric of another kind.
+     *
+     * @param name   the metric name
+     * @param first  the metrics of one other kind
+     * @param second the metrics of the remaining kind
+     */
+    private static void checkUnused(String name, Map<String, ?> first, Map<String, ?> second) {
+        if (first.containsKey(name) || second.containsKey(name)) {
+            throw new IllegalArgumentException("Metric name already in use: " + name);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package util.pool;
+
+import util.metrics.Counter;
+import util.metrics.Histogram;
+import util.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reserves units across many resource pools, such as the bathrooms on every floor of a campus.
+ * A user is sent to their home pool if it has a free unit, and otherwise to the nearest pool in
+ * the same group that does, up to a maximum distance. Two pools equally far away, one above and
+ * one below, are compared by free units and the emptier one is tried first, so overflow spreads
+ * out instead of filling the same neighbour.
+ *
+ * <p>Reservations never wait and take no lock: each attempt is a compare-and-set on one pool's
+ * bitmap, so threads on different pools do not contend and the scheduler scales with cores.
+ * A caller who gets no reservation decides what to do, for example wait at its home pool.
+ * Counters are registered as {@code <prefix>_home_total}, {@code <prefix>_overflow_total} and
+ * {@code <prefix>_full_total}, and the distance overflow travelled as
+ * {@code <prefix>_overflow_distance}.</p>
+ *
+ * @param <P> the pool type
+ */
+public final class PoolScheduler<P extends ResourcePool> {
+    /**
+     * A reserved unit; release it when done.
+     *
+     * @param <P> the pool type
+     */
+    public static final class Reservation<P extends ResourcePool> {
+        private final P pool; // Pool the unit belongs to
+        private final int unit; // Unit number within the pool
+        private final int distance; // Distance from the home pool, 0 for the home pool itself
+
+        private Reservation(P pool, int unit, int distance) {
+            this.pool = pool;
+            this.unit = unit;
+            this.distance = distance;
+        }
+
+        public P getPool() {
+            return pool;
+        }
+
+        public int getUnit() {
+            return unit;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+
+        /**
+         * Returns the unit to its pool.
+         *
+         * @throws IllegalStateException if the unit was already released
+         */
+        public void release() {
+            pool.release(unit);
+        }
+    }
+
+    private final List<P> pools; // Pools by index, as given
+    private final ResourcePool[][] lines; // Pools of each group, by position
+    private final int[] lineOf; // Index in lines of each pool's group
+    private final int[] slotOf; // Index of each pool within its line
+    private final int maxDistance; // Farthest overflow goes from the home pool
+    private final Counter home; // Reservations in the home pool
+    private final Counter overflow; // Reservations in another pool
+    private final Counter full; // Requests that found no pool in range with room
+    private final Histogram overflowDistance; // Distance of overflow reservations
+
+    /**
+     * Constructs a scheduler over a fixed set of pools.
+     *
+     * @param pools       the pools; a pool is identified by its index in this list
+     * @param maxDistance the farthest, in positions, overflow may go from the home pool, or 0
+     *                    to stay in the home pool
+     * @param registry    the registry to record reservations in
+     * @param prefix      the metric name prefix, e.g. "bathroom_reservations"
+     * @throws IllegalArgumentException if there are no pools, two pools share a location or the
+     *                                  distance is negative
+     */
+    public PoolScheduler(List<P> pools, int maxDistance, MetricsRegistry registry, String prefix) {
+        if (pools.isEmpty()) {
+            throw new IllegalArgumentException("At least one pool is required.");
+        }
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("Maximum distance must not be negative.");
+        }
+        this.pools = List.copyOf(pools);
+        this.maxDistance = maxDistance;
+
+        Map<Integer, List<P>> groups = new TreeMap<>();
+        for (P pool : this.pools) {
+            groups.computeIfAbsent(pool.getGroup(), group -> new ArrayList<>()).add(pool);
+        }
+        this.lines = new ResourcePool[groups.size()][];
+        this.lineOf = new int[this.pools.size()];
+        this.slotOf = new int[this.pools.size()];
+        Map<ResourcePool, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < this.pools.size(); i++) {
+            indexes.put(this.pools.get(i), i);
+        }
+        int line = 0;
+        for (List<P> group : groups.values()) {
+            group.sort(Comparator.comparingInt(ResourcePool::getPosition));
+            lines[line] = group.toArray(new ResourcePool[0]);
+            for (int slot = 0; slot < group.size(); slot++) {
+                if (slot > 0 && group.get(slot).getPosition() == group.get(slot - 1).getPosition()) {
+                    throw new IllegalArgumentException("Pools " + group.get(slot - 1) + " and "
+                            + group.get(slot) + " share a location.");
+                }
+                int index = indexes.get(group.get(slot));
+                lineOf[index] = line;
+                slotOf[index] = slot;
+            }
+            line++;
+        }
+
+        this.home = registry.counter(prefix + "_home_total");
+        this.overflow = registry.counter(prefix + "_overflow_total");
+        this.full = registry.counter(prefix + "_full_total");
+        this.overflowDistance = registry.histogram(prefix + "_overflow_distance");
+    }
+
+    /**
+     * Reserves a unit in the home pool or, if it has none free, in the nearest pool with room.
+     * Never waits.
+     *
+     * @param homeIndex the index of the user's home pool
+     * @return the reservation, or null if no pool within the maximum distance has a free unit
+     * @throws IndexOutOfBoundsException if there is no such pool
+     */
+    public Reservation<P> tryReserve(int homeIndex) {
+        P homePool = pools.get(homeIndex);
+        int unit = homePool.tryReserve();
+        if (unit > 0) {
+            home.increment();
+            return new Reservation<>(homePool, unit, 0);
+        }
+
+        ResourcePool[] line = lines[lineOf[homeIndex]];
+        int slot = slotOf[homeIndex];
+        int position = homePool.getPosition();
+        int below = slot - 1;
+        int above = slot + 1;
+        while (true) {
+            int belowDistance = below >= 0 ? position - line[below].getPosition() : Integer.MAX_VALUE;
+            int aboveDistance = above < line.length ? line[above].getPosition() - position : Integer.MAX_VALUE;
+            int distance = Math.min(belowDistance, aboveDistance);
+            if (distance == Integer.MAX_VALUE || distance > maxDistance) {
+                full.increment();
+                return null;
+            }
+
+            // Equally near pools on both sides: try the one with more free units first
+            boolean goBelow = belowDistance < aboveDistance || (belowDistance == aboveDistance
+                    && line[below].getFreeCount() >= line[above].getFreeCount());
+            ResourcePool candidate = goBelow ? line[below--] : line[above++];
+            unit = candidate.tryReserve();
+            if (unit > 0) {
+                overflow.increment();
+                overflowDistance.record(distance);
+                @SuppressWarnings("unchecked") // Every pool in lines came from the List<P>
+                P pool = (P) candidate;
+                return new Reservation<>(pool, unit, distance);
+            }
+        }
+    }
+
+    /**
+     * Returns a pool.
+     *
+     * @param index the pool's index
+     * @return the pool
+     */
+    public P getPool(int index) {
+        return pools.get(index);
+    }
+
+    /**
+     * Returns every pool, in index order.
+     *
+     * @return an unmodifiable list of the pools
+     */
+    public List<P> getPools() {
+        return pools;
+    }
+
+    /**
+     * Returns the number of pools.
+     *
+     * @return the count
+     */
+    public int size() {
+        return pools.size();
+    }
+
+    /**
+     * Returns the free units across every pool.
+     *
+     * @return the count
+     */
+    public int getFreeCount() {
+        int count = 0;
+        for (P pool : pools) {
+            count += pool.getFreeCount();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,153 @@
+package util.pool;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed set of interchangeable units, such as the stalls of one bathroom, reserved and released
+ * without locks. Free units are the set bits of a bitmap, so a single compare-and-set both claims
+ * a unit and names it. Units are numbered from 1.
+ *
+ * <p>Each pool has a location, a group and a position within it (for example a building and a
+ * floor), that PoolScheduler uses to find the nearest pool with room. Subclasses may queue users
+ * who find the pool full, by overriding tryReserve and release and building on claim and free.</p>
+ */
+public class ResourcePool {
+    private final String name; // Name used in logs, e.g. "floor 3"
+    private final int group; // Group the pool is in, e.g. a building
+    private final int position; // Position within the group, e.g. a floor
+    private final int capacity; // Number of units
+    private final AtomicLongArray free; // Bit n of word w set when unit 64w + n + 1 is free
+
+    /**
+     * Constructs a pool with every unit free.
+     *
+     * @param name     the name used in logs
+     * @param group    the group the pool is in
+     * @param position the position within the group; pools with close positions are close together
+     * @param capacity the number of units
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public ResourcePool(String name, int group, int position, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        this.name = name;
+        this.group = group;
+        this.position = position;
+        this.capacity = capacity;
+        this.free = new AtomicLongArray((capacity + Long.SIZE - 1) / Long.SIZE);
+        for (int word = 0; word < free.length(); word++) {
+            int units = Math.min(Long.SIZE, capacity - word * Long.SIZE);
+            free.set(word, units == Long.SIZE ? -1L : (1L << units) - 1);
+        }
+    }
+
+    /**
+     * Reserves a free unit, without waiting.
+     *
+     * @return the unit number, or -1 if none is free
+     */
+    public int tryReserve() {
+        return claim();
+    }
+
+    /**
+     * Releases a reserved unit.
+     *
+     * @param unit the unit number returned by tryReserve
+     * @throws IllegalArgumentException if the unit number is out of range
+     * @throws IllegalStateException    if the unit is already free
+     */
+    public void release(int unit) {
+        free(unit);
+    }
+
+    /**
+     * Returns the number of free units. The count is read one word at a time, so under
+     * concurrent use it is a close estimate rather than a snapshot.
+     *
+     * @return the count
+     */
+    public int getFreeCount() {
+        int count = 0;
+        for (int word = 0; word < free.length(); word++) {
+            count += Long.bitCount(free.get(word));
+        }
+        return count;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getGroup() {
+        return group;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Claims the lowest-numbered free unit of a word. Large pools start at a random word, so
+     * threads reserving at once mostly touch different words.
+     *
+     * @return the unit number, or -1 if every unit is reserved
+     */
+    protected final int claim() {
+        int words = free.length();
+        int start = words == 1 ? 0 : ThreadLocalRandom.current().nextInt(words);
+        for (int i = 0; i < words; i++) {
+            int word = (start + i) % words;
+            while (true) {
+                long bits = free.get(word);
+                if (bits == 0) {
+                    break;
+                }
+                long lowest = bits & -bits;
+                if (free.compareAndSet(word, bits, bits & ~lowest)) {
+                    return word * Long.SIZE + Long.numberOfTrailingZeros(lowest) + 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Marks a unit free.
+     *
+     * @param unit the unit number
+     * @throws IllegalArgumentException if the unit number is out of range
+     * @throws IllegalStateException    if the unit is already free
+     */
+    protected final void free(int unit) {
+        checkUnit(unit);
+        int word = (unit - 1) / Long.SIZE;
+        long bit = 1L << ((unit - 1) % Long.SIZE);
+        if ((free.getAndUpdate(word, bits -> bits | bit) & bit) != 0) {
+            throw new IllegalStateException(name + " unit " + unit + " is already free.");
+        }
+    }
+
+    /**
+     * Checks that a unit number is in range.
+     *
+     * @param unit the unit number
+     * @throws IllegalArgumentException if the unit number is out of range
+     */
+    protected final void checkUnit(int unit) {
+        if (unit < 1 || unit > capacity) {
+            throw new IllegalArgumentException("No unit " + unit + " in " + name + ".");
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package util.sim;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Monte Carlo parameter sweep: runs a seeded model many times for each configuration, spread
+ * over every core with a ForkJoinPool, and summarises each metric per configuration as a mean
+ * with a 95% confidence interval.
+ * Replication r of every configuration uses the same seed, baseSeed + r (common random
+ * numbers), so differences between configurations are not drowned by differences in luck, and
+ * the whole sweep gives the same results however its tasks are scheduled.
+ *
+ * @param <C> the configuration type, e.g. a simulation scenario
+ */
+public final class ParameterSweep<C> {
+    /**
+     * A simulation model that can be run from a seed.
+     *
+     * @param <C> the configuration type
+     */
+    @FunctionalInterface
+    public interface Model<C> {
+        /**
+         * Runs one replication. Must be deterministic for a given configuration and seed, and
+         * must not share mutable state with other replications, as they run concurrently.
+         *
+         * @param configuration the configuration
+         * @param seed          the seed
+         * @return the metrics measured, by name; every replication must report the same names
+         */
+        Map<String, Double> run(C configuration, long seed);
+    }
+
+    // Two-sided 95% normal quantile, used for the confidence intervals
+    private static final double Z_95 = 1.959964;
+
+    private final List<C> configurations; // Configurations to run
+    private final int replications; // Runs per configuration
+    private final long baseSeed; // Seed of replication 0
+
+    /**
+     * Constructs a sweep.
+     *
+     * @param configurations the configurations to run
+     * @param replications   the number of runs per configuration
+     * @param baseSeed       the seed of the first replication; replication r uses baseSeed + r
+     * @throws IllegalArgumentException if there are no configurations or replications
+     */
+    public ParameterSweep(List<C> configurations, int replications, long baseSeed) {
+        if (configurations.isEmpty() || replications < 1) {
+            throw new IllegalArgumentException("A sweep needs at least one configuration and one replication.");
+        }
+        this.configurations = List.copyOf(configurations);
+        this.replications = replications;
+        this.baseSeed = baseSeed;
+    }
+
+    /**
+     * Runs every replication of every configuration on the common ForkJoinPool.
+     *
+     * @param model the model
+     * @return a summary per configuration, in the order the configurations were given
+     */
+    public List<Summary<C>> run(Model<C> model) {
+        return run(model, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs every replication of every configuration on a ForkJoinPool.
+     *
+     * @param model the model
+     * @param pool  the pool to run on
+     * @return a summary per configuration, in the order the configurations were given
+     */
+    public List<Summary<C>> run(Model<C> model, ForkJoinPool pool) {
+        // Each task sets its own slots and the list is never resized, so the joins publish them
+        List<Map<String, Double>> runs = new ArrayList<>(Collections.nCopies(configurations.size() * replications, null));
+        pool.invoke(new Replications(model, runs, 0, runs.size()));
+
+        List<Summary<C>> summaries = new ArrayList<>(configurations.size());
+        for (int i = 0; i < configurations.size(); i++) {
+            summaries.add(new Summary<>(configurations.get(i), runs.subList(i * replications, (i + 1) * replications)));
+        }
+        return summaries;
+    }
+
+    /**
+     * Runs a range of replications, splitting it in half until one replication is left.
+     * Replication index i is configuration i / replications, seed baseSeed + i % replications.
+     */
+    @SuppressWarnings("serial") // Tasks are never serialized; RecursiveAction is Serializable only by inheritance
+    private final class Replications extends RecursiveAction {
+        private final Model<C> model; // Model to run
+        private final List<Map<String, Double>> outcomes; // Results, by replication index
+        private final int from; // First replication index, inclusive
+        private final int to; // Last replication index, exclusive
+
+        Replications(Model<C> model, List<Map<String, Double>> outcomes, int from, int to) {
+            this.model = model;
+            this.outcomes = outcomes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                C configuration = configurations.get(from / replications);
+                outcomes.set(from, model.run(configuration, baseSeed + from % replications));
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Replications(model, outcomes, from, middle), new Replications(model, outcomes, middle, to));
+        }
+    }
+
+    /**
+     * The replications of one configuration, summarised per metric.
+     *
+     * @param <C> the configuration type
+     */
+    public static final class Summary<C> {
+        private final C configuration; // The configuration
+        private final int replications; // Number of runs summarised
+        private final Map<String, double[]> statistics = new LinkedHashMap<>(); // Mean and confidence half-width, by metric
+
+        /**
+         * Summarises the runs of a configuration.
+         *
+         * @param configuration the configuration
+         * @param runs          the metrics of each run
+         */
+        private Summary(C configuration, List<Map<String, Double>> runs) {
+            this.configuration = configuration;
+            this.replications = runs.size();
+            for (String metric : runs.get(0).keySet()) {
+                double sum = 0;
+                double sumOfSquares = 0;
+                for (Map<String, Double> run : runs) {
+                    double value = run.get(metric);
+                    sum += value;
+                    sumOfSquares += value * value;
+                }
+                double mean = sum / replications;
+                double variance = replications < 2 ? 0 : Math.max(0, (sumOfSquares - sum * mean) / (replications - 1));
+                statistics.put(metric, new double[] {mean, Z_95 * Math.sqrt(variance / replications)});
+            }
+        }
+
+        public C getConfiguration() {
+            return configuration;
+        }
+
+        public int getReplications() {
+            return replications;
+        }
+
+        /**
+         * Returns the names of the metrics, in the order the model reported them.
+         *
+         * @return the metric names
+         */
+        public List<String> getMetrics() {
+            return List.copyOf(statistics.keySet());
+        }
+
+        /**
+         * Returns the mean of a metric over the replications.
+         *
+         * @param metric the metric name
+         * @return the mean
+         */
+        public double getMean(String metric) {
+            return statistics.get(metric)[0];
+        }
+
+        /**
+         * Returns the half-width of the 95% confidence interval of a metric's mean.
+         *
+         * @param metric the metric name
+         * @return the half-width, or 0 with a single replication
+         */
+        public double getHalfWidth(String metric) {
+            return statistics.get(metric)[1];
+        }
+    }
+
+    /**
+     * Writes summaries as CSV: the configuration's parameters, the replication count, then the
+     * mean and 95% confidence half-width of each metric.
+     *
+     * @param summaries  the summaries, all reporting the same metrics
+     * @param parameters the names of the configuration parameters, as column headers
+     * @param values     extracts a configuration's parameter values, in the order of the headers
+     * @param file       the file to write
+     * @param <C>        the configuration type
+     * @throws IOException if the file cannot be written
+     */
+    public static <C> void writeCsv(List<Summary<C>> summaries, List<String> parameters,
+                                    Function<C, List<?>> values, Path file) throws IOException {
+        List<String> metrics = summaries.get(0).getMetrics();
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            List<String> header = new ArrayList<>(parameters);
+            header.add("replications");
+            for (String metric : metrics) {
+                header.add(metric);
+                header.add(metric + "_ci95");
+            }
+            writer.write(String.join(",", header));
+            writer.write('\n');
+
+            for (Summary<C> summary : summaries) {
+                List<String> row = new ArrayList<>();
+                for (String cell : parameterCells(summary, values)) {
+                    row.add(csvField(cell));
+                }
+                for (String metric : metrics) {
+                    row.add(String.format(Locale.ROOT, "%.4f", summary.getMean(metric)));
+                    row.add(String.format(Locale.ROOT, "%.4f", summary.getHalfWidth(metric)));
+                }
+                writer.write(String.join(",", row));
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Prints summaries as a table, one configuration per line, each metric as mean +/- half-width.
+     *
+     * @param summaries  the summaries, all reporting the same metrics
+     * @param parameters the names of the configuration parameters, as column headers
+     * @param values     extracts a configuration's parameter values, in the order of the headers
+     * @param out        where to print
+     * @param <C>        the configuration type
+     */
+    public static <C> void printReport(List<Summary<C>> summaries, List<String> parameters,
+                                       Function<C, List<?>> values, PrintStream out) {
+        List<String> metrics = summaries.get(0).getMetrics();
+        List<List<String>> rows = new ArrayList<>();
+        List<String> header = new ArrayList<>(parameters);
+        header.add("replications");
+        header.addAll(metrics);
+        rows.add(header);
+        for (Summary<C> summary : summaries) {
+            List<String> row = parameterCells(summary, values);
+            for (String metric : metrics) {
+                row.add(String.format(Locale.ROOT, "%.2f +/- %.2f", summary.getMean(metric), summary.getHalfWidth(metric)));
+            }
+            rows.add(row);
+        }
+
+        // Pad each column to its widest cell
+        int[] widths = new int[header.size()];
+        for (List<String> row : rows) {
+            for (int i = 0; i < row.size(); i++) {
+                widths[i] = Math.max(widths[i], row.get(i).length());
+            }
+        }
+        for (List<String> row : rows) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < row.size(); i++) {
+                line.append(String.format("%" + widths[i] + "s", row.get(i))).append(i + 1 < row.size() ? "  " : "");
+            }
+            out.println(line);
+        }
+    }
+
+    /**
+     * Reads a system property holding a comma-separated list of integers, for sweep ranges such
+     * as -Dsweep.baristas=2,3,4.
+     *
+     * @param property      the property name
+     * @param defaultValues the list to use if the property is not set
+     * @return the values
+     * @throws NumberFormatException if a value is not an integer
+     */
+    public static List<Integer> integers(String property, String defaultValues) {
+        List<Integer> values = new ArrayList<>();
+        for (String value : System.getProperty(property, defaultValues).split(",")) {
+            values.add(Integer.parseInt(value.trim()));
+        }
+        return values;
+    }
+
+    /**
+     * Quotes a CSV field if it contains a comma, quote or line break, doubling any quotes.
+     *
+     * @param value the field
+     * @return the field as written to the file
+     */
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Formats a summary's parameter values and replication count as the first cells of a row.
+     *
+     * @param summary the summary
+     * @param values  extracts a configuration's parameter values
+     * @param <C>     the configuration type
+     * @return the cells, in a list that can be appended to
+     */
+    private static <C> List<String> parameterCells(Summary<C> summary, Function<C, List<?>> values) {
+        List<String> row = new ArrayList<>();
+        for (Object value : values.apply(summary.getConfiguration())) {
+            row.add(String.valueOf(value));
+        }
+        row.add(String.valueOf(summary.getReplications()));
+        return row;
+    }
+}
@@ -0,0 +1,394 @@
+package util.workload;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.random.RandomGenerator;
+
+/**
+ * When load arrives: a description of an arrival process, from which any number of independent
+ * arrival sequences can be started. Processes are immutable and can be shared between threads
+ * and simulation replications; each sequence keeps its own state and is used by one thread.
+ * Times are nanoseconds since the sequence started, real or virtual, and rates are per second.
+ *
+ * <p>Available processes:</p>
+ * <ul>
+ *     <li>poisson: independent arrivals at a constant mean rate (exponential gaps).</li>
+ *     <li>mmpp: a Markov-modulated Poisson process. It cycles through phases, each with its own
+ *     rate and an exponentially distributed length, e.g. short bursts between quiet spells.</li>
+ *     <li>diurnal: a Poisson process whose rate follows a daily cosine between a trough and a
+ *     peak, starting at the trough.</li>
+ *     <li>trace: replays recorded arrival times from a file, then stops.</li>
+ * </ul>
+ *
+ * <p>Programs read processes from system properties with parse, using the forms
+ * {@code poisson:<rate>}, {@code mmpp:<rate>/<mean seconds>,<rate>/<mean seconds>,...},
+ * {@code diurnal:<trough rate>,<peak rate>,<period seconds>} and {@code trace:<file>}.</p>
+ */
+public final class ArrivalProcess {
+    /**
+     * One sequence of arrivals, started from an ArrivalProcess. Not thread-safe.
+     */
+    public interface Arrivals {
+        // Returned by next() once a finite process has no more arrivals
+        long END = Long.MAX_VALUE;
+
+        /**
+         * Returns the time of the next arrival.
+         *
+         * @return nanoseconds since the sequence started, never less than the previous arrival,
+         *         or END if there are no more
+         */
+        long next();
+
+        /**
+         * Waits in real time until the next arrival, for load generators that start work as it
+         * arrives. A generator that has fallen behind gets the arrival back immediately, with its
+         * intended time, so it can measure latency from when the work should have started.
+         *
+         * @param originNanos the System.nanoTime() value the sequence started at
+         * @return the System.nanoTime() value the arrival was due at, or END if there are no more
+         * @throws InterruptedException if the thread is interrupted while waiting
+         */
+        default long awaitNext(long originNanos) throws InterruptedException {
+            long offset = next();
+            if (offset == END) {
+                return END;
+            }
+            long due = originNanos + offset;
+            long remaining;
+            while ((remaining = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return due;
+        }
+    }
+
+    // Nanoseconds per second, for converting rates
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final String description; // Specification the process was created from
+    private final double meanRate; // Long-run arrivals per second
+    private final Function<RandomGenerator, Arrivals> starter; // Starts a sequence
+
+    private ArrivalProcess(String description, double meanRate, Function<RandomGenerator, Arrivals> starter) {
+        this.description = description;
+        this.meanRate = meanRate;
+        this.starter = starter;
+    }
+
+    /**
+     * Starts a sequence of arrivals.
+     *
+     * @param random the generator to draw from; the same seed gives the same sequence
+     * @return the sequence
+     */
+    public Arrivals start(RandomGenerator random) {
+        return starter.apply(random);
+    }
+
+    /**
+     * Returns the long-run mean arrival rate.
+     *
+     * @return arrivals per second
+     */
+    public double getMeanRate() {
+        return meanRate;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+
+    /**
+     * Creates a Poisson process.
+     *
+     * @param ratePerSecond the mean number of arrivals per second
+     * @return the process
+     * @throws IllegalArgumentException if the rate is not positive
+     */
+    public static ArrivalProcess poisson(double ratePerSecond) {
+        requirePositive(ratePerSecond, "Arrival rate");
+        double meanGapNanos = NANOS_PER_SECOND / ratePerSecond;
+        return new ArrivalProcess(format("poisson:%s", ratePerSecond), ratePerSecond, random -> new Arrivals() {
+            private double time; // Time of the previous arrival, unrounded so gaps do not lose fractions
+
+            @Override
+            public long next() {
+                time += exponential(random, meanGapNanos);
+                return Math.round(time);
+            }
+        });
+    }
+
+    /**
+     * Creates a Markov-modulated Poisson process that cycles through phases in order, starting
+     * with the first. With two phases, such as 200/s for a mean of 5 s then 20/s for a mean of
+     * 60 s, it produces bursts that a Poisson process with the same mean rate never shows.
+     *
+     * @param rates       the arrival rate in each phase, per second; 0 for an idle phase
+     * @param meanSeconds the mean length of each phase, in seconds
+     * @return the process
+     * @throws IllegalArgumentException if the arrays differ in length or are empty, a rate is
+     *                                  negative, every rate is 0, or a length is not positive
+     */
+    public static ArrivalProcess mmpp(double[] rates, double[] meanSeconds) {
+        if (rates.length == 0 || rates.length != meanSeconds.length) {
+            throw new IllegalArgumentException("Each phase needs a rate and a mean length.");
+        }
+        double weighted = 0;
+        double totalSeconds = 0;
+        StringBuilder description = new StringBuilder("mmpp:");
+        for (int i = 0; i < rates.length; i++) {
+            if (rates[i] < 0) {
+                throw new IllegalArgumentException("Arrival rate must not be negative.");
+            }
+            requirePositive(meanSeconds[i], "Phase length");
+            weighted += rates[i] * meanSeconds[i];
+            totalSeconds += meanSeconds[i];
+            description.append(i == 0 ? "" : ",").append(format("%s/%s", rates[i], meanSeconds[i]));
+        }
+        requirePositive(weighted, "Mean arrival rate");
+        double[] phaseRates = rates.clone();
+        double[] phaseNanos = Arrays.stream(meanSeconds).map(seconds -> seconds * NANOS_PER_SECOND).toArray();
+
+        return new ArrivalProcess(description.toString(), weighted / totalSeconds, random -> new Arrivals() {
+            private double time; // Time of the previous arrival, or of the last phase change, unrounded
+            private int phase; // Current phase
+            private double phaseEnd = exponential(random, phaseNanos[0]); // When the current phase ends
+
+            @Override
+            public long next() {
+                while (true) {
+                    // Gaps are memoryless, so a gap cut short by a phase change is redrawn at the new rate
+                    double gap = phaseRates[phase] == 0 ? Double.POSITIVE_INFINITY
+                            : exponential(random, NANOS_PER_SECOND / phaseRates[phase]);
+                    if (gap < phaseEnd - time) {
+                        time += gap;
+                        return Math.round(time);
+                    }
+                    time = phaseEnd;
+                    phase = (phase + 1) % phaseRates.length;
+                    phaseEnd = time + exponential(random, phaseNanos[phase]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates a Poisson process whose rate rises from a trough to a peak and back over each
+     * period, following a cosine, e.g. a business day compressed into an hour. Arrivals are
+     * drawn by thinning: candidates at the peak rate are kept with probability rate(t) / peak.
+     *
+     * @param troughRate    the lowest rate, per second, at the start of each period
+     * @param peakRate      the highest rate, per second, half way through each period
+     * @param periodSeconds the length of a period
+     * @return the process
+     * @throws IllegalArgumentException if the peak is not positive, the trough is negative or
+     *                                  above the peak, or the period is not positive
+     */
+    public static ArrivalProcess diurnal(double troughRate, double peakRate, double periodSeconds) {
+        requirePositive(peakRate, "Peak rate");
+        requirePositive(periodSeconds, "Period");
+        if (troughRate < 0 || troughRate > peakRate) {
+            throw new IllegalArgumentException("Trough rate must be between 0 and the peak rate.");
+        }
+        double meanGapNanos = NANOS_PER_SECOND / peakRate;
+        double radiansPerNano = 2 * Math.PI / (periodSeconds * NANOS_PER_SECOND);
+
+        return new ArrivalProcess(format("diurnal:%s,%s,%s", troughRate, peakRate, periodSeconds), (troughRate + peakRate) / 2,
+                random -> new Arrivals() {
+                    private double time; // Time of the previous candidate, unrounded
+
+                    @Override
+                    public long next() {
+                        while (true) {
+                            time += exponential(random, meanGapNanos);
+                            double rate = troughRate + (peakRate - troughRate) * (1 - Math.cos(time * radiansPerNano)) / 2;
+                            if (random.nextDouble() * peakRate < rate) {
+                                return Math.round(time);
+                            }
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Creates a process that replays recorded arrival times.
+     *
+     * @param offsetsNanos arrival times in nanoseconds since the start, in any order
+     * @return the process
+     * @throws IllegalArgumentException if there are no arrivals or a time is negative
+     */
+    public static ArrivalProcess trace(long[] offsetsNanos) {
+        return trace(offsetsNanos, "trace:" + offsetsNanos.length + " arrivals");
+    }
+
+    /**
+     * Reads a trace file: one arrival per line, in seconds since the start (fractions allowed).
+     * Blank lines and lines starting with # are skipped.
+     *
+     * @param file the file
+     * @return the process
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if the file has no arrivals or a time is negative
+     * @throws NumberFormatException    if a line is not a number
+     */
+    public static ArrivalProcess trace(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        long[] offsets = lines.stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .mapToLong(line -> Math.round(Double.parseDouble(line) * NANOS_PER_SECOND))
+                .toArray();
+        return trace(offsets, "trace:" + file);
+    }
+
+    /**
+     * Creates a trace replay.
+     *
+     * @param offsetsNanos the arrival times
+     * @param description  how the process is described
+     * @return the process
+     */
+    private static ArrivalProcess trace(long[] offsetsNanos, String description) {
+        if (offsetsNanos.length == 0) {
+            throw new IllegalArgumentException("A trace needs at least one arrival.");
+        }
+        long[] sorted = offsetsNanos.clone();
+        Arrays.sort(sorted);
+        if (sorted[0] < 0) {
+            throw new IllegalArgumentException("Arrival times must not be negative.");
+        }
+        // The mean rate is taken over the trace's span; a single arrival counts as one per second
+        double spanSeconds = sorted[sorted.length - 1] / NANOS_PER_SECOND;
+        double meanRate = spanSeconds > 0 ? sorted.length / spanSeconds : 1;
+
+        return new ArrivalProcess(description, meanRate, random -> new Arrivals() {
+            private int index; // Next arrival to replay
+
+            @Override
+            public long next() {
+                return index < sorted.length ? sorted[index++] : END;
+            }
+        });
+    }
+
+    /**
+     * Parses a process from its text form, e.g. the value of a system property.
+     *
+     * @param spec the specification, such as "poisson:50" or "mmpp:200/5,20/60"
+     * @return the process
+     * @throws IllegalArgumentException if the specification is not valid
+     */
+    public static ArrivalProcess parse(String spec) {
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Arrival process must be written as <kind>:<parameters>: " + spec);
+        }
+        String kind = spec.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+        String parameters = spec.substring(colon + 1).trim();
+        try {
+            switch (kind) {
+                case "poisson":
+                    return poisson(Double.parseDouble(parameters));
+                case "mmpp": {
+                    String[] phases = parameters.split(",");
+                    double[] rates = new double[phases.length];
+                    double[] lengths = new double[phases.length];
+                    for (int i = 0; i < phases.length; i++) {
+                        String[] phase = phases[i].split("/");
+                        if (phase.length != 2) {
+                            throw new IllegalArgumentException("MMPP phases must be written as <rate>/<mean seconds>: " + spec);
+                        }
+                        rates[i] = Double.parseDouble(phase[0].trim());
+                        lengths[i] = Double.parseDouble(phase[1].trim());
+                    }
+                    return mmpp(rates, lengths);
+                }
+                case "diurnal": {
+                    double[] values = numbers(parameters, 3, spec);
+                    return diurnal(values[0], values[1], values[2]);
+                }
+                case "trace":
+                    return trace(Paths.get(parameters));
+                default:
+                    throw new IllegalArgumentException("Unknown arrival process: " + kind);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid arrival process: " + spec, e);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read arrival trace: " + parameters, e);
+        }
+    }
+
+    /**
+     * Draws an exponentially distributed value.
+     *
+     * @param random the generator
+     * @param mean   the mean
+     * @return the value
+     */
+    static double exponential(RandomGenerator random, double mean) {
+        return -Math.log(1 - random.nextDouble()) * mean;
+    }
+
+    /**
+     * Parses a fixed number of comma-separated numbers.
+     *
+     * @param parameters the text
+     * @param count      the number expected
+     * @param spec       the whole specification, for the error message
+     * @return the numbers
+     * @throws IllegalArgumentException if there are not exactly count numbers
+     */
+    static double[] numbers(String parameters, int count, String spec) {
+        String[] parts = parameters.split(",");
+        if (parts.length != count) {
+            throw new IllegalArgumentException("Expected " + count + " parameters: " + spec);
+        }
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = Double.parseDouble(parts[i].trim());
+        }
+        return values;
+    }
+
+    /**
+     * Checks that a parameter is positive.
+     *
+     * @param value the value
+     * @param name  the parameter name, for the error message
+     * @throws IllegalArgumentException if the value is not positive
+     */
+    static void requirePositive(double value, String name) {
+        if (!(value > 0)) {
+            throw new IllegalArgumentException(name + " must be positive.");
+        }
+    }
+
+    /**
+     * Formats a description with numbers in a locale-independent way, without trailing ".0".
+     *
+     * @param pattern the pattern, with %s for each number
+     * @param values  the numbers
+     * @return the description
+     */
+    static String format(String pattern, double... values) {
+        Object[] texts = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            texts[i] = values[i] == Math.rint(values[i]) ? String.valueOf((long) values[i]) : String.valueOf(values[i]);
+        }
+        return String.format(Locale.ROOT, pattern, texts);
+    }
+}
@@ -0,0 +1,135 @@
+package util.workload;
+
+import util.metrics.Counter;
+import util.metrics.Histogram;
+import util.metrics.MetricsRegistry;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Open-loop load generator: starts requests when an arrival process says they arrive, whether or
+ * not earlier requests have finished, the way independent users hit a real service.
+ * A closed-loop generator (a fixed set of threads, each sending its next request after the last
+ * returns) slows down exactly when the system does, so it never builds the queue that real
+ * traffic would and its latencies hide the stall: the coordinated omission problem.
+ *
+ * <p>Each request runs on its own virtual thread, so a slow system cannot hold back the
+ * arrivals. Response time is measured from when the request was due to start, not from when
+ * the generator got round to starting it, so any delay in the generator itself is counted
+ * too. Service time, from the actual start, and the start lag are recorded separately.
+ * Histograms and counters are registered as {@code <prefix>_response_ns},
+ * {@code <prefix>_service_ns}, {@code <prefix>_start_lag_ns}, {@code <prefix>_issued_total}
+ * and {@code <prefix>_failed_total}.</p>
+ */
+public final class OpenLoopDriver {
+    private final ArrivalProcess arrivals; // When requests are due
+    private final long seed; // Seed of the arrival sequence
+    private final Histogram responseTime; // Due time to completion
+    private final Histogram serviceTime; // Actual start to completion
+    private final Histogram startLag; // Due time to actual start
+    private final Counter issued; // Requests started
+    private final Counter failed; // Requests that threw an exception
+
+    /**
+     * Constructs a driver recording into a registry.
+     *
+     * @param arrivals the arrival process
+     * @param seed     the seed for the arrival sequence
+     * @param registry the registry to record metrics in
+     * @param prefix   the metric name prefix, e.g. "banking_load"
+     */
+    public OpenLoopDriver(ArrivalProcess arrivals, long seed, MetricsRegistry registry, String prefix) {
+        this.arrivals = arrivals;
+        this.seed = seed;
+        this.responseTime = registry.histogram(prefix + "_response_ns");
+        this.serviceTime = registry.histogram(prefix + "_service_ns");
+        this.startLag = registry.histogram(prefix + "_start_lag_ns");
+        this.issued = registry.counter(prefix + "_issued_total");
+        this.failed = registry.counter(prefix + "_failed_total");
+    }
+
+    /**
+     * Issues requests for a period, then waits for every request issued to finish.
+     *
+     * @param durationNanos how long to keep issuing requests
+     * @param request       the request; must be safe to run concurrently with itself
+     * @return the requests issued
+     * @throws InterruptedException if the calling thread is interrupted; requests already
+     *                              issued are still waited for
+     */
+    public long run(long durationNanos, Runnable request) throws InterruptedException {
+        ArrivalProcess.Arrivals sequence = arrivals.start(new SplittableRandom(seed));
+        long count = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            long origin = System.nanoTime();
+            while (true) {
+                long due = sequence.awaitNext(origin);
+                if (due == ArrivalProcess.Arrivals.END || due - origin > durationNanos) {
+                    break;
+                }
+                executor.execute(() -> issue(due, request));
+                count++;
+            }
+        } // Closing the executor waits for the requests still running
+        return count;
+    }
+
+    /**
+     * Runs one request and records its timings.
+     *
+     * @param dueNanos the System.nanoTime() value the request was due to start at
+     * @param request  the request
+     */
+    private void issue(long dueNanos, Runnable request) {
+        long start = System.nanoTime();
+        issued.increment();
+        startLag.record(start - dueNanos);
+        try {
+            request.run();
+        } catch (RuntimeException e) {
+            failed.increment();
+        } finally {
+            long end = System.nanoTime();
+            serviceTime.record(end - start);
+            responseTime.record(end - dueNanos);
+        }
+    }
+
+    /**
+     * Returns the response times recorded, from due time to completion.
+     *
+     * @return the histogram
+     */
+    public Histogram getResponseTime() {
+        return responseTime;
+    }
+
+    /**
+     * Returns the service times recorded, from actual start to completion.
+     *
+     * @return the histogram
+     */
+    public Histogram getServiceTime() {
+        return serviceTime;
+    }
+
+    /**
+     * Returns how late requests started after they were due.
+     *
+     * @return the histogram
+     */
+    public Histogram getStartLag() {
+        return startLag;
+    }
+
+    /**
+     * Returns the number of requests that threw an exception.
+     *
+     * @return the count
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+}
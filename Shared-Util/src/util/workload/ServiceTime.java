@@ -0,0 +1,157 @@
+package util.workload;
+
+import java.util.Locale;
+import java.util.function.ToDoubleFunction;
+import java.util.random.RandomGenerator;
+
+/**
+ * How long a piece of work takes: a distribution of durations, such as the time a user spends in
+ * a stall or a customer's pause between orders. Distributions are immutable and thread-safe;
+ * randomness comes from the generator passed to each sample, so simulations stay deterministic.
+ * Parameters are in milliseconds, as elsewhere in the simulations.
+ *
+ * <p>Programs read distributions from system properties with parse, using the forms
+ * {@code constant:<ms>}, {@code uniform:<min ms>,<max ms>}, {@code exponential:<mean ms>} and
+ * {@code lognormal:<median ms>,<sigma>}. The lognormal has the long right tail typical of real
+ * service times: with sigma 1 about 1 in 100 samples is over 10 times the median.</p>
+ */
+public final class ServiceTime {
+    private final String description; // Specification the distribution was created from
+    private final double meanMillis; // Mean duration
+    private final ToDoubleFunction<RandomGenerator> sampler; // Draws a duration in milliseconds
+
+    private ServiceTime(String description, double meanMillis, ToDoubleFunction<RandomGenerator> sampler) {
+        this.description = description;
+        this.meanMillis = meanMillis;
+        this.sampler = sampler;
+    }
+
+    /**
+     * Draws a duration.
+     *
+     * @param random the generator to draw from
+     * @return the duration in nanoseconds
+     */
+    public long sampleNanos(RandomGenerator random) {
+        return Math.round(sampler.applyAsDouble(random) * 1e6);
+    }
+
+    /**
+     * Draws a duration, for passing to Thread.sleep.
+     *
+     * @param random the generator to draw from
+     * @return the duration in whole milliseconds
+     */
+    public long sampleMillis(RandomGenerator random) {
+        return Math.round(sampler.applyAsDouble(random));
+    }
+
+    /**
+     * Returns the mean duration.
+     *
+     * @return the mean in milliseconds
+     */
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+
+    /**
+     * Creates a distribution that always gives the same duration.
+     *
+     * @param millis the duration
+     * @return the distribution
+     * @throws IllegalArgumentException if the duration is negative
+     */
+    public static ServiceTime constant(double millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Duration must not be negative.");
+        }
+        return new ServiceTime(ArrivalProcess.format("constant:%s", millis), millis, random -> millis);
+    }
+
+    /**
+     * Creates a uniform distribution, as FloorBathroom and Customer use.
+     *
+     * @param minMillis the shortest duration
+     * @param maxMillis the longest duration (exclusive)
+     * @return the distribution
+     * @throws IllegalArgumentException if the minimum is negative or not below the maximum
+     */
+    public static ServiceTime uniform(double minMillis, double maxMillis) {
+        if (minMillis < 0 || minMillis >= maxMillis) {
+            throw new IllegalArgumentException("Uniform durations need 0 <= min < max.");
+        }
+        return new ServiceTime(ArrivalProcess.format("uniform:%s,%s", minMillis, maxMillis), (minMillis + maxMillis) / 2,
+                random -> random.nextDouble(minMillis, maxMillis));
+    }
+
+    /**
+     * Creates an exponential distribution, the memoryless service of an M/M/c queue.
+     *
+     * @param meanMillis the mean duration
+     * @return the distribution
+     * @throws IllegalArgumentException if the mean is not positive
+     */
+    public static ServiceTime exponential(double meanMillis) {
+        ArrivalProcess.requirePositive(meanMillis, "Mean duration");
+        return new ServiceTime(ArrivalProcess.format("exponential:%s", meanMillis), meanMillis,
+                random -> ArrivalProcess.exponential(random, meanMillis));
+    }
+
+    /**
+     * Creates a lognormal distribution.
+     *
+     * @param medianMillis the median duration
+     * @param sigma        the standard deviation of the duration's logarithm; larger means a longer tail
+     * @return the distribution
+     * @throws IllegalArgumentException if the median or sigma is not positive
+     */
+    public static ServiceTime lognormal(double medianMillis, double sigma) {
+        ArrivalProcess.requirePositive(medianMillis, "Median duration");
+        ArrivalProcess.requirePositive(sigma, "Sigma");
+        return new ServiceTime(ArrivalProcess.format("lognormal:%s,%s", medianMillis, sigma),
+                medianMillis * Math.exp(sigma * sigma / 2),
+                random -> medianMillis * Math.exp(sigma * random.nextGaussian()));
+    }
+
+    /**
+     * Parses a distribution from its text form, e.g. the value of a system property.
+     *
+     * @param spec the specification, such as "uniform:3000,5000" or "lognormal:4000,0.5"
+     * @return the distribution
+     * @throws IllegalArgumentException if the specification is not valid
+     */
+    public static ServiceTime parse(String spec) {
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Service time must be written as <kind>:<parameters>: " + spec);
+        }
+        String kind = spec.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+        String parameters = spec.substring(colon + 1).trim();
+        try {
+            switch (kind) {
+                case "constant":
+                    return constant(ArrivalProcess.numbers(parameters, 1, spec)[0]);
+                case "uniform": {
+                    double[] values = ArrivalProcess.numbers(parameters, 2, spec);
+                    return uniform(values[0], values[1]);
+                }
+                case "exponential":
+                    return exponential(ArrivalProcess.numbers(parameters, 1, spec)[0]);
+                case "lognormal": {
+                    double[] values = ArrivalProcess.numbers(parameters, 2, spec);
+                    return lognormal(values[0], values[1]);
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown service time distribution: " + kind);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid service time: " + spec, e);
+        }
+    }
+}
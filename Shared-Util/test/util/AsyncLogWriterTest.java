@@ -0,0 +1,121 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncLogWriterTest {
+    // Ring capacity used by the tests, small so producers overrun it
+    private static final int CAPACITY = 8;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void blockPolicyWritesEveryRecordFromConcurrentProducers() throws IOException {
+        Path file = directory.resolve("block.log");
+        AsyncLogWriter writer = new AsyncLogWriter(file, "test", false, CAPACITY, AsyncLogWriter.OverflowPolicy.BLOCK, AsyncLogWriterTest::plain);
+        int producers = 4;
+        int perProducer = 2_000;
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            Thread[] threads = new Thread[producers];
+            for (int p = 0; p < producers; p++) {
+                String name = "producer-" + p;
+                threads[p] = new Thread(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        assertTrue(writer.submit(Level.INFO, name, "record " + i, null));
+                    }
+                });
+                threads[p].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            writer.close();
+        });
+
+        assertEquals(0, writer.getDroppedCount());
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(producers * perProducer, lines.size());
+        // Each producer's records keep their order
+        for (int p = 0; p < producers; p++) {
+            String prefix = "producer-" + p + ": record ";
+            int next = 0;
+            for (String line : lines) {
+                int at = line.indexOf(prefix);
+                if (at >= 0) {
+                    assertEquals(next++, Integer.parseInt(line.substring(at + prefix.length())));
+                }
+            }
+            assertEquals(perProducer, next);
+        }
+    }
+
+    @Test
+    void dropPolicyDiscardsAndCountsRecordsWhileTheBufferIsFull() throws Exception {
+        Path file = directory.resolve("drop.log");
+        CountDownLatch writerStalled = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean stallOnce = new AtomicBoolean(true);
+        // Hold the writer inside the first record, so its slot and every later one stay taken
+        AsyncLogWriter.MessageLayout stalling = (out, timestamp, threadName, message) -> {
+            if (stallOnce.getAndSet(false)) {
+                writerStalled.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            plain(out, timestamp, threadName, message);
+        };
+        AsyncLogWriter writer = new AsyncLogWriter(file, "test", false, CAPACITY, AsyncLogWriter.OverflowPolicy.DROP, stalling);
+
+        assertTrue(writer.submit(Level.INFO, "main", "record 0", null));
+        writerStalled.await();
+        for (int i = 1; i < CAPACITY; i++) {
+            assertTrue(writer.submit(Level.INFO, "main", "record " + i, null));
+        }
+        assertFalse(writer.submit(Level.INFO, "main", "overflow 1", null));
+        assertFalse(writer.submit(Level.INFO, "main", "overflow 2", null));
+        assertEquals(2, writer.getDroppedCount());
+
+        release.countDown();
+        writer.close();
+        assertFalse(writer.submit(Level.INFO, "main", "after close", null));
+        assertEquals(3, writer.getDroppedCount());
+
+        String text = Files.readString(file);
+        for (int i = 0; i < CAPACITY; i++) {
+            assertTrue(text.contains("main: record " + i), text);
+        }
+        assertFalse(text.contains("overflow"), text);
+        assertTrue(text.contains("2 log records dropped because the log buffer was full"), text);
+    }
+
+    /**
+     * Lays out a record's message as "thread: message".
+     *
+     * @param out        the builder to append to
+     * @param timestamp  the formatted time
+     * @param threadName the logging thread's name
+     * @param message    the message
+     */
+    private static void plain(StringBuilder out, String timestamp, String threadName, String message) {
+        out.append(' ').append(threadName).append(": ").append(message);
+    }
+}
@@ -0,0 +1,130 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryEventLogTest {
+    // Events per recording thread, together several times the ring's capacity
+    private static final int EVENTS_PER_THREAD = 20_000;
+
+    // Number of recording threads
+    private static final int THREADS = 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void flushedEventsDecodeWithTheirTypeThreadAndFields() throws IOException {
+        int type = BinaryEventLog.defineType("ROUND_TRIP", "from", "to", "cents");
+        Path file = directory.resolve("events.bin");
+        try (BinaryEventLog log = new BinaryEventLog(file)) {
+            log.record(type, 7, 9, 1250);
+            log.flush();
+
+            // Readable before close
+            List<String> lines = decode(file, false);
+            assertEquals(1, lines.size());
+            String line = lines.get(0);
+            assertTrue(line.contains("[" + Thread.currentThread().getName() + "] ROUND_TRIP"), line);
+            assertTrue(line.endsWith("from=7 to=9 cents=1250"), line);
+        }
+    }
+
+    @Test
+    void eventsRecordedAfterCloseAreIgnored() throws IOException {
+        int type = BinaryEventLog.defineType("AFTER_CLOSE", "value");
+        Path file = directory.resolve("closed.bin");
+        BinaryEventLog log = new BinaryEventLog(file);
+        log.record(type, 1);
+        log.close();
+        log.record(type, 2);
+        log.flush();
+
+        List<String> lines = decode(file, false);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).endsWith("value=1"), lines.get(0));
+    }
+
+    @Test
+    void concurrentRecordersLoseNothingAndKeepEachThreadsOrder() throws Exception {
+        int type = BinaryEventLog.defineType("CONCURRENT", "thread", "sequence");
+        Path file = directory.resolve("concurrent.bin");
+        // A small buffer forces many writes, and the event count overruns the ring, so recorders wait for the writer
+        BinaryEventLog log = new BinaryEventLog(file, 4096);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] recorders = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            recorders[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                    log.record(type, thread, i);
+                }
+            }, "recorder-" + t);
+            recorders[t].start();
+        }
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            start.countDown();
+            for (Thread recorder : recorders) {
+                recorder.join();
+            }
+            log.close();
+        });
+
+        List<String> rows = decode(file, true);
+        // Types are shared across the JVM, so other tests' field columns may come first
+        List<String> header = List.of(rows.get(0).split(","));
+        int threadColumn = header.indexOf("thread");
+        int sequenceColumn = header.indexOf("sequence");
+        Map<String, Integer> next = new HashMap<>();
+        for (String row : rows.subList(1, rows.size())) {
+            String[] cells = row.split(",", -1);
+            if (!cells[4].equals("CONCURRENT")) {
+                continue;
+            }
+            String thread = cells[threadColumn];
+            int sequence = Integer.parseInt(cells[sequenceColumn]);
+            assertEquals("recorder-" + thread, cells[3]);
+            int expected = next.getOrDefault(thread, 0);
+            assertEquals(expected, sequence, "events of recorder-" + thread + " out of order");
+            next.put(thread, expected + 1);
+        }
+        assertEquals(THREADS, next.size());
+        for (int count : next.values()) {
+            assertEquals(EVENTS_PER_THREAD, count);
+        }
+    }
+
+    /**
+     * Decodes a log file into its output lines.
+     *
+     * @param file the log file
+     * @param csv  true for CSV, false for text
+     * @return the lines, without line breaks
+     * @throws IOException if the file cannot be read
+     */
+    private static List<String> decode(Path file, boolean csv) throws IOException {
+        StringWriter out = new StringWriter();
+        new EventLogDecoder(file).decode(out, csv);
+        return out.toString().lines().toList();
+    }
+}
@@ -0,0 +1,65 @@
+package util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoggerUtilTest {
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void closeLogFile() {
+        System.clearProperty(LogConfig.LEVEL_PROPERTY);
+        System.clearProperty(LogConfig.CONSOLE_PROPERTY);
+        LoggerUtil.configure(LogConfig.forFile(null).withConsole(false));
+    }
+
+    @Test
+    void filteredLevelsAreNeitherBuiltNorWritten() throws IOException {
+        Path file = directory.resolve("test.log");
+        LoggerUtil.configure(LogConfig.forFile(file.toString()).withLevel(Level.WARNING).withConsole(false));
+
+        AtomicInteger built = new AtomicInteger();
+        LoggerUtil.log(Level.INFO, "main", () -> "info " + built.incrementAndGet());
+        LoggerUtil.log(Level.WARNING, "main", () -> "warning " + built.incrementAndGet());
+        LoggerUtil.configure(LogConfig.forFile(null).withConsole(false)); // Closes the file
+
+        assertEquals(1, built.get());
+        String text = Files.readString(file);
+        assertTrue(text.contains("warning 1"));
+        assertFalse(text.contains("info"));
+    }
+
+    @Test
+    void levelCanBeChangedWhileRunning() {
+        LoggerUtil.configure(LogConfig.forFile(null).withLevel(Level.WARNING).withConsole(false));
+        assertFalse(LoggerUtil.isLoggable(Level.INFO));
+
+        LoggerUtil.setLevel(Level.FINE);
+        assertTrue(LoggerUtil.isLoggable(Level.INFO));
+        assertFalse(LoggerUtil.isLoggable(Level.FINEST));
+    }
+
+    @Test
+    void systemPropertiesOverrideTheComponentSettings() {
+        System.setProperty(LogConfig.LEVEL_PROPERTY, "SEVERE");
+        System.setProperty(LogConfig.CONSOLE_PROPERTY, "false");
+
+        LogConfig config = LogConfig.forFile("component.log").withSystemOverrides();
+
+        assertEquals(Level.SEVERE, config.getLevel());
+        assertFalse(config.isConsoleEnabled());
+        assertEquals("component.log", config.getLogFile());
+    }
+}
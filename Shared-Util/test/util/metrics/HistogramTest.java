@@ -0,0 +1,97 @@
+package util.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistogramTest {
+    @Test
+    void percentilesAreWithinOnePercentOfTheTrueValue() {
+        Histogram histogram = new Histogram();
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v * 1_000); // 1 µs to 100 ms in nanoseconds
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(100_000_000L, snapshot.getMax());
+        assertEquals(50_000_500.0, snapshot.getMean(), 0.001);
+        assertWithinOnePercent(50_000_000L, snapshot.getValueAtPercentile(50));
+        assertWithinOnePercent(99_000_000L, snapshot.getValueAtPercentile(99));
+        assertWithinOnePercent(99_900_000L, snapshot.getValueAtPercentile(99.9));
+        assertEquals(100_000_000L, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    void smallValuesAreExactAndNegativeValuesCountAsZero() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(3);
+        histogram.record(100);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getValueAtPercentile(25));
+        assertEquals(3, snapshot.getValueAtPercentile(50));
+        assertEquals(3, snapshot.getValueAtPercentile(75));
+        assertEquals(100, snapshot.getValueAtPercentile(100));
+        assertEquals(106, snapshot.getSum());
+    }
+
+    @Test
+    void emptySnapshotReportsZeros() {
+        Histogram.Snapshot snapshot = new Histogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0.0, snapshot.getMean());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+    }
+
+    @Test
+    void concurrentRecordersAreAllCountedAcrossStripes() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        int threads = 16;
+        int perThread = 50_000;
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] recorders = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            long value = 1_000L * (t + 1);
+            recorders[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    histogram.record(value);
+                }
+            });
+            recorders[t].start();
+        }
+        start.countDown();
+        for (Thread recorder : recorders) {
+            recorder.join();
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals((long) threads * perThread, snapshot.getCount());
+        assertEquals((long) threads * perThread, histogram.getCount());
+        assertEquals(1_000L * threads, snapshot.getMax());
+        // Each thread recorded its own value, so the median is the 8th thread's, within bucket precision
+        assertWithinOnePercent(8_000L, snapshot.getValueAtPercentile(50));
+    }
+
+    /**
+     * Asserts that a reported value is within 1% of the expected one.
+     *
+     * @param expected the true value
+     * @param actual   the reported value
+     */
+    private static void assertWithinOnePercent(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 100, "expected about " + expected + " but was " + actual);
+    }
+}
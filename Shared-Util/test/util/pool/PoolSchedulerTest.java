@@ -0,0 +1,116 @@
+package util.pool;
+
+import org.junit.jupiter.api.Test;
+import util.metrics.MetricsRegistry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class PoolSchedulerTest {
+    @Test
+    void homeFirstThenNearestWithTiesGoingToTheEmptierPool() {
+        MetricsRegistry registry = new MetricsRegistry();
+        // One building, floors 0 to 4; floor 3 has two units, every other floor one
+        List<ResourcePool> floors = new ArrayList<>();
+        for (int floor = 0; floor < 5; floor++) {
+            floors.add(new ResourcePool("floor " + floor, 0, floor, floor == 3 ? 2 : 1));
+        }
+        PoolScheduler<ResourcePool> scheduler = new PoolScheduler<>(floors, 2, registry, "test");
+
+        // Expected pool and distance of each request from floor 2, until everything in range is taken
+        int[][] expected = {{2, 0}, {3, 1}, {1, 1}, {3, 1}, {0, 2}, {4, 2}};
+        for (int[] pick : expected) {
+            PoolScheduler.Reservation<ResourcePool> reservation = scheduler.tryReserve(2);
+            assertSame(floors.get(pick[0]), reservation.getPool());
+            assertEquals(pick[1], reservation.getDistance());
+        }
+        assertNull(scheduler.tryReserve(2));
+        assertEquals(0, scheduler.getFreeCount());
+
+        assertEquals(1, registry.counter("test_home_total").get());
+        assertEquals(5, registry.counter("test_overflow_total").get());
+        assertEquals(1, registry.counter("test_full_total").get());
+        assertEquals(5, registry.histogram("test_overflow_distance").snapshot().getCount());
+        assertEquals(2, registry.histogram("test_overflow_distance").snapshot().getMax());
+    }
+
+    @Test
+    void overflowStaysInTheGroupAndWithinTheMaximumDistance() {
+        ResourcePool home = new ResourcePool("a1", 0, 1, 1);
+        ResourcePool far = new ResourcePool("a4", 0, 4, 1);
+        ResourcePool otherBuilding = new ResourcePool("b1", 1, 1, 1);
+        PoolScheduler<ResourcePool> scheduler = new PoolScheduler<>(List.of(home, far, otherBuilding), 2, new MetricsRegistry(), "test");
+
+        PoolScheduler.Reservation<ResourcePool> first = scheduler.tryReserve(0);
+        assertSame(home, first.getPool());
+        assertNull(scheduler.tryReserve(0)); // b1 is in another group and a4 is 3 floors away
+
+        first.release();
+        assertThrows(IllegalStateException.class, first::release);
+        assertSame(home, scheduler.tryReserve(0).getPool());
+    }
+
+    @Test
+    void poolsSharingALocationAreRejected() {
+        List<ResourcePool> pools = List.of(new ResourcePool("x", 0, 1, 1), new ResourcePool("y", 0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new PoolScheduler<>(pools, 1, new MetricsRegistry(), "test"));
+    }
+
+    @Test
+    void concurrentUsersNeverHoldMoreUnitsThanAPoolHas() {
+        List<ResourcePool> floors = new ArrayList<>();
+        for (int floor = 0; floor < 4; floor++) {
+            floors.add(new ResourcePool("floor " + floor, 0, floor, 3));
+        }
+        PoolScheduler<ResourcePool> scheduler = new PoolScheduler<>(floors, 3, new MetricsRegistry(), "test");
+        AtomicIntegerArray inUse = new AtomicIntegerArray(floors.size());
+        AtomicReference<String> violation = new AtomicReference<>();
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            Thread[] users = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int homeIndex = t % floors.size();
+                users[t] = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 0; i < 20_000; i++) {
+                        PoolScheduler.Reservation<ResourcePool> reservation = scheduler.tryReserve(homeIndex);
+                        if (reservation == null) {
+                            continue;
+                        }
+                        int pool = floors.indexOf(reservation.getPool());
+                        if (inUse.incrementAndGet(pool) > reservation.getPool().getCapacity()) {
+                            violation.compareAndSet(null, reservation.getPool() + " over capacity");
+                        }
+                        inUse.decrementAndGet(pool);
+                        reservation.release();
+                    }
+                });
+                users[t].start();
+            }
+            start.countDown();
+            for (Thread user : users) {
+                user.join();
+            }
+        });
+
+        assertNull(violation.get());
+        assertEquals(12, scheduler.getFreeCount());
+    }
+}
@@ -0,0 +1,42 @@
+package util.sim;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ParameterSweepTest {
+    private static final ParameterSweep.Model<Integer> MODEL =
+            (scale, seed) -> Map.of("value", scale * new SplittableRandom(seed).nextDouble());
+
+    @Test
+    void resultsDoNotDependOnTheNumberOfWorkers() {
+        ParameterSweep<Integer> sweep = new ParameterSweep<>(List.of(1, 10, 100), 257, 7);
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool several = new ForkJoinPool(4);
+        try {
+            List<ParameterSweep.Summary<Integer>> one = sweep.run(MODEL, single);
+            List<ParameterSweep.Summary<Integer>> four = sweep.run(MODEL, several);
+            for (int i = 0; i < one.size(); i++) {
+                assertEquals(one.get(i).getConfiguration(), four.get(i).getConfiguration());
+                assertEquals(one.get(i).getMean("value"), four.get(i).getMean("value"));
+                assertEquals(one.get(i).getHalfWidth("value"), four.get(i).getHalfWidth("value"));
+            }
+        } finally {
+            single.shutdown();
+            several.shutdown();
+        }
+    }
+
+    @Test
+    void replicationsOfEveryConfigurationShareSeeds() {
+        List<ParameterSweep.Summary<Integer>> summaries = new ParameterSweep<>(List.of(1, 10), 50, 3).run(MODEL);
+
+        assertEquals(50, summaries.get(0).getReplications());
+        assertEquals(10 * summaries.get(0).getMean("value"), summaries.get(1).getMean("value"), 1e-9);
+    }
+}
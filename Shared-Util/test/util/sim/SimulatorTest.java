@@ -0,0 +1,98 @@
+package util.sim;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SimulatorTest {
+    @Test
+    void actionsRunInTimeOrderWithTiesInSchedulingOrder() {
+        Simulator simulator = new Simulator(1);
+        List<String> ran = new ArrayList<>();
+        simulator.schedule(30, () -> ran.add("c@" + simulator.now()));
+        simulator.schedule(10, () -> ran.add("a@" + simulator.now()));
+        simulator.schedule(20, () -> ran.add("b1@" + simulator.now()));
+        simulator.schedule(20, () -> ran.add("b2@" + simulator.now()));
+        simulator.scheduleAt(20, () -> ran.add("b3@" + simulator.now()));
+
+        assertEquals(5, simulator.run(Long.MAX_VALUE));
+        assertEquals(List.of("a@10", "b1@20", "b2@20", "b3@20", "c@30"), ran);
+        assertEquals(30, simulator.now());
+    }
+
+    @Test
+    void actionsScheduleFollowUpsRelativeToTheVirtualClock() {
+        Simulator simulator = new Simulator(1);
+        List<Long> ticks = new ArrayList<>();
+        Runnable[] tick = new Runnable[1];
+        tick[0] = () -> {
+            ticks.add(simulator.now());
+            simulator.schedule(1_000_000_000L, tick[0]); // Once a virtual second
+        };
+        simulator.schedule(0, tick[0]);
+
+        // A simulated hour takes no wall time to speak of
+        long ran = simulator.run(3_600_000_000_000L);
+        assertEquals(3_601, ran);
+        assertEquals(3_600_000_000_000L, ticks.get(ticks.size() - 1));
+        assertEquals(3_600_000_000_000L, simulator.now());
+        assertEquals(1, simulator.getPendingCount()); // The next tick is beyond the end
+
+        // A later call resumes where this one ended
+        assertEquals(1, simulator.run(3_601_000_000_000L));
+        assertEquals(3_602, simulator.getEventCount());
+    }
+
+    @Test
+    void stopEndsTheRunAfterTheCurrentActionAndKeepsTheRest() {
+        Simulator simulator = new Simulator(1);
+        simulator.schedule(5, simulator::stop);
+        simulator.schedule(6, () -> { });
+
+        assertEquals(1, simulator.run(100));
+        assertEquals(5, simulator.now());
+        assertEquals(1, simulator.getPendingCount());
+        assertEquals(1, simulator.run(100));
+    }
+
+    @Test
+    void schedulingInThePastIsRejected() {
+        Simulator simulator = new Simulator(1);
+        simulator.schedule(50, () -> { });
+        simulator.run(100); // The calendar runs dry, so the clock stays at the last action
+
+        assertEquals(50, simulator.now());
+        assertThrows(IllegalArgumentException.class, () -> simulator.schedule(-1, () -> { }));
+        assertThrows(IllegalArgumentException.class, () -> simulator.scheduleAt(49, () -> { }));
+    }
+
+    @Test
+    void theSameSeedGivesTheSameRun() {
+        assertEquals(randomWalk(42), randomWalk(42));
+    }
+
+    /**
+     * Runs a model whose every delay is random and returns when each action ran.
+     *
+     * @param seed the simulator seed
+     * @return the virtual times of the actions
+     */
+    private static List<Long> randomWalk(long seed) {
+        Simulator simulator = new Simulator(seed);
+        List<Long> times = new ArrayList<>();
+        Runnable[] step = new Runnable[1];
+        step[0] = () -> {
+            times.add(simulator.now());
+            simulator.schedule(simulator.random().nextLong(1, 1_000), step[0]);
+        };
+        for (int i = 0; i < 3; i++) {
+            simulator.schedule(simulator.random().nextLong(1_000), step[0]);
+        }
+        simulator.run(100_000);
+        return times;
+    }
+}
@@ -0,0 +1,38 @@
+package util.workload;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ArrivalProcessTest {
+    private static final int ARRIVALS = 1_000_000;
+
+    @Test
+    void poissonKeepsItsRateWhenGapsAreShorterThanANanosecond() {
+        // A mean gap of 0.5 ns: truncating each gap to whole nanoseconds would nearly stop the clock
+        assertRate(ArrivalProcess.poisson(2e9), 2e9);
+    }
+
+    @Test
+    void poissonKeepsItsRateAtAnOrdinaryRate() {
+        assertRate(ArrivalProcess.poisson(1_000), 1_000);
+    }
+
+    @Test
+    void mmppKeepsItsMeanRateWithShortGaps() {
+        ArrivalProcess process = ArrivalProcess.mmpp(new double[]{4e9, 1e9}, new double[]{1e-8, 1e-8});
+        assertRate(process, process.getMeanRate());
+    }
+
+    private static void assertRate(ArrivalProcess process, double expectedPerSecond) {
+        ArrivalProcess.Arrivals arrivals = process.start(new SplittableRandom(42));
+        long last = 0;
+        for (int i = 0; i < ARRIVALS; i++) {
+            last = arrivals.next();
+        }
+        double rate = ARRIVALS / (last / 1e9);
+        assertEquals(expectedPerSecond, rate, expectedPerSecond * 0.02, process.toString());
+    }
+}